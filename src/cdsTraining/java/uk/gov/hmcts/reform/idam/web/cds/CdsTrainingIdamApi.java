@@ -0,0 +1,63 @@
+package uk.gov.hmcts.reform.idam.web.cds;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.instrument.Instrumentation;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stands in for idam-api during the training run of the class data sharing archive, see
+ * {@code uk.gov.hmcts.reform.idam.web.config.CdsTrainingRun}, as the image build has no idam-api to reach. It answers
+ * the calls the warm-up makes, the service lookup and the health check, so the archive holds the classes of the pages
+ * served as they are in production rather than those of the error paths.
+ *
+ * <p>Built into its own jar by the {@code cdsTrainingJar} task and loaded as a java agent by the training run only,
+ * see the Dockerfile, so it is neither in the application jar nor in the image. The agent argument is the port of
+ * {@code strategic.service.url} in the {@code cds-training} profile; the stub listens on the loopback address.
+ */
+public final class CdsTrainingIdamApi {
+
+    static final String SERVICES_JSON =
+        "[{\"label\":\"Warm up\",\"oauth2ClientId\":\"idam-warm-up\",\"selfRegistrationAllowed\":true}]";
+
+    static final String HEALTH_JSON = "{\"status\":\"UP\"}";
+
+    private final HttpServer server;
+
+    CdsTrainingIdamApi(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/services", exchange -> json(exchange, SERVICES_JSON));
+        server.createContext("/health", exchange -> json(exchange, HEALTH_JSON));
+    }
+
+    public static void premain(String port, Instrumentation instrumentation) {
+        try {
+            CdsTrainingIdamApi idamApi = new CdsTrainingIdamApi(Integer.parseInt(port));
+            idamApi.start();
+            System.out.println("Training run idam-api stub listening on port " + port);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start the training run idam-api stub on port " + port, e);
+        }
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    private static void json(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
@@ -0,0 +1,55 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.i18n.SessionLocaleResolver;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code ui_locales} handling that runs before every controller, with no parameter, a supported tag and a list
+ * where only the last tag is supported. The locale is kept in the mock session rather than a cookie so the response
+ * does not grow across invocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OIDCLocaleChangeInterceptorBenchmark {
+
+    @Param({"", "cy", "pl fr de cy"})
+    private String uiLocales;
+
+    private OIDCLocaleChangeInterceptor interceptor;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        interceptor = new OIDCLocaleChangeInterceptor(Set.of("en", "cy"));
+        interceptor.setParamName(IdamWebMvcConfiguration.UI_LOCALES_PARAM_NAME);
+        interceptor.setIgnoreInvalidLocale(true);
+        request = new MockHttpServletRequest("GET", "/login");
+        if (!uiLocales.isEmpty()) {
+            request.setParameter(IdamWebMvcConfiguration.UI_LOCALES_PARAM_NAME, uiLocales);
+        }
+        request.setAttribute(DispatcherServlet.LOCALE_RESOLVER_ATTRIBUTE, new SessionLocaleResolver());
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public boolean preHandle() {
+        return interceptor.preHandle(request, response, this);
+    }
+}
@@ -0,0 +1,32 @@
+package uk.gov.hmcts.reform.idam.web.helper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Set-Cookie values rewritten after a successful login, for the cookies idam-api returns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuthHelperBenchmark {
+
+    private static final List<String> COOKIES = List.of(
+        "Idam.Session=AQIC5wM2LY4SfczbwRx2Jmz8hkwpE4cEJ8oZMmXMXHVh; Domain=.platform.hmcts.net",
+        "Idam.AuthId=eyJ0eXAiOiJKV1QiLCJhbGciOiJIUzI1NiJ9; Secure; HttpOnly",
+        "idam-api-affinity=c3b21f1a2f");
+
+    private final AuthHelper authHelper = new AuthHelper(true);
+
+    @Benchmark
+    public List<String> makeCookiesSecure() {
+        return authHelper.makeCookiesSecure(COOKIES);
+    }
+}
@@ -0,0 +1,52 @@
+package uk.gov.hmcts.reform.idam.web.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The nonce and Content-Security-Policy header built for every request, including static assets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CspNonceBenchmark {
+
+    private final FilterChain chain = (request, response) -> { };
+
+    private CspNonceService cspNonceService;
+
+    private CspNonceFilter cspNonceFilter;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        cspNonceService = new CspNonceService();
+        cspNonceFilter = new CspNonceFilter();
+        request = new MockHttpServletRequest("GET", "/login");
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public String generateNonce() {
+        return cspNonceService.generateNonce();
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        cspNonceFilter.doFilter(request, response, chain);
+        return response.getHeader("Content-Security-Policy");
+    }
+}
@@ -0,0 +1,43 @@
+package uk.gov.hmcts.reform.idam.web.sso;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SSO domain lookup made for every password login, for a federated and a non federated address.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SSOServiceBenchmark {
+
+    @Param({"judge@ejudiciary.net", "john.smith@example.gov.uk"})
+    private String username;
+
+    private SSOService ssoService;
+
+    @Setup
+    public void setUp() {
+        ConfigurationProperties configurationProperties = new ConfigurationProperties();
+        configurationProperties.setSsoEmailDomains(Map.of(
+            "ejudiciary.net", "ejudiciary-aad",
+            "justice.gov.uk", "moj",
+            "hmcts.net", "ejudiciary-aad"));
+        ssoService = new SSOService(configurationProperties);
+    }
+
+    @Benchmark
+    public boolean isSSOEmail() {
+        return ssoService.isSSOEmail(username);
+    }
+}
@@ -0,0 +1,62 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The upstream URIs resolved for one login (authenticate, authorize and the service lookup), built the way
+ * RestTemplate does for a String url against the precomputed registry. Run with {@code ./gradlew jmh} and compare
+ * {@code gc.alloc.rate.norm} for the bytes allocated per login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApiEndpointRegistryBenchmark {
+
+    private static final String CLIENT_ID = "cmc-citizen";
+
+    private StrategicConfigurationProperties strategic;
+
+    private DefaultUriBuilderFactory uriTemplateHandler;
+
+    private ApiEndpointRegistry registry;
+
+    @Setup
+    public void setUp() {
+        strategic = new StrategicConfigurationProperties();
+        strategic.setService(new StrategicConfigurationProperties.ServiceConfigurationProperties());
+        strategic.getService().setUrl("https://idam-api.platform.hmcts.net");
+        strategic.setEndpoint(new StrategicConfigurationProperties.EndpointConfigurationProperties());
+        strategic.getEndpoint().setAuthorize("authenticate");
+        strategic.getEndpoint().setAuthorizeOauth2("o/authorize");
+        strategic.getEndpoint().setServices("services");
+        // RestTemplate's default handler
+        uriTemplateHandler = new DefaultUriBuilderFactory();
+        uriTemplateHandler.setEncodingMode(DefaultUriBuilderFactory.EncodingMode.URI_COMPONENT);
+        registry = new ApiEndpointRegistry(strategic);
+    }
+
+    @Benchmark
+    public void concatenatedUrls(Blackhole blackhole) {
+        blackhole.consume(uriTemplateHandler.expand(strategic.getService().getUrl() + "/" + strategic.getEndpoint().getServices() + "?clientId=" + CLIENT_ID));
+        blackhole.consume(uriTemplateHandler.expand(strategic.getService().getUrl() + "/" + strategic.getEndpoint().getAuthorize()));
+        blackhole.consume(uriTemplateHandler.expand(strategic.getService().getUrl() + "/" + strategic.getEndpoint().getAuthorizeOauth2()));
+    }
+
+    @Benchmark
+    public void registryUris(Blackhole blackhole) {
+        blackhole.consume(registry.expand(ApiEndpoint.SERVICES, CLIENT_ID));
+        blackhole.consume(registry.uri(ApiEndpoint.AUTHORIZE));
+        blackhole.consume(registry.uri(ApiEndpoint.AUTHORIZE_OAUTH2));
+    }
+}
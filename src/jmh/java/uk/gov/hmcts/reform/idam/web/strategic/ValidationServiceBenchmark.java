@@ -0,0 +1,42 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password checks on the reset password and activation forms, for a valid pair and for a pair that fails and fills
+ * in the error model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValidationServiceBenchmark {
+
+    private static final String PASSWORD = "Pa55word11-with-some-length";
+
+    private ValidationService validationService;
+
+    @Setup
+    public void setUp() {
+        validationService = new ValidationService(8, 256, new ObjectMapper());
+    }
+
+    @Benchmark
+    public boolean validPassword() {
+        return validationService.validatePassword(PASSWORD, PASSWORD, new HashMap<>());
+    }
+
+    @Benchmark
+    public boolean mismatchedPassword() {
+        return validationService.validatePassword(PASSWORD, PASSWORD + "x", new HashMap<>());
+    }
+}
@@ -0,0 +1,35 @@
+package uk.gov.hmcts.reform.idam.web.validation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code @Email} check run when binding the login, registration and forgot password forms. The last parameter is
+ * a long address with many dots, the worst case for the nested quantifiers in the pattern.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EmailValidatorBenchmark {
+
+    @Param({
+        "john.smith@example.gov.uk",
+        "john smith@example",
+        "a.b.c.d.e.f.g.h.i.j.k.l.m.n.o.p@a.b.c.d.e.f.g.h.i.j.k.l.m.n.o.p.q.r.s.t.u.v.w.x.y.z!"
+    })
+    private String email;
+
+    private final EmailValidator emailValidator = new EmailValidator();
+
+    @Benchmark
+    public boolean isValid() {
+        return emailValidator.isValid(email, null);
+    }
+}
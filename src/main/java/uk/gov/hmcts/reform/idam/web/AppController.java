@@ -26,15 +26,19 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import org.springframework.web.servlet.view.RedirectView;
+import reactor.core.publisher.Mono;
 import uk.gov.hmcts.reform.idam.api.internal.model.ErrorResponse;
 import uk.gov.hmcts.reform.idam.api.internal.model.Service;
 import uk.gov.hmcts.reform.idam.api.shared.model.User;
+import uk.gov.hmcts.reform.idam.web.config.DeferredCookiesInterceptor;
 import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
 import uk.gov.hmcts.reform.idam.web.helper.AuthHelper;
 import uk.gov.hmcts.reform.idam.web.helper.ErrorHelper;
+import uk.gov.hmcts.reform.idam.web.helper.StageTimer;
 import uk.gov.hmcts.reform.idam.web.model.AuthorizeRequest;
 import uk.gov.hmcts.reform.idam.web.model.ForgotPasswordRequest;
 import uk.gov.hmcts.reform.idam.web.model.RegisterUserRequest;
@@ -42,6 +46,7 @@ import uk.gov.hmcts.reform.idam.web.model.UpliftRequest;
 import uk.gov.hmcts.reform.idam.web.model.VerificationRequest;
 import uk.gov.hmcts.reform.idam.web.sso.SSOService;
 import uk.gov.hmcts.reform.idam.web.strategic.ApiAuthResult;
+import uk.gov.hmcts.reform.idam.web.strategic.LoginPipeline;
 import uk.gov.hmcts.reform.idam.web.strategic.SPIService;
 import uk.gov.hmcts.reform.idam.web.strategic.ValidationService;
 
@@ -59,6 +64,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static com.netflix.zuul.constants.ZuulHeaders.X_FORWARDED_FOR;
 import static java.util.Optional.ofNullable;
@@ -83,6 +89,8 @@ public class AppController {
 
     private final SPIService spiService;
 
+    private final LoginPipeline loginPipeline;
+
     private final ValidationService validationService;
 
     private final ObjectMapper objectMapper;
@@ -95,23 +103,29 @@ public class AppController {
 
     private final AuthHelper authHelper;
 
+    private final StageTimer stageTimer;
+
     @Value("${features.sso-auto-login-redirect:true}")
     private Boolean ssoAutoRedirect;
 
     public AppController(SPIService spiService,
+                         LoginPipeline loginPipeline,
                          ValidationService validationService,
                          ObjectMapper objectMapper,
                          ConfigurationProperties configurationProperties,
                          ObjectMapper mapper,
                          SSOService ssoService,
-                         AuthHelper authHelper) {
+                         AuthHelper authHelper,
+                         StageTimer stageTimer) {
         this.spiService = spiService;
+        this.loginPipeline = loginPipeline;
         this.validationService = validationService;
         this.objectMapper = objectMapper;
         this.configurationProperties = configurationProperties;
         this.mapper = mapper;
         this.ssoService = ssoService;
         this.authHelper = authHelper;
+        this.stageTimer = stageTimer;
     }
 
     /**
@@ -384,11 +398,15 @@ public class AppController {
      * @should put in model the correct error variable in case policy check returns BLOCK
      * @should return forbidden if csrf token is invalid
      * @should not forward username password params on OTP
+     * @should complete the login asynchronously when the reactive spi service is enabled
+     *
+     * @return the {@link ModelAndView}, or a {@link Mono} of it when {@code features.reactive-spi-service} is on, so
+     * the request thread is released while idam-api is called; null once the SSO redirect has been sent
      */
     @PostMapping("/login")
-    public ModelAndView login(@ModelAttribute(AUTHORIZE_COMMAND) @Validated AuthorizeRequest request,
-                              BindingResult bindingResult, Model model, HttpServletRequest httpRequest,
-                              HttpServletResponse response) throws IOException {
+    public Object login(@ModelAttribute(AUTHORIZE_COMMAND) @Validated AuthorizeRequest request,
+                        BindingResult bindingResult, Model model, HttpServletRequest httpRequest,
+                        HttpServletResponse response) throws IOException {
         model.addAttribute(USERNAME, request.getUsername());
         model.addAttribute(PASSWORD, request.getPassword());
         model.addAttribute(RESPONSE_TYPE, request.getResponse_type());
@@ -410,6 +428,7 @@ public class AppController {
             }
         }
 
+        stageTimer.lap("validation");
         final boolean validationErrors = bindingResult.hasErrors();
         if (validationErrors) {
             if (StringUtils.isEmpty(request.getUsername())) {
@@ -423,112 +442,134 @@ public class AppController {
         }
 
         // automatically redirect SSO users
-        if (configurationProperties.getFeatures().isFederatedSSO() && ssoService.isSSOEmail(request.getUsername())) {
+        if (configurationProperties.getFeatures().isFederatedSSO() && stageTimer.time("sso", () -> ssoService.isSSOEmail(request.getUsername()))) {
             ssoService.redirectToExternalProvider(httpRequest, response, request.getUsername());
             return null;
         }
 
+        final String ipAddress = ObjectUtils.getIfNull(httpRequest.getHeader(X_FORWARDED_FOR), httpRequest::getRemoteAddr);
+        final String redirectUri = request.getRedirect_uri();
+
+        if (loginPipeline.isReactive()) {
+            final List<String> deferredCookies = DeferredCookiesInterceptor.deferCookies(httpRequest);
+            return loginPipeline.loginReactive(request.getUsername(), request.getPassword(), redirectUri, ipAddress, authorizeParams(httpRequest), httpRequest)
+                .map(loginResult -> loginView(request, loginResult, bindingResult, model, httpRequest, deferredCookies::add))
+                .onErrorResume(HttpStatusCodeException.class, he -> Mono.just(loginFailedView(request, he, bindingResult, model)));
+        }
+
         try {
-            final String ipAddress = ObjectUtils.getIfNull(httpRequest.getHeader(X_FORWARDED_FOR), httpRequest::getRemoteAddr);
-            final String redirectUri = request.getRedirect_uri();
+            final LoginPipeline.LoginResult loginResult = loginPipeline.login(request.getUsername(), request.getPassword(), redirectUri, ipAddress, authorizeParams(httpRequest));
+            return loginView(request, loginResult, bindingResult, model, httpRequest,
+                cookie -> response.addHeader(HttpHeaders.SET_COOKIE, cookie));
+        } catch (HttpClientErrorException | HttpServerErrorException he) {
+            return loginFailedView(request, he, bindingResult, model);
+        }
+    }
 
-            final ApiAuthResult authenticationResult = spiService.authenticate(request.getUsername(), request.getPassword(), redirectUri, ipAddress);
+    /**
+     * The view for the outcome of a login, adding the cookies the browser needs through {@code setCookie}.
+     */
+    private ModelAndView loginView(AuthorizeRequest request, LoginPipeline.LoginResult loginResult, BindingResult bindingResult,
+                                   Model model, HttpServletRequest httpRequest, Consumer<String> setCookie) {
+        final String redirectUri = request.getRedirect_uri();
+        final ApiAuthResult authenticationResult = loginResult.getAuthentication();
+
+        // API responded with success, it's either a successful login or a request for OTP
+        if (authenticationResult.isSuccess()) {
+            final List<String> cookies = authenticationResult.getCookies();
+            if (cookies == null) {
+                log.info("/login: Authenticate returned no cookies for user - {}", obfuscateEmailAddress(request.getUsername()));
+                model.addAttribute(HAS_LOGIN_FAILED, true);
+                bindingResult.reject(LOGIN_FAILURE_ERROR_CODE);
+                return new ModelAndView(LOGIN_VIEW, model.asMap());
+            }
 
-            // API responded with success, it's either a successful login or a request for OTP
-            if (authenticationResult.isSuccess()) {
-                final List<String> cookies = authenticationResult.getCookies();
-                if (cookies == null) {
-                    log.info("/login: Authenticate returned no cookies for user - {}", obfuscateEmailAddress(request.getUsername()));
-                    model.addAttribute(HAS_LOGIN_FAILED, true);
-                    bindingResult.reject(LOGIN_FAILURE_ERROR_CODE);
-                    return new ModelAndView(LOGIN_VIEW, model.asMap());
-                }
+            if (authenticationResult.requiresMfa()) {
+                log.info("/login: User requires mfa authentication - {}", obfuscateEmailAddress(request.getUsername()));
 
-                if (authenticationResult.requiresMfa()) {
-                    log.info("/login: User requires mfa authentication - {}", obfuscateEmailAddress(request.getUsername()));
+                addSecureCookies(cookies, httpRequest, setCookie);
 
-                    List<String> secureCookies = authHelper.makeCookiesSecure(cookies);
-                    secureCookies.forEach(cookie -> response.addHeader(HttpHeaders.SET_COOKIE, cookie));
+                final List<String> affinityCookieNames = Optional.ofNullable(configurationProperties.getStrategic().getSession().getAffinityCookies()).orElse(new ArrayList<>());
+                cookies.stream()
+                    .filter(cookie -> affinityCookieNames.stream().anyMatch(cookie::contains))
+                    .forEach(cookie -> setCookie.accept(cookie.split(";")[0]));
 
-                    final List<String> affinityCookieNames = Optional.ofNullable(configurationProperties.getStrategic().getSession().getAffinityCookies()).orElse(new ArrayList<>());
-                    cookies.stream()
-                        .filter(cookie -> affinityCookieNames.stream().anyMatch(cookie::contains))
-                        .forEach(cookie -> response.addHeader(HttpHeaders.SET_COOKIE, cookie.split(";")[0]));
+                Map<String, Object> authorizeParams = model.asMap();
+                authorizeParams.remove(USERNAME);
+                authorizeParams.remove(PASSWORD);
+                authorizeParams.remove(SELF_REGISTRATION_ENABLED);
 
-                    Map<String, Object> authorizeParams = model.asMap();
-                    authorizeParams.remove(USERNAME);
-                    authorizeParams.remove(PASSWORD);
-                    authorizeParams.remove(SELF_REGISTRATION_ENABLED);
+                return new ModelAndView(REDIRECT_PREFIX_WITH_SLASH + VERIFICATION_VIEW, authorizeParams);
+            } else {
+                final String responseUrl = loginResult.getResponseUrl();
+                final boolean loginSuccess = responseUrl != null && !responseUrl.contains("error");
 
-                    return new ModelAndView(REDIRECT_PREFIX_WITH_SLASH + VERIFICATION_VIEW, authorizeParams);
-                } else {
-                    final String responseUrl = authoriseUserAfterAuthentication(cookies, httpRequest);
-                    final boolean loginSuccess = responseUrl != null && !responseUrl.contains("error");
-
-                    if (loginSuccess) {
-                        if (responseUrl.startsWith(redirectUri)) {
-                            log.info("/login: Successful login - {}", obfuscateEmailAddress(request.getUsername()));
-                        } else {
-                            log.info("/login: Successful for user {} with unexpected redirect {}", obfuscateEmailAddress(request.getUsername()), responseUrl);
-                        }
-                        List<String> secureCookies = authHelper.makeCookiesSecure(cookies);
-                        secureCookies.forEach(cookie -> response.addHeader(HttpHeaders.SET_COOKIE, cookie));
-                        return new ModelAndView(REDIRECT_PREFIX + responseUrl);
+                if (loginSuccess) {
+                    if (responseUrl.startsWith(redirectUri)) {
+                        log.info("/login: Successful login - {}", obfuscateEmailAddress(request.getUsername()));
                     } else {
-                        log.info("/login: There is a problem while logging in  user {}, response url is {}", obfuscateEmailAddress(request.getUsername()), responseUrl != null ? responseUrl : "n/a");
-                        model.addAttribute(HAS_LOGIN_FAILED, true);
-                        bindingResult.reject(LOGIN_FAILURE_ERROR_CODE);
-                        return new ModelAndView(LOGIN_VIEW, model.asMap());
+                        log.info("/login: Successful for user {} with unexpected redirect {}", obfuscateEmailAddress(request.getUsername()), responseUrl);
                     }
+                    addSecureCookies(cookies, httpRequest, setCookie);
+                    return new ModelAndView(REDIRECT_PREFIX + responseUrl);
+                } else {
+                    log.info("/login: There is a problem while logging in  user {}, response url is {}", obfuscateEmailAddress(request.getUsername()), responseUrl != null ? responseUrl : "n/a");
+                    model.addAttribute(HAS_LOGIN_FAILED, true);
+                    bindingResult.reject(LOGIN_FAILURE_ERROR_CODE);
+                    return new ModelAndView(LOGIN_VIEW, model.asMap());
                 }
-            } else if (authenticationResult.getErrorCode() != null) {
-                final ErrorResponse.CodeEnum errorCode = authenticationResult.getErrorCode();
-                switch (errorCode) {
-                    case ACCOUNT_LOCKED:
-                        model.addAttribute(IS_ACCOUNT_LOCKED, true);
-                        bindingResult.reject("Account locked");
-                        return new ModelAndView(LOGIN_VIEW, model.asMap());
-                    case ACCOUNT_SUSPENDED:
-                        model.addAttribute(IS_ACCOUNT_SUSPENDED, true);
-                        bindingResult.reject("Account suspended");
-                        return new ModelAndView(LOGIN_VIEW, model.asMap());
-                    case POLICIES_FAIL:
-                        log.info("/login: User failed policy checks - {}", obfuscateEmailAddress(request.getUsername()));
-                        model.addAttribute(HAS_POLICY_CHECK_FAILED, true);
-                        bindingResult.reject("Policy check failure");
-                        return new ModelAndView(LOGIN_VIEW, model.asMap());
-                    case STALE_USER_REGISTRATION_SENT:
-                        Map<String, Object> staleUserResetPasswordParams = model.asMap();
-                        staleUserResetPasswordParams.remove(USERNAME);
-                        staleUserResetPasswordParams.remove(PASSWORD);
-                        staleUserResetPasswordParams.remove(SELF_REGISTRATION_ENABLED);
-                        return new ModelAndView(REDIRECT_RESET_INACTIVE_USER, staleUserResetPasswordParams);
-                    case ACCOUNT_LINKED_TO_EXTERNAL_PROVIDER:
-                        Map<String, Object> redirectParams = setUpSSOParams(model, authenticationResult);
-                        if (ssoAutoRedirect) {
-                            return new ModelAndView(REDIRECT_OIDC_AUTHORIZE, redirectParams);
-                        } else {
-                            model.addAttribute(HAS_LOGIN_FAILED, true);
-                            bindingResult.reject(LOGIN_FAILURE_ERROR_CODE);
-                        }
-                    default:
-                        log.info("/login: Login failed ({}) for user - {}", errorCode, obfuscateEmailAddress(request.getUsername()));
+            }
+        } else if (authenticationResult.getErrorCode() != null) {
+            final ErrorResponse.CodeEnum errorCode = authenticationResult.getErrorCode();
+            switch (errorCode) {
+                case ACCOUNT_LOCKED:
+                    model.addAttribute(IS_ACCOUNT_LOCKED, true);
+                    bindingResult.reject("Account locked");
+                    return new ModelAndView(LOGIN_VIEW, model.asMap());
+                case ACCOUNT_SUSPENDED:
+                    model.addAttribute(IS_ACCOUNT_SUSPENDED, true);
+                    bindingResult.reject("Account suspended");
+                    return new ModelAndView(LOGIN_VIEW, model.asMap());
+                case POLICIES_FAIL:
+                    log.info("/login: User failed policy checks - {}", obfuscateEmailAddress(request.getUsername()));
+                    model.addAttribute(HAS_POLICY_CHECK_FAILED, true);
+                    bindingResult.reject("Policy check failure");
+                    return new ModelAndView(LOGIN_VIEW, model.asMap());
+                case STALE_USER_REGISTRATION_SENT:
+                    Map<String, Object> staleUserResetPasswordParams = model.asMap();
+                    staleUserResetPasswordParams.remove(USERNAME);
+                    staleUserResetPasswordParams.remove(PASSWORD);
+                    staleUserResetPasswordParams.remove(SELF_REGISTRATION_ENABLED);
+                    return new ModelAndView(REDIRECT_RESET_INACTIVE_USER, staleUserResetPasswordParams);
+                case ACCOUNT_LINKED_TO_EXTERNAL_PROVIDER:
+                    Map<String, Object> redirectParams = setUpSSOParams(model, authenticationResult);
+                    if (ssoAutoRedirect) {
+                        return new ModelAndView(REDIRECT_OIDC_AUTHORIZE, redirectParams);
+                    } else {
                         model.addAttribute(HAS_LOGIN_FAILED, true);
                         bindingResult.reject(LOGIN_FAILURE_ERROR_CODE);
-                }
-            } else {
-                log.info("/login: Login failed for user - {}", obfuscateEmailAddress(request.getUsername()));
-                model.addAttribute(HAS_LOGIN_FAILED, true);
-                bindingResult.reject(LOGIN_FAILURE_ERROR_CODE);
+                    }
+                default:
+                    log.info("/login: Login failed ({}) for user - {}", errorCode, obfuscateEmailAddress(request.getUsername()));
+                    model.addAttribute(HAS_LOGIN_FAILED, true);
+                    bindingResult.reject(LOGIN_FAILURE_ERROR_CODE);
             }
-        } catch (HttpClientErrorException | HttpServerErrorException he) {
-            log.info("/login: Login failed ({}) for user - {}", he.getRawStatusCode(), obfuscateEmailAddress(request.getUsername()));
+        } else {
+            log.info("/login: Login failed for user - {}", obfuscateEmailAddress(request.getUsername()));
             model.addAttribute(HAS_LOGIN_FAILED, true);
             bindingResult.reject(LOGIN_FAILURE_ERROR_CODE);
         }
         return new ModelAndView(LOGIN_VIEW, model.asMap());
     }
 
+    private ModelAndView loginFailedView(AuthorizeRequest request, HttpStatusCodeException he, BindingResult bindingResult,
+                                         Model model) {
+        log.info("/login: Login failed ({}) for user - {}", he.getRawStatusCode(), obfuscateEmailAddress(request.getUsername()));
+        model.addAttribute(HAS_LOGIN_FAILED, true);
+        bindingResult.reject(LOGIN_FAILURE_ERROR_CODE);
+        return new ModelAndView(LOGIN_VIEW, model.asMap());
+    }
+
     private Map<String, Object> setUpSSOParams(Model model, ApiAuthResult authenticationResult) {
         Map<String, Object> redirectParams = model.asMap();
         redirectParams.remove(USERNAME);
@@ -546,20 +587,37 @@ public class AppController {
     private String authoriseUserAfterAuthentication(List<String> cookies, HttpServletRequest httpRequest) {
         String responseUrl = null;
         if (cookies != null) {
-            Map<String, String> params = new HashMap<>();
-            httpRequest.getParameterMap().forEach((key, values) -> {
-                    if (values.length > 0 && !String.join(" ", values).trim().isEmpty() && !key.equals(PROMPT))
-                        params.put(key, String.join(" ", values));
-                }
-            );
-            params.putIfAbsent(RESPONSE_TYPE, "code");
-            params.putIfAbsent(SCOPE, "openid profile roles");
-
-            responseUrl = spiService.authorize(params, cookies);
+            responseUrl = loginPipeline.authorize(authorizeParams(httpRequest), cookies);
         }
         return responseUrl;
     }
 
+    private void addSecureCookies(List<String> cookies, HttpServletResponse response) {
+        stageTimer.time("cookies", () -> authHelper.makeCookiesSecure(cookies)
+            .forEach(cookie -> response.addHeader(HttpHeaders.SET_COOKIE, cookie)));
+    }
+
+    /**
+     * Like {@link #addSecureCookies(List, HttpServletResponse)}, for logins that may complete off the request thread.
+     */
+    private void addSecureCookies(List<String> cookies, HttpServletRequest httpRequest, Consumer<String> setCookie) {
+        long start = System.nanoTime();
+        authHelper.makeCookiesSecure(cookies).forEach(setCookie);
+        stageTimer.record(httpRequest, "cookies", System.nanoTime() - start);
+    }
+
+    private Map<String, String> authorizeParams(HttpServletRequest httpRequest) {
+        Map<String, String> params = new HashMap<>();
+        httpRequest.getParameterMap().forEach((key, values) -> {
+                if (values.length > 0 && !String.join(" ", values).trim().isEmpty() && !key.equals(PROMPT))
+                    params.put(key, String.join(" ", values));
+            }
+        );
+        params.putIfAbsent(RESPONSE_TYPE, "code");
+        params.putIfAbsent(SCOPE, "openid profile roles");
+        return params;
+    }
+
     /**
      * @should return error page view if OAuth2 details are missing
      * @should populate authorizeCommand
@@ -616,6 +674,7 @@ public class AppController {
         model.addAttribute(SCOPE, request.getScope());
         model.addAttribute(CODE, request.getCode());
 
+        stageTimer.lap("validation");
         final boolean validationErrors = bindingResult.hasErrors();
         if (validationErrors) {
             final List<FieldError> codeErrors = ofNullable(bindingResult.getFieldErrors("code"))
@@ -653,7 +712,8 @@ public class AppController {
                 return redirectToLoginMissingAuthId(request, bindingResult, model);
             }
 
-            final List<String> responseCookies = spiService.submitOtpeAuthentication(authId, ipAddress, request.getCode());
+            final List<String> responseCookies = stageTimer.time("otp",
+                () -> spiService.submitOtpeAuthentication(authId, ipAddress, request.getCode()));
             log.info("/verification: Successful OTP submission request");
 
             final String responseUrl = authoriseUserAfterAuthentication(responseCookies, httpRequest);
@@ -664,8 +724,7 @@ public class AppController {
                 } else {
                     log.info("/verification: Successful login with unexpected redirect {}", responseUrl);
                 }
-                List<String> secureCookies = authHelper.makeCookiesSecure(responseCookies);
-                secureCookies.forEach(cookie -> response.addHeader(HttpHeaders.SET_COOKIE, cookie));
+                addSecureCookies(responseCookies, response);
                 return new ModelAndView(REDIRECT_PREFIX + responseUrl);
             } else {
                 log.info("/verification: There is a problem while logging in user, response url is {}", responseUrl != null ? responseUrl : "n/a");
@@ -5,6 +5,7 @@ import lombok.Setter;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 import org.springframework.cloud.netflix.zuul.EnableZuulProxy;
@@ -18,6 +19,11 @@ import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
 @EnableConfigurationProperties(ConfigurationProperties.class)
 public class Application extends SpringBootServletInitializer {
 
+    /**
+     * Startup steps buffered for the startup report, enough for every bean of a full context.
+     */
+    private static final int STARTUP_STEPS = 8192;
+
     @Getter
     @Setter
     private static ApplicationContext context;
@@ -28,7 +34,9 @@ public class Application extends SpringBootServletInitializer {
     }
 
     public static void main(final String args[]) {
-        Application.context = SpringApplication.run(Application.class, args);
+        SpringApplication application = new SpringApplication(Application.class);
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+        Application.context = application.run(args);
     }
 
 }
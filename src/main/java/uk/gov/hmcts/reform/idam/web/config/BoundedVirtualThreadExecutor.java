@@ -0,0 +1,82 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Virtual threads counterpart of a bounded {@link java.util.concurrent.ThreadPoolExecutor}: each task gets a new
+ * virtual thread, at most {@code maxConcurrency} of them run at a time and at most {@code queueCapacity} more wait for
+ * their turn. Past that {@code rejected} is applied to the task, as a pool's rejection policy would be.
+ */
+final class BoundedVirtualThreadExecutor extends AbstractExecutorService {
+
+    private final ExecutorService threadPerTask;
+
+    private final Semaphore running;
+
+    private final Semaphore admitted;
+
+    private final Consumer<Runnable> rejected;
+
+    BoundedVirtualThreadExecutor(ThreadFactory virtualThreadFactory, int maxConcurrency, int queueCapacity,
+                                 Consumer<Runnable> rejected) {
+        this.threadPerTask = Executors.newThreadPerTaskExecutor(virtualThreadFactory);
+        this.running = new Semaphore(maxConcurrency);
+        this.admitted = new Semaphore(maxConcurrency + queueCapacity);
+        this.rejected = rejected;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!admitted.tryAcquire()) {
+            rejected.accept(task);
+            return;
+        }
+        try {
+            threadPerTask.execute(() -> {
+                running.acquireUninterruptibly();
+                try {
+                    task.run();
+                } finally {
+                    running.release();
+                    admitted.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            admitted.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        threadPerTask.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return threadPerTask.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return threadPerTask.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return threadPerTask.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return threadPerTask.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,48 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import uk.gov.hmcts.reform.idam.web.health.WarmUp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training run for the class data sharing archive built into the image: with {@code cds.training-run=true}, set by the
+ * {@code cds-training} profile, the application exits once the warm-up has finished, so the archive written by
+ * {@code -XX:ArchiveClassesAtExit} holds the classes of a started and warmed up instance.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "cds.training-run", havingValue = "true")
+public class CdsTrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final long MAX_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private final WarmUp warmUp;
+
+    public CdsTrainingRun(WarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Thread thread = new Thread(() -> {
+            long deadline = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+            try {
+                while (!Status.UP.equals(warmUp.health().getStatus()) && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(100);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            log.info("Training run finished, exiting");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }, "cds-training-run");
+        thread.start();
+    }
+}
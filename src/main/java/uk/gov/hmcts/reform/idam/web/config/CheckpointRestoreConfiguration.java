@@ -0,0 +1,67 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import okhttp3.OkHttpClient;
+import org.apache.catalina.connector.Connector;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import uk.gov.hmcts.reform.idam.web.strategic.ForgotPasswordOutbox;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * CRaC checkpoint/restore support, switched on with {@code crac.enabled=true}. Only has an effect on a JDK with
+ * CRaC, elsewhere the {@code org.crac} facade ignores the registered resource.
+ */
+@Configuration
+@ConditionalOnProperty(name = "crac.enabled", havingValue = "true")
+public class CheckpointRestoreConfiguration {
+
+    /**
+     * Tomcat binds the server socket on init and only releases it on destroy by default, which would keep the
+     * listening socket open through a connector stop and fail the checkpoint.
+     */
+    @Bean
+    public TomcatConnectorCustomizer unbindOnStopConnectorCustomizer() {
+        return connector -> connector.setProperty("bindOnInit", "false");
+    }
+
+    @Bean
+    public CheckpointRestoreResource checkpointRestoreResource(ApplicationContext applicationContext,
+                                                               ObjectProvider<LettuceConnectionFactory> connectionFactories,
+                                                               ObjectProvider<RedisMessageListenerContainer> listenerContainers,
+                                                               ForgotPasswordOutbox forgotPasswordOutbox,
+                                                               ObjectProvider<PoolingHttpClientConnectionManager> connectionManagers,
+                                                               ObjectProvider<OkHttpClient> okHttpClients,
+                                                               ObjectProvider<RouteLocator> routeLocator) {
+        return new CheckpointRestoreResource(
+            () -> connectors(applicationContext),
+            connectionFactories.stream().collect(Collectors.toList()),
+            listenerContainers.stream().collect(Collectors.toList()),
+            forgotPasswordOutbox,
+            connectionManagers.stream().collect(Collectors.toList()),
+            okHttpClients.stream().collect(Collectors.toList()),
+            routeLocator.getIfAvailable(),
+            applicationContext,
+            CheckpointRestoreResource.DRAIN_TIMEOUT);
+    }
+
+    private static List<Connector> connectors(ApplicationContext applicationContext) {
+        if (applicationContext instanceof WebServerApplicationContext
+            && ((WebServerApplicationContext) applicationContext).getWebServer() instanceof TomcatWebServer) {
+            TomcatWebServer webServer = (TomcatWebServer) ((WebServerApplicationContext) applicationContext).getWebServer();
+            return List.of(webServer.getTomcat().getService().findConnectors());
+        }
+        return List.of();
+    }
+}
@@ -0,0 +1,164 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import org.apache.catalina.connector.Connector;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.netflix.zuul.RoutesRefreshedEvent;
+import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import uk.gov.hmcts.reform.idam.web.strategic.ForgotPasswordOutbox;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Closes every socket the application holds before a CRaC checkpoint and opens them again after restore: the
+ * Tomcat connectors, the Redis connections behind the session store and the forgot password outbox, and the pooled
+ * idam-api connections. Zuul routes through the same pool as RestTemplate and Feign, see {@link ZuulConfiguration}.
+ * A restored image may run on another host with other addresses, so nothing open at checkpoint time can be trusted
+ * afterwards.
+ *
+ * <p>Only idle pooled connections can be closed. Connections still leased by requests in flight when the connectors
+ * stopped are waited for up to {@code drainTimeout}, after which the checkpoint is refused rather than taken with
+ * sockets open.
+ */
+@Slf4j
+public class CheckpointRestoreResource implements Resource {
+
+    public static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final long DRAIN_POLL_MILLIS = 50;
+
+    private final Supplier<List<Connector>> connectors;
+
+    private final List<LettuceConnectionFactory> connectionFactories;
+
+    private final List<RedisMessageListenerContainer> listenerContainers;
+
+    private final ForgotPasswordOutbox forgotPasswordOutbox;
+
+    private final List<PoolingHttpClientConnectionManager> connectionManagers;
+
+    private final List<OkHttpClient> okHttpClients;
+
+    private final RouteLocator routeLocator;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Duration drainTimeout;
+
+    private final List<RedisMessageListenerContainer> stoppedListenerContainers = new ArrayList<>();
+
+    private boolean outboxStopped;
+
+    public CheckpointRestoreResource(Supplier<List<Connector>> connectors,
+                                     List<LettuceConnectionFactory> connectionFactories,
+                                     List<RedisMessageListenerContainer> listenerContainers,
+                                     ForgotPasswordOutbox forgotPasswordOutbox,
+                                     List<PoolingHttpClientConnectionManager> connectionManagers,
+                                     List<OkHttpClient> okHttpClients,
+                                     RouteLocator routeLocator,
+                                     ApplicationEventPublisher eventPublisher,
+                                     Duration drainTimeout) {
+        this.connectors = connectors;
+        this.connectionFactories = connectionFactories;
+        this.listenerContainers = listenerContainers;
+        this.forgotPasswordOutbox = forgotPasswordOutbox;
+        this.connectionManagers = connectionManagers;
+        this.okHttpClients = okHttpClients;
+        this.routeLocator = routeLocator;
+        this.eventPublisher = eventPublisher;
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Registered once the application is ready, so a checkpoint is never taken of a half started context. The global
+     * CRaC context only keeps weak references, the bean keeps this resource alive.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void register() {
+        Core.getGlobalContext().register(this);
+    }
+
+    /**
+     * @should stop accepting requests before closing the redis and idam-api connections
+     * @should leave a stopped outbox stopped
+     * @should wait for leased idam-api connections to be released
+     * @should refuse the checkpoint while idam-api connections stay leased
+     */
+    @Override
+    public synchronized void beforeCheckpoint(Context<? extends Resource> context) throws Exception {
+        log.info("Closing connections before checkpoint");
+        for (Connector connector : connectors.get()) {
+            connector.stop();
+        }
+        if (forgotPasswordOutbox.isRunning()) {
+            forgotPasswordOutbox.stop();
+            outboxStopped = true;
+        }
+        for (RedisMessageListenerContainer container : listenerContainers) {
+            if (container.isRunning()) {
+                container.stop();
+                stoppedListenerContainers.add(container);
+            }
+        }
+        connectionFactories.forEach(LettuceConnectionFactory::destroy);
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        while (closeIdleConnections() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                throw new IllegalStateException("idam-api connections still leased after " + drainTimeout
+                    + ", not taking the checkpoint");
+            }
+            Thread.sleep(DRAIN_POLL_MILLIS);
+        }
+    }
+
+    /**
+     * Closes the idle pooled connections and returns how many are still leased.
+     */
+    private int closeIdleConnections() {
+        int leased = 0;
+        for (PoolingHttpClientConnectionManager connectionManager : connectionManagers) {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+            leased += connectionManager.getTotalStats().getLeased();
+        }
+        for (OkHttpClient client : okHttpClients) {
+            client.connectionPool().evictAll();
+            leased += client.connectionPool().connectionCount() - client.connectionPool().idleConnectionCount();
+        }
+        return leased;
+    }
+
+    /**
+     * @should reconnect to redis and restart what was stopped before accepting requests
+     */
+    @Override
+    public synchronized void afterRestore(Context<? extends Resource> context) throws Exception {
+        log.info("Reopening connections after restore");
+        connectionFactories.forEach(LettuceConnectionFactory::afterPropertiesSet);
+        stoppedListenerContainers.forEach(RedisMessageListenerContainer::start);
+        stoppedListenerContainers.clear();
+        if (outboxStopped) {
+            forgotPasswordOutbox.start();
+            outboxStopped = false;
+        }
+        if (routeLocator != null) {
+            eventPublisher.publishEvent(new RoutesRefreshedEvent(routeLocator));
+        }
+        for (Connector connector : connectors.get()) {
+            connector.start();
+        }
+    }
+}
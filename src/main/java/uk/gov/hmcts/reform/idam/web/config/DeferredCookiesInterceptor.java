@@ -0,0 +1,52 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes the {@code Set-Cookie} headers that an asynchronously handled request collected in {@link #deferCookies}
+ * once it is dispatched back to the container. The work completes on another thread while the filters of the first
+ * dispatch may still be writing headers, so the response is only touched from the async dispatch.
+ */
+public class DeferredCookiesInterceptor implements HandlerInterceptor {
+
+    static final String DEFERRED_COOKIES_ATTRIBUTE = DeferredCookiesInterceptor.class.getName() + ".cookies";
+
+    /**
+     * Set-Cookie header values to add to the response of this request on its async dispatch.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> deferCookies(HttpServletRequest request) {
+        Object cookies = request.getAttribute(DEFERRED_COOKIES_ATTRIBUTE);
+        if (cookies == null) {
+            cookies = Collections.synchronizedList(new ArrayList<>());
+            request.setAttribute(DEFERRED_COOKIES_ATTRIBUTE, cookies);
+        }
+        return (List<String>) cookies;
+    }
+
+    /**
+     * @should add the deferred cookies on the async dispatch
+     * @should leave the response alone on other dispatches
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean preHandle(HttpServletRequest request, @NotNull HttpServletResponse response, @NotNull Object handler) {
+        Object cookies = request.getAttribute(DEFERRED_COOKIES_ATTRIBUTE);
+        if (request.getDispatcherType() == DispatcherType.ASYNC && cookies != null) {
+            request.removeAttribute(DEFERRED_COOKIES_ATTRIBUTE);
+            synchronized (cookies) {
+                ((List<String>) cookies).forEach(cookie -> response.addHeader(HttpHeaders.SET_COOKIE, cookie));
+            }
+        }
+        return true;
+    }
+}
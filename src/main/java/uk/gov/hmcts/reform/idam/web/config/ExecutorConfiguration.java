@@ -0,0 +1,186 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executors for request processing and for the upstream calls made off the request thread.
+ *
+ * With {@code spring.threads.virtual.enabled} (the property Spring Boot 3.2 later adopted for the same purpose) Tomcat
+ * and the forgot password dispatch and hedged reads run on virtual threads. Tomcat's {@code threads.max} no longer caps
+ * concurrency in that mode, {@code server.maxConnectionsPerRoute} towards idam-api and
+ * {@code server.tomcat.max-connections} do. The dispatch and hedge executors start a virtual thread per task instead of
+ * pooling them, but keep their bounds: {@code poolSize} tasks run at a time, {@code queueCapacity} more wait, and the
+ * rejection policy applies past that.
+ */
+@Slf4j
+@Configuration
+public class ExecutorConfiguration {
+
+    public static final String FORGOT_PASSWORD_EXECUTOR = "forgotPasswordExecutor";
+
+    public static final String FORGOT_PASSWORD_OUTBOX_EXECUTOR = "forgotPasswordOutboxExecutor";
+
+    public static final String HEDGE_EXECUTOR = "idamApiHedgeExecutor";
+
+    public static final String SERVICE_CACHE_REFRESH_EXECUTOR = "serviceCacheRefreshExecutor";
+
+    private final ConfigurationProperties configurationProperties;
+
+    public ExecutorConfiguration(ConfigurationProperties configurationProperties) {
+        this.configurationProperties = configurationProperties;
+    }
+
+    @Bean
+    @ConditionalOnProperty("spring.threads.virtual.enabled")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        log.info("Tomcat requests will be processed on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory()));
+    }
+
+    /**
+     * Bounded executor for the forgot password dispatch. Once the queue is full the configured rejection policy
+     * applies: {@code CALLER_RUNS} pushes back on the request thread, {@code ABORT} fails the request.
+     * Pool, queue and task timings are exported as {@code executor.*} metrics tagged {@code name=forgotPassword}.
+     */
+    @Bean(name = FORGOT_PASSWORD_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService forgotPasswordExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                                  @Nullable MeterRegistry meterRegistry) {
+        StrategicConfigurationProperties.ForgotPasswordExecutor properties =
+            configurationProperties.getStrategic().getForgotPasswordExecutor();
+        MeterRegistry registry = meterRegistry != null ? meterRegistry : Metrics.globalRegistry;
+
+        StrategicConfigurationProperties.ForgotPasswordExecutor.RejectionPolicy rejectionPolicy =
+            properties.getRejectionPolicy();
+        Counter rejections = rejectionCounter(rejectionPolicy, registry);
+        ExecutorService executor;
+        if (virtualThreads) {
+            executor = new BoundedVirtualThreadExecutor(Thread.ofVirtual().name("forgot-password-", 0).factory(),
+                properties.getPoolSize(), properties.getQueueCapacity(), task -> {
+                    countRejection(rejections, rejectionPolicy);
+                    if (rejectionPolicy == StrategicConfigurationProperties.ForgotPasswordExecutor.RejectionPolicy.ABORT) {
+                        throw new RejectedExecutionException("Forgot password queue is full");
+                    }
+                    task.run();
+                });
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                new ThreadFactoryBuilder().setNameFormat("forgot-password-%d").setDaemon(true).build(),
+                countingRejections(rejectionHandler(rejectionPolicy), rejectionPolicy, rejections));
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+
+        return ExecutorServiceMetrics.monitor(registry, executor, "forgotPassword");
+    }
+
+    /**
+     * Bounded executor for adding forgot password requests to the outbox, kept apart from the dispatch executor so an
+     * add never waits behind the outbox's own sends. Once the queue is full the add fails and the request is sent
+     * directly. Exported as {@code executor.*} metrics tagged {@code name=forgotPasswordOutbox}.
+     */
+    @Bean(name = FORGOT_PASSWORD_OUTBOX_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService forgotPasswordOutboxExecutor(@Nullable MeterRegistry meterRegistry) {
+        StrategicConfigurationProperties.ForgotPasswordOutbox properties =
+            configurationProperties.getStrategic().getForgotPasswordOutbox();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(properties.getEnqueuePoolSize(), properties.getEnqueuePoolSize(),
+            60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getEnqueueQueueCapacity()),
+            new ThreadFactoryBuilder().setNameFormat("forgot-password-outbox-add-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        return ExecutorServiceMetrics.monitor(meterRegistry != null ? meterRegistry : Metrics.globalRegistry, executor,
+            "forgotPasswordOutbox");
+    }
+
+    /**
+     * Bounded executor for hedged idam-api reads, see {@link uk.gov.hmcts.reform.idam.web.strategic.HedgedRequests}.
+     * Once the queue is full calls run on the request thread, which then waits for them as it would without hedging.
+     * Exported as {@code executor.*} metrics tagged {@code name=idamApiHedge}.
+     */
+    @Bean(name = HEDGE_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService idamApiHedgeExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                                @Nullable MeterRegistry meterRegistry) {
+        StrategicConfigurationProperties.Hedging properties = configurationProperties.getStrategic().getHedging();
+        ExecutorService executor;
+        if (virtualThreads) {
+            executor = new BoundedVirtualThreadExecutor(Thread.ofVirtual().name("idam-api-hedge-", 0).factory(),
+                properties.getPoolSize(), properties.getQueueCapacity(), Runnable::run);
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                new ThreadFactoryBuilder().setNameFormat("idam-api-hedge-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+
+        return ExecutorServiceMetrics.monitor(meterRegistry != null ? meterRegistry : Metrics.globalRegistry, executor,
+            "idamApiHedge");
+    }
+
+    /**
+     * Single thread for the service cache's background reloads, see
+     * {@link uk.gov.hmcts.reform.idam.web.strategic.ServiceCache}. Shut down with the context so reloads do not
+     * outlive it.
+     */
+    @Bean(name = SERVICE_CACHE_REFRESH_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService serviceCacheRefreshExecutor() {
+        return Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("service-cache-refresh-%d").setDaemon(true).build());
+    }
+
+    private static RejectedExecutionHandler rejectionHandler(
+        StrategicConfigurationProperties.ForgotPasswordExecutor.RejectionPolicy rejectionPolicy) {
+        if (rejectionPolicy == StrategicConfigurationProperties.ForgotPasswordExecutor.RejectionPolicy.ABORT) {
+            return new ThreadPoolExecutor.AbortPolicy();
+        }
+        return new ThreadPoolExecutor.CallerRunsPolicy();
+    }
+
+    private static RejectedExecutionHandler countingRejections(
+        RejectedExecutionHandler delegate, StrategicConfigurationProperties.ForgotPasswordExecutor.RejectionPolicy rejectionPolicy,
+        Counter rejections) {
+        return (task, executor) -> {
+            countRejection(rejections, rejectionPolicy);
+            delegate.rejectedExecution(task, executor);
+        };
+    }
+
+    private static Counter rejectionCounter(
+        StrategicConfigurationProperties.ForgotPasswordExecutor.RejectionPolicy rejectionPolicy, MeterRegistry meterRegistry) {
+        return Counter.builder("executor.rejected.tasks")
+            .description("Tasks that did not fit in the queue and were handled by the rejection policy")
+            .tag("name", "forgotPassword")
+            .tag("policy", String.valueOf(rejectionPolicy))
+            .register(meterRegistry);
+    }
+
+    private static void countRejection(Counter rejections,
+                                       StrategicConfigurationProperties.ForgotPasswordExecutor.RejectionPolicy rejectionPolicy) {
+        rejections.increment();
+        log.warn("Forgot password queue is full, applying {} policy", rejectionPolicy);
+    }
+}
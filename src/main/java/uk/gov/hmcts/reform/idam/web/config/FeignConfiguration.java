@@ -14,9 +14,8 @@ import feign.jackson.JacksonDecoder;
 import feign.jackson.JacksonEncoder;
 import feign.slf4j.Slf4jLogger;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.Dispatcher;
-import okhttp3.OkHttpClient;
 import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -51,8 +50,8 @@ public class FeignConfiguration {
 
     private final Request.Options options;
 
-    public FeignConfiguration() {
-        this.httpClient = client();
+    public FeignConfiguration(@Qualifier(IdamApiHttpClientConfiguration.IDAM_API_FEIGN_CLIENT) Client httpClient) {
+        this.httpClient = httpClient;
         this.errorDecoder = errorDecoder();
         this.feignFormEncoder = feignFormEncoder();
         this.options = new Request.Options(10, TimeUnit.SECONDS, 60,
@@ -80,19 +79,6 @@ public class FeignConfiguration {
             .target(clazz, target);
     }
 
-    public Client client() {
-        Dispatcher dispatcher = new Dispatcher();
-        dispatcher.setMaxRequests(200);
-        dispatcher.setMaxRequestsPerHost(200);
-        OkHttpClient newHttpClient = new OkHttpClient.Builder()
-            .dispatcher(dispatcher)
-            .readTimeout(20000, TimeUnit.MILLISECONDS)
-            .followRedirects(false)
-            .followSslRedirects(false)
-            .build();
-        return new feign.okhttp.OkHttpClient(newHttpClient);
-    }
-
     public Encoder feignFormEncoder() {
         return new FormEncoder(new JacksonEncoder(createObjectMapper()));
     }
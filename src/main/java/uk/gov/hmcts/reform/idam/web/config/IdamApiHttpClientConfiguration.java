@@ -0,0 +1,303 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import feign.Client;
+import feign.httpclient.ApacheHttpClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import okhttp3.OkHttpClient;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.OkHttp3ClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.ServerConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.helper.DeadlinePropagatingInterceptor;
+import uk.gov.hmcts.reform.idam.web.strategic.ApiDeadline;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The one connection pool towards idam-api, used by RestTemplate (SPIService), the Feign clients (OidcApi,
+ * SsoFederationApi) and the Zuul route. Limits come from {@code server.maxConnectionsPerRoute} and {@code server.maxConnectionsTotal}.
+ * The pool is exported as {@code httpcomponents.httpclient.pool.*} gauges (available, leased, pending, max) and the
+ * time spent waiting for a lease as {@code httpcomponents.httpclient.pool.lease.wait}, all tagged
+ * {@code httpclient=idam-api} and scraped through the prometheus endpoint.
+ * With {@code features.idam-api-http2} the shared OkHttp client from {@link OkHttpConfiguration} is used instead.
+ * Either way the socket timeout of each call follows the per-endpoint budget set by
+ * {@link uk.gov.hmcts.reform.idam.web.strategic.ApiTimeouts}.
+ */
+@Configuration
+public class IdamApiHttpClientConfiguration {
+
+    public static final String POOL_NAME = "idam-api";
+    public static final String IDAM_API_REQUEST_FACTORY = "idamApiRequestFactory";
+    public static final String IDAM_API_FEIGN_CLIENT = "idamApiFeignClient";
+    public static final String IDAM_API_NO_REDIRECT_REST_TEMPLATE = "idamApiNoRedirectRestTemplate";
+
+    static final int NO_REDIRECT_TIMEOUT_MILLIS = 5000;
+
+    private final ConfigurationProperties configurationProperties;
+
+    public IdamApiHttpClientConfiguration(ConfigurationProperties configurationProperties) {
+        this.configurationProperties = configurationProperties;
+    }
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager idamApiConnectionManager(@Nullable MeterRegistry meterRegistry) {
+        MeterRegistry registry = meterRegistry != null ? meterRegistry : Metrics.globalRegistry;
+        ServerConfigurationProperties server = configurationProperties.getServer();
+
+        PoolingHttpClientConnectionManager connectionManager = new LeaseTimingConnectionManager(
+            Timer.builder("httpcomponents.httpclient.pool.lease.wait")
+                .description("Time spent waiting for a pooled connection")
+                .tag("httpclient", POOL_NAME)
+                .register(registry));
+        connectionManager.setMaxTotal(server.getMaxConnectionsTotal());
+        connectionManager.setDefaultMaxPerRoute(server.getMaxConnectionsPerRoute());
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, POOL_NAME).bindTo(registry);
+        return connectionManager;
+    }
+
+    /**
+     * @should not expose the client as a bare closeable http client
+     */
+    @Bean(destroyMethod = "close")
+    public IdamApiHttpClient idamApiHttpClient(PoolingHttpClientConnectionManager idamApiConnectionManager) {
+        return new IdamApiHttpClient(HttpClients.custom()
+            .setConnectionManager(idamApiConnectionManager)
+            .disableCookieManagement()
+            .disableAuthCaching()
+            .useSystemProperties()
+            .evictIdleConnections(configurationProperties.getServer().getMaxConnectionIdleTime(), TimeUnit.SECONDS)
+            .build());
+    }
+
+    @Bean(name = IDAM_API_REQUEST_FACTORY)
+    public ClientHttpRequestFactory idamApiRequestFactory(
+        IdamApiHttpClient idamApiHttpClient,
+        @Qualifier(OkHttpConfiguration.IDAM_API_OK_HTTP_CLIENT) ObjectProvider<OkHttpClient> okHttpClient) {
+        OkHttpClient http2Client = okHttpClient.getIfAvailable();
+        if (http2Client != null) {
+            return new RedirectFollowingRequestFactory(http2Client);
+        }
+        ServerConfigurationProperties server = configurationProperties.getServer();
+        return new CallTimeoutRequestFactory(idamApiHttpClient.getHttpClient(), server.getConnectionRequestTimeout(),
+            server.getConnectionTimeout(), server.getReadTimeout());
+    }
+
+    @Bean(name = IDAM_API_FEIGN_CLIENT)
+    public Client idamApiFeignClient(
+        IdamApiHttpClient idamApiHttpClient,
+        @Qualifier(OkHttpConfiguration.IDAM_API_OK_HTTP_CLIENT) ObjectProvider<OkHttpClient> okHttpClient) {
+        OkHttpClient http2Client = okHttpClient.getIfAvailable();
+        if (http2Client != null) {
+            return new feign.okhttp.OkHttpClient(http2Client);
+        }
+        return new ApacheHttpClient(idamApiHttpClient.getHttpClient());
+    }
+
+    /**
+     * RestTemplate for calls that must see the 302 from idam-api rather than follow it, such as the PIN login.
+     * It leases connections from the same pool as the main RestTemplate.
+     */
+    @Bean(name = IDAM_API_NO_REDIRECT_REST_TEMPLATE)
+    public RestTemplate idamApiNoRedirectRestTemplate(
+        PoolingHttpClientConnectionManager idamApiConnectionManager,
+        @Qualifier(OkHttpConfiguration.IDAM_API_OK_HTTP_CLIENT) ObjectProvider<OkHttpClient> okHttpClient) {
+        OkHttpClient http2Client = okHttpClient.getIfAvailable();
+        if (http2Client != null) {
+            // the shared OkHttp client never follows redirects
+            return noRedirectRestTemplate(new OkHttp3ClientHttpRequestFactory(http2Client.newBuilder()
+                .connectTimeout(NO_REDIRECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .readTimeout(NO_REDIRECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .build()));
+        }
+        CloseableHttpClient httpClient = HttpClients.custom()
+            .setConnectionManager(idamApiConnectionManager)
+            .setConnectionManagerShared(true)
+            .disableCookieManagement()
+            .disableAuthCaching()
+            .disableRedirectHandling()
+            .useSystemProperties()
+            .build();
+        return noRedirectRestTemplate(new CallTimeoutRequestFactory(httpClient, NO_REDIRECT_TIMEOUT_MILLIS,
+            NO_REDIRECT_TIMEOUT_MILLIS, NO_REDIRECT_TIMEOUT_MILLIS));
+    }
+
+    private static RestTemplate noRedirectRestTemplate(ClientHttpRequestFactory requestFactory) {
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(new DeadlinePropagatingInterceptor());
+        return restTemplate;
+    }
+
+    /**
+     * The Apache client RestTemplate and Feign share, which follows redirects for GET and HEAD. Held in its own type
+     * rather than registered as a {@link CloseableHttpClient} bean: Zuul's auto-configuration proxies its routes
+     * through any such bean and would then follow the redirects it must hand back to the browser.
+     */
+    public static class IdamApiHttpClient implements Closeable {
+
+        private final CloseableHttpClient httpClient;
+
+        IdamApiHttpClient(CloseableHttpClient httpClient) {
+            this.httpClient = httpClient;
+        }
+
+        public CloseableHttpClient getHttpClient() {
+            return httpClient;
+        }
+
+        @Override
+        public void close() throws IOException {
+            httpClient.close();
+        }
+    }
+
+    /**
+     * Uses the timeout of the idam-api call in progress, see {@link ApiDeadline}, as the socket timeout instead of
+     * the configured read timeout.
+     */
+    static class CallTimeoutRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+        private final RequestConfig defaultRequestConfig;
+
+        CallTimeoutRequestFactory(HttpClient httpClient, int connectionRequestTimeout, int connectTimeout, int readTimeout) {
+            super(httpClient);
+            setConnectionRequestTimeout(connectionRequestTimeout);
+            setConnectTimeout(connectTimeout);
+            setReadTimeout(readTimeout);
+            this.defaultRequestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(connectionRequestTimeout)
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .build();
+        }
+
+        /**
+         * @should use the call timeout as socket timeout
+         * @should use the factory timeouts without a call timeout
+         */
+        @Override
+        protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+            OptionalLong callTimeout = ApiDeadline.callTimeoutMillis();
+            if (callTimeout.isEmpty()) {
+                return null;
+            }
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.copy(defaultRequestConfig)
+                .setSocketTimeout((int) Math.min(Integer.MAX_VALUE, callTimeout.getAsLong()))
+                .build());
+            return context;
+        }
+    }
+
+    /**
+     * Follows redirects for GET and HEAD only, as Apache's default redirect strategy does for the main RestTemplate
+     * without {@code features.idam-api-http2}. The shared OkHttp client does not follow redirects; the redirect
+     * following copy shares its connection pool and dispatcher.
+     */
+    static class RedirectFollowingRequestFactory implements ClientHttpRequestFactory {
+
+        private final OkHttpClient redirectFollowingClient;
+
+        private final OkHttpClient client;
+
+        private final ClientHttpRequestFactory redirectFollowing;
+
+        private final ClientHttpRequestFactory notRedirectFollowing;
+
+        RedirectFollowingRequestFactory(OkHttpClient client) {
+            this.client = client;
+            this.redirectFollowingClient = client.newBuilder()
+                .followRedirects(true)
+                .followSslRedirects(true)
+                .build();
+            this.redirectFollowing = new OkHttp3ClientHttpRequestFactory(redirectFollowingClient);
+            this.notRedirectFollowing = new OkHttp3ClientHttpRequestFactory(client);
+        }
+
+        @Override
+        public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+            return (followsRedirects(httpMethod) ? redirectFollowing : notRedirectFollowing).createRequest(uri, httpMethod);
+        }
+
+        /**
+         * @should follow redirects for get and head
+         * @should not follow redirects for other methods
+         */
+        OkHttpClient client(HttpMethod httpMethod) {
+            return followsRedirects(httpMethod) ? redirectFollowingClient : client;
+        }
+
+        private static boolean followsRedirects(HttpMethod httpMethod) {
+            return httpMethod == HttpMethod.GET || httpMethod == HttpMethod.HEAD;
+        }
+    }
+
+    /**
+     * Records how long each caller waits for a connection, which the pool gauges alone do not show.
+     */
+    static class LeaseTimingConnectionManager extends PoolingHttpClientConnectionManager {
+
+        private final Timer leaseWait;
+
+        LeaseTimingConnectionManager(Timer leaseWait) {
+            super(RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSystemSocketFactory())
+                .build());
+            this.leaseWait = leaseWait;
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            ConnectionRequest request = super.requestConnection(route, state);
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    long start = System.nanoTime();
+                    try {
+                        return request.get(timeout, timeUnit);
+                    } finally {
+                        leaseWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package uk.gov.hmcts.reform.idam.web.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tomcat.util.http.Rfc6265CookieProcessor;
 import org.apache.tomcat.util.http.SameSiteCookies;
@@ -12,9 +13,11 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
 import org.springframework.security.web.firewall.HttpStatusRequestRejectedHandler;
 import org.springframework.security.web.firewall.RequestRejectedException;
 import org.springframework.security.web.firewall.RequestRejectedHandler;
+import org.springframework.session.web.http.SessionRepositoryFilter;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -24,7 +27,9 @@ import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
 import org.springframework.web.servlet.mvc.WebContentInterceptor;
 import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
 import uk.gov.hmcts.reform.idam.web.helper.JSPHelper;
+import uk.gov.hmcts.reform.idam.web.helper.StageTimer;
 import uk.gov.hmcts.reform.idam.web.security.CspNonceFilter;
+import uk.gov.hmcts.reform.idam.web.strategic.SessionAvoidanceFilter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -47,6 +52,9 @@ public class IdamWebMvcConfiguration implements WebMvcConfigurer {
     @Autowired
     private ConfigurationProperties configurationProperties;
 
+    @Autowired
+    private StageTimer stageTimer;
+
     @Bean
     public TomcatContextCustomizer sameSiteCookiesConfig() {
         return context -> {
@@ -86,6 +94,10 @@ public class IdamWebMvcConfiguration implements WebMvcConfigurer {
         registry.addInterceptor(localeChangeInterceptor());
         registry.addInterceptor(initWebContentInterceptor());
         registry.addInterceptor(requestMethodInterceptor());
+        registry.addInterceptor(new StageTimingInterceptor(stageTimer, configurationProperties.getFeatures().isServerTiming()))
+            .addPathPatterns("/login", "/verification");
+        registry.addInterceptor(new DeferredCookiesInterceptor())
+            .addPathPatterns("/login");
     }
 
     @Bean
@@ -113,6 +125,16 @@ public class IdamWebMvcConfiguration implements WebMvcConfigurer {
         return registration;
     }
 
+    @Bean
+    public FilterRegistrationBean<SessionAvoidanceFilter> sessionAvoidanceFilterRegistration(@Nullable MeterRegistry meterRegistry) {
+        FilterRegistrationBean<SessionAvoidanceFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(new SessionAvoidanceFilter(configurationProperties.getStrategic().getSession().getSsoRoutes(),
+            configurationProperties.getFeatures().isSessionAvoidance(), meterRegistry));
+        registration.addUrlPatterns("/*");
+        registration.setOrder(SessionRepositoryFilter.DEFAULT_ORDER + 1);
+        return registration;
+    }
+
 
     /**
      * return HTML by default when not sure.
@@ -0,0 +1,58 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import okhttp3.OkHttpClient;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.session.web.http.CookieSerializer;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.client.RestTemplate;
+import uk.gov.hmcts.reform.idam.web.helper.AuthHelper;
+import uk.gov.hmcts.reform.idam.web.helper.StageTimer;
+import uk.gov.hmcts.reform.idam.web.security.CspNonceService;
+import uk.gov.hmcts.reform.idam.web.strategic.LoginPipeline;
+import uk.gov.hmcts.reform.idam.web.strategic.SPIService;
+import uk.gov.hmcts.reform.idam.web.strategic.ValidationService;
+
+/**
+ * Beans kept eager under the {@code lazy} profile ({@code spring.main.lazy-initialization=true}), so the first login
+ * after a pod starts does not pay for creating the controllers, the idam-api clients and their connection pools, or
+ * the session store. Everything else, e.g. Feign clients and rarely used configuration, is created on first use.
+ */
+@Configuration
+public class LazyInitializationConfiguration {
+
+    private static final Class<?>[] REQUEST_CRITICAL_TYPES = {
+        SPIService.class,
+        LoginPipeline.class,
+        ValidationService.class,
+        AuthHelper.class,
+        StageTimer.class,
+        CspNonceService.class,
+        RestTemplate.class,
+        ClientHttpRequestFactory.class,
+        HttpClient.class,
+        HttpClientConnectionManager.class,
+        OkHttpClient.class,
+        RedisConnectionFactory.class,
+        CookieSerializer.class
+    };
+
+    /**
+     * @should exclude controllers
+     * @should exclude request critical beans
+     * @should not exclude other beans
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter requestCriticalBeansExcludeFilter() {
+        LazyInitializationExcludeFilter byType = LazyInitializationExcludeFilter.forBeanTypes(REQUEST_CRITICAL_TYPES);
+        return (beanName, beanDefinition, beanType) ->
+            beanType != null && AnnotatedElementUtils.hasAnnotation(beanType, Controller.class)
+                || byType.isExcluded(beanName, beanDefinition, beanType);
+    }
+}
@@ -0,0 +1,321 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import com.google.common.cache.Cache;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.lang.Nullable;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.util.SerializationUtils;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.Temporal;
+import java.util.Set;
+
+/**
+ * Near cache in front of the Redis session repository. Sessions read in the last {@code maxAge} are served from an
+ * in-process copy, so requests that only read the session (the SSO filter, the OIDC parameters kept for the
+ * authentication success handler) no longer go to Redis. The copies are evicted on the keyspace notifications Redis
+ * sends for writes to, deletion and expiry of the session keys, from whichever pod made them. Notifications for a
+ * session this pod saved in the last {@code selfWriteWindow} are taken to be the echo of that save and ignored, as
+ * the cached copy is the one just written; a write from another pod inside that window is only seen once the copy
+ * ages out after {@code maxAge}.
+ *
+ * <p>Attribute values are copied through Java serialization on their way into and out of the cache, as Redis would
+ * have done, so a caller changing a mutable attribute such as the {@code oidcParams} map without setting it again
+ * changes neither the cached copy nor what other requests read. Strings, numbers and other immutable values are
+ * shared.
+ *
+ * <p>The last accessed time is set on every request, writing it through would still cost a Redis call per request,
+ * so it is only written once it moved on by {@code touchInterval}. Sessions expire that much earlier at most.
+ * Any other change loads the session from Redis and is saved through the delegate as before.
+ */
+public class NearCacheSessionRepository<S extends Session>
+    implements SessionRepository<NearCacheSessionRepository<S>.CachedSession>, MessageListener {
+
+    public static final String METRIC = "idam.web.session.near.cache";
+
+    private static final String EXPIRES_PREFIX = "expires:";
+
+    private final SessionRepository<S> repository;
+
+    private final Cache<String, MapSession> sessions;
+
+    private final Cache<String, Boolean> recentWrites;
+
+    private final Duration touchInterval;
+
+    private final String sessionKeyPrefix;
+
+    private final Counter deferredTouches;
+
+    private final Counter writtenTouches;
+
+    /**
+     * @param namespace the Spring Session Redis namespace, session hashes are stored under {@code <namespace>:sessions:}
+     */
+    public NearCacheSessionRepository(SessionRepository<S> repository, StrategicConfigurationProperties.NearCache properties,
+                                      String namespace, @Nullable MeterRegistry meterRegistry) {
+        this(repository, properties, namespace, meterRegistry, Ticker.systemTicker());
+    }
+
+    NearCacheSessionRepository(SessionRepository<S> repository, StrategicConfigurationProperties.NearCache properties,
+                               String namespace, @Nullable MeterRegistry meterRegistry, Ticker ticker) {
+        this.repository = repository;
+        this.sessions = CacheBuilder.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(properties.getMaxAge())
+            .ticker(ticker)
+            .recordStats()
+            .build();
+        this.recentWrites = CacheBuilder.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(properties.getSelfWriteWindow())
+            .ticker(ticker)
+            .build();
+        this.touchInterval = properties.getTouchInterval();
+        this.sessionKeyPrefix = namespace + ":sessions:";
+        MeterRegistry registry = meterRegistry == null ? Metrics.globalRegistry : meterRegistry;
+        GuavaCacheMetrics.monitor(registry, sessions, METRIC);
+        Gauge.builder(METRIC + ".hit.ratio", sessions, cache -> cache.stats().hitRate()).register(registry);
+        this.deferredTouches = Counter.builder(METRIC + ".touches").tag("outcome", "deferred").register(registry);
+        this.writtenTouches = Counter.builder(METRIC + ".touches").tag("outcome", "written").register(registry);
+    }
+
+    /**
+     * Keyspace notifications for the session hashes and their expiry keys, in any database.
+     */
+    public Topic keyspaceTopic() {
+        return new PatternTopic("__keyspace@*__:" + sessionKeyPrefix + "*");
+    }
+
+    @Override
+    public CachedSession createSession() {
+        S session = repository.createSession();
+        return new CachedSession(new MapSession(session), session, true);
+    }
+
+    /**
+     * @should write changed sessions through and cache the saved copy
+     * @should defer touches within the touch interval
+     * @should write touches once the touch interval has passed
+     * @should evict the old id when the session id changed
+     */
+    @Override
+    public void save(CachedSession session) {
+        if (session.delegate == null) {
+            if (!session.touchDue()) {
+                if (session.touched) {
+                    deferredTouches.increment();
+                }
+                return;
+            }
+            session.load();
+            writtenTouches.increment();
+        }
+        repository.save(session.delegate);
+        if (!session.originalId.equals(session.delegate.getId())) {
+            sessions.invalidate(session.originalId);
+            recentWrites.invalidate(session.originalId);
+        }
+        recentWrites.put(session.delegate.getId(), Boolean.TRUE);
+        sessions.put(session.delegate.getId(), copy(session.delegate));
+    }
+
+    /**
+     * @should serve repeated reads from the cache
+     * @should read through once the session was evicted
+     * @should not serve expired sessions from the cache
+     */
+    @Override
+    public CachedSession findById(String id) {
+        MapSession cached = sessions.getIfPresent(id);
+        if (cached != null && !cached.isExpired()) {
+            return new CachedSession(copy(cached), null, false);
+        }
+        S session = repository.findById(id);
+        if (session == null) {
+            sessions.invalidate(id);
+            return null;
+        }
+        MapSession copy = copy(session);
+        sessions.put(id, copy);
+        return new CachedSession(copy(copy), session, false);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        sessions.invalidate(id);
+        recentWrites.invalidate(id);
+        repository.deleteById(id);
+    }
+
+    /**
+     * @should evict the session named in the channel
+     * @should evict the session whose expiry key changed
+     * @should not evict the session this pod just saved
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        int start = channel.indexOf(sessionKeyPrefix);
+        if (start < 0) {
+            return;
+        }
+        String id = channel.substring(start + sessionKeyPrefix.length());
+        if (id.startsWith(EXPIRES_PREFIX)) {
+            id = id.substring(EXPIRES_PREFIX.length());
+        }
+        if (recentWrites.getIfPresent(id) == null) {
+            sessions.invalidate(id);
+        }
+    }
+
+    /**
+     * @should not share mutable attribute values with the copy
+     */
+    static MapSession copy(Session session) {
+        MapSession copy = new MapSession(session);
+        for (String attributeName : session.getAttributeNames()) {
+            Object value = session.getAttribute(attributeName);
+            if (value instanceof Serializable && !isImmutable(value)) {
+                copy.setAttribute(attributeName, SerializationUtils.deserialize(SerializationUtils.serialize(value)));
+            }
+        }
+        return copy;
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean
+            || value instanceof Character || value instanceof Enum || value instanceof Temporal;
+    }
+
+    /**
+     * A session read from the near cache. Reads are served from the cached copy, the first write loads the session
+     * from Redis, or takes the one just read on a cache miss, and applies the write to it.
+     */
+    public class CachedSession implements Session {
+
+        private final MapSession snapshot;
+
+        private final String originalId;
+
+        private final Instant persistedLastAccessedTime;
+
+        private S prefetched;
+
+        private S delegate;
+
+        private boolean touched;
+
+        CachedSession(MapSession snapshot, S prefetched, boolean isNew) {
+            this.snapshot = snapshot;
+            this.originalId = snapshot.getId();
+            this.persistedLastAccessedTime = snapshot.getLastAccessedTime();
+            if (isNew) {
+                this.delegate = prefetched;
+            } else {
+                this.prefetched = prefetched;
+            }
+        }
+
+        private Session current() {
+            return delegate != null ? delegate : snapshot;
+        }
+
+        private S load() {
+            if (delegate == null) {
+                delegate = prefetched != null ? prefetched : repository.findById(snapshot.getId());
+                if (delegate == null) {
+                    // deleted or expired since it was cached, carry on with a new session as Redis would have done
+                    sessions.invalidate(snapshot.getId());
+                    delegate = repository.createSession();
+                }
+                if (touched) {
+                    delegate.setLastAccessedTime(snapshot.getLastAccessedTime());
+                }
+            }
+            return delegate;
+        }
+
+        private boolean touchDue() {
+            return touched && Duration.between(persistedLastAccessedTime, snapshot.getLastAccessedTime())
+                .compareTo(touchInterval) >= 0;
+        }
+
+        @Override
+        public String getId() {
+            return current().getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            return load().changeSessionId();
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return current().getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return current().getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            load().setAttribute(attributeName, attributeValue);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            load().removeAttribute(attributeName);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return current().getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            current().setLastAccessedTime(lastAccessedTime);
+            touched = true;
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return current().getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            load().setMaxInactiveInterval(interval);
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return current().getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+            return current().isExpired();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpConnectionPoolMetrics;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.ServerConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.strategic.ApiDeadline;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * With {@code features.idam-api-http2} RestTemplate and the Feign clients share this OkHttp client, which multiplexes
+ * requests to idam-api as HTTP/2 streams over a few connections instead of one HTTP/1.1 connection per in-flight call.
+ * https urls negotiate HTTP/2 through ALPN and fall back to HTTP/1.1; http urls use h2c with prior knowledge, so
+ * idam-api must accept cleartext HTTP/2 when it is reached over http.
+ * The client itself does not follow redirects, the main RestTemplate still follows them for GET and HEAD as it did
+ * over Apache, see {@link IdamApiHttpClientConfiguration.RedirectFollowingRequestFactory}.
+ * Pool size is exported as {@code okhttp.pool.connection.count} and {@code okhttp.pool.connection.limit}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty("features.idam-api-http2")
+public class OkHttpConfiguration {
+
+    public static final String IDAM_API_OK_HTTP_CLIENT = "idamApiOkHttpClient";
+
+    static final int MAX_IDLE_CONNECTIONS = 5;
+
+    private final ConfigurationProperties configurationProperties;
+
+    public OkHttpConfiguration(ConfigurationProperties configurationProperties) {
+        this.configurationProperties = configurationProperties;
+    }
+
+    @Bean(name = IDAM_API_OK_HTTP_CLIENT)
+    public OkHttpClient idamApiOkHttpClient(@Nullable MeterRegistry meterRegistry) {
+        ServerConfigurationProperties server = configurationProperties.getServer();
+        ConnectionPool connectionPool = new ConnectionPool(MAX_IDLE_CONNECTIONS, server.getMaxConnectionIdleTime(), TimeUnit.SECONDS);
+        new OkHttpConnectionPoolMetrics(connectionPool, "okhttp.pool", Tags.of("client", "idam-api"), MAX_IDLE_CONNECTIONS)
+            .bindTo(meterRegistry != null ? meterRegistry : Metrics.globalRegistry);
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(server.getMaxConnectionsTotal());
+        dispatcher.setMaxRequestsPerHost(server.getMaxConnectionsPerRoute());
+
+        List<Protocol> protocols = protocols(configurationProperties.getStrategic().getService().getUrl());
+        log.info("idam-api client will use {}", protocols);
+        return new OkHttpClient.Builder()
+            .protocols(protocols)
+            .connectionPool(connectionPool)
+            .dispatcher(dispatcher)
+            .connectTimeout(server.getConnectionTimeout(), TimeUnit.MILLISECONDS)
+            .readTimeout(server.getReadTimeout(), TimeUnit.MILLISECONDS)
+            .followRedirects(false)
+            .followSslRedirects(false)
+            .addInterceptor(OkHttpConfiguration::applyCallTimeout)
+            .build();
+    }
+
+    /**
+     * Uses the timeout of the idam-api call in progress, see {@link ApiDeadline}, as the read timeout. Calls are
+     * executed synchronously, so the interceptor runs on the thread that set it.
+     */
+    static Response applyCallTimeout(Interceptor.Chain chain) throws IOException {
+        OptionalLong callTimeout = ApiDeadline.callTimeoutMillis();
+        if (callTimeout.isEmpty()) {
+            return chain.proceed(chain.request());
+        }
+        return chain.withReadTimeout((int) Math.min(Integer.MAX_VALUE, callTimeout.getAsLong()), TimeUnit.MILLISECONDS)
+            .proceed(chain.request());
+    }
+
+    /**
+     * @should use h2c prior knowledge for http urls
+     * @should negotiate http2 with http1 fallback for https urls
+     */
+    static List<Protocol> protocols(String url) {
+        if (url != null && url.startsWith("http://")) {
+            return List.of(Protocol.H2_PRIOR_KNOWLEDGE);
+        }
+        return List.of(Protocol.HTTP_2, Protocol.HTTP_1_1);
+    }
+}
@@ -0,0 +1,96 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnResource;
+import org.springframework.boot.web.servlet.ServletContextInitializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletRegistration;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Serves the views from the servlets JspC generated at build time (see {@code jspcGenerate} in build.gradle), so Jasper
+ * does not translate and compile them on the first request to each pod. Every view is mapped to its own servlet by
+ * path, which takes precedence over Jasper's {@code *.jsp} mapping. Without the generated web fragment, e.g. in
+ * {@code bootRun}, views are compiled on first use as before.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnResource(resources = "classpath:" + PrecompiledJspConfiguration.WEB_FRAGMENT)
+public class PrecompiledJspConfiguration {
+
+    static final String WEB_FRAGMENT = "META-INF/jspc/web-fragment.xml";
+
+    @Bean
+    public ServletContextInitializer precompiledJspServlets() {
+        return servletContext -> {
+            Map<String, String> servlets;
+            try (InputStream fragment = new ClassPathResource(WEB_FRAGMENT).getInputStream()) {
+                servlets = servletMappings(fragment);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read " + WEB_FRAGMENT, e);
+            }
+            ClassLoader classLoader = getClass().getClassLoader();
+            for (Map.Entry<String, String> servlet : servlets.entrySet()) {
+                try {
+                    Class<? extends Servlet> servletClass = Class.forName(servlet.getValue(), false, classLoader)
+                        .asSubclass(Servlet.class);
+                    ServletRegistration.Dynamic registration = servletContext.addServlet(servlet.getValue(), servletClass);
+                    registration.addMapping(servlet.getKey());
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException("Precompiled view " + servlet.getKey() + " is missing", e);
+                }
+            }
+            log.info("Registered {} precompiled views", servlets.size());
+        };
+    }
+
+    /**
+     * Reads the servlet class mapped to each view path from a JspC web fragment.
+     *
+     * @should map each view path to its servlet class
+     */
+    static Map<String, String> servletMappings(InputStream webFragment) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            Document document = factory.newDocumentBuilder().parse(webFragment);
+
+            Map<String, String> classes = new HashMap<>();
+            NodeList servlets = document.getElementsByTagName("servlet");
+            for (int i = 0; i < servlets.getLength(); i++) {
+                Element servlet = (Element) servlets.item(i);
+                classes.put(text(servlet, "servlet-name"), text(servlet, "servlet-class"));
+            }
+
+            Map<String, String> mappings = new LinkedHashMap<>();
+            NodeList servletMappings = document.getElementsByTagName("servlet-mapping");
+            for (int i = 0; i < servletMappings.getLength(); i++) {
+                Element mapping = (Element) servletMappings.item(i);
+                mappings.put(text(mapping, "url-pattern"), classes.get(text(mapping, "servlet-name")));
+            }
+            return mappings;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Invalid web fragment", e);
+        }
+    }
+
+    private static String text(Element parent, String tag) {
+        return parent.getElementsByTagName(tag).item(0).getTextContent().trim();
+    }
+}
@@ -1,45 +1,23 @@
 package uk.gov.hmcts.reform.idam.web.config;
 
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
-import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.helper.DeadlinePropagatingInterceptor;
 import uk.gov.hmcts.reform.idam.web.helper.LocalePassingInterceptor;
 
-import java.util.concurrent.TimeUnit;
-
 @Configuration
 public class RestTemplateConfiguration {
 
-    private final ConfigurationProperties configurationProperties;
-
-    public RestTemplateConfiguration(ConfigurationProperties configurationProperties) {
-        this.configurationProperties = configurationProperties;
-    }
-
     @Bean
-    public RestTemplate getRestTemplate() {
-        HttpClientBuilder httpClientBuilder = HttpClients.custom()
-            .disableCookieManagement()
-            .disableAuthCaching()
-            .useSystemProperties()
-            .evictIdleConnections(configurationProperties.getServer().getMaxConnectionIdleTime(), TimeUnit.SECONDS)
-            .setMaxConnPerRoute(configurationProperties.getServer().getMaxConnectionsPerRoute())
-            .setMaxConnTotal(configurationProperties.getServer().getMaxConnectionsTotal());
-
-        CloseableHttpClient client = httpClientBuilder.build();
-
-        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(client);
-        requestFactory.setConnectionRequestTimeout(configurationProperties.getServer().getConnectionRequestTimeout());
-        requestFactory.setConnectTimeout(configurationProperties.getServer().getConnectionTimeout());
-        requestFactory.setReadTimeout(configurationProperties.getServer().getReadTimeout());
-
+    @Primary
+    public RestTemplate getRestTemplate(@Qualifier(IdamApiHttpClientConfiguration.IDAM_API_REQUEST_FACTORY) ClientHttpRequestFactory requestFactory) {
         final RestTemplate restTemplate = new RestTemplate(requestFactory);
         restTemplate.getInterceptors().add(new LocalePassingInterceptor());
+        restTemplate.getInterceptors().add(new DeadlinePropagatingInterceptor());
         return restTemplate;
     }
 
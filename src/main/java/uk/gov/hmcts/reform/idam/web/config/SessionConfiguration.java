@@ -1,6 +1,7 @@
 package uk.gov.hmcts.reform.idam.web.config;
 
 import io.lettuce.core.ClientOptions;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.lettuce.core.SocketOptions;
 import io.lettuce.core.resource.ClientResources;
 import io.lettuce.core.resource.NettyCustomizer;
@@ -12,15 +13,20 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.connection.RedisPassword;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.lang.Nullable;
+import org.springframework.session.data.redis.RedisIndexedSessionRepository;
 import org.springframework.session.data.redis.config.ConfigureRedisAction;
 import org.springframework.session.data.redis.config.annotation.web.http.EnableRedisHttpSession;
 import org.springframework.session.web.http.CookieSerializer;
 import org.springframework.session.web.http.DefaultCookieSerializer;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
 
 import java.time.Duration;
 
@@ -49,6 +55,9 @@ public class SessionConfiguration {
     @Value("${spring.redis.timeout}")
     private Duration socketTimeout;
 
+    @Value("${spring.session.redis.namespace:spring:session}")
+    private String redisNamespace;
+
     @Bean
     public CookieSerializer cookieSerializer() {
         DefaultCookieSerializer serializer = new DefaultCookieSerializer();
@@ -105,6 +114,24 @@ public class SessionConfiguration {
         return template;
     }
 
+    /**
+     * Takes over from the Redis repository as the one used by the session filter.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "strategic.session.nearCache.enabled", havingValue = "true")
+    public NearCacheSessionRepository<RedisIndexedSessionRepository.RedisSession> nearCacheSessionRepository(
+        RedisIndexedSessionRepository sessionRepository,
+        RedisMessageListenerContainer springSessionRedisMessageListenerContainer,
+        ConfigurationProperties configurationProperties,
+        @Nullable MeterRegistry meterRegistry) {
+        NearCacheSessionRepository<RedisIndexedSessionRepository.RedisSession> nearCache = new NearCacheSessionRepository<>(
+            sessionRepository, configurationProperties.getStrategic().getSession().getNearCache(), redisNamespace,
+            meterRegistry);
+        springSessionRedisMessageListenerContainer.addMessageListener(nearCache, nearCache.keyspaceTopic());
+        return nearCache;
+    }
+
     /*
      * https://github.com/spring-projects/spring-session/issues/124
      */
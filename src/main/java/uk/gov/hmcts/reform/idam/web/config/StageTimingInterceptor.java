@@ -0,0 +1,69 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import uk.gov.hmcts.reform.idam.web.helper.StageTimer;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Starts the stage timings of the login form posts, records view rendering as the last stage and, when
+ * {@code features.server-timing} is on, reports the stages in a {@code Server-Timing} header. The header is added
+ * before the view renders, so it does not include the render stage. A login handled asynchronously keeps its timings
+ * when it is dispatched back to render.
+ */
+public class StageTimingInterceptor implements HandlerInterceptor {
+
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    static final String RENDER_START_ATTRIBUTE = StageTimingInterceptor.class.getName() + ".renderStart";
+
+    private final StageTimer stageTimer;
+
+    private final boolean serverTiming;
+
+    public StageTimingInterceptor(StageTimer stageTimer, boolean serverTiming) {
+        this.stageTimer = stageTimer;
+        this.serverTiming = serverTiming;
+    }
+
+    /**
+     * @should not restart the timings on an async dispatch
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, @NotNull HttpServletResponse response, @NotNull Object handler) {
+        if ("POST".equals(request.getMethod()) && request.getDispatcherType() != DispatcherType.ASYNC) {
+            stageTimer.begin(request, StringUtils.substringAfterLast(request.getRequestURI(), "/"));
+        }
+        return true;
+    }
+
+    /**
+     * @should add the server timing header when enabled
+     * @should not add the server timing header when disabled
+     */
+    @Override
+    public void postHandle(HttpServletRequest request, @NotNull HttpServletResponse response, @NotNull Object handler,
+                           ModelAndView modelAndView) {
+        request.setAttribute(RENDER_START_ATTRIBUTE, System.nanoTime());
+        if (serverTiming) {
+            stageTimer.serverTiming(request).ifPresent(header -> response.setHeader(SERVER_TIMING, header));
+        }
+    }
+
+    /**
+     * @should record the render stage
+     */
+    @Override
+    public void afterCompletion(HttpServletRequest request, @NotNull HttpServletResponse response, @NotNull Object handler,
+                                Exception ex) {
+        Object renderStart = request.getAttribute(RENDER_START_ATTRIBUTE);
+        if (renderStart instanceof Long) {
+            stageTimer.record(request, "render", System.nanoTime() - (Long) renderStart);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.ServerConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * The Reactor Netty client behind {@link uk.gov.hmcts.reform.idam.web.strategic.ReactiveSPIService}, sized from the
+ * same {@code server.*} settings as the RestTemplate's pool. Like the no-redirect RestTemplate it does not follow
+ * redirects, the callers read the Location of idam-api's 302s themselves. {@code server.readTimeout} is the response
+ * timeout of calls made without a per-endpoint timeout. The pool is exported as
+ * {@code reactor.netty.connection.provider.*} with {@code name=idam-api}. It is not closed around a CRaC checkpoint,
+ * so leave the flag off on pods that are checkpointed.
+ */
+@Configuration
+@ConditionalOnProperty("features.reactive-spi-service")
+public class WebClientConfiguration {
+
+    public static final String IDAM_API_WEB_CLIENT = "idamApiWebClient";
+
+    private final ConfigurationProperties configurationProperties;
+
+    public WebClientConfiguration(ConfigurationProperties configurationProperties) {
+        this.configurationProperties = configurationProperties;
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider idamApiConnectionProvider() {
+        ServerConfigurationProperties server = configurationProperties.getServer();
+        return ConnectionProvider.builder("idam-api")
+            .maxConnections(server.getMaxConnectionsTotal())
+            .maxIdleTime(Duration.ofSeconds(server.getMaxConnectionIdleTime()))
+            .pendingAcquireTimeout(Duration.ofMillis(server.getConnectionRequestTimeout()))
+            .metrics(true)
+            .build();
+    }
+
+    @Bean(name = IDAM_API_WEB_CLIENT)
+    public WebClient idamApiWebClient(WebClient.Builder webClientBuilder,
+                                      @Qualifier("idamApiConnectionProvider") ConnectionProvider connectionProvider) {
+        ServerConfigurationProperties server = configurationProperties.getServer();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, server.getConnectionTimeout())
+            .responseTimeout(Duration.ofMillis(server.getReadTimeout()))
+            .followRedirect(false);
+
+        return webClientBuilder
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .build();
+    }
+}
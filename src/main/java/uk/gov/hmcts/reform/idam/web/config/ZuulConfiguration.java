@@ -3,6 +3,11 @@ package uk.gov.hmcts.reform.idam.web.config;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.BeanPostProcessor;
@@ -13,7 +18,10 @@ import org.springframework.cglib.proxy.Enhancer;
 import org.springframework.cglib.proxy.MethodInterceptor;
 import org.springframework.cglib.proxy.MethodProxy;
 import org.springframework.cglib.proxy.NoOp;
+import org.springframework.cloud.netflix.zuul.filters.ProxyRequestHelper;
 import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.cloud.netflix.zuul.filters.route.SimpleHostRoutingFilter;
 import org.springframework.cloud.netflix.zuul.web.ZuulController;
 import org.springframework.cloud.netflix.zuul.web.ZuulHandlerMapping;
 import org.springframework.context.annotation.Bean;
@@ -25,6 +33,46 @@ public class ZuulConfiguration {
     /** The path returned by ErrorContoller.getErrorPath() with Spring Boot < 2.5 (and no longer available on Spring Boot >= 2.5). */
     private static final String ERROR_PATH = "/error";
 
+    /**
+     * Proxies the Zuul routes through the idam-api pool from {@link IdamApiHttpClientConfiguration}. Zuul would
+     * otherwise build a connection pool of its own that no other bean can reach, to close it before a CRaC checkpoint
+     * among other things. The client is Zuul's own, not the one RestTemplate and Feign use, so redirects such as the
+     * one from {@code /o/authorize} to the relying party go back to the browser and the {@code zuul.host} timeouts
+     * still apply. The {@code zuul.host} connection limits do not, the pool has its own.
+     *
+     * @should pass a redirect from idam-api back to the caller unchanged
+     */
+    @Bean
+    public SimpleHostRoutingFilter simpleHostRoutingFilter(ProxyRequestHelper proxyRequestHelper,
+                                                           ZuulProperties zuulProperties,
+                                                           PoolingHttpClientConnectionManager idamApiConnectionManager) {
+        return new SimpleHostRoutingFilter(proxyRequestHelper, zuulProperties,
+            zuulHttpClient(idamApiConnectionManager, zuulProperties.getHost()));
+    }
+
+    /**
+     * Built as Zuul builds its own, see {@code SimpleHostRoutingFilter.newClient}. Closing it leaves the shared pool
+     * open, that is closed with the idam-api pool bean.
+     */
+    private static CloseableHttpClient zuulHttpClient(PoolingHttpClientConnectionManager connectionManager,
+                                                      ZuulProperties.Host host) {
+        return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setConnectionManagerShared(true)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(host.getConnectionRequestTimeoutMillis())
+                .setConnectTimeout(host.getConnectTimeoutMillis())
+                .setSocketTimeout(host.getSocketTimeoutMillis())
+                .setContentCompressionEnabled(false)
+                .setCookieSpec(CookieSpecs.IGNORE_COOKIES)
+                .build())
+            .disableContentCompression()
+            .disableCookieManagement()
+            .disableRedirectHandling()
+            .useSystemProperties()
+            .build();
+    }
+
     @Bean
     public ZuulPostProcessor zuulPostProcessor(@Autowired ZuulController zuulController,
                                                @Autowired RouteLocator routeLocator,
@@ -6,6 +6,10 @@ import lombok.Data;
 public class FeaturesConfigurationProperties {
     private boolean federatedSSO;
     private boolean stepUpAuthentication;
+    private boolean idamApiHttp2;
+    private boolean serverTiming;
+    private boolean sessionAvoidance;
+    private boolean reactiveSpiService;
     private ExternalContactPageProperties externalContactPage;
     private ExternalCookiePageProperties externalCookiePage;
 
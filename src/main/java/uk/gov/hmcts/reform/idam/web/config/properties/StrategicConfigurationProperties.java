@@ -4,7 +4,9 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import lombok.Data;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -17,6 +19,13 @@ public class StrategicConfigurationProperties {
     private Policies policies;
     private Session session;
     private Language language;
+    private ServiceCache serviceCache;
+    private ForgotPasswordExecutor forgotPasswordExecutor;
+    private ForgotPasswordOutbox forgotPasswordOutbox;
+    private ApiResilience apiResilience;
+    private Timeouts timeouts;
+    private Hedging hedging;
+    private WarmUp warmUp;
 
     @Data
     public static class ServiceConfigurationProperties {
@@ -57,10 +66,115 @@ public class StrategicConfigurationProperties {
     public static class Session {
         private String idamSessionCookie;
         private List<String> affinityCookies;
+        private List<String> ssoRoutes;
+        private NearCache nearCache;
+    }
+
+    @Data
+    public static class NearCache {
+        private boolean enabled;
+        private long maximumSize;
+        private Duration maxAge;
+        private Duration touchInterval;
+        private Duration selfWriteWindow;
     }
 
     @Data
     public static class Language {
         private Set<String> supportedLocales;
     }
+
+    @Data
+    public static class ServiceCache {
+        private boolean enabled;
+        private long maximumSize;
+        private Duration expireAfterWrite;
+        private Duration refreshAfterWrite;
+        private Duration unknownClientExpireAfterWrite;
+    }
+
+    @Data
+    public static class ForgotPasswordExecutor {
+        private int poolSize;
+        private int queueCapacity;
+        private RejectionPolicy rejectionPolicy;
+
+        public enum RejectionPolicy {
+            /** Send the request on the calling thread, slowing the caller down to the rate idam-api can take. */
+            CALLER_RUNS,
+            /** Fail the request straight away. */
+            ABORT
+        }
+    }
+
+    @Data
+    public static class ForgotPasswordOutbox {
+        private boolean enabled;
+        private String stream;
+        private String consumerGroup;
+        private String deadLetterStream;
+        private int batchSize;
+        private Duration pollInterval;
+        private Duration retryAfter;
+        private int maxAttempts;
+        private long deadLetterMaxLength;
+        private Duration deadLetterRetention;
+        private Duration enqueueTimeout;
+        private int enqueuePoolSize;
+        private int enqueueQueueCapacity;
+    }
+
+    @Data
+    public static class ApiResilience {
+        private boolean enabled;
+        private CircuitBreaker circuitBreaker;
+        private ConcurrencyLimit concurrencyLimit;
+
+        @Data
+        public static class CircuitBreaker {
+            private int slidingWindowSize;
+            private int minimumCalls;
+            private int failureRateThreshold;
+            private Duration openDuration;
+        }
+
+        @Data
+        public static class ConcurrencyLimit {
+            private int initialLimit;
+            private int minLimit;
+            private int maxLimit;
+            private double backoffRatio;
+            private Duration latencyThreshold;
+        }
+    }
+
+    @Data
+    public static class Timeouts {
+        private boolean enabled;
+        private Duration requestBudget;
+        private Duration defaultTimeout;
+        /** Keyed by the {@code strategic.endpoint} property names. */
+        private Map<String, Duration> endpoint;
+    }
+
+    @Data
+    public static class Hedging {
+        private boolean enabled;
+        private double percentile;
+        private Duration minDelay;
+        private int budgetPercent;
+        private int poolSize;
+        private int queueCapacity;
+    }
+
+    @Data
+    public static class WarmUp {
+        private boolean enabled;
+        private String clientId;
+        private String redirectUri;
+        private int iterations;
+        private int connections;
+        private Duration timeout;
+        private List<String> paths;
+    }
 }
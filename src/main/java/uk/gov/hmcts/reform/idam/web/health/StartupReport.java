@@ -0,0 +1,104 @@
+package uk.gov.hmcts.reform.idam.web.health;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Reports the beans that took longest to create once the application is ready, from the timeline buffered by the
+ * {@link BufferingApplicationStartup} set up in {@code Application.main}. Each bean's time excludes the beans it
+ * pulled in, so a slow dependency is only reported once. The slowest beans are logged and recorded as the
+ * {@value #METRIC} timer, tagged with the bean name, to track startup regressions across releases. The full
+ * timeline stays available through the actuator {@code startup} endpoint where that is exposed.
+ */
+@Slf4j
+@Component
+public class StartupReport implements ApplicationListener<ApplicationReadyEvent> {
+
+    public static final String METRIC = "idam.web.startup.bean";
+
+    static final String INSTANTIATE_STEP = "spring.beans.instantiate";
+
+    private static final String BEAN_NAME_TAG = "beanName";
+
+    private static final int TOP = 20;
+
+    private final MeterRegistry meterRegistry;
+
+    public StartupReport(@Nullable MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry == null ? Metrics.globalRegistry : meterRegistry;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!(event.getApplicationContext().getApplicationStartup() instanceof BufferingApplicationStartup)) {
+            return;
+        }
+        StartupTimeline timeline = ((BufferingApplicationStartup) event.getApplicationContext().getApplicationStartup())
+            .getBufferedTimeline();
+        List<BeanInit> slowest = slowestBeans(timeline, TOP);
+        slowest.forEach(bean -> Timer.builder(METRIC)
+            .tag("bean", bean.getBeanName())
+            .register(meterRegistry)
+            .record(bean.getDuration()));
+        log.info("Slowest beans to start: {}", slowest.stream()
+            .map(bean -> bean.getBeanName() + "=" + bean.getDuration().toMillis() + "ms")
+            .collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * @should exclude the time spent creating dependencies
+     * @should return at most the requested number of beans, slowest first
+     */
+    static List<BeanInit> slowestBeans(StartupTimeline timeline, int limit) {
+        Map<Long, Duration> dependencyTime = new HashMap<>();
+        List<StartupTimeline.TimelineEvent> instantiations = timeline.getEvents().stream()
+            .filter(event -> INSTANTIATE_STEP.equals(event.getStartupStep().getName()))
+            .collect(Collectors.toList());
+        for (StartupTimeline.TimelineEvent event : instantiations) {
+            Long parentId = event.getStartupStep().getParentId();
+            if (parentId != null) {
+                dependencyTime.merge(parentId, event.getDuration(), Duration::plus);
+            }
+        }
+        return instantiations.stream()
+            .map(event -> new BeanInit(beanName(event.getStartupStep()),
+                event.getDuration().minus(dependencyTime.getOrDefault(event.getStartupStep().getId(), Duration.ZERO))))
+            .sorted(Comparator.comparing(BeanInit::getDuration).reversed())
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    private static String beanName(StartupStep step) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if (BEAN_NAME_TAG.equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return "unknown";
+    }
+
+    @Value
+    static class BeanInit {
+
+        String beanName;
+
+        Duration duration;
+    }
+}
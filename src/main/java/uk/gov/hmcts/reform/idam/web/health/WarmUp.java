@@ -0,0 +1,208 @@
+package uk.gov.hmcts.reform.idam.web.health;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.strategic.SPIService;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms a new instance up before it takes traffic: requests each of {@code strategic.warmUp.paths}, with
+ * {@code {clientId}} and {@code {redirectUri}} filled in from the properties of the same name,
+ * {@code iterations} times through the local server, opens {@code connections} pooled connections to idam-api with
+ * concurrent health checks and pings Redis. Until it has finished, or {@code timeout} has passed, the instance is
+ * {@code OUT_OF_SERVICE} on {@code /health}. Each step is timed as {@code idam.web.warmup} tagged with the step.
+ * It is off by default, and needs {@code clientId} to name a real service when on, so the pages it requests render
+ * as they do for users rather than as errors.
+ */
+@Slf4j
+@Component
+public class WarmUp implements HealthIndicator, ApplicationListener<ApplicationReadyEvent> {
+
+    public static final String METRIC = "idam.web.warmup";
+
+    private final StrategicConfigurationProperties.WarmUp properties;
+
+    private final SPIService spiService;
+
+    private final ObjectProvider<RedisConnectionFactory> redisConnectionFactory;
+
+    private final RestTemplate restTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    static final int LOCAL_CONNECT_TIMEOUT_MILLIS = 1000;
+
+    static final int LOCAL_READ_TIMEOUT_MILLIS = 10000;
+
+    private volatile boolean finished;
+
+    private volatile Long deadlineNanos;
+
+    @Autowired
+    public WarmUp(ConfigurationProperties configurationProperties, SPIService spiService,
+                  ObjectProvider<RedisConnectionFactory> redisConnectionFactory, @Nullable MeterRegistry meterRegistry) {
+        this(configurationProperties.getStrategic().getWarmUp(), spiService, redisConnectionFactory, localRestTemplate(),
+            meterRegistry);
+    }
+
+    /**
+     * @should fail without a client id when enabled
+     */
+    WarmUp(StrategicConfigurationProperties.WarmUp properties, SPIService spiService,
+           ObjectProvider<RedisConnectionFactory> redisConnectionFactory, RestTemplate restTemplate,
+           @Nullable MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.spiService = spiService;
+        this.redisConnectionFactory = redisConnectionFactory;
+        this.restTemplate = restTemplate;
+        this.meterRegistry = meterRegistry != null ? meterRegistry : Metrics.globalRegistry;
+        this.finished = properties == null || !properties.isEnabled();
+        if (!finished && StringUtils.isBlank(properties.getClientId())) {
+            throw new IllegalStateException("strategic.warmUp.clientId is required when the warm-up is enabled");
+        }
+    }
+
+    private static RestTemplate localRestTemplate() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(LOCAL_CONNECT_TIMEOUT_MILLIS);
+        requestFactory.setReadTimeout(LOCAL_READ_TIMEOUT_MILLIS);
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        // error pages warm up as well as any other view
+        restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+        return restTemplate;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (finished) {
+            return;
+        }
+        if (!(event.getApplicationContext() instanceof WebServerApplicationContext)) {
+            // no server to warm up, e.g. in a mock MVC test
+            finished = true;
+            return;
+        }
+        int port = ((WebServerApplicationContext) event.getApplicationContext()).getWebServer().getPort();
+        Thread thread = new Thread(() -> run("http://localhost:" + port), "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @should be out of service until the warm up has finished
+     * @should be up once the timeout has passed even if the warm up has not finished
+     */
+    @Override
+    public Health health() {
+        Long warmUpDeadline = deadlineNanos;
+        if (finished || warmUpDeadline != null && System.nanoTime() - warmUpDeadline >= 0) {
+            return Health.up().build();
+        }
+        return Health.outOfService().withDetail("reason", "warming up").build();
+    }
+
+    /**
+     * @should request each path for each iteration
+     * @should open the configured number of connections to idam-api
+     * @should finish and time each step even if a step fails
+     */
+    void run(String baseUrl) {
+        long start = System.nanoTime();
+        long deadline = start + properties.getTimeout().toNanos();
+        deadlineNanos = deadline;
+        try {
+            Map<String, String> variables = Map.of(
+                "clientId", properties.getClientId(),
+                "redirectUri", Objects.toString(properties.getRedirectUri(), ""));
+            step("views", () -> {
+                for (int i = 0; i < properties.getIterations() && System.nanoTime() < deadline; i++) {
+                    properties.getPaths().forEach(path -> restTemplate.getForEntity(baseUrl + path, String.class, variables));
+                }
+            });
+            step("idam-api", () -> primeIdamApiConnections(deadline));
+            step("redis", this::pingRedis);
+        } finally {
+            finished = true;
+            log.info("Warm-up finished in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private void primeIdamApiConnections(long deadline) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(properties.getConnections());
+        try {
+            List<Callable<Object>> healthChecks = new ArrayList<>();
+            for (int i = 0; i < properties.getConnections(); i++) {
+                healthChecks.add(spiService::healthCheck);
+            }
+            executor.invokeAll(healthChecks, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void pingRedis() {
+        RedisConnectionFactory connectionFactory = redisConnectionFactory.getIfAvailable();
+        if (connectionFactory != null) {
+            try (RedisConnection connection = connectionFactory.getConnection()) {
+                connection.ping();
+            }
+        }
+    }
+
+    private void step(String name, Step step) {
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            step.run();
+        } catch (Exception e) {
+            outcome = "failure";
+            log.warn("Warm-up step {} failed", name, e);
+        }
+        long duration = System.nanoTime() - start;
+        Timer.builder(METRIC)
+            .description("Time spent in each step of the warm-up")
+            .tag("step", name)
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .record(duration, TimeUnit.NANOSECONDS);
+        log.info("Warm-up step {} took {} ms", name, TimeUnit.NANOSECONDS.toMillis(duration));
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run() throws Exception;
+    }
+}
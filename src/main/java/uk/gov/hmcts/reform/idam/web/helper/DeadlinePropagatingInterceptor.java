@@ -0,0 +1,31 @@
+package uk.gov.hmcts.reform.idam.web.helper;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import uk.gov.hmcts.reform.idam.web.strategic.ApiDeadline;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+
+/**
+ * Tells idam-api how long this call will wait for it, so it can give up on work nobody is waiting for.
+ */
+public class DeadlinePropagatingInterceptor implements ClientHttpRequestInterceptor {
+
+    @Override
+    public ClientHttpResponse intercept(@NotNull HttpRequest request, @NotNull byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        addTimeoutHeader(request);
+        return execution.execute(request, body);
+    }
+
+    /**
+     * @should add the call timeout header
+     * @should not add the header without a call timeout
+     */
+    void addTimeoutHeader(@NotNull HttpRequest request) {
+        ApiDeadline.callTimeoutMillis().ifPresent(timeout ->
+            request.getHeaders().set(ApiDeadline.TIMEOUT_HEADER, Long.toString(timeout)));
+    }
+}
@@ -0,0 +1,146 @@
+package uk.gov.hmcts.reform.idam.web.helper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Breaks the time spent on a login request down into stages. Each stage is recorded with a percentile histogram as
+ * {@code idam.web.login.stage}, tagged with the {@code flow} started by {@link #begin(HttpServletRequest, String)}
+ * ({@code none} outside one) and the {@code stage}, and kept on the request so it can be reported in a
+ * {@code Server-Timing} header.
+ */
+@Component
+public class StageTimer {
+
+    public static final String METRIC = "idam.web.login.stage";
+
+    static final String TIMINGS_ATTRIBUTE = StageTimer.class.getName() + ".timings";
+
+    static final String NO_FLOW = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    public StageTimer(@Nullable MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry != null ? meterRegistry : Metrics.globalRegistry;
+    }
+
+    /**
+     * Starts timing a flow on the request; the first {@link #lap(String)} measures from here.
+     */
+    public void begin(HttpServletRequest request, String flow) {
+        request.setAttribute(TIMINGS_ATTRIBUTE, new Timings(flow, System.nanoTime()));
+    }
+
+    /**
+     * @should record the time since the previous stage
+     */
+    public void lap(String stage) {
+        current().ifPresent(timings -> {
+            long now = System.nanoTime();
+            record(timings, stage, now - timings.lastMark);
+        });
+    }
+
+    /**
+     * @should record the stage in the current flow
+     * @should record the stage without a flow outside a request
+     */
+    public <T> T time(String stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            long duration = System.nanoTime() - start;
+            Optional<Timings> timings = current();
+            if (timings.isPresent()) {
+                record(timings.get(), stage, duration);
+            } else {
+                timer(NO_FLOW, stage).record(duration, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    public void time(String stage, Runnable work) {
+        time(stage, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Records a stage that ran outside the controller, such as view rendering.
+     */
+    public void record(HttpServletRequest request, String stage, long durationNanos) {
+        timings(request).ifPresent(timings -> record(timings, stage, durationNanos));
+    }
+
+    /**
+     * @should list the stages recorded so far in milliseconds
+     * @should be empty if no flow was started
+     */
+    public Optional<String> serverTiming(HttpServletRequest request) {
+        return timings(request)
+            .filter(timings -> !timings.durations.isEmpty())
+            .map(timings -> timings.durations.entrySet().stream()
+                .map(entry -> String.format(Locale.ROOT, "%s;dur=%.1f", entry.getKey(), entry.getValue() / 1_000_000.0))
+                .collect(Collectors.joining(", ")));
+    }
+
+    private void record(Timings timings, String stage, long durationNanos) {
+        timings.durations.merge(stage, durationNanos, Long::sum);
+        timings.lastMark = System.nanoTime();
+        timer(timings.flow, stage).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String flow, String stage) {
+        return Timer.builder(METRIC)
+            .description("Time spent in each stage of a login")
+            .tag("flow", flow)
+            .tag("stage", stage)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(1))
+            .maximumExpectedValue(Duration.ofSeconds(30))
+            .register(meterRegistry);
+    }
+
+    private static Optional<Timings> current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable((Timings) attributes.getAttribute(TIMINGS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST));
+    }
+
+    private static Optional<Timings> timings(HttpServletRequest request) {
+        return Optional.ofNullable((Timings) request.getAttribute(TIMINGS_ATTRIBUTE));
+    }
+
+    private static class Timings {
+
+        private final String flow;
+
+        private final Map<String, Long> durations = new LinkedHashMap<>();
+
+        private long lastMark;
+
+        Timings(String flow, long start) {
+            this.flow = flow;
+            this.lastMark = start;
+        }
+    }
+}
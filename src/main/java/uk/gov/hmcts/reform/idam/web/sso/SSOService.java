@@ -98,19 +98,13 @@ public class SSOService {
                                                   boolean reuseExistingSession,
                                                   String loginEmail,
                                                   String loginHintParam) {
-        final HttpSession existingSession = request.getSession(false);
-        boolean ssoSessionExists = existingSession != null && existingSession.getAttribute(PROVIDER_ATTR) != null;
-
-        final String provider;
-
         if (loginHintParam != null && SSO_LOGIN_HINTS.containsKey(loginHintParam.toLowerCase())) {
-            provider = loginHintParam.toLowerCase();
-        } else if (reuseExistingSession && ssoSessionExists) {
-            provider = existingSession.getAttribute(PROVIDER_ATTR).toString();
-        } else {
-            provider = getSsoEmailDomains().get(extractEmailDomain(loginEmail));
+            return loginHintParam.toLowerCase();
         }
-
-        return provider;
+        final HttpSession existingSession = reuseExistingSession ? request.getSession(false) : null;
+        if (existingSession != null && existingSession.getAttribute(PROVIDER_ATTR) != null) {
+            return existingSession.getAttribute(PROVIDER_ATTR).toString();
+        }
+        return getSsoEmailDomains().get(extractEmailDomain(loginEmail));
     }
 }
@@ -47,11 +47,14 @@ public class SSOZuulFilter extends ZuulFilter {
         if (isSignOutRequest(ctx.getRequest())) {
             return false;
         }
-        HttpSession session = ctx.getRequest().getSession(false);
-        boolean existingSSOSession = session != null && session.getAttribute(PROVIDER_ATTR) != null;
         boolean ssoLoginInstruction = ctx.getRequest().getParameter(LOGIN_HINT_PARAM) != null
             && SSO_LOGIN_HINTS.containsKey(ctx.getRequest().getParameter(LOGIN_HINT_PARAM).toLowerCase());
-        return existingSSOSession || (ssoLoginInstruction && isSSOEnabled());
+        if (ssoLoginInstruction && isSSOEnabled()) {
+            return true;
+        }
+        // only look the session up when the request itself does not decide, it costs a Redis round trip
+        HttpSession session = ctx.getRequest().getSession(false);
+        return session != null && session.getAttribute(PROVIDER_ATTR) != null;
     }
 
     private boolean isSignOutRequest(HttpServletRequest request) {
@@ -0,0 +1,92 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Additive increase / multiplicative decrease limit on the number of calls in flight. Every call that comes back in
+ * time while the limit was close to being reached raises the limit by {@code 1 / limit}; every call that fails or is
+ * slower than {@code latencyThreshold} multiplies it by {@code backoffRatio}. Calls over the limit are refused rather
+ * than queued, so callers fail fast instead of piling up behind a slow idam-api.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private final long latencyThresholdNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                    Duration latencyThreshold) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @should refuse calls once the limit is reached
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @should raise the limit after calls made close to the limit
+     * @should not raise the limit while it is far from being reached
+     * @should lower the limit after slow calls
+     */
+    public void onSuccess(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        if (latencyNanos > latencyThresholdNanos) {
+            backOff();
+        } else if (current * 2 >= getLimit()) {
+            synchronized (this) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+
+    /**
+     * @should lower the limit but not below the minimum
+     */
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        backOff();
+    }
+
+    /**
+     * Gives back a permit that was not used for a call.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void backOff() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+}
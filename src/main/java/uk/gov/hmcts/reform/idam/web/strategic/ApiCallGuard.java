@@ -0,0 +1,208 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import reactor.core.publisher.Mono;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Puts a circuit breaker and an adaptive concurrency limit in front of each idam-api endpoint, configured by
+ * {@code strategic.apiResilience}. A call the breaker or the limit refuses fails straight away with a 503
+ * {@link ApiCallRejectedException}, which the controllers already turn into their error views, instead of holding a
+ * Tomcat thread for up to {@code server.readTimeout}. 5xx responses and I/O errors count as failures; a response,
+ * including a 4xx, means idam-api is answering. Any other exception, such as a response that could not be read,
+ * says nothing about idam-api and only gives the permits back.
+ * Exported per endpoint as {@code idam.api.concurrency.limit}, {@code idam.api.concurrency.inflight},
+ * {@code idam.api.circuit.state} (0 closed, 1 open, 2 half open) and {@code idam.api.rejected}.
+ */
+public class ApiCallGuard {
+
+    private final Map<ApiEndpoint, EndpointGuard> guards;
+
+    private final LongSupplier nanoTime;
+
+    public ApiCallGuard(StrategicConfigurationProperties.ApiResilience properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    ApiCallGuard(StrategicConfigurationProperties.ApiResilience properties, MeterRegistry meterRegistry,
+                 LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        if (properties == null || !properties.isEnabled()) {
+            this.guards = null;
+            return;
+        }
+        this.guards = new EnumMap<>(ApiEndpoint.class);
+        for (ApiEndpoint endpoint : ApiEndpoint.values()) {
+            guards.put(endpoint, new EndpointGuard(endpoint, properties, meterRegistry, nanoTime));
+        }
+    }
+
+    /**
+     * @should run the call when the circuit is closed and the limit allows it
+     * @should fail fast with service unavailable when the circuit is open
+     * @should fail fast with service unavailable when the concurrency limit is reached
+     * @should count server errors and io errors as failures
+     * @should not count client errors as failures
+     * @should neither count other exceptions as successes nor as failures
+     * @should run the call unguarded when disabled
+     */
+    public <T> T call(ApiEndpoint endpoint, Supplier<T> call) {
+        if (guards == null) {
+            return call.get();
+        }
+        return guards.get(endpoint).call(call, nanoTime);
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #call(ApiEndpoint, Supplier)}: the permits are taken on subscription and given
+     * back when the call completes, fails or is cancelled. A cancelled call says nothing about idam-api.
+     *
+     * @should fail with service unavailable when the circuit is open
+     * @should count server errors and io errors of non-blocking calls as failures
+     * @should give the permits back when a non-blocking call is cancelled
+     */
+    public <T> Mono<T> call(ApiEndpoint endpoint, Mono<T> call) {
+        if (guards == null) {
+            return call;
+        }
+        return guards.get(endpoint).call(call, nanoTime);
+    }
+
+    public CircuitBreaker.State getState(ApiEndpoint endpoint) {
+        return guards == null ? CircuitBreaker.State.CLOSED : guards.get(endpoint).circuitBreaker.getState();
+    }
+
+    private static class EndpointGuard {
+
+        private final String name;
+
+        private final CircuitBreaker circuitBreaker;
+
+        private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+        private final Counter circuitOpenRejections;
+
+        private final Counter limitRejections;
+
+        EndpointGuard(ApiEndpoint endpoint, StrategicConfigurationProperties.ApiResilience properties,
+                      MeterRegistry meterRegistry, LongSupplier nanoTime) {
+            this.name = endpoint.name().toLowerCase(Locale.ROOT);
+            StrategicConfigurationProperties.ApiResilience.CircuitBreaker breaker = properties.getCircuitBreaker();
+            this.circuitBreaker = new CircuitBreaker(breaker.getSlidingWindowSize(), breaker.getMinimumCalls(),
+                breaker.getFailureRateThreshold(), breaker.getOpenDuration(), nanoTime);
+            StrategicConfigurationProperties.ApiResilience.ConcurrencyLimit limit = properties.getConcurrencyLimit();
+            this.concurrencyLimit = new AdaptiveConcurrencyLimit(limit.getInitialLimit(), limit.getMinLimit(),
+                limit.getMaxLimit(), limit.getBackoffRatio(), limit.getLatencyThreshold());
+
+            Gauge.builder("idam.api.concurrency.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Calls to idam-api allowed in flight")
+                .tag("endpoint", name)
+                .register(meterRegistry);
+            Gauge.builder("idam.api.concurrency.inflight", concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Calls to idam-api in flight")
+                .tag("endpoint", name)
+                .register(meterRegistry);
+            Gauge.builder("idam.api.circuit.state", circuitBreaker, cb -> cb.getState().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half open")
+                .tag("endpoint", name)
+                .register(meterRegistry);
+            this.circuitOpenRejections = rejections("circuit_open", meterRegistry);
+            this.limitRejections = rejections("concurrency_limit", meterRegistry);
+        }
+
+        private Counter rejections(String reason, MeterRegistry meterRegistry) {
+            return Counter.builder("idam.api.rejected")
+                .description("Calls to idam-api refused without being sent")
+                .tag("endpoint", name)
+                .tag("reason", reason)
+                .register(meterRegistry);
+        }
+
+        <T> T call(Supplier<T> call, LongSupplier nanoTime) {
+            acquire();
+            long start = nanoTime.getAsLong();
+            try {
+                T result = call.get();
+                succeeded(nanoTime.getAsLong() - start);
+                return result;
+            } catch (RuntimeException | Error e) {
+                failed(e, nanoTime.getAsLong() - start);
+                throw e;
+            }
+        }
+
+        <T> Mono<T> call(Mono<T> call, LongSupplier nanoTime) {
+            return Mono.defer(() -> {
+                acquire();
+                long start = nanoTime.getAsLong();
+                AtomicBoolean done = new AtomicBoolean();
+                return call
+                    .doOnSuccess(result -> {
+                        if (done.compareAndSet(false, true)) {
+                            succeeded(nanoTime.getAsLong() - start);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (done.compareAndSet(false, true)) {
+                            failed(e, nanoTime.getAsLong() - start);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (done.compareAndSet(false, true)) {
+                            release();
+                        }
+                    });
+            });
+        }
+
+        private void acquire() {
+            if (!circuitBreaker.tryAcquire()) {
+                circuitOpenRejections.increment();
+                throw unavailable("circuit open");
+            }
+            if (!concurrencyLimit.tryAcquire()) {
+                circuitBreaker.release();
+                limitRejections.increment();
+                throw unavailable("concurrency limit reached");
+            }
+        }
+
+        private void failed(Throwable e, long latencyNanos) {
+            if (e instanceof HttpClientErrorException) {
+                succeeded(latencyNanos);
+            } else if (e instanceof HttpServerErrorException || e instanceof ResourceAccessException) {
+                concurrencyLimit.onDropped();
+                circuitBreaker.onFailure();
+            } else {
+                release();
+            }
+        }
+
+        private void release() {
+            concurrencyLimit.release();
+            circuitBreaker.release();
+        }
+
+        private void succeeded(long latencyNanos) {
+            concurrencyLimit.onSuccess(latencyNanos);
+            circuitBreaker.onSuccess();
+        }
+
+        private ApiCallRejectedException unavailable(String reason) {
+            return new ApiCallRejectedException(HttpStatus.SERVICE_UNAVAILABLE, "idam-api " + name + " " + reason);
+        }
+    }
+}
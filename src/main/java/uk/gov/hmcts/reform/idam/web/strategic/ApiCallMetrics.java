@@ -0,0 +1,143 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.actuate.metrics.http.Outcome;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import reactor.core.publisher.Mono;
+import uk.gov.hmcts.reform.idam.api.internal.model.ErrorResponse;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Times each {@link SPIService} and {@link ReactiveSPIService} call to idam-api as {@code idam.api.requests}, with a
+ * percentile histogram, tagged with the SPIService {@code method}, the {@code outcome} and {@code status} of the
+ * response and the {@link ErrorResponse.CodeEnum} idam-api returned as {@code error}. Calls that got no response are
+ * tagged {@code status=IO_ERROR}, or {@code CLIENT_ERROR} when they failed before being sent. Calls refused locally by
+ * the circuit breaker, the concurrency limit or the request budget are tagged {@code status=REJECTED}, apart from the
+ * 5xx idam-api answered with.
+ */
+public class ApiCallMetrics {
+
+    static final String NONE = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper;
+
+    public ApiCallMetrics(MeterRegistry meterRegistry, ObjectMapper objectMapper) {
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @should tag successful calls with the response status
+     * @should tag failed calls with the status and error code
+     * @should tag calls without a response as io errors
+     * @should tag calls that failed before being sent as client errors
+     * @should tag calls refused locally as rejected
+     */
+    public <T> T record(String method, Supplier<T> call) {
+        long start = System.nanoTime();
+        T result = null;
+        Throwable failure = null;
+        try {
+            result = call.get();
+            return result;
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            record(method, start, result, failure);
+        }
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #record(String, Supplier)}, timed from subscription. A call cancelled before
+     * it completes, because nobody is waiting for it any more, is tagged {@code status=CANCELLED}.
+     *
+     * @should tag non-blocking calls like blocking ones
+     * @should tag cancelled calls as cancelled
+     */
+    public <T> Mono<T> record(String method, Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean recorded = new AtomicBoolean();
+            return call
+                .doOnSuccess(result -> {
+                    if (recorded.compareAndSet(false, true)) {
+                        record(method, start, result, null);
+                    }
+                })
+                .doOnError(e -> {
+                    if (recorded.compareAndSet(false, true)) {
+                        record(method, start, null, e);
+                    }
+                })
+                .doOnCancel(() -> {
+                    if (recorded.compareAndSet(false, true)) {
+                        timer(method, Outcome.UNKNOWN, "CANCELLED", NONE).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                });
+        });
+    }
+
+    private void record(String method, long start, @Nullable Object result, @Nullable Throwable failure) {
+        Outcome outcome = Outcome.UNKNOWN;
+        String status = "CLIENT_ERROR";
+        String error = NONE;
+        if (failure == null) {
+            if (result instanceof ResponseEntity) {
+                int statusCode = ((ResponseEntity<?>) result).getStatusCodeValue();
+                outcome = Outcome.forStatus(statusCode);
+                status = String.valueOf(statusCode);
+            } else {
+                outcome = Outcome.SUCCESS;
+                status = NONE;
+            }
+        } else if (failure instanceof ApiCallRejectedException) {
+            status = "REJECTED";
+        } else if (failure instanceof HttpStatusCodeException) {
+            HttpStatusCodeException e = (HttpStatusCodeException) failure;
+            outcome = Outcome.forStatus(e.getRawStatusCode());
+            status = String.valueOf(e.getRawStatusCode());
+            error = errorCode(e.getResponseBodyAsString());
+        } else if (failure instanceof ResourceAccessException) {
+            status = "IO_ERROR";
+        }
+        timer(method, outcome, status, error).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String method, Outcome outcome, String status, String error) {
+        return Timer.builder("idam.api.requests")
+            .description("Calls to idam-api by SPIService method")
+            .tag("method", method)
+            .tag("outcome", outcome.name())
+            .tag("status", status)
+            .tag("error", error)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(5))
+            .maximumExpectedValue(Duration.ofSeconds(60))
+            .register(meterRegistry);
+    }
+
+    private String errorCode(String body) {
+        if (body == null || body.isEmpty()) {
+            return NONE;
+        }
+        try {
+            ErrorResponse errorResponse = objectMapper.readValue(body, ErrorResponse.class);
+            return errorResponse.getCode() != null ? errorResponse.getCode().name() : NONE;
+        } catch (JsonProcessingException e) {
+            return NONE;
+        }
+    }
+}
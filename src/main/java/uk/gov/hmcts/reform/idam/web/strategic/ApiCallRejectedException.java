@@ -0,0 +1,22 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+/**
+ * Thrown in place of an idam-api call that was never sent: refused by the circuit breaker or the concurrency limit
+ * of {@link ApiCallGuard}, or made after the request budget of {@link ApiTimeouts} was spent. It is the 5xx the
+ * controllers already handle, and is told apart from real idam-api responses in {@link ApiCallMetrics}.
+ */
+public class ApiCallRejectedException extends HttpServerErrorException {
+
+    /**
+     * Constructs an <code>ApiCallRejectedException</code> with the status the caller sees and the reason.
+     *
+     * @param status  the status the caller sees, 503 or 504
+     * @param message the reason the call was not made
+     */
+    public ApiCallRejectedException(HttpStatus status, String message) {
+        super(status, message);
+    }
+}
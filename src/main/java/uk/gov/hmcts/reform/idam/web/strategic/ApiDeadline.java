@@ -0,0 +1,80 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import java.util.OptionalLong;
+
+/**
+ * Time budgets for idam-api calls made on the current thread: the deadline of the incoming request, started by
+ * {@link RequestDeadlineFilter}, and the timeout of the call in progress, set by {@link ApiTimeouts}. The HTTP clients
+ * read the call timeout to size their socket timeout and pass it on to idam-api in {@link #TIMEOUT_HEADER}.
+ */
+public final class ApiDeadline {
+
+    /**
+     * Milliseconds the receiver has to answer, sent to idam-api and accepted from trusted upstreams, see
+     * {@link RequestDeadlineFilter}.
+     */
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private static final ThreadLocal<Long> REQUEST_DEADLINE = new ThreadLocal<>();
+
+    private static final ThreadLocal<Long> CALL_TIMEOUT = new ThreadLocal<>();
+
+    private ApiDeadline() {
+    }
+
+    static void startRequest(long budgetMillis) {
+        REQUEST_DEADLINE.set(System.nanoTime() + budgetMillis * 1_000_000L);
+    }
+
+    static void endRequest() {
+        REQUEST_DEADLINE.remove();
+    }
+
+    /**
+     * Milliseconds left before the incoming request's deadline, empty outside a request.
+     */
+    static OptionalLong remainingMillis() {
+        return remainingMillis(REQUEST_DEADLINE.get());
+    }
+
+    /**
+     * Milliseconds left before a deadline taken from {@link #requestDeadlineNanos()}, empty if there was none.
+     */
+    static OptionalLong remainingMillis(Long deadlineNanos) {
+        if (deadlineNanos == null) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of((deadlineNanos - System.nanoTime()) / 1_000_000L);
+    }
+
+    /**
+     * Deadline of the incoming request in {@link System#nanoTime()} terms, null outside a request. Calls that leave
+     * the request thread carry it with them, see {@link ReactiveSPIService}.
+     */
+    static Long requestDeadlineNanos() {
+        return REQUEST_DEADLINE.get();
+    }
+
+    /**
+     * Sets the timeout of the idam-api call about to be made on this thread, or clears it when null.
+     *
+     * @return the timeout it replaces, to be restored once the call is done
+     */
+    public static Long setCallTimeout(Long timeoutMillis) {
+        Long previous = CALL_TIMEOUT.get();
+        if (timeoutMillis == null) {
+            CALL_TIMEOUT.remove();
+        } else {
+            CALL_TIMEOUT.set(timeoutMillis);
+        }
+        return previous;
+    }
+
+    /**
+     * Timeout of the idam-api call being made on this thread, empty if none has been set.
+     */
+    public static OptionalLong callTimeoutMillis() {
+        Long timeout = CALL_TIMEOUT.get();
+        return timeout == null ? OptionalLong.empty() : OptionalLong.of(timeout);
+    }
+}
@@ -0,0 +1,59 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties.EndpointConfigurationProperties;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The idam-api endpoints configured under {@code strategic.endpoint}, with the query parameters each call sends.
+ */
+public enum ApiEndpoint {
+
+    AUTHORIZE("authorize", EndpointConfigurationProperties::getAuthorize),
+    LOGIN_WITH_PIN("loginWithPin", EndpointConfigurationProperties::getLoginWithPin, "redirect_uri", "client_id"),
+    LOGIN_WITH_PIN_AND_STATE("loginWithPin", EndpointConfigurationProperties::getLoginWithPin, "redirect_uri", "client_id", "state"),
+    UPLIFT("uplift", EndpointConfigurationProperties::getUplift),
+    FORGOT_PASSWORD("forgotPassword", EndpointConfigurationProperties::getForgotPassword),
+    RESET_PASSWORD("resetPassword", EndpointConfigurationProperties::getResetPassword),
+    VALIDATE_RESET_PASSWORD_TOKEN("validateResetPasswordToken", EndpointConfigurationProperties::getValidateResetPasswordToken),
+    USERS("users", EndpointConfigurationProperties::getUsers),
+    VALIDATE_ACTIVATION_TOKEN("validateActivationToken", EndpointConfigurationProperties::getValidateActivationToken),
+    ACTIVATION("activation", EndpointConfigurationProperties::getActivation),
+    USER_ROLE("userrole", EndpointConfigurationProperties::getUserrole),
+    SEARCH("search", EndpointConfigurationProperties::getSearch),
+    AUTHORIZE_OAUTH2("authorizeOauth2", EndpointConfigurationProperties::getAuthorizeOauth2),
+    SELF_REGISTER_USER("selfRegisterUser", EndpointConfigurationProperties::getSelfRegisterUser, "jwt"),
+    SELF_REGISTRATION("selfRegistration", EndpointConfigurationProperties::getSelfRegistration),
+    DETAILS("details", EndpointConfigurationProperties::getDetails),
+    SERVICES("services", EndpointConfigurationProperties::getServices, "clientId"),
+    HEALTH("health", EndpointConfigurationProperties::getHealth),
+    EVALUATE_POLICIES("evaluatePolicies", EndpointConfigurationProperties::getEvaluatePolicies);
+
+    private final String property;
+
+    private final Function<EndpointConfigurationProperties, String> path;
+
+    private final List<String> queryParams;
+
+    ApiEndpoint(String property, Function<EndpointConfigurationProperties, String> path, String... queryParams) {
+        this.property = property;
+        this.path = path;
+        this.queryParams = List.of(queryParams);
+    }
+
+    /**
+     * Name of the {@code strategic.endpoint} property holding this endpoint's path.
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    String path(EndpointConfigurationProperties endpoints) {
+        return path.apply(endpoints);
+    }
+
+    List<String> getQueryParams() {
+        return queryParams;
+    }
+}
@@ -0,0 +1,77 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import org.springframework.web.util.UriTemplate;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.net.URI;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * idam-api endpoint URIs, resolved once from {@code strategic.service.url} and {@code strategic.endpoint}.
+ * Endpoints without variables are kept as ready-made {@link URI}s so RestTemplate does not have to expand and parse
+ * them on every call; the rest are kept as pre-parsed {@link UriTemplate}s.
+ */
+public class ApiEndpointRegistry {
+
+    private final Map<ApiEndpoint, URI> uris = new EnumMap<>(ApiEndpoint.class);
+
+    private final Map<ApiEndpoint, UriTemplate> templates = new EnumMap<>(ApiEndpoint.class);
+
+    /**
+     * @should resolve endpoints without variables to uris
+     * @should skip endpoints that are not configured
+     */
+    public ApiEndpointRegistry(StrategicConfigurationProperties strategic) {
+        String baseUrl = strategic.getService().getUrl();
+        for (ApiEndpoint endpoint : ApiEndpoint.values()) {
+            String path = endpoint.path(strategic.getEndpoint());
+            if (path == null) {
+                continue;
+            }
+            UriTemplate template = new UriTemplate(baseUrl + "/" + path + query(endpoint));
+            if (template.getVariableNames().isEmpty()) {
+                uris.put(endpoint, URI.create(baseUrl + "/" + path));
+            } else {
+                templates.put(endpoint, template);
+            }
+        }
+    }
+
+    private static String query(ApiEndpoint endpoint) {
+        if (endpoint.getQueryParams().isEmpty()) {
+            return "";
+        }
+        return endpoint.getQueryParams().stream()
+            .map(param -> param + "={" + param + "}")
+            .collect(Collectors.joining("&", "?", ""));
+    }
+
+    /**
+     * @should throw if the endpoint has variables
+     * @should throw if the endpoint is not configured
+     */
+    public URI uri(ApiEndpoint endpoint) {
+        URI uri = uris.get(endpoint);
+        if (uri == null) {
+            throw new IllegalArgumentException(templates.containsKey(endpoint)
+                ? endpoint + " has variables, use expand"
+                : endpoint + " is not configured");
+        }
+        return uri;
+    }
+
+    /**
+     * Expands an endpoint with path variables and query parameters, in the order they appear in the template.
+     *
+     * @should expand and encode the query parameters
+     */
+    public URI expand(ApiEndpoint endpoint, Object... values) {
+        UriTemplate template = templates.get(endpoint);
+        if (template == null) {
+            throw new IllegalArgumentException(endpoint + " has no variables or is not configured");
+        }
+        return template.expand(values);
+    }
+}
@@ -0,0 +1,149 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.ResourceAccessException;
+import reactor.core.publisher.Mono;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import javax.annotation.Nullable;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Per-endpoint timeouts for idam-api calls, configured under {@code strategic.timeouts.endpoint} with the
+ * {@code strategic.endpoint} property names as keys and {@code strategic.timeouts.defaultTimeout} for the rest.
+ * A call made while serving a request gets the smaller of its endpoint timeout and what is left of the request
+ * budget as its socket read timeout, and is not made at all once the budget is spent. The read timeout bounds each
+ * wait for data rather than the call as a whole, so a response that keeps trickling in can still outlast it. Timeouts are counted as {@code idam.api.timeouts}
+ * tagged with the endpoint and the cause: {@code read} when idam-api did not answer in time, {@code budget} when
+ * the request budget ran out first.
+ */
+public class ApiTimeouts {
+
+    private final Map<ApiEndpoint, Long> timeoutMillis;
+
+    private final Map<ApiEndpoint, Counter> readTimeouts;
+
+    private final Map<ApiEndpoint, Counter> budgetTimeouts;
+
+    /**
+     * @should reject timeouts for unknown endpoints
+     */
+    public ApiTimeouts(StrategicConfigurationProperties.Timeouts properties, MeterRegistry meterRegistry) {
+        if (properties == null || !properties.isEnabled()) {
+            this.timeoutMillis = null;
+            this.readTimeouts = null;
+            this.budgetTimeouts = null;
+            return;
+        }
+        Map<String, Duration> configured = properties.getEndpoint() != null ? properties.getEndpoint() : Map.of();
+        Set<String> known = Arrays.stream(ApiEndpoint.values()).map(ApiEndpoint::getProperty).collect(Collectors.toSet());
+        Set<String> unknown = configured.keySet().stream().filter(key -> !known.contains(key)).collect(Collectors.toSet());
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("strategic.timeouts.endpoint has no endpoint named " + unknown);
+        }
+
+        this.timeoutMillis = new EnumMap<>(ApiEndpoint.class);
+        this.readTimeouts = new EnumMap<>(ApiEndpoint.class);
+        this.budgetTimeouts = new EnumMap<>(ApiEndpoint.class);
+        for (ApiEndpoint endpoint : ApiEndpoint.values()) {
+            timeoutMillis.put(endpoint, configured.getOrDefault(endpoint.getProperty(), properties.getDefaultTimeout()).toMillis());
+            readTimeouts.put(endpoint, timeouts(endpoint, "read", meterRegistry));
+            budgetTimeouts.put(endpoint, timeouts(endpoint, "budget", meterRegistry));
+        }
+    }
+
+    private static Counter timeouts(ApiEndpoint endpoint, String cause, MeterRegistry meterRegistry) {
+        return Counter.builder("idam.api.timeouts")
+            .description("Calls to idam-api that ran out of time")
+            .tag("endpoint", endpoint.getProperty())
+            .tag("cause", cause)
+            .register(meterRegistry);
+    }
+
+    /**
+     * @should run the call with the endpoint timeout
+     * @should cap the timeout at the remaining request budget
+     * @should fail fast with gateway timeout once the request budget is spent
+     * @should count read timeouts
+     * @should restore the previous timeout after the call
+     * @should run the call without a timeout when disabled
+     */
+    public <T> T call(ApiEndpoint endpoint, Supplier<T> call) {
+        if (timeoutMillis == null) {
+            return call.get();
+        }
+        long timeout = timeout(endpoint, ApiDeadline.remainingMillis());
+        Long previous = ApiDeadline.setCallTimeout(timeout);
+        try {
+            return call.get();
+        } catch (ResourceAccessException e) {
+            countReadTimeout(endpoint, e);
+            throw e;
+        } finally {
+            ApiDeadline.setCallTimeout(previous);
+        }
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #call(ApiEndpoint, Supplier)}. The call runs off the request thread, so the
+     * request deadline is passed in rather than read from the thread, the budget is checked on subscription and the
+     * timeout is handed to the call to apply to its own request; it is empty when per-endpoint timeouts are disabled.
+     *
+     * @should pass the endpoint timeout capped at the remaining request budget to the call
+     * @should fail with gateway timeout once the request budget is spent
+     * @should count read timeouts of non-blocking calls
+     */
+    public <T> Mono<T> call(ApiEndpoint endpoint, @Nullable Long requestDeadlineNanos,
+                            Function<OptionalLong, Mono<T>> call) {
+        if (timeoutMillis == null) {
+            return Mono.defer(() -> call.apply(OptionalLong.empty()));
+        }
+        return Mono.defer(() -> {
+            long timeout;
+            try {
+                timeout = timeout(endpoint, ApiDeadline.remainingMillis(requestDeadlineNanos));
+            } catch (ApiCallRejectedException e) {
+                return Mono.error(e);
+            }
+            return call.apply(OptionalLong.of(timeout))
+                .doOnError(ResourceAccessException.class, e -> countReadTimeout(endpoint, e));
+        });
+    }
+
+    private long timeout(ApiEndpoint endpoint, OptionalLong remaining) {
+        long timeout = timeoutMillis.get(endpoint);
+        if (remaining.isPresent()) {
+            if (remaining.getAsLong() <= 0) {
+                budgetTimeouts.get(endpoint).increment();
+                throw new ApiCallRejectedException(HttpStatus.GATEWAY_TIMEOUT,
+                    "request budget spent before calling idam-api " + endpoint.getProperty());
+            }
+            timeout = Math.min(timeout, remaining.getAsLong());
+        }
+        return timeout;
+    }
+
+    private void countReadTimeout(ApiEndpoint endpoint, ResourceAccessException e) {
+        if (e.getCause() instanceof SocketTimeoutException) {
+            readTimeouts.get(endpoint).increment();
+        }
+    }
+
+    /**
+     * Timeout configured for the endpoint, empty when per-endpoint timeouts are disabled.
+     */
+    public OptionalLong getTimeoutMillis(ApiEndpoint endpoint) {
+        return timeoutMillis == null ? OptionalLong.empty() : OptionalLong.of(timeoutMillis.get(endpoint));
+    }
+}
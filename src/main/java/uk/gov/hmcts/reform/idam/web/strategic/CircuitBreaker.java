@@ -0,0 +1,139 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count based circuit breaker. It opens once at least {@code minimumCalls} of the last {@code slidingWindowSize}
+ * calls have been recorded and the share of failures among them reaches {@code failureRateThreshold} percent. While
+ * open every call is refused; after {@code openDuration} a single trial call is let through and its outcome closes
+ * or re-opens the circuit.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final boolean[] window;
+
+    private final int minimumCalls;
+
+    private final int failureRateThreshold;
+
+    private final long openDurationNanos;
+
+    private final LongSupplier nanoTime;
+
+    private State state = State.CLOSED;
+
+    private int position;
+
+    private int calls;
+
+    private int failures;
+
+    private long openedAt;
+
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int slidingWindowSize, int minimumCalls, int failureRateThreshold, Duration openDuration) {
+        this(slidingWindowSize, minimumCalls, failureRateThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int slidingWindowSize, int minimumCalls, int failureRateThreshold, Duration openDuration,
+                   LongSupplier nanoTime) {
+        this.window = new boolean[slidingWindowSize];
+        this.minimumCalls = Math.min(minimumCalls, slidingWindowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @should permit calls while closed
+     * @should refuse calls while open
+     * @should permit a single trial call once the open duration has passed
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && nanoTime.getAsLong() - openedAt >= openDurationNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    /**
+     * Gives back a permit that was not used for a call, so a half-open circuit can let another trial through.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * @should close the circuit when the trial call succeeds
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * @should open the circuit once the failure rate reaches the threshold
+     * @should stay closed until the minimum number of calls has been recorded
+     * @should open the circuit again when the trial call fails
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (calls >= minimumCalls && failures * 100 >= failureRateThreshold * calls) {
+                open();
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (calls == window.length) {
+            if (window[position]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        window[position] = failure;
+        if (failure) {
+            failures++;
+        }
+        position = (position + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoTime.getAsLong();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        position = 0;
+        calls = 0;
+        failures = 0;
+    }
+}
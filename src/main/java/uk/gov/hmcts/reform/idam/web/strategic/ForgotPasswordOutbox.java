@@ -0,0 +1,418 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import uk.gov.hmcts.reform.idam.api.internal.model.ForgotPasswordDetails;
+import uk.gov.hmcts.reform.idam.web.config.ExecutorConfiguration;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Durable hand-off for forgot password requests. Requests are appended to a Redis stream on the session Redis and
+ * drained by a consumer group, so a request accepted by one instance is still sent if that instance goes away.
+ * Failed requests stay pending and are claimed again once {@code retryAfter} has passed; after {@code maxAttempts}
+ * deliveries, or on a 4xx from idam-api, they are moved to the dead letter stream.
+ *
+ * <p>Both streams hold email addresses, so neither is left to grow. Requests are deleted from the stream once sent or
+ * dead lettered, and each drain trims whatever is left below the group's oldest pending request, which needs Redis
+ * 6.2 or later. The stream is not capped by length, that would drop requests not sent yet. The dead letter stream is
+ * trimmed to about {@code deadLetterMaxLength} entries no older than {@code deadLetterRetention}.
+ *
+ * <p>Adding a request waits {@code enqueueTimeout} at most. If the add has not started by then it is dropped and
+ * {@link #enqueue} fails, so the caller can send the request directly instead. An add already under way is left to
+ * finish, and should it fail the outbox sends the request directly itself, so a slow Redis never gets a request sent
+ * both ways.
+ *
+ * <p>The outbox is disabled when there is no Redis connection factory, e.g. with {@code testing=true}.
+ */
+@Slf4j
+@Component
+public class ForgotPasswordOutbox implements SmartLifecycle {
+
+    static final String PAYLOAD = "payload";
+    static final String LANGUAGE = "language";
+
+    private final StrategicConfigurationProperties.ForgotPasswordOutbox properties;
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final ObjectProvider<SPIService> spiService;
+
+    private final ObjectMapper objectMapper;
+
+    private final Executor dispatchExecutor;
+
+    private final Executor enqueueExecutor;
+
+    private final String consumerName;
+
+    private final Counter enqueued;
+
+    private final Counter dispatched;
+
+    private final Counter failed;
+
+    private final Counter deadLettered;
+
+    private volatile boolean groupCreated;
+
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public ForgotPasswordOutbox(ObjectProvider<RedisConnectionFactory> connectionFactory,
+                                ConfigurationProperties configurationProperties,
+                                ObjectProvider<SPIService> spiService,
+                                ObjectMapper objectMapper,
+                                @Qualifier(ExecutorConfiguration.FORGOT_PASSWORD_EXECUTOR) Executor dispatchExecutor,
+                                @Qualifier(ExecutorConfiguration.FORGOT_PASSWORD_OUTBOX_EXECUTOR) Executor enqueueExecutor,
+                                @Nullable MeterRegistry meterRegistry) {
+        this(configurationProperties.getStrategic().getForgotPasswordOutbox(),
+            redisTemplate(connectionFactory.getIfUnique(), configurationProperties.getStrategic().getForgotPasswordOutbox()),
+            spiService, objectMapper, dispatchExecutor, enqueueExecutor,
+            meterRegistry != null ? meterRegistry : Metrics.globalRegistry);
+    }
+
+    ForgotPasswordOutbox(StrategicConfigurationProperties.ForgotPasswordOutbox properties,
+                         @Nullable StringRedisTemplate redisTemplate,
+                         ObjectProvider<SPIService> spiService,
+                         ObjectMapper objectMapper,
+                         Executor dispatchExecutor,
+                         Executor enqueueExecutor,
+                         MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.spiService = spiService;
+        this.objectMapper = objectMapper;
+        this.dispatchExecutor = dispatchExecutor;
+        this.enqueueExecutor = enqueueExecutor;
+        this.consumerName = Optional.ofNullable(System.getenv("HOSTNAME")).orElseGet(() -> UUID.randomUUID().toString());
+        this.enqueued = counter("enqueued", meterRegistry);
+        this.dispatched = counter("dispatched", meterRegistry);
+        this.failed = counter("failed", meterRegistry);
+        this.deadLettered = counter("dead.lettered", meterRegistry);
+    }
+
+    private static StringRedisTemplate redisTemplate(@Nullable RedisConnectionFactory connectionFactory,
+                                                     @Nullable StrategicConfigurationProperties.ForgotPasswordOutbox properties) {
+        if (connectionFactory == null || properties == null || !properties.isEnabled()) {
+            return null;
+        }
+        return new StringRedisTemplate(connectionFactory);
+    }
+
+    private static Counter counter(String name, MeterRegistry meterRegistry) {
+        return Counter.builder("idam.web.forgot.password.outbox." + name).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return redisTemplate != null;
+    }
+
+    /**
+     * Adds the request to the stream, or fails if it was not added and should be sent directly. Returns once the add
+     * is done, or once {@code enqueueTimeout} has passed with the add under way.
+     *
+     * @should add the request and language to the stream
+     * @should fail if the request could not be added within the enqueue timeout
+     * @should not add the request once the enqueue timed out
+     * @should send the request directly if an add that outlasted the timeout fails
+     * @should fail if too many requests are waiting to be added
+     */
+    public void enqueue(ForgotPasswordDetails details, String language) {
+        MapRecord<String, String, String> record;
+        try {
+            record = StreamRecords.newRecord()
+                .in(properties.getStream())
+                .ofMap(Map.of(PAYLOAD, objectMapper.writeValueAsString(details), LANGUAGE, language));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialise forgot password request", e);
+        }
+        // set by whichever comes first, the add starting or the caller giving up on it
+        AtomicBoolean started = new AtomicBoolean();
+        CompletableFuture<Void> add;
+        try {
+            add = CompletableFuture.runAsync(() -> {
+                if (started.compareAndSet(false, true)) {
+                    streamOperations().add(record);
+                }
+            }, enqueueExecutor);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Too many forgot password requests waiting to be added to the outbox", e);
+        }
+        try {
+            add.get(properties.getEnqueueTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            leaveOrAbandon(add, started, details, language,
+                new IllegalStateException("Timed out adding forgot password request to the outbox", e));
+            return;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not add forgot password request to the outbox", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            leaveOrAbandon(add, started, details, language,
+                new IllegalStateException("Interrupted adding forgot password request to the outbox", e));
+            return;
+        }
+        enqueued.increment();
+    }
+
+    /**
+     * Drops an add that has not started yet and throws {@code failure} so the caller sends the request. An add that
+     * has started may still land, so it is left to finish and the request is sent from here if it fails.
+     */
+    private void leaveOrAbandon(CompletableFuture<Void> add, AtomicBoolean started, ForgotPasswordDetails details,
+                                String language, IllegalStateException failure) {
+        if (started.compareAndSet(false, true)) {
+            throw failure;
+        }
+        log.warn("Adding forgot password request to the outbox is taking longer than {}", properties.getEnqueueTimeout());
+        add.whenComplete((result, e) -> {
+            if (e == null) {
+                enqueued.increment();
+                return;
+            }
+            log.warn("Could not add forgot password request to the outbox, sending it directly", e);
+            try {
+                spiService.getObject().sendForgotPassword(details, language);
+            } catch (RuntimeException sendFailure) {
+                log.error("Error sending forgot password request for client {}", details.getClientId(), sendFailure);
+            }
+        });
+    }
+
+    /**
+     * @should send new requests and remove them from the stream
+     * @should leave failed requests pending
+     * @should dead letter requests rejected by the api
+     * @should retry stale pending requests
+     * @should dead letter pending requests that reached the maximum attempts
+     * @should trim the stream below the oldest pending request
+     * @should trim the stream below the last delivered request when nothing is pending
+     * @should cap the dead letter stream
+     * @should remove dead letters older than the retention
+     */
+    void drain() {
+        try {
+            ensureGroup();
+            List<MapRecord<String, Object, Object>> records = new ArrayList<>(claimStale());
+            records.addAll(Optional.ofNullable(streamOperations().read(
+                Consumer.from(properties.getConsumerGroup(), consumerName),
+                StreamReadOptions.empty().count(properties.getBatchSize()),
+                StreamOffset.create(properties.getStream(), ReadOffset.lastConsumed()))).orElse(List.of()));
+
+            CompletableFuture.allOf(records.stream()
+                .map(record -> CompletableFuture.runAsync(() -> dispatch(record), dispatchExecutor))
+                .toArray(CompletableFuture[]::new)).join();
+        } catch (RuntimeException e) {
+            log.warn("Could not drain the forgot password outbox: {}", e.getMessage());
+        }
+        try {
+            trim();
+        } catch (RuntimeException e) {
+            log.warn("Could not trim the forgot password outbox: {}", e.getMessage());
+        }
+    }
+
+    private void trim() {
+        trimDelivered();
+        streamOperations().trim(properties.getDeadLetterStream(), properties.getDeadLetterMaxLength(), true);
+
+        // stream ids start with the time they were added at
+        long cutoff = System.currentTimeMillis() - properties.getDeadLetterRetention().toMillis();
+        RecordId[] expired = Optional.ofNullable(streamOperations().range(properties.getDeadLetterStream(),
+                Range.leftUnbounded(Range.Bound.inclusive(cutoff + "-0")),
+                RedisZSetCommands.Limit.limit().count(properties.getBatchSize())))
+            .orElse(List.of()).stream()
+            .map(MapRecord::getId)
+            .toArray(RecordId[]::new);
+        if (expired.length > 0) {
+            streamOperations().delete(properties.getDeadLetterStream(), expired);
+        }
+    }
+
+    /**
+     * Removes the entries before the oldest pending one, or before the last delivered one when nothing is pending.
+     * Those were all read and acknowledged, so this only clears entries whose delete did not go through, never one
+     * that is still to be sent.
+     */
+    private void trimDelivered() {
+        PendingMessagesSummary pending = streamOperations().pending(properties.getStream(), properties.getConsumerGroup());
+        String minId = pending != null && pending.getTotalPendingMessages() > 0
+            ? pending.minMessageId()
+            : lastDeliveredId();
+        if (minId == null) {
+            return;
+        }
+        // spring-data-redis has no XTRIM MINID
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("XTRIM",
+            bytes(properties.getStream()), bytes("MINID"), bytes(minId)));
+    }
+
+    @Nullable
+    private String lastDeliveredId() {
+        StreamInfo.XInfoGroups groups = streamOperations().groups(properties.getStream());
+        if (groups == null) {
+            return null;
+        }
+        return groups.stream()
+            .filter(group -> properties.getConsumerGroup().equals(group.groupName()))
+            .map(StreamInfo.XInfoGroup::lastDeliveredId)
+            .findFirst()
+            .orElse(null);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void ensureGroup() {
+        if (groupCreated) {
+            return;
+        }
+        try {
+            streamOperations().createGroup(properties.getStream(), ReadOffset.from("0"), properties.getConsumerGroup());
+        } catch (RedisSystemException e) {
+            if (!isBusyGroup(e)) {
+                throw e;
+            }
+        }
+        groupCreated = true;
+    }
+
+    private static boolean isBusyGroup(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("BUSYGROUP")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<MapRecord<String, Object, Object>> claimStale() {
+        List<RecordId> retries = new ArrayList<>();
+        for (PendingMessage message : streamOperations().pending(properties.getStream(), properties.getConsumerGroup(),
+            Range.unbounded(), (long) properties.getBatchSize())) {
+            if (message.getElapsedTimeSinceLastDelivery().compareTo(properties.getRetryAfter()) < 0) {
+                continue;
+            }
+            if (message.getTotalDeliveryCount() >= properties.getMaxAttempts()) {
+                log.error("Giving up on forgot password request {} after {} attempts", message.getId(), message.getTotalDeliveryCount());
+                deadLetter(message.getId());
+            } else {
+                retries.add(message.getId());
+            }
+        }
+        if (retries.isEmpty()) {
+            return List.of();
+        }
+        return streamOperations().claim(properties.getStream(), properties.getConsumerGroup(), consumerName,
+            properties.getRetryAfter(), retries.toArray(new RecordId[0]));
+    }
+
+    private void dispatch(MapRecord<String, Object, Object> record) {
+        try {
+            ForgotPasswordDetails details = objectMapper.readValue((String) record.getValue().get(PAYLOAD), ForgotPasswordDetails.class);
+            spiService.getObject().sendForgotPassword(details, (String) record.getValue().get(LANGUAGE));
+            remove(record.getId());
+            dispatched.increment();
+        } catch (JsonProcessingException | HttpClientErrorException e) {
+            log.error("Forgot password request {} cannot be sent", record.getId(), e);
+            deadLetter(record.getId());
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.warn("Forgot password request {} failed and will be retried", record.getId(), e);
+        }
+    }
+
+    private void deadLetter(RecordId id) {
+        streamOperations().range(properties.getStream(), Range.closed(id.getValue(), id.getValue()))
+            .forEach(record -> streamOperations().add(StreamRecords.newRecord()
+                .in(properties.getDeadLetterStream())
+                .ofMap(record.getValue())));
+        remove(id);
+        deadLettered.increment();
+    }
+
+    private void remove(RecordId id) {
+        streamOperations().acknowledge(properties.getStream(), properties.getConsumerGroup(), id);
+        streamOperations().delete(properties.getStream(), id);
+    }
+
+    private StreamOperations<String, Object, Object> streamOperations() {
+        return redisTemplate.opsForStream();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!isEnabled() || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("forgot-password-outbox-%d").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(this::drain, 0, properties.getPollInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(properties.getPollInterval().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+}
@@ -0,0 +1,229 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.i18n.LocaleContextHolder;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Hedging for idempotent idam-api reads, configured by {@code strategic.hedging}. The call is sent once and, if it
+ * has not come back after the {@code percentile} latency recently seen for the endpoint (never less than
+ * {@code minDelay}), sent a second time; whichever answers first wins. Hedges are capped at {@code budgetPercent}
+ * of the recent calls, see {@link HedgeBudget}, so a slow idam-api does not get twice the load. The losing call is
+ * left to finish, its result is dropped. Counted as {@code idam.api.hedge.fired} and {@code idam.api.hedge.won}
+ * tagged with the endpoint.
+ */
+public class HedgedRequests {
+
+    static final int WINDOW_SIZE = 128;
+
+    static final int MAX_HEDGE_TOKENS = 10;
+
+    private final Map<ApiEndpoint, EndpointHedging> endpoints;
+
+    private final Executor executor;
+
+    private final double percentile;
+
+    private final long minDelayNanos;
+
+    private final LongSupplier nanoTime;
+
+    public HedgedRequests(StrategicConfigurationProperties.Hedging properties, MeterRegistry meterRegistry, Executor executor) {
+        this(properties, meterRegistry, executor, System::nanoTime);
+    }
+
+    HedgedRequests(StrategicConfigurationProperties.Hedging properties, MeterRegistry meterRegistry, Executor executor,
+                   LongSupplier nanoTime) {
+        this.executor = executor;
+        this.percentile = properties.getPercentile();
+        this.minDelayNanos = properties.getMinDelay().toNanos();
+        this.nanoTime = nanoTime;
+        this.endpoints = new EnumMap<>(ApiEndpoint.class);
+        for (ApiEndpoint endpoint : ApiEndpoint.values()) {
+            endpoints.put(endpoint, new EndpointHedging(endpoint, properties.getBudgetPercent(), meterRegistry));
+        }
+    }
+
+    /**
+     * @should return the first call result without hedging when it is fast enough
+     * @should not hedge before enough latencies have been recorded
+     * @should hedge a slow call and return the hedge result if it answers first
+     * @should return the first call result if it answers before the hedge
+     * @should not hedge once the budget is spent
+     * @should rethrow the failure when every call fails
+     * @should pass the call timeout and locale to the calls
+     */
+    public <T> T call(ApiEndpoint endpoint, Supplier<T> call) {
+        EndpointHedging hedging = endpoints.get(endpoint);
+        hedging.budget.onCall();
+
+        Long callTimeout = ApiDeadline.callTimeoutMillis().isPresent() ? ApiDeadline.callTimeoutMillis().getAsLong() : null;
+        Locale locale = LocaleContextHolder.getLocale();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        attempt(hedging, call, callTimeout, locale, result, pending, false);
+
+        long delay = hedging.delayNanos();
+        if (delay >= 0) {
+            try {
+                return result.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (hedging.tryHedge()) {
+                    pending.incrementAndGet();
+                    attempt(hedging, call, callTimeout, locale, result, pending, true);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for idam-api", e);
+            } catch (ExecutionException e) {
+                // rethrown below
+            }
+        }
+        return unwrap(result);
+    }
+
+    private <T> void attempt(EndpointHedging hedging, Supplier<T> call, Long callTimeout, Locale locale,
+                             CompletableFuture<T> result, AtomicInteger pending, boolean hedge) {
+        CompletableFuture.runAsync(() -> {
+            Long previousTimeout = ApiDeadline.setCallTimeout(callTimeout);
+            Locale previousLocale = LocaleContextHolder.getLocale();
+            LocaleContextHolder.setLocale(locale);
+            long start = nanoTime.getAsLong();
+            try {
+                T value = call.get();
+                hedging.record(nanoTime.getAsLong() - start);
+                if (result.complete(value) && hedge) {
+                    hedging.won.increment();
+                }
+            } catch (RuntimeException | Error e) {
+                if (pending.decrementAndGet() == 0) {
+                    result.completeExceptionally(e);
+                }
+            } finally {
+                ApiDeadline.setCallTimeout(previousTimeout);
+                LocaleContextHolder.setLocale(previousLocale);
+            }
+        }, executor);
+    }
+
+    private static <T> T unwrap(CompletableFuture<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for idam-api", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private class EndpointHedging {
+
+        private final long[] latencies = new long[WINDOW_SIZE];
+
+        private final HedgeBudget budget;
+
+        private final Counter fired;
+
+        private final Counter won;
+
+        private int position;
+
+        private int recorded;
+
+        private volatile long delayNanos = -1;
+
+        EndpointHedging(ApiEndpoint endpoint, int budgetPercent, MeterRegistry meterRegistry) {
+            this.budget = new HedgeBudget(budgetPercent);
+            this.fired = Counter.builder("idam.api.hedge.fired")
+                .description("Second calls sent to idam-api because the first was slow")
+                .tag("endpoint", endpoint.getProperty())
+                .register(meterRegistry);
+            this.won = Counter.builder("idam.api.hedge.won")
+                .description("Second calls to idam-api that answered before the first")
+                .tag("endpoint", endpoint.getProperty())
+                .register(meterRegistry);
+        }
+
+        /**
+         * Delay before hedging, -1 until enough latencies have been seen.
+         */
+        long delayNanos() {
+            return delayNanos;
+        }
+
+        boolean tryHedge() {
+            if (!budget.tryAcquire()) {
+                return false;
+            }
+            fired.increment();
+            return true;
+        }
+
+        synchronized void record(long latencyNanos) {
+            latencies[position] = latencyNanos;
+            position = (position + 1) % WINDOW_SIZE;
+            recorded = Math.min(recorded + 1, WINDOW_SIZE);
+            // recompute every few samples rather than sorting on every call
+            if (recorded >= WINDOW_SIZE / 4 && position % 8 == 0) {
+                long[] sorted = Arrays.copyOf(latencies, recorded);
+                Arrays.sort(sorted);
+                int index = (int) Math.min(recorded - 1, Math.ceil(percentile * recorded) - 1);
+                delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, index)]);
+            }
+        }
+    }
+
+    /**
+     * Token bucket for the hedges of one endpoint: every call adds {@code budgetPercent / 100} of a token, up to
+     * {@value #MAX_HEDGE_TOKENS}, and every hedge takes a whole one. The allowance follows the recent calls, a long
+     * quiet spell does not save up hedges for a burst of slow calls.
+     */
+    static class HedgeBudget {
+
+        // in hundredths of a token
+        private final int perCall;
+
+        private int tokens;
+
+        HedgeBudget(int budgetPercent) {
+            this.perCall = budgetPercent;
+        }
+
+        synchronized void onCall() {
+            tokens = Math.min(MAX_HEDGE_TOKENS * 100, tokens + perCall);
+        }
+
+        /**
+         * @should allow one hedge per budget share of calls
+         * @should not save up more than the maximum tokens
+         */
+        synchronized boolean tryAcquire() {
+            if (tokens < 100) {
+                return false;
+            }
+            tokens -= 100;
+            return true;
+        }
+    }
+}
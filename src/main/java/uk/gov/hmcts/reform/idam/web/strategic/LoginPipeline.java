@@ -0,0 +1,116 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import uk.gov.hmcts.reform.idam.web.helper.StageTimer;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The upstream calls behind a password login: authenticate against idam-api and, unless the user still has to
+ * complete an OTP challenge, authorize with the cookies it returned. Both calls run through the pooled RestTemplate
+ * on the calling thread, so the authorize call picks up the keep-alive connection the authenticate call released.
+ * Each call is timed as a stage of the current login flow by {@link StageTimer}.
+ * With {@code features.reactive-spi-service} on, {@link #loginReactive} makes the same calls through
+ * {@link ReactiveSPIService} without holding the request thread.
+ */
+@Component
+public class LoginPipeline {
+
+    private final SPIService spiService;
+
+    private final StageTimer stageTimer;
+
+    private final ReactiveSPIService reactiveSPIService;
+
+    public LoginPipeline(SPIService spiService, StageTimer stageTimer) {
+        this(spiService, stageTimer, null);
+    }
+
+    @Autowired
+    public LoginPipeline(SPIService spiService, StageTimer stageTimer, @Nullable ReactiveSPIService reactiveSPIService) {
+        this.spiService = spiService;
+        this.stageTimer = stageTimer;
+        this.reactiveSPIService = reactiveSPIService;
+    }
+
+    /**
+     * Whether logins should go through {@link #loginReactive}.
+     */
+    public boolean isReactive() {
+        return reactiveSPIService != null;
+    }
+
+    /**
+     * @should authorize with the authentication cookies if authentication succeeds
+     * @should not authorize if mfa is required
+     * @should not authorize if authentication fails
+     * @should record the time spent in each stage
+     */
+    public LoginResult login(final String username, final String password, final String redirectUri,
+                             final String ipAddress, final Map<String, String> authorizeParams) {
+        final ApiAuthResult authentication = stageTimer.time("authenticate",
+            () -> spiService.authenticate(username, password, redirectUri, ipAddress));
+
+        String responseUrl = null;
+        if (shouldAuthorize(authentication)) {
+            responseUrl = authorize(authorizeParams, authentication.getCookies());
+        }
+        return new LoginResult(authentication, responseUrl);
+    }
+
+    /**
+     * Non-blocking {@link #login}. The calls complete off the request thread, so their stages are recorded against
+     * the request passed in, which must have been started by {@link StageTimer#begin} to be timed.
+     *
+     * @should authorize with the authentication cookies if authentication succeeds
+     * @should not authorize if mfa is required
+     * @should complete without a response url if authorize does not redirect
+     * @should record the time spent in each stage
+     */
+    public Mono<LoginResult> loginReactive(final String username, final String password, final String redirectUri,
+                                           final String ipAddress, final Map<String, String> authorizeParams,
+                                           final HttpServletRequest request) {
+        if (reactiveSPIService == null) {
+            throw new IllegalStateException("features.reactive-spi-service is off");
+        }
+        return timed(request, "authenticate", reactiveSPIService.authenticate(username, password, redirectUri, ipAddress))
+            .flatMap(authentication -> shouldAuthorize(authentication)
+                ? timed(request, "authorize", reactiveSPIService.authorize(authorizeParams, authentication.getCookies()))
+                    .map(responseUrl -> new LoginResult(authentication, responseUrl))
+                    .defaultIfEmpty(new LoginResult(authentication, null))
+                : Mono.just(new LoginResult(authentication, null)))
+            .contextWrite(reactiveSPIService.requestContext());
+    }
+
+    private static boolean shouldAuthorize(ApiAuthResult authentication) {
+        return authentication.isSuccess() && authentication.getCookies() != null && !authentication.requiresMfa();
+    }
+
+    private <T> Mono<T> timed(HttpServletRequest request, String stage, Mono<T> work) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return work.doFinally(signal -> stageTimer.record(request, stage, System.nanoTime() - start));
+        });
+    }
+
+    public String authorize(final Map<String, String> authorizeParams, final List<String> cookies) {
+        return stageTimer.time("authorize", () -> spiService.authorize(authorizeParams, cookies));
+    }
+
+    @Value
+    public static class LoginResult {
+
+        ApiAuthResult authentication;
+
+        /**
+         * Location returned by the authorize call, null if it was not made or did not redirect.
+         */
+        String responseUrl;
+    }
+}
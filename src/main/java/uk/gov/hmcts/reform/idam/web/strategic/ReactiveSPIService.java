@@ -0,0 +1,532 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.timeout.ReadTimeoutException;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.util.context.Context;
+import uk.gov.hmcts.reform.idam.api.internal.model.ActivationResult;
+import uk.gov.hmcts.reform.idam.api.internal.model.ArrayOfServices;
+import uk.gov.hmcts.reform.idam.api.internal.model.ErrorResponse;
+import uk.gov.hmcts.reform.idam.api.internal.model.ForgotPasswordDetails;
+import uk.gov.hmcts.reform.idam.api.internal.model.ResetPasswordRequest;
+import uk.gov.hmcts.reform.idam.api.internal.model.ValidateRequest;
+import uk.gov.hmcts.reform.idam.api.shared.model.User;
+import uk.gov.hmcts.reform.idam.web.config.WebClientConfiguration;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.health.HealthCheckStatus;
+import uk.gov.hmcts.reform.idam.web.model.RegisterUserRequest;
+import uk.gov.hmcts.reform.idam.web.model.SelfRegisterRequest;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.netflix.zuul.constants.ZuulHeaders.X_FORWARDED_FOR;
+import static uk.gov.hmcts.reform.idam.web.helper.ErrorHelper.restException;
+
+/**
+ * Non-blocking counterpart of {@link SPIService} on {@link WebClient}, used for password logins when
+ * {@code features.reactive-spi-service} is on, see {@link LoginPipeline}.
+ *
+ * <p>Every method mirrors the {@link SPIService} method of the same name and keeps its contract: error responses are
+ * raised as {@link HttpClientErrorException} or {@link HttpServerErrorException}, I/O errors as
+ * {@link ResourceAccessException}, and what {@link SPIService} returns as {@code null} or {@code Optional.empty()}
+ * completes the {@link Mono} empty. Each call goes through the same {@link ApiCallMetrics}, {@link ApiTimeouts} and
+ * {@link ApiCallGuard} as {@link SPIService}'s, so both clients share circuit breakers, concurrency limits and meters.
+ * There is no hedging, single flight or service cache on this path.
+ *
+ * <p>The locale, forwarded headers and request deadline of the incoming request are captured when a method is called,
+ * so call it on the request thread, or write {@link #requestContext()} into the subscriber context when chaining
+ * calls that are made off it.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty("features.reactive-spi-service")
+public class ReactiveSPIService {
+
+    private final WebClient webClient;
+
+    private final SPIService spiService;
+
+    private final ConfigurationProperties configurationProperties;
+
+    private final ObjectMapper objectMapper;
+
+    private final ApiEndpointRegistry endpoints;
+
+    private final ApiCallGuard apiCallGuard;
+
+    private final ApiTimeouts apiTimeouts;
+
+    private final ApiCallMetrics apiCallMetrics;
+
+    @Autowired
+    public ReactiveSPIService(@Qualifier(WebClientConfiguration.IDAM_API_WEB_CLIENT) WebClient webClient, SPIService spiService,
+                              ConfigurationProperties configurationProperties, ObjectMapper objectMapper) {
+        this.webClient = webClient;
+        this.spiService = spiService;
+        this.configurationProperties = configurationProperties;
+        this.objectMapper = objectMapper;
+        this.endpoints = spiService.getEndpoints();
+        this.apiCallGuard = spiService.getApiCallGuard();
+        this.apiTimeouts = spiService.getApiTimeouts();
+        this.apiCallMetrics = spiService.getApiCallMetrics();
+    }
+
+    /**
+     * The request scoped values the calls need, captured from the current request, for
+     * {@link Mono#contextWrite(reactor.util.context.ContextView)}.
+     */
+    public Context requestContext() {
+        return Context.of(RequestScope.class, RequestScope.current());
+    }
+
+    public Mono<ResponseEntity<ActivationResult>> validateActivationToken(final ValidateRequest activationJson) {
+        return withScope(scope -> call("validateActivationToken", ApiEndpoint.VALIDATE_ACTIVATION_TOKEN, scope,
+            timeout -> apiRequest(HttpMethod.POST, endpoints.uri(ApiEndpoint.VALIDATE_ACTIVATION_TOKEN), MediaType.APPLICATION_JSON, scope, timeout)
+                .bodyValue(activationJson)
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toEntity(ActivationResult.class)));
+    }
+
+    public Mono<ResponseEntity<ActivationResult>> activateUser(final String activationJson) {
+        return withScope(scope -> call("activateUser", ApiEndpoint.ACTIVATION, scope,
+            timeout -> apiRequest(HttpMethod.PATCH, endpoints.uri(ApiEndpoint.ACTIVATION), MediaType.APPLICATION_JSON, scope, timeout)
+                .bodyValue(activationJson)
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toEntity(ActivationResult.class)));
+    }
+
+    public Mono<String> uplift(final String username, final String password, final String jwt, final String redirectUri,
+                               final String clientId, final String state, final String scope) {
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>(7);
+        form.add("userName", username);
+        form.add("password", password);
+        form.add("jwt", jwt);
+        form.add("redirectUri", redirectUri);
+        form.add("clientId", clientId);
+        form.add("state", state);
+        form.add("scope", scope);
+
+        return withScope(requestScope -> call("uplift", ApiEndpoint.UPLIFT, requestScope,
+            timeout -> apiRequest(HttpMethod.POST, endpoints.uri(ApiEndpoint.UPLIFT), MediaType.APPLICATION_FORM_URLENCODED, requestScope, timeout)
+                .body(BodyInserters.fromFormData(form))
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toEntity(String.class)))
+            .flatMap(response -> {
+                if (response.getStatusCode().is2xxSuccessful()) {
+                    return Mono.justOrEmpty(response.getBody());
+                } else if (response.getStatusCode() == HttpStatus.FOUND) {
+                    return location(response);
+                }
+                return Mono.empty();
+            });
+    }
+
+    public Mono<ApiAuthResult> authenticate(final String username, final String password, final String redirectUri, final String ipAddress) {
+        return authenticate(username, password, null, redirectUri, ipAddress);
+    }
+
+    public Mono<ApiAuthResult> authenticate(final String tokenId, final String redirectUri, final String ipAddress) {
+        return authenticate(null, null, tokenId, redirectUri, ipAddress);
+    }
+
+    /**
+     * @should return the cookies and require mfa if an Idam.AuthId cookie is returned
+     * @should return the error code if api responds with 401
+     * @should raise other error responses as exceptions
+     */
+    protected Mono<ApiAuthResult> authenticate(final String username, final String password, final String tokenId,
+                                               final String redirectUri, final String ipAddress) {
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>(4);
+        if (username != null) {
+            form.add("username", username);
+        }
+        if (password != null) {
+            form.add("password", password);
+        }
+        form.add("redirectUri", redirectUri);
+        form.add("originIp", ipAddress);
+
+        return withScope(scope -> call("authenticate", ApiEndpoint.AUTHORIZE, scope,
+            timeout -> apiRequest(HttpMethod.POST, endpoints.uri(ApiEndpoint.AUTHORIZE), MediaType.APPLICATION_FORM_URLENCODED, scope, timeout)
+                .headers(headers -> {
+                    headers.add(X_FORWARDED_FOR, ipAddress);
+                    if (tokenId != null) {
+                        headers.add(HttpHeaders.COOKIE, configurationProperties.getStrategic().getSession().getIdamSessionCookie() + "=" + tokenId);
+                    }
+                })
+                .body(BodyInserters.fromFormData(form))
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toBodilessEntity()))
+            .map(response -> {
+                final ApiAuthResult.ApiAuthResultBuilder resultBuilder = ApiAuthResult.builder().httpStatus(response.getStatusCode());
+                // check if already logged in or if requires MFA
+                if (response.getStatusCode() == HttpStatus.OK) {
+                    final List<String> cookies = response.getHeaders().getOrEmpty(HttpHeaders.SET_COOKIE);
+                    final boolean requiresMfa = cookies.stream().anyMatch(cookie -> cookie.startsWith("Idam.AuthId"));
+                    resultBuilder.cookies(new ArrayList<>(cookies))
+                        .policiesAction(requiresMfa ? EvaluatePoliciesAction.MFA_REQUIRED : EvaluatePoliciesAction.ALLOW);
+                }
+                return resultBuilder.build();
+            })
+            .onErrorResume(HttpStatusCodeException.class, he -> {
+                HttpStatus httpStatus = he.getStatusCode();
+                if (httpStatus == HttpStatus.FORBIDDEN || httpStatus == HttpStatus.UNAUTHORIZED || httpStatus == HttpStatus.NOT_FOUND) {
+                    ErrorResponse errorResponse = spiService.getErrorResponse(he.getResponseBodyAsString());
+                    return Mono.just(ApiAuthResult.builder()
+                        .httpStatus(httpStatus)
+                        .errorCode(errorResponse.getCode())
+                        .errorInfo(errorResponse.getInfo())
+                        .build());
+                }
+                return Mono.error(he);
+            });
+    }
+
+    /**
+     * @should return location in header in api response if response code is 302
+     * @should complete empty if api response code is not 302
+     * @should send the forwarded headers of the request it was called on
+     */
+    public Mono<String> authorize(final Map<String, String> params, final List<String> cookies) {
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>(14);
+        params.forEach(form::add);
+        final String oidcPrefix = configurationProperties.getStrategic().getService().getOidcprefix();
+
+        return withScope(scope -> call("authorize", ApiEndpoint.AUTHORIZE_OAUTH2, scope,
+            timeout -> apiRequest(HttpMethod.POST, endpoints.uri(ApiEndpoint.AUTHORIZE_OAUTH2), MediaType.APPLICATION_FORM_URLENCODED, scope, timeout)
+                .headers(headers -> {
+                    if (cookies != null) {
+                        headers.add(HttpHeaders.COOKIE, StringUtils.join(cookies, ";"));
+                    }
+                    if (scope.getForwardedHost() != null) {
+                        headers.add("x-forwarded-proto", scope.getForwardedProto());
+                        headers.add("x-forwarded-host", scope.getForwardedHost());
+                        headers.add("x-forwarded-prefix", oidcPrefix);
+                    }
+                })
+                .body(BodyInserters.fromFormData(form))
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toBodilessEntity()))
+            .flatMap(response -> response.getStatusCode() == HttpStatus.FOUND ? location(response) : Mono.empty());
+    }
+
+    public Mono<List<String>> submitOtpeAuthentication(@NotNull final String authId, final String ipAddress,
+                                                       @Nullable final String otp) {
+        final MultiValueMap<String, String> form = new LinkedMultiValueMap<>(3);
+        form.add("service", "otpe");
+        form.add("authId", authId);
+        if (otp != null) {
+            form.add("otp", otp);
+        }
+
+        return withScope(scope -> call("submitOtpeAuthentication", ApiEndpoint.AUTHORIZE, scope,
+            timeout -> apiRequest(HttpMethod.POST, endpoints.uri(ApiEndpoint.AUTHORIZE), MediaType.APPLICATION_FORM_URLENCODED, scope, timeout)
+                .headers(headers -> headers.add(X_FORWARDED_FOR, ipAddress))
+                .body(BodyInserters.fromFormData(form))
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toBodilessEntity()))
+            .flatMap(response -> response.getHeaders().containsKey(HttpHeaders.SET_COOKIE)
+                ? Mono.just(new ArrayList<>(response.getHeaders().getOrEmpty(HttpHeaders.SET_COOKIE)))
+                : Mono.empty());
+    }
+
+    /**
+     * @should fail with bad credentials if api does not respond with 302
+     */
+    public Mono<String> loginWithPin(final String pin, final String redirectUri, final String state, final String clientId) {
+        URI requestUrl = StringUtils.isNotEmpty(state)
+            ? endpoints.expand(ApiEndpoint.LOGIN_WITH_PIN_AND_STATE, redirectUri, clientId, state)
+            : endpoints.expand(ApiEndpoint.LOGIN_WITH_PIN, redirectUri, clientId);
+
+        return withScope(scope -> call("loginWithPin", ApiEndpoint.LOGIN_WITH_PIN, scope,
+            timeout -> apiRequest(HttpMethod.GET, requestUrl, MediaType.APPLICATION_JSON, scope, timeout)
+                .headers(headers -> headers.add("pin", pin)) //NOSONAR
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toBodilessEntity()))
+            .flatMap(response -> response.getStatusCode() == HttpStatus.FOUND
+                ? location(response)
+                : Mono.error(new BadCredentialsException(response.getStatusCode().toString())));
+    }
+
+    /**
+     * Completes with 202 without waiting for idam-api, as {@link SPIService#forgetPassword(String, String, String)}
+     * does: the request goes to the outbox if it is enabled, which blocks for at most the outbox's enqueue timeout,
+     * and is otherwise sent in the background.
+     *
+     * @should send the request in the background and complete with accepted
+     */
+    public Mono<ResponseEntity<String>> forgetPassword(final String email, final String redirectUri, final String clientId) {
+        ForgotPasswordDetails details = new ForgotPasswordDetails()
+            .email(email)
+            .redirectUri(redirectUri)
+            .clientId(clientId);
+
+        return withScope(scope -> {
+            if (!spiService.enqueueForgotPassword(details, scope.getLanguage())) {
+                sendForgotPassword(details, scope).subscribe(
+                    response -> log.debug("Forgot password request accepted with status {}", response.getStatusCode()),
+                    e -> log.error("Error sending forgot password request for client {}", clientId, e));
+            }
+            return Mono.just(new ResponseEntity<>(HttpStatus.ACCEPTED));
+        });
+    }
+
+    private Mono<ResponseEntity<Void>> sendForgotPassword(final ForgotPasswordDetails details, final RequestScope scope) {
+        return call("sendForgotPassword", ApiEndpoint.FORGOT_PASSWORD, scope,
+            timeout -> apiRequest(HttpMethod.POST, endpoints.uri(ApiEndpoint.FORGOT_PASSWORD), MediaType.APPLICATION_JSON, scope, timeout)
+                .bodyValue(details)
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toBodilessEntity());
+    }
+
+    public Mono<ResponseEntity<String>> validateResetPasswordToken(final String token, final String code) {
+        return withScope(scope -> call("validateResetPasswordToken", ApiEndpoint.VALIDATE_RESET_PASSWORD_TOKEN, scope,
+            timeout -> apiRequest(HttpMethod.POST, endpoints.uri(ApiEndpoint.VALIDATE_RESET_PASSWORD_TOKEN), MediaType.APPLICATION_JSON, scope, timeout)
+                .headers(headers -> {
+                    headers.add("token", token); //NOSONAR
+                    headers.add("code", code); //NOSONAR
+                })
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toEntity(String.class)));
+    }
+
+    public Mono<ResponseEntity<String>> resetPassword(final String password, final String token, final String code) {
+        ResetPasswordRequest request = new ResetPasswordRequest();
+        request.setPassword(password);
+        request.setToken(token);
+        request.setCode(code);
+
+        return withScope(scope -> call("resetPassword", ApiEndpoint.RESET_PASSWORD, scope,
+            timeout -> apiRequest(HttpMethod.POST, endpoints.uri(ApiEndpoint.RESET_PASSWORD), MediaType.APPLICATION_JSON, scope, timeout)
+                .bodyValue(request)
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toEntity(String.class)));
+    }
+
+    public Mono<ResponseEntity<String>> registerUser(RegisterUserRequest registerUserRequest) {
+        uk.gov.hmcts.reform.idam.api.shared.model.SelfRegisterRequest request = new uk.gov.hmcts.reform.idam.api.shared.model.SelfRegisterRequest();
+        request.setFirstName(registerUserRequest.getFirstName());
+        request.setLastName(registerUserRequest.getLastName());
+        request.setEmail(registerUserRequest.getUsername());
+        request.setClientId(registerUserRequest.getClient_id());
+        request.setRedirectUri(registerUserRequest.getRedirect_uri());
+        request.setState(registerUserRequest.getState());
+
+        return withScope(scope -> call("registerUser", ApiEndpoint.SELF_REGISTER_USER, scope,
+            timeout -> apiRequest(HttpMethod.POST, endpoints.expand(ApiEndpoint.SELF_REGISTER_USER, registerUserRequest.getJwt()), MediaType.APPLICATION_JSON, scope, timeout)
+                .bodyValue(request)
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toEntity(String.class)));
+    }
+
+    public Mono<ResponseEntity<String>> selfRegisterUser(SelfRegisterRequest selfRegisterRequest) {
+        final String body;
+        try {
+            body = objectMapper.writeValueAsString(selfRegisterRequest);
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+        return withScope(scope -> call("selfRegisterUser", ApiEndpoint.SELF_REGISTRATION, scope,
+            timeout -> apiRequest(HttpMethod.POST, endpoints.uri(ApiEndpoint.SELF_REGISTRATION), MediaType.APPLICATION_JSON, scope, timeout)
+                .bodyValue(body)
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toEntity(String.class)));
+    }
+
+    public Mono<ResponseEntity<HealthCheckStatus>> healthCheck() {
+        return withScope(scope -> call("healthCheck", ApiEndpoint.HEALTH, scope,
+            timeout -> apiRequest(HttpMethod.GET, endpoints.uri(ApiEndpoint.HEALTH), null, scope, timeout)
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toEntity(HealthCheckStatus.class)));
+    }
+
+    /**
+     * @should complete empty if any exception occurs
+     */
+    public Mono<User> getDetails(String token) {
+        return withScope(scope -> call("getDetails", ApiEndpoint.DETAILS, scope,
+            timeout -> apiRequest(HttpMethod.GET, endpoints.uri(ApiEndpoint.DETAILS), MediaType.APPLICATION_JSON, scope, timeout)
+                .headers(headers -> headers.add("authorization", token)) //NOSONAR
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toEntity(User.class)))
+            .flatMap(response -> Mono.justOrEmpty(response.getBody()))
+            .onErrorResume(e -> {
+                log.error("Error getting User Details", e);
+                return Mono.empty();
+            });
+    }
+
+    /**
+     * @should return the first service returned by the api
+     * @should complete empty if api returns no services
+     */
+    public Mono<uk.gov.hmcts.reform.idam.api.internal.model.Service> getServiceByClientId(String clientId) {
+        return withScope(scope -> call("getServiceByClientId", ApiEndpoint.SERVICES, scope,
+            timeout -> apiRequest(HttpMethod.GET, endpoints.expand(ApiEndpoint.SERVICES, clientId), null, scope, timeout)
+                .retrieve()
+                .onStatus(HttpStatus::isError, ReactiveSPIService::toRestException)
+                .toEntity(ArrayOfServices.class)))
+            .flatMap(response -> {
+                final ArrayOfServices services = response.getBody();
+                return services == null || services.isEmpty() ? Mono.empty() : Mono.just(services.get(0));
+            });
+    }
+
+    /**
+     * Runs the call with the request scope written into the subscriber context, or else the one of the request this
+     * method was called on.
+     */
+    private static <T> Mono<T> withScope(Function<RequestScope, Mono<T>> call) {
+        final RequestScope captured = RequestScope.current();
+        return Mono.deferContextual(context -> call.apply(context.getOrDefault(RequestScope.class, captured)));
+    }
+
+    /**
+     * The non-blocking counterpart of {@code SPIService.call}: within the endpoint's timeout and the request budget,
+     * behind its circuit breaker and concurrency limit, timed under the name of the calling method.
+     */
+    private <T> Mono<T> call(String method, ApiEndpoint endpoint, RequestScope scope, Function<OptionalLong, Mono<T>> call) {
+        return apiCallMetrics.record(method, apiTimeouts.call(endpoint, scope.getRequestDeadlineNanos(),
+            timeout -> apiCallGuard.call(endpoint, call.apply(timeout)
+                .onErrorMap(WebClientRequestException.class, ReactiveSPIService::toResourceAccessException))));
+    }
+
+    private WebClient.RequestBodySpec apiRequest(HttpMethod method, URI uri, @Nullable MediaType contentType,
+                                              RequestScope scope, OptionalLong timeout) {
+        return webClient.method(method)
+            .uri(uri)
+            .headers(headers -> {
+                if (contentType != null) {
+                    headers.setContentType(contentType);
+                }
+                headers.set(HttpHeaders.ACCEPT_LANGUAGE, scope.getLanguage());
+                timeout.ifPresent(millis -> headers.set(ApiDeadline.TIMEOUT_HEADER, Long.toString(millis)));
+            })
+            .httpRequest(responseTimeout(timeout));
+    }
+
+    private static Consumer<org.springframework.http.client.reactive.ClientHttpRequest> responseTimeout(OptionalLong timeout) {
+        return request -> {
+            Object nativeRequest = request.getNativeRequest();
+            if (timeout.isPresent() && nativeRequest instanceof HttpClientRequest) {
+                ((HttpClientRequest) nativeRequest).responseTimeout(Duration.ofMillis(timeout.getAsLong()));
+            }
+        };
+    }
+
+    private static Mono<String> location(ResponseEntity<?> response) {
+        return Mono.justOrEmpty(response.getHeaders().getLocation()).map(Object::toString);
+    }
+
+    private static Mono<? extends Throwable> toRestException(ClientResponse response) {
+        return response.bodyToMono(byte[].class)
+            .defaultIfEmpty(new byte[0])
+            .map(body -> restException(null, response.statusCode(), response.headers().asHttpHeaders(), body));
+    }
+
+    /**
+     * Raises I/O errors as RestTemplate does, with a read timeout as a {@link SocketTimeoutException}, so
+     * {@link ApiTimeouts}, {@link ApiCallGuard} and {@link ApiCallMetrics} treat both clients' failures alike.
+     *
+     * @should raise a read timeout as a socket timeout
+     */
+    static ResourceAccessException toResourceAccessException(WebClientRequestException e) {
+        Throwable cause = e.getCause();
+        IOException ioException;
+        if (cause instanceof ReadTimeoutException) {
+            ioException = new SocketTimeoutException("Read timed out");
+            ioException.initCause(cause);
+        } else if (cause instanceof IOException) {
+            ioException = (IOException) cause;
+        } else {
+            ioException = new IOException(e.getMessage(), cause);
+        }
+        return new ResourceAccessException("I/O error on " + e.getMethod() + " request for \"" + e.getUri() + "\": "
+            + ioException.getMessage(), ioException);
+    }
+
+    /**
+     * What the calls need from the incoming request, captured on its thread since the calls are sent from others.
+     */
+    @Value
+    static class RequestScope {
+
+        String language;
+
+        String forwardedProto;
+
+        String forwardedHost;
+
+        Long requestDeadlineNanos;
+
+        static RequestScope current() {
+            String forwardedProto = null;
+            String forwardedHost = null;
+            ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+            if (attributes != null) {
+                final HttpServletRequest request = attributes.getRequest();
+                UriComponents uriComponents = UriComponentsBuilder.fromUriString(request.getRequestURL().toString()).build();
+                forwardedProto = uriComponents.getScheme();
+                forwardedHost = uriComponents.getHost();
+            }
+            return new RequestScope(LocaleContextHolder.getLocale().toString(), forwardedProto, forwardedHost,
+                ApiDeadline.requestDeadlineNanos());
+        }
+    }
+}
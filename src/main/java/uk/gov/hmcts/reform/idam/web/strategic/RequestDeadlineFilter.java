@@ -0,0 +1,77 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Starts the time budget of each incoming request, {@code strategic.timeouts.requestBudget}. The idam-api calls made
+ * while serving the request share what is left of it.
+ *
+ * <p>An {@link ApiDeadline#TIMEOUT_HEADER} shortens the budget only when it comes from a trusted upstream: a
+ * direct caller whose address matches {@code strategic.policies.privateIpsFilterPattern} and that is not relaying a
+ * request for someone else, i.e. sent no {@code X-Forwarded-For}. Anyone else could use it to cut the idam-api calls
+ * made for their requests short.
+ */
+@Slf4j
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    static final String X_FORWARDED_FOR = "X-Forwarded-For";
+
+    private final long budgetMillis;
+
+    private final Pattern trustedUpstreams;
+
+    public RequestDeadlineFilter(ConfigurationProperties configurationProperties) {
+        StrategicConfigurationProperties.Timeouts timeouts = configurationProperties.getStrategic().getTimeouts();
+        this.budgetMillis = timeouts != null && timeouts.isEnabled() && timeouts.getRequestBudget() != null
+            ? timeouts.getRequestBudget().toMillis()
+            : 0;
+        StrategicConfigurationProperties.Policies policies = configurationProperties.getStrategic().getPolicies();
+        this.trustedUpstreams = policies != null ? policies.getPrivateIpsFilterPattern() : null;
+    }
+
+    /**
+     * @should start the request budget for the duration of the request
+     * @should use the caller timeout if it is shorter
+     * @should ignore the caller timeout from a public address
+     * @should ignore the caller timeout on a forwarded request
+     * @should ignore an invalid caller timeout
+     * @should not start a budget when disabled
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        if (budgetMillis <= 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        long callerTimeout = isTrustedUpstream(request)
+            ? NumberUtils.toLong(request.getHeader(ApiDeadline.TIMEOUT_HEADER), 0)
+            : 0;
+        ApiDeadline.startRequest(callerTimeout > 0 ? Math.min(budgetMillis, callerTimeout) : budgetMillis);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ApiDeadline.endRequest();
+        }
+    }
+
+    private boolean isTrustedUpstream(HttpServletRequest request) {
+        return trustedUpstreams != null
+            && request.getHeader(X_FORWARDED_FOR) == null
+            && request.getRemoteAddr() != null
+            && trustedUpstreams.matcher(request.getRemoteAddr()).matches();
+    }
+}
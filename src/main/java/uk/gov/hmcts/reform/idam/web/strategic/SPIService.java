@@ -3,12 +3,12 @@ package uk.gov.hmcts.reform.idam.web.strategic;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.client.LaxRedirectStrategy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -16,7 +16,6 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
@@ -35,7 +34,10 @@ import uk.gov.hmcts.reform.idam.api.internal.model.ForgotPasswordDetails;
 import uk.gov.hmcts.reform.idam.api.internal.model.ResetPasswordRequest;
 import uk.gov.hmcts.reform.idam.api.internal.model.ValidateRequest;
 import uk.gov.hmcts.reform.idam.api.shared.model.User;
+import uk.gov.hmcts.reform.idam.web.config.ExecutorConfiguration;
+import uk.gov.hmcts.reform.idam.web.config.IdamApiHttpClientConfiguration;
 import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
 import uk.gov.hmcts.reform.idam.web.health.HealthCheckStatus;
 import uk.gov.hmcts.reform.idam.web.model.RegisterUserRequest;
 import uk.gov.hmcts.reform.idam.web.model.SelfRegisterRequest;
@@ -43,11 +45,14 @@ import uk.gov.hmcts.reform.idam.web.model.SelfRegisterRequest;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.constraints.NotNull;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import static com.netflix.zuul.constants.ZuulHeaders.X_FORWARDED_FOR;
 
@@ -59,13 +64,90 @@ public class SPIService {
 
     private RestTemplate restTemplate;
 
+    private final RestTemplate noRedirectRestTemplate;
+
     private ConfigurationProperties configurationProperties;
 
+    private final ServiceCache serviceCache;
+
+    private final SingleFlight<String, Optional<uk.gov.hmcts.reform.idam.api.internal.model.Service>> servicesSingleFlight;
+
+    private final SingleFlight<String, Optional<User>> detailsSingleFlight;
+
+    private final Executor forgotPasswordExecutor;
+
+    private final ForgotPasswordOutbox forgotPasswordOutbox;
+
+    private final ApiEndpointRegistry endpoints;
+
+    private final ApiCallGuard apiCallGuard;
+
+    private final ApiTimeouts apiTimeouts;
+
+    private final HedgedRequests hedgedRequests;
+
+    private final ApiCallMetrics apiCallMetrics;
+
     @Autowired
-    public SPIService(RestTemplate restTemplate, ConfigurationProperties configurationProperties, ObjectMapper objectMapper) {
+    public SPIService(RestTemplate restTemplate, ConfigurationProperties configurationProperties, ObjectMapper objectMapper,
+                      @Nullable MeterRegistry meterRegistry,
+                      @Qualifier(ExecutorConfiguration.FORGOT_PASSWORD_EXECUTOR) Executor forgotPasswordExecutor,
+                      @Qualifier(ExecutorConfiguration.HEDGE_EXECUTOR) Executor hedgeExecutor,
+                      @Qualifier(ExecutorConfiguration.SERVICE_CACHE_REFRESH_EXECUTOR) Executor serviceCacheRefreshExecutor,
+                      @Nullable ForgotPasswordOutbox forgotPasswordOutbox,
+                      @Qualifier(IdamApiHttpClientConfiguration.IDAM_API_NO_REDIRECT_REST_TEMPLATE) RestTemplate noRedirectRestTemplate) {
         this.restTemplate = restTemplate;
+        this.noRedirectRestTemplate = noRedirectRestTemplate;
         this.configurationProperties = configurationProperties;
         this.objectMapper = objectMapper;
+        this.forgotPasswordExecutor = forgotPasswordExecutor;
+        this.forgotPasswordOutbox = forgotPasswordOutbox;
+        this.endpoints = new ApiEndpointRegistry(configurationProperties.getStrategic());
+        MeterRegistry registry = meterRegistry != null ? meterRegistry : Metrics.globalRegistry;
+        this.serviceCache = createServiceCache(configurationProperties.getStrategic().getServiceCache(),
+            serviceCacheRefreshExecutor);
+        this.servicesSingleFlight = new SingleFlight<>("services", registry);
+        this.detailsSingleFlight = new SingleFlight<>("details", registry);
+        this.apiCallGuard = new ApiCallGuard(configurationProperties.getStrategic().getApiResilience(), registry);
+        this.apiTimeouts = new ApiTimeouts(configurationProperties.getStrategic().getTimeouts(), registry);
+        this.apiCallMetrics = new ApiCallMetrics(registry, objectMapper);
+        this.hedgedRequests = createHedgedRequests(configurationProperties.getStrategic().getHedging(), registry, hedgeExecutor);
+    }
+
+    private ServiceCache createServiceCache(StrategicConfigurationProperties.ServiceCache properties,
+                                            Executor refreshExecutor) {
+        if (properties == null || !properties.isEnabled()) {
+            return null;
+        }
+        return new ServiceCache(properties, this::fetchServiceByClientId, refreshExecutor);
+    }
+
+    private HedgedRequests createHedgedRequests(StrategicConfigurationProperties.Hedging properties, MeterRegistry registry,
+                                                Executor hedgeExecutor) {
+        if (properties == null || !properties.isEnabled()) {
+            return null;
+        }
+        return new HedgedRequests(properties, registry, hedgeExecutor);
+    }
+
+    /**
+     * Makes a call to idam-api within its timeout budget, behind its circuit breaker and concurrency limit, timed
+     * under the name of the calling method.
+     */
+    private <T> T call(String method, ApiEndpoint endpoint, Supplier<T> call) {
+        return apiCallMetrics.record(method, () -> apiTimeouts.call(endpoint, () -> apiCallGuard.call(endpoint, call)));
+    }
+
+    /**
+     * Like {@link #call(String, ApiEndpoint, Supplier)}, sending the call a second time if it is slow and hedging is enabled.
+     * Only for idempotent reads.
+     */
+    private <T> T hedgedCall(String method, ApiEndpoint endpoint, Supplier<T> call) {
+        if (hedgedRequests == null) {
+            return call(method, endpoint, call);
+        }
+        return apiCallMetrics.record(method, () -> apiTimeouts.call(endpoint,
+            () -> hedgedRequests.call(endpoint, () -> apiCallGuard.call(endpoint, call))));
     }
 
     /**
@@ -73,7 +155,8 @@ public class SPIService {
      */
     public ResponseEntity<ActivationResult> validateActivationToken(final ValidateRequest activationJson) {
         HttpEntity<ValidateRequest> entity = new HttpEntity<>(activationJson);
-        return restTemplate.exchange(configurationProperties.getStrategic().getService().getUrl() + "/" + configurationProperties.getStrategic().getEndpoint().getValidateActivationToken(), HttpMethod.POST, entity, ActivationResult.class);
+        return call("validateActivationToken", ApiEndpoint.VALIDATE_ACTIVATION_TOKEN,
+            () -> restTemplate.exchange(endpoints.uri(ApiEndpoint.VALIDATE_ACTIVATION_TOKEN), HttpMethod.POST, entity, ActivationResult.class));
     }
 
     /**
@@ -85,7 +168,8 @@ public class SPIService {
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<String> entity = new HttpEntity<>(activationJson, headers);
 
-        return restTemplate.exchange(configurationProperties.getStrategic().getService().getUrl() + "/" + configurationProperties.getStrategic().getEndpoint().getActivation(), HttpMethod.PATCH, entity, ActivationResult.class);
+        return call("activateUser", ApiEndpoint.ACTIVATION,
+            () -> restTemplate.exchange(endpoints.uri(ApiEndpoint.ACTIVATION), HttpMethod.PATCH, entity, ActivationResult.class));
     }
 
     /**
@@ -111,8 +195,9 @@ public class SPIService {
 
         entity = new HttpEntity<>(form, headers);
 
-        response = restTemplate.exchange(configurationProperties.getStrategic().getService().getUrl() + "/" + configurationProperties.getStrategic().getEndpoint().getUplift(), HttpMethod.POST, entity,
-            String.class);
+        response = call("uplift", ApiEndpoint.UPLIFT,
+            () -> restTemplate.exchange(endpoints.uri(ApiEndpoint.UPLIFT), HttpMethod.POST, entity,
+                String.class));
 
         if (response.getStatusCode().is2xxSuccessful()) {
             return response.getBody();
@@ -154,8 +239,8 @@ public class SPIService {
         HttpStatus httpStatus;
 
         try {
-            ResponseEntity<Object> response = restTemplate.exchange(configurationProperties.getStrategic().getService().getUrl() + "/" +
-                configurationProperties.getStrategic().getEndpoint().getAuthorize(), HttpMethod.POST, new HttpEntity<>(form, headers), Object.class);
+            ResponseEntity<Object> response = call("authenticate", ApiEndpoint.AUTHORIZE,
+                () -> restTemplate.exchange(endpoints.uri(ApiEndpoint.AUTHORIZE), HttpMethod.POST, new HttpEntity<>(form, headers), Object.class));
             httpStatus = response.getStatusCode();
 
             // check if already logged in or if requires MFA
@@ -182,7 +267,7 @@ public class SPIService {
         return resultBuilder.build();
     }
 
-    private ErrorResponse getErrorResponse(String errorBody) {
+    ErrorResponse getErrorResponse(String errorBody) {
         try {
             ErrorResponse errorResponse = objectMapper.readValue(errorBody, ErrorResponse.class);
             return errorResponse.getCode() != null ? errorResponse : new ErrorResponse().code(ErrorResponse.CodeEnum.ERROR);
@@ -209,9 +294,8 @@ public class SPIService {
         params.forEach(form::add);
         HttpEntity<MultiValueMap<String, String>> entity = new HttpEntity<>(form, headers);
 
-        ResponseEntity<String> response = restTemplate.exchange(configurationProperties.getStrategic().getService().getUrl() + "/" + configurationProperties.getStrategic()
-                .getEndpoint().getAuthorizeOauth2(),
-            HttpMethod.POST, entity, String.class);
+        ResponseEntity<String> response = call("authorize", ApiEndpoint.AUTHORIZE_OAUTH2,
+            () -> restTemplate.exchange(endpoints.uri(ApiEndpoint.AUTHORIZE_OAUTH2), HttpMethod.POST, entity, String.class));
 
         if (response.getStatusCode() == HttpStatus.FOUND) {
             return Optional.ofNullable(response.getHeaders().getLocation()).orElseThrow().toString();
@@ -238,12 +322,9 @@ public class SPIService {
         headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
         headers.add(X_FORWARDED_FOR, ipAddress);
 
-        final String endpoint = String.format("%s/%s",
-            configurationProperties.getStrategic().getService().getUrl(),
-            configurationProperties.getStrategic().getEndpoint().getAuthorize());
-
-        ResponseEntity<Void> response = restTemplate.exchange(endpoint, HttpMethod.POST,
-            new HttpEntity<>(form, headers), Void.class);
+        ResponseEntity<Void> response = call("submitOtpeAuthentication", ApiEndpoint.AUTHORIZE,
+            () -> restTemplate.exchange(endpoints.uri(ApiEndpoint.AUTHORIZE), HttpMethod.POST,
+                new HttpEntity<>(form, headers), Void.class));
 
         if (response.getHeaders().containsKey(HttpHeaders.SET_COOKIE)) {
             return new ArrayList<>(response.getHeaders().get(HttpHeaders.SET_COOKIE));
@@ -265,6 +346,10 @@ public class SPIService {
         }
     }
 
+    /**
+     * @should return the location if api responds with 302
+     * @should throw bad credentials if api does not respond with 302
+     */
     public String loginWithPin(final String pin, final String redirectUri, final String state, final String clientId) {
 
         HttpHeaders headers = new HttpHeaders();
@@ -273,22 +358,13 @@ public class SPIService {
 
         HttpEntity<Void> entity = new HttpEntity<>(headers);
 
-        StringBuilder sb = new StringBuilder(9);
-        sb.append(configurationProperties.getStrategic().getService().getUrl());
-        sb.append("/");
-        sb.append(configurationProperties.getStrategic().getEndpoint().getLoginWithPin());
-        sb.append("?redirect_uri=");
-        sb.append(redirectUri);
-        sb.append("&client_id=");
-        sb.append(clientId);
-        if (StringUtils.isNotEmpty(state)) {
-            sb.append("&state=");
-            sb.append(state);
-        }
-        String requestUrl = sb.toString();
+        URI requestUrl = StringUtils.isNotEmpty(state)
+            ? endpoints.expand(ApiEndpoint.LOGIN_WITH_PIN_AND_STATE, redirectUri, clientId, state)
+            : endpoints.expand(ApiEndpoint.LOGIN_WITH_PIN, redirectUri, clientId);
         log.debug("Logging in with PIN to url: {}", redirectUri);
 
-        ResponseEntity<String> response = getCustomRestTemplate().exchange(requestUrl, HttpMethod.GET, entity, String.class); // NOSONAR
+        ResponseEntity<String> response = call("loginWithPin", ApiEndpoint.LOGIN_WITH_PIN,
+            () -> noRedirectRestTemplate.exchange(requestUrl, HttpMethod.GET, entity, String.class)); // NOSONAR
         if (response.getStatusCode() == HttpStatus.FOUND) {
             return Optional.ofNullable(response.getHeaders().getLocation()).orElseThrow().toString();
         } else {
@@ -296,44 +372,56 @@ public class SPIService {
         }
     }
 
-    private RestTemplate getCustomRestTemplate() {
-        CloseableHttpClient httpClient = HttpClients.custom()
-            .disableCookieManagement()
-            .disableAuthCaching()
-            .useSystemProperties()
-            .setRedirectStrategy(new LaxRedirectStrategy() {
-                @Override
-                protected boolean isRedirectable(String method) {
-                    return false;
-                }
-            }).build();
-        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
-        requestFactory.setConnectionRequestTimeout(5000);
-        requestFactory.setConnectTimeout(5000);
-        requestFactory.setReadTimeout(5000);
-
-        return new RestTemplate(requestFactory);
-    }
-
     /**
      * @should call api with the correct parameters
      * @should return 202 status code
+     * @should return 202 status code if the api call fails
+     * @should throw if the executor rejects the request
+     * @should add the request to the outbox if it is enabled
+     * @should send the request directly if the outbox is unavailable
      */
     public ResponseEntity<String> forgetPassword(final String email, final String redirectUri, final String clientId) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+        ForgotPasswordDetails details = new ForgotPasswordDetails()
+            .email(email)
+            .redirectUri(redirectUri)
+            .clientId(clientId);
         // need to pass locale here as the request will be executed in another thread
-        headers.add(HttpHeaders.ACCEPT_LANGUAGE, LocaleContextHolder.getLocale().toString());
+        String language = LocaleContextHolder.getLocale().toString();
+
+        if (!enqueueForgotPassword(details, language)) {
+            CompletableFuture.runAsync(() -> sendForgotPassword(details, language), forgotPasswordExecutor)
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        log.error("Error sending forgot password request for client {}", clientId, e);
+                    }
+                });
+        }
+        return new ResponseEntity<>(HttpStatus.ACCEPTED);
+    }
+
+    boolean enqueueForgotPassword(ForgotPasswordDetails details, String language) {
+        if (forgotPasswordOutbox == null || !forgotPasswordOutbox.isEnabled()) {
+            return false;
+        }
+        try {
+            forgotPasswordOutbox.enqueue(details, language);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Could not add forgot password request to the outbox, sending it directly", e);
+            return false;
+        }
+    }
 
-        HttpEntity<ForgotPasswordDetails> entity = new HttpEntity<>(
-            new ForgotPasswordDetails()
-                .email(email)
-                .redirectUri(redirectUri)
-                .clientId(clientId),
-            headers);
+    /**
+     * Sends a forgot password request to idam-api on the calling thread.
+     */
+    public ResponseEntity<String> sendForgotPassword(final ForgotPasswordDetails details, final String language) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.add(HttpHeaders.ACCEPT_LANGUAGE, language);
 
-        CompletableFuture.supplyAsync(() -> restTemplate.exchange(configurationProperties.getStrategic().getService().getUrl() + "/" + configurationProperties.getStrategic().getEndpoint().getForgotPassword(), HttpMethod.POST, entity, String.class));
-        return new ResponseEntity<>(HttpStatus.ACCEPTED);
+        return call("sendForgotPassword", ApiEndpoint.FORGOT_PASSWORD,
+            () -> restTemplate.exchange(endpoints.uri(ApiEndpoint.FORGOT_PASSWORD), HttpMethod.POST, new HttpEntity<>(details, headers), String.class));
     }
 
     /**
@@ -347,8 +435,9 @@ public class SPIService {
 
         HttpEntity<Void> entity = new HttpEntity<>(headers);
 
-        return restTemplate.exchange(configurationProperties.getStrategic().getService().getUrl() + "/" + configurationProperties.getStrategic().getEndpoint().getValidateResetPasswordToken(), HttpMethod.POST, entity,
-            String.class);
+        return call("validateResetPasswordToken", ApiEndpoint.VALIDATE_RESET_PASSWORD_TOKEN,
+            () -> restTemplate.exchange(endpoints.uri(ApiEndpoint.VALIDATE_RESET_PASSWORD_TOKEN), HttpMethod.POST, entity,
+                String.class));
     }
 
     /**
@@ -368,8 +457,9 @@ public class SPIService {
 
         HttpEntity<ResetPasswordRequest> entity = new HttpEntity<>(request, headers);
 
-        return restTemplate.exchange(configurationProperties.getStrategic().getService().getUrl() + "/" + configurationProperties.getStrategic().getEndpoint().getResetPassword(), HttpMethod.POST, entity,
-            String.class);
+        return call("resetPassword", ApiEndpoint.RESET_PASSWORD,
+            () -> restTemplate.exchange(endpoints.uri(ApiEndpoint.RESET_PASSWORD), HttpMethod.POST, entity,
+                String.class));
     }
 
     /**
@@ -391,7 +481,8 @@ public class SPIService {
         request.setState(registerUserRequest.getState());
 
         HttpEntity<uk.gov.hmcts.reform.idam.api.shared.model.SelfRegisterRequest> requestEntity = new HttpEntity<>(request, headers);
-        return restTemplate.exchange(configurationProperties.getStrategic().getService().getUrl() + "/" + configurationProperties.getStrategic().getEndpoint().getSelfRegisterUser() + "?jwt=" + registerUserRequest.getJwt(), HttpMethod.POST, requestEntity, String.class);
+        return call("registerUser", ApiEndpoint.SELF_REGISTER_USER,
+            () -> restTemplate.exchange(endpoints.expand(ApiEndpoint.SELF_REGISTER_USER, registerUserRequest.getJwt()), HttpMethod.POST, requestEntity, String.class));
     }
 
     /**
@@ -405,22 +496,29 @@ public class SPIService {
 
         HttpEntity<String> entity = new HttpEntity<>(mapper.writeValueAsString(selfRegisterRequest), headers);
 
-        return restTemplate.exchange(configurationProperties.getStrategic().getService().getUrl() + "/" + configurationProperties.getStrategic().getEndpoint().getSelfRegistration(), HttpMethod.POST, entity, String.class);
+        return call("selfRegisterUser", ApiEndpoint.SELF_REGISTRATION,
+            () -> restTemplate.exchange(endpoints.uri(ApiEndpoint.SELF_REGISTRATION), HttpMethod.POST, entity, String.class));
     }
 
     /**
      * @should call api health check
      */
     public ResponseEntity<HealthCheckStatus> healthCheck() {
-        return restTemplate.getForEntity(configurationProperties.getStrategic().getService().getUrl() + "/" + configurationProperties.getStrategic().getEndpoint().getHealth(), HealthCheckStatus.class);
+        return hedgedCall("healthCheck", ApiEndpoint.HEALTH,
+            () -> restTemplate.getForEntity(endpoints.uri(ApiEndpoint.HEALTH), HealthCheckStatus.class));
     }
 
     /**
      * @should call api with the correct data and return api response if status code is 200
      * @should return optional empty if status code is not 200
      * @should return optional empty if any Exception occurs
+     * @should share one api call between concurrent callers with the same token
      */
     public Optional<User> getDetails(String token) {
+        return detailsSingleFlight.execute(token, () -> fetchDetails(token));
+    }
+
+    private Optional<User> fetchDetails(String token) {
 
         ResponseEntity<User> response;
 
@@ -431,7 +529,8 @@ public class SPIService {
         HttpEntity<String> entity = new HttpEntity<>("parameters", headers);
 
         try {
-            response = restTemplate.exchange(configurationProperties.getStrategic().getService().getUrl() + "/" + configurationProperties.getStrategic().getEndpoint().getDetails(), HttpMethod.GET, entity, User.class);
+            response = hedgedCall("getDetails", ApiEndpoint.DETAILS,
+                () -> restTemplate.exchange(endpoints.uri(ApiEndpoint.DETAILS), HttpMethod.GET, entity, User.class));
             return Optional.ofNullable(response.getBody());
         } catch (Exception e) {
             log.error("Error getting User Details", e);
@@ -443,11 +542,51 @@ public class SPIService {
      * @should call api with the correct data and return the service if api response is not empty and http status code is 200
      * @should return Optional empty if api returns an http status different from 200
      * @should return Optional empty if api returns empty response body
+     * @should serve repeated lookups from the service cache when it is enabled
+     * @should share one api call between concurrent callers with the same client id
      */
     public Optional<uk.gov.hmcts.reform.idam.api.internal.model.Service> getServiceByClientId(String clientId) {
+        if (serviceCache != null) {
+            return serviceCache.get(clientId);
+        }
+        return fetchServiceByClientId(clientId);
+    }
+
+    /**
+     * The service cache, if enabled.
+     */
+    public Optional<ServiceCache> getServiceCache() {
+        return Optional.ofNullable(serviceCache);
+    }
+
+    ApiEndpointRegistry getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * The layers every idam-api call goes through, shared with {@link ReactiveSPIService} so both clients count
+     * against the same circuit breakers, concurrency limits and meters.
+     */
+    ApiCallGuard getApiCallGuard() {
+        return apiCallGuard;
+    }
+
+    ApiTimeouts getApiTimeouts() {
+        return apiTimeouts;
+    }
+
+    ApiCallMetrics getApiCallMetrics() {
+        return apiCallMetrics;
+    }
+
+    private Optional<uk.gov.hmcts.reform.idam.api.internal.model.Service> fetchServiceByClientId(String clientId) {
+        return servicesSingleFlight.execute(clientId, () -> requestServiceByClientId(clientId));
+    }
 
+    private Optional<uk.gov.hmcts.reform.idam.api.internal.model.Service> requestServiceByClientId(String clientId) {
         ResponseEntity<ArrayOfServices> response =
-            restTemplate.exchange(configurationProperties.getStrategic().getService().getUrl() + "/" + configurationProperties.getStrategic().getEndpoint().getServices() + "?clientId=" + clientId, HttpMethod.GET, HttpEntity.EMPTY, ArrayOfServices.class); //NOSONAR
+            hedgedCall("getServiceByClientId", ApiEndpoint.SERVICES,
+                () -> restTemplate.exchange(endpoints.expand(ApiEndpoint.SERVICES, clientId), HttpMethod.GET, HttpEntity.EMPTY, ArrayOfServices.class)); //NOSONAR
 
         final ArrayOfServices responseBody = response.getBody();
         if (responseBody != null && !responseBody.isEmpty()) {
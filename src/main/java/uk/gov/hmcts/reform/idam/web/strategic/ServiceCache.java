@@ -0,0 +1,105 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import uk.gov.hmcts.reform.idam.api.internal.model.Service;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Bounded in-memory cache of {@link Service} lookups by client id.
+ *
+ * Known services are refreshed in the background once they are older than {@code refreshAfterWrite}, so callers keep
+ * being served the current value while the reload is in flight. Client ids that idam-api does not know about are kept
+ * in a separate, shorter lived cache so that typos and probes do not hit the api on every page view.
+ */
+@Slf4j
+public class ServiceCache {
+
+    private final LoadingCache<String, Service> services;
+
+    private final Cache<String, Boolean> unknownClients;
+
+    public ServiceCache(StrategicConfigurationProperties.ServiceCache properties,
+                        Function<String, Optional<Service>> loader, Executor refreshExecutor) {
+        this.services = CacheBuilder.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(properties.getExpireAfterWrite())
+            .refreshAfterWrite(properties.getRefreshAfterWrite())
+            .recordStats()
+            .build(CacheLoader.asyncReloading(CacheLoader.from(clientId -> loader.apply(clientId)
+                .orElseThrow(() -> new UnknownClientException(clientId))), refreshExecutor));
+        this.unknownClients = CacheBuilder.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(properties.getUnknownClientExpireAfterWrite())
+            .build();
+    }
+
+    /**
+     * @should return the loaded service and not call the loader again while the entry is fresh
+     * @should return Optional empty and not call the loader again for an unknown client
+     * @should rethrow the exception thrown by the loader
+     */
+    public Optional<Service> get(String clientId) {
+        if (unknownClients.getIfPresent(clientId) != null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(services.get(clientId));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof UnknownClientException) {
+                unknownClients.put(clientId, Boolean.TRUE);
+                return Optional.empty();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new UncheckedExecutionException(e.getCause());
+        }
+    }
+
+    public Map<String, Service> getServices() {
+        return Map.copyOf(services.asMap());
+    }
+
+    public Set<String> getUnknownClients() {
+        return Set.copyOf(unknownClients.asMap().keySet());
+    }
+
+    public CacheStats getStats() {
+        return services.stats();
+    }
+
+    /**
+     * @should remove the client from both the service and the unknown client caches
+     */
+    public void evict(String clientId) {
+        log.info("Evicting cached service for client id {}", clientId);
+        services.invalidate(clientId);
+        unknownClients.invalidate(clientId);
+    }
+
+    public void evictAll() {
+        log.info("Evicting all cached services");
+        services.invalidateAll();
+        unknownClients.invalidateAll();
+    }
+
+    private static class UnknownClientException extends RuntimeException {
+
+        UnknownClientException(String clientId) {
+            super("No service found for client id " + clientId, null, false, false);
+        }
+    }
+}
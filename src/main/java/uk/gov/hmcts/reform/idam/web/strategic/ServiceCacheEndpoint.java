@@ -0,0 +1,59 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint to inspect and evict the entries of the {@link ServiceCache}.
+ * Not exposed over http by default, add {@code servicecache} to {@code management.endpoints.web.exposure.include}.
+ */
+@Component
+@Endpoint(id = "servicecache")
+public class ServiceCacheEndpoint {
+
+    private final SPIService spiService;
+
+    @Autowired
+    public ServiceCacheEndpoint(SPIService spiService) {
+        this.spiService = spiService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> entries() {
+        Map<String, Object> entries = new LinkedHashMap<>();
+        spiService.getServiceCache().ifPresentOrElse(cache -> {
+            CacheStats stats = cache.getStats();
+            entries.put("enabled", true);
+            entries.put("hitRate", stats.hitRate());
+            entries.put("loadCount", stats.loadCount());
+            entries.put("services", cache.getServices());
+            entries.put("unknownClients", cache.getUnknownClients());
+        }, () -> entries.put("enabled", false));
+        return entries;
+    }
+
+    @ReadOperation
+    public Object entry(@Selector String clientId) {
+        return spiService.getServiceCache()
+            .map(cache -> cache.getServices().get(clientId))
+            .orElse(null);
+    }
+
+    @DeleteOperation
+    public void evictAll() {
+        spiService.getServiceCache().ifPresent(ServiceCache::evictAll);
+    }
+
+    @DeleteOperation
+    public void evict(@Selector String clientId) {
+        spiService.getServiceCache().ifPresent(cache -> cache.evict(clientId));
+    }
+}
@@ -0,0 +1,103 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.lang.Nullable;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Counts the http sessions created per route, as {@value #METRIC} tagged with the matching
+ * {@code strategic.session.ssoRoutes} pattern or {@code other}. With {@code features.session-avoidance} it also
+ * answers {@code getSession(false)} outside those routes without looking the session up: Spring Session would
+ * otherwise load a session from Redis and write its last accessed time back for every request carrying the session
+ * cookie, if only for the flash map lookup done by the DispatcherServlet. Sessions are still created, or the
+ * existing one returned, when a caller asks for one.
+ *
+ * <p>Registered right after the Spring Session filter, so it sees the session backed request, and ahead of Spring
+ * Security, so the OAuth2 login filters are covered too.
+ */
+public class SessionAvoidanceFilter extends OncePerRequestFilter {
+
+    public static final String METRIC = "idam.web.session.created";
+
+    static final String OTHER_ROUTE = "other";
+
+    private final List<String> ssoRoutes;
+
+    private final boolean avoidSessions;
+
+    private final MeterRegistry meterRegistry;
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public SessionAvoidanceFilter(List<String> ssoRoutes, boolean avoidSessions, @Nullable MeterRegistry meterRegistry) {
+        this.ssoRoutes = ssoRoutes == null ? List.of() : ssoRoutes;
+        this.avoidSessions = avoidSessions;
+        this.meterRegistry = meterRegistry == null ? Metrics.globalRegistry : meterRegistry;
+    }
+
+    /**
+     * @should not look up the session outside the sso routes
+     * @should look up the session on sso routes
+     * @should look up the session when avoidance is disabled
+     * @should count sessions created per route
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        String route = ssoRoutes.stream()
+            .filter(pattern -> pathMatcher.match(pattern, path))
+            .findFirst()
+            .orElse(OTHER_ROUTE);
+        filterChain.doFilter(new SessionAvoidingRequest(request, route), response);
+    }
+
+    private class SessionAvoidingRequest extends HttpServletRequestWrapper {
+
+        private final String route;
+
+        private final boolean avoidLookup;
+
+        private boolean counted;
+
+        SessionAvoidingRequest(HttpServletRequest request, String route) {
+            super(request);
+            this.route = route;
+            this.avoidLookup = avoidSessions && OTHER_ROUTE.equals(route);
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            if (!create && avoidLookup) {
+                return null;
+            }
+            HttpSession session = super.getSession(create);
+            if (session != null && !counted && session.isNew()) {
+                counted = true;
+                Counter.builder(METRIC).tag("route", route).register(meterRegistry).increment();
+            }
+            return session;
+        }
+    }
+}
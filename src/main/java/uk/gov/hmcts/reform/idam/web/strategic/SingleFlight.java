@@ -0,0 +1,76 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls for the same key into one: the first caller runs the work and every caller that arrives
+ * while it is in flight waits for, and shares, its result. Nothing is kept once the call has completed.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter requests;
+
+    private final Counter collapsed;
+
+    public SingleFlight(String endpoint, MeterRegistry meterRegistry) {
+        this.requests = Counter.builder("idam.api.singleflight.requests")
+            .description("Calls to idam-api going through the single-flight layer")
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+        this.collapsed = Counter.builder("idam.api.singleflight.collapsed")
+            .description("Calls to idam-api answered by an identical call already in flight")
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+    }
+
+    /**
+     * @should run the work once for concurrent callers with the same key
+     * @should run the work again once the previous call has completed
+     * @should rethrow the exception thrown by the work to every waiting caller
+     */
+    public V execute(K key, Supplier<V> work) {
+        requests.increment();
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            collapsed.increment();
+            return await(existing);
+        }
+        try {
+            V result = work.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private V await(CompletableFuture<V> call) {
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an in-flight call", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package uk.gov.hmcts.reform.idam.web.cds;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CdsTrainingIdamApiTest {
+
+    private String idamApiUrl;
+
+    private CdsTrainingIdamApi idamApi;
+
+    @Before
+    public void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        idamApiUrl = "http://localhost:" + port;
+        idamApi = new CdsTrainingIdamApi(port);
+        idamApi.start();
+    }
+
+    @After
+    public void tearDown() {
+        idamApi.stop();
+    }
+
+    @Test
+    public void shouldAnswerTheServiceLookupAndHealthCheckOfTheWarmUp() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+
+        HttpResponse<String> services = client.send(HttpRequest.newBuilder(URI.create(idamApiUrl + "/services?clientId=idam-warm-up")).build(),
+            HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> health = client.send(HttpRequest.newBuilder(URI.create(idamApiUrl + "/health")).build(),
+            HttpResponse.BodyHandlers.ofString());
+
+        assertThat(services.statusCode(), is(200));
+        assertThat(services.body(), equalTo(CdsTrainingIdamApi.SERVICES_JSON));
+        assertThat(health.body(), equalTo(CdsTrainingIdamApi.HEALTH_JSON));
+    }
+}
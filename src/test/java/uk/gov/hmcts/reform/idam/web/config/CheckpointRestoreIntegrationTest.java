@@ -0,0 +1,85 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Takes the application through the checkpoint and restore callbacks against a Redis on localhost:6379 and skips
+ * when there is none. The JVM checkpoint itself needs a CRaC JDK and is not taken here.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "testing=true",
+    "crac.enabled=true",
+    "spring.session.store-type=redis",
+    "spring.redis.ssl=false",
+    "ssl.verification.enabled=false",
+    "strategic.warmUp.enabled=false"
+})
+public class CheckpointRestoreIntegrationTest {
+
+    private static final String REDIS_HOST = "localhost";
+    private static final int REDIS_PORT = 6379;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private CheckpointRestoreResource resource;
+
+    @Autowired
+    private RedisConnectionFactory connectionFactory;
+
+    @BeforeClass
+    public static void redisIsRunning() {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(REDIS_HOST, REDIS_PORT), 500);
+        } catch (IOException e) {
+            assumeTrue("No Redis on " + REDIS_HOST + ":" + REDIS_PORT, false);
+        }
+    }
+
+    @Test
+    public void checkpointAndRestore_shouldCloseAndReopenTheServerAndRedisConnections() throws Exception {
+        assertThat(ping(), equalTo("PONG"));
+
+        resource.beforeCheckpoint(null);
+        try (Socket socket = new Socket("localhost", port)) {
+            fail("Server socket still open after checkpoint");
+        } catch (ConnectException expected) {
+            // the connector released the port
+        }
+
+        resource.afterRestore(null);
+        assertThat(ping(), equalTo("PONG"));
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/health").openConnection();
+        assertThat(connection.getResponseCode(), greaterThan(0));
+        connection.disconnect();
+    }
+
+    private String ping() {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            return connection.ping();
+        }
+    }
+}
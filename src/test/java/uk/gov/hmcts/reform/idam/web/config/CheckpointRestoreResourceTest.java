@@ -0,0 +1,152 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import org.apache.catalina.connector.Connector;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cloud.netflix.zuul.RoutesRefreshedEvent;
+import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import uk.gov.hmcts.reform.idam.web.strategic.ForgotPasswordOutbox;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CheckpointRestoreResourceTest {
+
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMillis(200);
+
+    @Mock
+    private Connector connector;
+
+    @Mock
+    private LettuceConnectionFactory connectionFactory;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Mock
+    private ForgotPasswordOutbox forgotPasswordOutbox;
+
+    @Mock
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    @Mock
+    private RouteLocator routeLocator;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final ConnectionPool connectionPool = new ConnectionPool();
+
+    private CheckpointRestoreResource resource;
+
+    @Before
+    public void setUp() {
+        resource = new CheckpointRestoreResource(() -> List.of(connector), List.of(connectionFactory),
+            List.of(listenerContainer), forgotPasswordOutbox, List.of(connectionManager),
+            List.of(new OkHttpClient.Builder().connectionPool(connectionPool).build()), routeLocator, eventPublisher,
+            DRAIN_TIMEOUT);
+        lenient().when(connectionManager.getTotalStats()).thenReturn(poolStats(0));
+    }
+
+    /**
+     * @verifies stop accepting requests before closing the redis and idam-api connections
+     * @see CheckpointRestoreResource#beforeCheckpoint(org.crac.Context)
+     */
+    @Test
+    public void beforeCheckpoint_shouldStopAcceptingRequestsBeforeClosingTheRedisAndIdamApiConnections() throws Exception {
+        given(forgotPasswordOutbox.isRunning()).willReturn(true);
+        given(listenerContainer.isRunning()).willReturn(true);
+
+        resource.beforeCheckpoint(null);
+
+        InOrder inOrder = inOrder(connector, forgotPasswordOutbox, listenerContainer, connectionFactory, connectionManager);
+        inOrder.verify(connector).stop();
+        inOrder.verify(forgotPasswordOutbox).stop();
+        inOrder.verify(listenerContainer).stop();
+        inOrder.verify(connectionFactory).destroy();
+        inOrder.verify(connectionManager).closeIdleConnections(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @verifies leave a stopped outbox stopped
+     * @see CheckpointRestoreResource#beforeCheckpoint(org.crac.Context)
+     */
+    @Test
+    public void beforeCheckpoint_shouldLeaveAStoppedOutboxStopped() throws Exception {
+        resource.beforeCheckpoint(null);
+        resource.afterRestore(null);
+
+        verify(forgotPasswordOutbox, never()).stop();
+        verify(forgotPasswordOutbox, never()).start();
+        verify(listenerContainer, never()).start();
+    }
+
+    /**
+     * @verifies wait for leased idam-api connections to be released
+     * @see CheckpointRestoreResource#beforeCheckpoint(org.crac.Context)
+     */
+    @Test
+    public void beforeCheckpoint_shouldWaitForLeasedIdamApiConnectionsToBeReleased() throws Exception {
+        given(connectionManager.getTotalStats()).willReturn(poolStats(1), poolStats(0));
+
+        resource.beforeCheckpoint(null);
+
+        verify(connectionManager, times(2)).closeIdleConnections(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @verifies refuse the checkpoint while idam-api connections stay leased
+     * @see CheckpointRestoreResource#beforeCheckpoint(org.crac.Context)
+     */
+    @Test(expected = IllegalStateException.class)
+    public void beforeCheckpoint_shouldRefuseTheCheckpointWhileIdamApiConnectionsStayLeased() throws Exception {
+        given(connectionManager.getTotalStats()).willReturn(poolStats(1));
+
+        resource.beforeCheckpoint(null);
+    }
+
+    /**
+     * @verifies reconnect to redis and restart what was stopped before accepting requests
+     * @see CheckpointRestoreResource#afterRestore(org.crac.Context)
+     */
+    @Test
+    public void afterRestore_shouldReconnectToRedisAndRestartWhatWasStoppedBeforeAcceptingRequests() throws Exception {
+        given(forgotPasswordOutbox.isRunning()).willReturn(true);
+        given(listenerContainer.isRunning()).willReturn(true);
+        resource.beforeCheckpoint(null);
+
+        resource.afterRestore(null);
+
+        InOrder inOrder = inOrder(connectionFactory, listenerContainer, forgotPasswordOutbox, eventPublisher, connector);
+        inOrder.verify(connectionFactory).afterPropertiesSet();
+        inOrder.verify(listenerContainer).start();
+        inOrder.verify(forgotPasswordOutbox).start();
+        inOrder.verify(eventPublisher).publishEvent(any(RoutesRefreshedEvent.class));
+        inOrder.verify(connector).start();
+    }
+
+    private static PoolStats poolStats(int leased) {
+        return new PoolStats(leased, 0, 0, 10);
+    }
+}
@@ -0,0 +1,62 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.DispatcherType;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class DeferredCookiesInterceptorTest {
+
+    private static final String COOKIE = "Idam.Session=session; Path=/; Secure; HttpOnly";
+
+    private final Object handler = new Object();
+
+    private final DeferredCookiesInterceptor interceptor = new DeferredCookiesInterceptor();
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Before
+    public void setUp() {
+        request = new MockHttpServletRequest("POST", "/login");
+        response = new MockHttpServletResponse();
+    }
+
+    /**
+     * @verifies add the deferred cookies on the async dispatch
+     * @see DeferredCookiesInterceptor#preHandle(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, Object)
+     */
+    @Test
+    public void preHandle_shouldAddTheDeferredCookiesOnTheAsyncDispatch() {
+        DeferredCookiesInterceptor.deferCookies(request).add(COOKIE);
+        request.setDispatcherType(DispatcherType.ASYNC);
+
+        interceptor.preHandle(request, response, handler);
+
+        assertThat(response.getHeaders(HttpHeaders.SET_COOKIE), equalTo(List.of(COOKIE)));
+        assertThat(request.getAttribute(DeferredCookiesInterceptor.DEFERRED_COOKIES_ATTRIBUTE), is(nullValue()));
+    }
+
+    /**
+     * @verifies leave the response alone on other dispatches
+     * @see DeferredCookiesInterceptor#preHandle(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, Object)
+     */
+    @Test
+    public void preHandle_shouldLeaveTheResponseAloneOnOtherDispatches() {
+        DeferredCookiesInterceptor.deferCookies(request).add(COOKIE);
+
+        interceptor.preHandle(request, response, handler);
+
+        assertThat(response.getHeader(HttpHeaders.SET_COOKIE), is(nullValue()));
+    }
+}
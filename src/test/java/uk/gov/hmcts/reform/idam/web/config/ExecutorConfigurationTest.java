@@ -0,0 +1,148 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties.ForgotPasswordExecutor.RejectionPolicy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExecutorConfigurationTest {
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private ConfigurationProperties configurationProperties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StrategicConfigurationProperties.ForgotPasswordExecutor properties;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new StrategicConfigurationProperties.ForgotPasswordExecutor();
+        properties.setPoolSize(1);
+        properties.setQueueCapacity(1);
+        given(configurationProperties.getStrategic().getForgotPasswordExecutor()).willReturn(properties);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void forgotPasswordExecutor_shouldRunTasksOnTheCallerThreadWhenTheQueueIsFull() {
+        properties.setRejectionPolicy(RejectionPolicy.CALLER_RUNS);
+        executor = new ExecutorConfiguration(configurationProperties).forgotPasswordExecutor(false, meterRegistry);
+        fillPoolAndQueue();
+
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        executor.execute(() -> ranOn.set(Thread.currentThread()));
+
+        assertThat(ranOn.get(), equalTo(Thread.currentThread()));
+        assertThat(rejectedTasks(), is(1.0));
+    }
+
+    @Test
+    public void forgotPasswordExecutor_shouldRejectTasksWhenTheQueueIsFullAndThePolicyIsAbort() {
+        properties.setRejectionPolicy(RejectionPolicy.ABORT);
+        executor = new ExecutorConfiguration(configurationProperties).forgotPasswordExecutor(false, meterRegistry);
+        fillPoolAndQueue();
+
+        try {
+            executor.execute(() -> { });
+        } catch (RejectedExecutionException e) {
+            assertThat(rejectedTasks(), is(1.0));
+            return;
+        }
+        throw new AssertionError("Expected the task to be rejected");
+    }
+
+    @Test
+    public void forgotPasswordExecutor_shouldRunTasksOnTheCallerThreadWhenTheQueueIsFullOnVirtualThreads() {
+        properties.setRejectionPolicy(RejectionPolicy.CALLER_RUNS);
+        executor = new ExecutorConfiguration(configurationProperties).forgotPasswordExecutor(true, meterRegistry);
+        fillPoolAndQueue();
+
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        executor.execute(() -> ranOn.set(Thread.currentThread()));
+
+        assertThat(ranOn.get(), equalTo(Thread.currentThread()));
+        assertThat(rejectedTasks(), is(1.0));
+    }
+
+    @Test
+    public void forgotPasswordExecutor_shouldRejectTasksWhenTheQueueIsFullAndThePolicyIsAbortOnVirtualThreads() {
+        properties.setRejectionPolicy(RejectionPolicy.ABORT);
+        executor = new ExecutorConfiguration(configurationProperties).forgotPasswordExecutor(true, meterRegistry);
+        fillPoolAndQueue();
+
+        try {
+            executor.execute(() -> { });
+        } catch (RejectedExecutionException e) {
+            assertThat(rejectedTasks(), is(1.0));
+            return;
+        }
+        throw new AssertionError("Expected the task to be rejected");
+    }
+
+    @Test
+    public void forgotPasswordExecutor_shouldRunNoMoreThanPoolSizeTasksAtATimeOnVirtualThreads() throws Exception {
+        properties.setRejectionPolicy(RejectionPolicy.ABORT);
+        executor = new ExecutorConfiguration(configurationProperties).forgotPasswordExecutor(true, meterRegistry);
+        CountDownLatch queuedRan = new CountDownLatch(1);
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+
+        executor.execute(this::awaitRelease);
+        executor.execute(() -> {
+            ranOn.set(Thread.currentThread());
+            queuedRan.countDown();
+        });
+
+        assertThat(queuedRan.await(100, TimeUnit.MILLISECONDS), is(false));
+        release.countDown();
+        assertThat(queuedRan.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(ranOn.get().isVirtual(), is(true));
+    }
+
+    private void fillPoolAndQueue() {
+        executor.execute(this::awaitRelease);
+        executor.execute(this::awaitRelease);
+    }
+
+    private double rejectedTasks() {
+        return meterRegistry.get("executor.rejected.tasks").tag("name", "forgotPassword").counter().count();
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import feign.httpclient.ApacheHttpClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpMethod;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.ServerConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.strategic.ApiDeadline;
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IdamApiHttpClientConfigurationTest {
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private ConfigurationProperties configurationProperties;
+
+    @Mock
+    private ObjectProvider<OkHttpClient> okHttpClient;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private IdamApiHttpClientConfiguration configuration;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    @Before
+    public void setUp() {
+        ServerConfigurationProperties server = new ServerConfigurationProperties();
+        server.setMaxConnectionIdleTime(20);
+        server.setMaxConnectionsPerRoute(5);
+        server.setMaxConnectionsTotal(10);
+        given(configurationProperties.getServer()).willReturn(server);
+        meterRegistry = new SimpleMeterRegistry();
+        configuration = new IdamApiHttpClientConfiguration(configurationProperties);
+        connectionManager = configuration.idamApiConnectionManager(meterRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        connectionManager.close();
+    }
+
+    @Test
+    public void idamApiConnectionManager_shouldExportPoolGaugesAndLeaseWaitTime() throws Exception {
+        HttpClientConnection connection = connectionManager
+            .requestConnection(new HttpRoute(new HttpHost("localhost", 80)), null)
+            .get(1, TimeUnit.SECONDS);
+
+        assertThat(gauge("httpcomponents.httpclient.pool.total.max"), is(10.0));
+        assertThat(meterRegistry.get("httpcomponents.httpclient.pool.total.connections")
+            .tag("httpclient", IdamApiHttpClientConfiguration.POOL_NAME).tag("state", "leased").gauge().value(), is(1.0));
+        assertThat(meterRegistry.get("httpcomponents.httpclient.pool.lease.wait")
+            .tag("httpclient", IdamApiHttpClientConfiguration.POOL_NAME).timer().count(), is(1L));
+
+        connectionManager.releaseConnection(connection, null, 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void idamApiFeignClient_shouldShareTheApachePoolByDefault() throws Exception {
+        try (IdamApiHttpClientConfiguration.IdamApiHttpClient httpClient = configuration.idamApiHttpClient(connectionManager)) {
+            assertThat(configuration.idamApiFeignClient(httpClient, okHttpClient), instanceOf(ApacheHttpClient.class));
+        }
+    }
+
+    @Test
+    public void idamApiRequestFactory_shouldUseTheHttp2ClientWhenItIsEnabled() throws Exception {
+        given(okHttpClient.getIfAvailable()).willReturn(new OkHttpClient());
+
+        try (IdamApiHttpClientConfiguration.IdamApiHttpClient httpClient = configuration.idamApiHttpClient(connectionManager)) {
+            assertThat(configuration.idamApiRequestFactory(httpClient, okHttpClient),
+                instanceOf(IdamApiHttpClientConfiguration.RedirectFollowingRequestFactory.class));
+        }
+    }
+
+    /**
+     * @verifies not expose the client as a bare closeable http client
+     * @see IdamApiHttpClientConfiguration#idamApiHttpClient(PoolingHttpClientConnectionManager)
+     */
+    @Test
+    public void idamApiHttpClient_shouldNotExposeTheClientAsABareCloseableHttpClient() throws Exception {
+        Method factoryMethod = IdamApiHttpClientConfiguration.class
+            .getMethod("idamApiHttpClient", PoolingHttpClientConnectionManager.class);
+
+        assertThat(CloseableHttpClient.class.isAssignableFrom(factoryMethod.getReturnType()), is(false));
+        assertThat(HttpClient.class.isAssignableFrom(factoryMethod.getReturnType()), is(false));
+    }
+
+    /**
+     * @verifies follow redirects for get and head
+     * @see IdamApiHttpClientConfiguration.RedirectFollowingRequestFactory#client(HttpMethod)
+     */
+    @Test
+    public void client_shouldFollowRedirectsForGetAndHead() {
+        OkHttpClient client = new OkHttpClient.Builder().followRedirects(false).followSslRedirects(false).build();
+        IdamApiHttpClientConfiguration.RedirectFollowingRequestFactory requestFactory =
+            new IdamApiHttpClientConfiguration.RedirectFollowingRequestFactory(client);
+
+        assertThat(requestFactory.client(HttpMethod.GET).followRedirects(), is(true));
+        assertThat(requestFactory.client(HttpMethod.HEAD).followSslRedirects(), is(true));
+        assertThat(requestFactory.client(HttpMethod.GET).connectionPool(), sameInstance(client.connectionPool()));
+    }
+
+    /**
+     * @verifies not follow redirects for other methods
+     * @see IdamApiHttpClientConfiguration.RedirectFollowingRequestFactory#client(HttpMethod)
+     */
+    @Test
+    public void client_shouldNotFollowRedirectsForOtherMethods() {
+        OkHttpClient client = new OkHttpClient.Builder().followRedirects(false).followSslRedirects(false).build();
+        IdamApiHttpClientConfiguration.RedirectFollowingRequestFactory requestFactory =
+            new IdamApiHttpClientConfiguration.RedirectFollowingRequestFactory(client);
+
+        assertThat(requestFactory.client(HttpMethod.POST).followRedirects(), is(false));
+        assertThat(requestFactory.client(HttpMethod.PUT), sameInstance(client));
+    }
+
+    @Test
+    public void callTimeoutRequestFactory_shouldUseTheCallTimeoutAsSocketTimeout() throws Exception {
+        try (IdamApiHttpClientConfiguration.IdamApiHttpClient httpClient = configuration.idamApiHttpClient(connectionManager)) {
+            IdamApiHttpClientConfiguration.CallTimeoutRequestFactory requestFactory =
+                new IdamApiHttpClientConfiguration.CallTimeoutRequestFactory(httpClient.getHttpClient(), 1000, 2000, 60000);
+            Long previous = ApiDeadline.setCallTimeout(1500L);
+            try {
+                RequestConfig requestConfig = ((HttpClientContext) requestFactory.createHttpContext(HttpMethod.GET, URI.create("http://idam-api/health")))
+                    .getRequestConfig();
+                assertThat(requestConfig.getSocketTimeout(), is(1500));
+                assertThat(requestConfig.getConnectTimeout(), is(2000));
+                assertThat(requestConfig.getConnectionRequestTimeout(), is(1000));
+            } finally {
+                ApiDeadline.setCallTimeout(previous);
+            }
+        }
+    }
+
+    @Test
+    public void callTimeoutRequestFactory_shouldUseTheFactoryTimeoutsWithoutACallTimeout() throws Exception {
+        try (IdamApiHttpClientConfiguration.IdamApiHttpClient httpClient = configuration.idamApiHttpClient(connectionManager)) {
+            IdamApiHttpClientConfiguration.CallTimeoutRequestFactory requestFactory =
+                new IdamApiHttpClientConfiguration.CallTimeoutRequestFactory(httpClient.getHttpClient(), 1000, 2000, 60000);
+            assertThat(requestFactory.createHttpContext(HttpMethod.GET, URI.create("http://idam-api/health")), is(nullValue()));
+        }
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("httpclient", IdamApiHttpClientConfiguration.POOL_NAME).gauge().value();
+    }
+}
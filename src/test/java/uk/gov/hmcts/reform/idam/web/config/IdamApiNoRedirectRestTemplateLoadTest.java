@@ -0,0 +1,148 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.ServerConfigurationProperties;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Sustained PIN login traffic against a stub idam-api, counting the client sockets the stub sees. Each distinct
+ * client port is one TCP connection, so one handshake and one file descriptor on the client side.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class IdamApiNoRedirectRestTemplateLoadTest {
+
+    private static final int THREADS = 4;
+    private static final int LOGINS_PER_THREAD = 25;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private ConfigurationProperties configurationProperties;
+
+    @Mock
+    private ObjectProvider<OkHttpClient> okHttpClient;
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    private final Queue<CloseableHttpClient> httpClients = new ConcurrentLinkedQueue<>();
+
+    private HttpServer idamApi;
+
+    private URI pinUri;
+
+    private ExecutorService callers;
+
+    private ExecutorService idamApiThreads;
+
+    @Before
+    public void setUp() throws Exception {
+        idamApi = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        idamApi.createContext("/pin", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            exchange.getResponseHeaders().add("Location", "https://service.local/callback?code=code");
+            exchange.sendResponseHeaders(HttpStatus.FOUND.value(), -1);
+            exchange.close();
+        });
+        idamApiThreads = Executors.newFixedThreadPool(THREADS);
+        idamApi.setExecutor(idamApiThreads);
+        idamApi.start();
+        pinUri = URI.create("http://localhost:" + idamApi.getAddress().getPort() + "/pin?redirect_uri=https://service.local/callback&client_id=service");
+        callers = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        callers.shutdownNow();
+        for (CloseableHttpClient httpClient : httpClients) {
+            httpClient.close();
+        }
+        idamApi.stop(0);
+        idamApiThreads.shutdownNow();
+    }
+
+    @Test
+    public void idamApiNoRedirectRestTemplate_shouldReuseConnectionsUnderSustainedPinLogins() throws Exception {
+        ServerConfigurationProperties server = new ServerConfigurationProperties();
+        server.setMaxConnectionsPerRoute(THREADS);
+        server.setMaxConnectionsTotal(THREADS);
+        given(configurationProperties.getServer()).willReturn(server);
+        IdamApiHttpClientConfiguration configuration = new IdamApiHttpClientConfiguration(configurationProperties);
+        PoolingHttpClientConnectionManager connectionManager = configuration.idamApiConnectionManager(new SimpleMeterRegistry());
+        RestTemplate restTemplate = configuration.idamApiNoRedirectRestTemplate(connectionManager, okHttpClient);
+
+        try {
+            assertThat(pinLogins(() -> restTemplate), is(THREADS * LOGINS_PER_THREAD));
+            assertThat(clientPorts.size(), lessThanOrEqualTo(THREADS));
+        } finally {
+            connectionManager.close();
+        }
+    }
+
+    @Test
+    public void restTemplatePerCall_shouldOpenAConnectionForEveryPinLogin() throws Exception {
+        // what SPIService.loginWithPin used to do
+        Supplier<RestTemplate> restTemplatePerCall = () -> {
+            CloseableHttpClient httpClient = HttpClients.custom().disableRedirectHandling().build();
+            httpClients.add(httpClient);
+            return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        };
+
+        assertThat(pinLogins(restTemplatePerCall), is(THREADS * LOGINS_PER_THREAD));
+        assertThat(clientPorts.size(), is(THREADS * LOGINS_PER_THREAD));
+    }
+
+    private int pinLogins(Supplier<RestTemplate> restTemplate) throws Exception {
+        List<Callable<Integer>> loginLoops = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            loginLoops.add(() -> {
+                int redirects = 0;
+                for (int login = 0; login < LOGINS_PER_THREAD; login++) {
+                    if (restTemplate.get().exchange(pinUri, HttpMethod.GET, null, String.class).getStatusCode() == HttpStatus.FOUND) {
+                        redirects++;
+                    }
+                }
+                return redirects;
+            });
+        }
+        int redirects = 0;
+        for (Future<Integer> loop : callers.invokeAll(loginLoops)) {
+            redirects += loop.get();
+        }
+        return redirects;
+    }
+}
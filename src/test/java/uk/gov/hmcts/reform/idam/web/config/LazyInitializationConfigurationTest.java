@@ -0,0 +1,48 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import org.junit.Test;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.web.client.RestTemplate;
+import uk.gov.hmcts.reform.idam.web.AppController;
+import uk.gov.hmcts.reform.idam.web.sso.SSOService;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LazyInitializationConfigurationTest {
+
+    private final LazyInitializationExcludeFilter filter =
+        LazyInitializationConfiguration.requestCriticalBeansExcludeFilter();
+
+    /**
+     * @verifies exclude controllers
+     * @see LazyInitializationConfiguration#requestCriticalBeansExcludeFilter()
+     */
+    @Test
+    public void requestCriticalBeansExcludeFilter_shouldExcludeControllers() {
+        assertThat(isExcluded(AppController.class), is(true));
+    }
+
+    /**
+     * @verifies exclude request critical beans
+     * @see LazyInitializationConfiguration#requestCriticalBeansExcludeFilter()
+     */
+    @Test
+    public void requestCriticalBeansExcludeFilter_shouldExcludeRequestCriticalBeans() {
+        assertThat(isExcluded(RestTemplate.class), is(true));
+    }
+
+    /**
+     * @verifies not exclude other beans
+     * @see LazyInitializationConfiguration#requestCriticalBeansExcludeFilter()
+     */
+    @Test
+    public void requestCriticalBeansExcludeFilter_shouldNotExcludeOtherBeans() {
+        assertThat(isExcluded(SSOService.class), is(false));
+    }
+
+    private boolean isExcluded(Class<?> beanType) {
+        return filter.isExcluded("bean", new RootBeanDefinition(beanType), beanType);
+    }
+}
@@ -0,0 +1,251 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import com.google.common.base.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.session.MapSession;
+import org.springframework.session.MapSessionRepository;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class NearCacheSessionRepositoryTest {
+
+    private static final String NAMESPACE = "spring:session";
+    private static final Duration TOUCH_INTERVAL = Duration.ofMinutes(5);
+    private static final Duration SELF_WRITE_WINDOW = Duration.ofSeconds(2);
+
+    private MapSessionRepository redis;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private NearCacheSessionRepository<MapSession> nearCache;
+
+    private String sessionId;
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Before
+    public void setUp() {
+        StrategicConfigurationProperties.NearCache properties = new StrategicConfigurationProperties.NearCache();
+        properties.setEnabled(true);
+        properties.setMaximumSize(100);
+        properties.setMaxAge(Duration.ofMinutes(1));
+        properties.setTouchInterval(TOUCH_INTERVAL);
+        properties.setSelfWriteWindow(SELF_WRITE_WINDOW);
+        redis = spy(new MapSessionRepository(new ConcurrentHashMap<>()));
+        meterRegistry = new SimpleMeterRegistry();
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        nearCache = new NearCacheSessionRepository<>(redis, properties, NAMESPACE, meterRegistry, ticker);
+
+        NearCacheSessionRepository<MapSession>.CachedSession session = nearCache.createSession();
+        session.setAttribute("provider", "ejudiciary-aad");
+        nearCache.save(session);
+        sessionId = session.getId();
+        clearInvocations(redis);
+    }
+
+    /**
+     * @verifies serve repeated reads from the cache
+     * @see NearCacheSessionRepository#findById(String)
+     */
+    @Test
+    public void findById_shouldServeRepeatedReadsFromTheCache() {
+        assertThat(nearCache.findById(sessionId).getAttribute("provider"), equalTo("ejudiciary-aad"));
+        assertThat(nearCache.findById(sessionId).getAttribute("provider"), equalTo("ejudiciary-aad"));
+
+        verify(redis, never()).findById(any());
+        assertThat(meterRegistry.get(NearCacheSessionRepository.METRIC + ".hit.ratio").gauge().value(), is(1.0));
+    }
+
+    /**
+     * @verifies read through once the session was evicted
+     * @see NearCacheSessionRepository#findById(String)
+     */
+    @Test
+    public void findById_shouldReadThroughOnceTheSessionWasEvicted() {
+        afterTheSelfWriteWindow();
+        nearCache.onMessage(keyspaceMessage(NAMESPACE + ":sessions:" + sessionId), null);
+
+        nearCache.findById(sessionId);
+        nearCache.findById(sessionId);
+
+        verify(redis, times(1)).findById(sessionId);
+    }
+
+    /**
+     * @verifies not serve expired sessions from the cache
+     * @see NearCacheSessionRepository#findById(String)
+     */
+    @Test
+    public void findById_shouldNotServeExpiredSessionsFromTheCache() {
+        NearCacheSessionRepository<MapSession>.CachedSession session = nearCache.createSession();
+        session.setMaxInactiveInterval(Duration.ofSeconds(1));
+        session.setLastAccessedTime(session.getLastAccessedTime().minusSeconds(2));
+        nearCache.save(session);
+
+        assertThat(nearCache.findById(session.getId()), is(nullValue()));
+    }
+
+    /**
+     * @verifies evict the session named in the channel
+     * @see NearCacheSessionRepository#onMessage(org.springframework.data.redis.connection.Message, byte[])
+     */
+    @Test
+    public void onMessage_shouldEvictTheSessionNamedInTheChannel() {
+        MapSession changed = redis.findById(sessionId);
+        changed.setAttribute("provider", "moj");
+        redis.save(changed);
+        afterTheSelfWriteWindow();
+
+        nearCache.onMessage(keyspaceMessage(NAMESPACE + ":sessions:" + sessionId), null);
+
+        assertThat(nearCache.findById(sessionId).getAttribute("provider"), equalTo("moj"));
+    }
+
+    /**
+     * @verifies evict the session whose expiry key changed
+     * @see NearCacheSessionRepository#onMessage(org.springframework.data.redis.connection.Message, byte[])
+     */
+    @Test
+    public void onMessage_shouldEvictTheSessionWhoseExpiryKeyChanged() {
+        redis.deleteById(sessionId);
+        afterTheSelfWriteWindow();
+
+        nearCache.onMessage(keyspaceMessage(NAMESPACE + ":sessions:expires:" + sessionId), null);
+
+        assertThat(nearCache.findById(sessionId), is(nullValue()));
+    }
+
+    /**
+     * @verifies not evict the session this pod just saved
+     * @see NearCacheSessionRepository#onMessage(org.springframework.data.redis.connection.Message, byte[])
+     */
+    @Test
+    public void onMessage_shouldNotEvictTheSessionThisPodJustSaved() {
+        nearCache.onMessage(keyspaceMessage(NAMESPACE + ":sessions:" + sessionId), null);
+        nearCache.onMessage(keyspaceMessage(NAMESPACE + ":sessions:expires:" + sessionId), null);
+
+        assertThat(nearCache.findById(sessionId).getAttribute("provider"), equalTo("ejudiciary-aad"));
+        verify(redis, never()).findById(any());
+    }
+
+    /**
+     * @verifies not share mutable attribute values with the copy
+     * @see NearCacheSessionRepository#copy(org.springframework.session.Session)
+     */
+    @Test
+    public void copy_shouldNotShareMutableAttributeValuesWithTheCopy() {
+        MapSession session = new MapSession();
+        HashMap<String, String[]> oidcParams = new HashMap<>();
+        oidcParams.put("client_id", new String[]{"idam-web"});
+        session.setAttribute("oidcParams", oidcParams);
+        session.setAttribute("provider", "ejudiciary-aad");
+
+        MapSession copy = NearCacheSessionRepository.copy(session);
+        oidcParams.put("login_hint", new String[]{"moj"});
+
+        Map<String, String[]> copied = copy.getAttribute("oidcParams");
+        assertThat(copied.containsKey("login_hint"), is(false));
+        assertThat(copied.get("client_id")[0], equalTo("idam-web"));
+        assertThat(copy.getAttribute("provider"), sameInstance(session.getAttribute("provider")));
+    }
+
+    /**
+     * @verifies write changed sessions through and cache the saved copy
+     * @see NearCacheSessionRepository#save(NearCacheSessionRepository.CachedSession)
+     */
+    @Test
+    public void save_shouldWriteChangedSessionsThroughAndCacheTheSavedCopy() {
+        NearCacheSessionRepository<MapSession>.CachedSession session = nearCache.findById(sessionId);
+        session.setAttribute("oidcParams", "state");
+        nearCache.save(session);
+
+        assertThat(redis.findById(sessionId).getAttribute("oidcParams"), equalTo("state"));
+        clearInvocations(redis);
+        assertThat(nearCache.findById(sessionId).getAttribute("oidcParams"), equalTo("state"));
+        verify(redis, never()).findById(any());
+    }
+
+    /**
+     * @verifies defer touches within the touch interval
+     * @see NearCacheSessionRepository#save(NearCacheSessionRepository.CachedSession)
+     */
+    @Test
+    public void save_shouldDeferTouchesWithinTheTouchInterval() {
+        NearCacheSessionRepository<MapSession>.CachedSession session = nearCache.findById(sessionId);
+        session.setLastAccessedTime(session.getLastAccessedTime().plusSeconds(1));
+
+        nearCache.save(session);
+
+        verify(redis, never()).save(any());
+        assertThat(touches("deferred"), is(1.0));
+    }
+
+    /**
+     * @verifies write touches once the touch interval has passed
+     * @see NearCacheSessionRepository#save(NearCacheSessionRepository.CachedSession)
+     */
+    @Test
+    public void save_shouldWriteTouchesOnceTheTouchIntervalHasPassed() {
+        NearCacheSessionRepository<MapSession>.CachedSession session = nearCache.findById(sessionId);
+        session.setLastAccessedTime(session.getLastAccessedTime().plus(TOUCH_INTERVAL));
+
+        nearCache.save(session);
+
+        assertThat(redis.findById(sessionId).getLastAccessedTime(), equalTo(session.getLastAccessedTime()));
+        assertThat(touches("written"), is(1.0));
+    }
+
+    /**
+     * @verifies evict the old id when the session id changed
+     * @see NearCacheSessionRepository#save(NearCacheSessionRepository.CachedSession)
+     */
+    @Test
+    public void save_shouldEvictTheOldIdWhenTheSessionIdChanged() {
+        NearCacheSessionRepository<MapSession>.CachedSession session = nearCache.findById(sessionId);
+        String newId = session.changeSessionId();
+
+        nearCache.save(session);
+
+        assertThat(nearCache.findById(sessionId), is(nullValue()));
+        assertThat(nearCache.findById(newId).getAttribute("provider"), equalTo("ejudiciary-aad"));
+    }
+
+    private void afterTheSelfWriteWindow() {
+        nanos.addAndGet(SELF_WRITE_WINDOW.toNanos());
+    }
+
+    private DefaultMessage keyspaceMessage(String key) {
+        return new DefaultMessage(("__keyspace@0__:" + key).getBytes(StandardCharsets.UTF_8),
+            "hset".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private double touches(String outcome) {
+        return meterRegistry.get(NearCacheSessionRepository.METRIC + ".touches").tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,69 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.ServerConfigurationProperties;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OkHttpConfigurationTest {
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private ConfigurationProperties configurationProperties;
+
+    @Before
+    public void setUp() {
+        ServerConfigurationProperties server = new ServerConfigurationProperties();
+        server.setConnectionTimeout(1000);
+        server.setReadTimeout(2000);
+        server.setMaxConnectionIdleTime(20);
+        server.setMaxConnectionsPerRoute(10);
+        server.setMaxConnectionsTotal(10);
+        given(configurationProperties.getServer()).willReturn(server);
+    }
+
+    /**
+     * @verifies use h2c prior knowledge for http urls
+     * @see OkHttpConfiguration#protocols(String)
+     */
+    @Test
+    public void protocols_shouldUseH2cPriorKnowledgeForHttpUrls() {
+        assertThat(OkHttpConfiguration.protocols("http://idam-api"), equalTo(List.of(Protocol.H2_PRIOR_KNOWLEDGE)));
+    }
+
+    /**
+     * @verifies negotiate http2 with http1 fallback for https urls
+     * @see OkHttpConfiguration#protocols(String)
+     */
+    @Test
+    public void protocols_shouldNegotiateHttp2WithHttp1FallbackForHttpsUrls() {
+        assertThat(OkHttpConfiguration.protocols("https://idam-api"), equalTo(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1)));
+    }
+
+    @Test
+    public void idamApiOkHttpClient_shouldNotFollowRedirectsAndExportPoolMetrics() {
+        given(configurationProperties.getStrategic().getService().getUrl()).willReturn("https://idam-api");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        OkHttpClient client = new OkHttpConfiguration(configurationProperties).idamApiOkHttpClient(meterRegistry);
+
+        assertThat(client.followRedirects(), is(false));
+        assertThat(client.readTimeoutMillis(), is(2000));
+        assertThat(meterRegistry.get("okhttp.pool.connection.limit").tag("client", "idam-api").gauge().value(),
+            is((double) OkHttpConfiguration.MAX_IDLE_CONNECTIONS));
+    }
+}
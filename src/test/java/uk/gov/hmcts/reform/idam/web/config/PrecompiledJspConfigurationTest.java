@@ -0,0 +1,48 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class PrecompiledJspConfigurationTest {
+
+    private static final String WEB_FRAGMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<web-fragment xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\" version=\"4.0\" metadata-complete=\"true\">\n"
+        + "  <name>org_apache_jasper.jspc</name>\n"
+        + "  <servlet>\n"
+        + "    <servlet-name>org.apache.jsp.WEB_002dINF.jsp.login_jsp</servlet-name>\n"
+        + "    <servlet-class>org.apache.jsp.WEB_002dINF.jsp.login_jsp</servlet-class>\n"
+        + "  </servlet>\n"
+        + "  <servlet>\n"
+        + "    <servlet-name>org.apache.jsp.WEB_002dINF.jsp.error._404_jsp</servlet-name>\n"
+        + "    <servlet-class>org.apache.jsp.WEB_002dINF.jsp.error._404_jsp</servlet-class>\n"
+        + "  </servlet>\n"
+        + "  <servlet-mapping>\n"
+        + "    <servlet-name>org.apache.jsp.WEB_002dINF.jsp.login_jsp</servlet-name>\n"
+        + "    <url-pattern>/WEB-INF/jsp/login.jsp</url-pattern>\n"
+        + "  </servlet-mapping>\n"
+        + "  <servlet-mapping>\n"
+        + "    <servlet-name>org.apache.jsp.WEB_002dINF.jsp.error._404_jsp</servlet-name>\n"
+        + "    <url-pattern>/WEB-INF/jsp/error/404.jsp</url-pattern>\n"
+        + "  </servlet-mapping>\n"
+        + "</web-fragment>\n";
+
+    /**
+     * @verifies map each view path to its servlet class
+     * @see PrecompiledJspConfiguration#servletMappings(java.io.InputStream)
+     */
+    @Test
+    public void servletMappings_shouldMapEachViewPathToItsServletClass() throws Exception {
+        Map<String, String> mappings = PrecompiledJspConfiguration.servletMappings(
+            new ByteArrayInputStream(WEB_FRAGMENT.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(mappings, equalTo(Map.of(
+            "/WEB-INF/jsp/login.jsp", "org.apache.jsp.WEB_002dINF.jsp.login_jsp",
+            "/WEB-INF/jsp/error/404.jsp", "org.apache.jsp.WEB_002dINF.jsp.error._404_jsp")));
+    }
+}
@@ -0,0 +1,109 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import uk.gov.hmcts.reform.idam.web.helper.StageTimer;
+
+import javax.servlet.DispatcherType;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static uk.gov.hmcts.reform.idam.web.config.StageTimingInterceptor.SERVER_TIMING;
+
+public class StageTimingInterceptorTest {
+
+    private final Object handler = new Object();
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StageTimer stageTimer;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stageTimer = new StageTimer(meterRegistry);
+        request = new MockHttpServletRequest("POST", "/login");
+        response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    /**
+     * @verifies not restart the timings on an async dispatch
+     * @see StageTimingInterceptor#preHandle(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, Object)
+     */
+    @Test
+    public void preHandle_shouldNotRestartTheTimingsOnAnAsyncDispatch() {
+        StageTimingInterceptor interceptor = new StageTimingInterceptor(stageTimer, true);
+        interceptor.preHandle(request, response, handler);
+        stageTimer.lap("validation");
+        String timings = stageTimer.serverTiming(request).orElse(null);
+
+        request.setDispatcherType(DispatcherType.ASYNC);
+        interceptor.preHandle(request, response, handler);
+
+        assertThat(stageTimer.serverTiming(request).orElse(null), equalTo(timings));
+    }
+
+    /**
+     * @verifies add the server timing header when enabled
+     * @see StageTimingInterceptor#postHandle(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, Object, org.springframework.web.servlet.ModelAndView)
+     */
+    @Test
+    public void postHandle_shouldAddTheServerTimingHeaderWhenEnabled() {
+        StageTimingInterceptor interceptor = new StageTimingInterceptor(stageTimer, true);
+
+        interceptor.preHandle(request, response, handler);
+        stageTimer.lap("validation");
+        interceptor.postHandle(request, response, handler, null);
+
+        assertThat(response.getHeader(SERVER_TIMING), startsWith("validation;dur="));
+    }
+
+    /**
+     * @verifies not add the server timing header when disabled
+     * @see StageTimingInterceptor#postHandle(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, Object, org.springframework.web.servlet.ModelAndView)
+     */
+    @Test
+    public void postHandle_shouldNotAddTheServerTimingHeaderWhenDisabled() {
+        StageTimingInterceptor interceptor = new StageTimingInterceptor(stageTimer, false);
+
+        interceptor.preHandle(request, response, handler);
+        stageTimer.lap("validation");
+        interceptor.postHandle(request, response, handler, null);
+
+        assertThat(response.getHeader(SERVER_TIMING), is(nullValue()));
+    }
+
+    /**
+     * @verifies record the render stage
+     * @see StageTimingInterceptor#afterCompletion(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, Object, Exception)
+     */
+    @Test
+    public void afterCompletion_shouldRecordTheRenderStage() {
+        StageTimingInterceptor interceptor = new StageTimingInterceptor(stageTimer, false);
+
+        interceptor.preHandle(request, response, handler);
+        interceptor.postHandle(request, response, handler, null);
+        interceptor.afterCompletion(request, response, handler, null);
+
+        assertThat(meterRegistry.get(StageTimer.METRIC).tag("flow", "login").tag("stage", "render").timer().count(), is(1L));
+    }
+}
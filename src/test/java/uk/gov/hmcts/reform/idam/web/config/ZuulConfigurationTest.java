@@ -0,0 +1,83 @@
+package uk.gov.hmcts.reform.idam.web.config;
+
+import com.netflix.zuul.context.RequestContext;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.netflix.zuul.filters.ProxyRequestHelper;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.cloud.netflix.zuul.filters.route.SimpleHostRoutingFilter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ZuulConfigurationTest {
+
+    private static final String REDIRECT_URI = "/callback?code=abc";
+
+    private HttpServer idamApi;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    @Before
+    public void setUp() throws Exception {
+        idamApi = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        idamApi.createContext("/o/authorize", exchange -> {
+            exchange.getResponseHeaders().add(HttpHeaders.LOCATION, url() + REDIRECT_URI);
+            exchange.sendResponseHeaders(HttpStatus.FOUND.value(), -1);
+            exchange.close();
+        });
+        idamApi.createContext("/callback", exchange -> {
+            exchange.sendResponseHeaders(HttpStatus.OK.value(), -1);
+            exchange.close();
+        });
+        idamApi.start();
+        connectionManager = new PoolingHttpClientConnectionManager();
+    }
+
+    @After
+    public void tearDown() {
+        RequestContext.getCurrentContext().unset();
+        connectionManager.close();
+        idamApi.stop(0);
+    }
+
+    /**
+     * @verifies pass a redirect from idam-api back to the caller unchanged
+     * @see ZuulConfiguration#simpleHostRoutingFilter(ProxyRequestHelper, ZuulProperties, PoolingHttpClientConnectionManager)
+     */
+    @Test
+    public void simpleHostRoutingFilter_shouldPassARedirectFromIdamApiBackToTheCallerUnchanged() throws Exception {
+        ZuulProperties zuulProperties = new ZuulProperties();
+        SimpleHostRoutingFilter filter = new ZuulConfiguration()
+            .simpleHostRoutingFilter(new ProxyRequestHelper(zuulProperties), zuulProperties, connectionManager);
+        RequestContext context = RequestContext.getCurrentContext();
+        context.setRequest(new MockHttpServletRequest("GET", "/o/authorize"));
+        context.setResponse(new MockHttpServletResponse());
+        context.setRouteHost(new URL(url()));
+
+        filter.run();
+
+        assertThat(context.getResponseStatusCode(), is(HttpStatus.FOUND.value()));
+        assertThat(context.getZuulResponseHeaders().stream()
+            .filter(header -> HttpHeaders.LOCATION.equalsIgnoreCase(header.first()))
+            .map(header -> header.second())
+            .findFirst()
+            .orElse(null), equalTo(url() + REDIRECT_URI));
+    }
+
+    private String url() {
+        return "http://localhost:" + idamApi.getAddress().getPort();
+    }
+}
@@ -0,0 +1,66 @@
+package uk.gov.hmcts.reform.idam.web.health;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class StartupReportTest {
+
+    private BufferingApplicationStartup startup;
+
+    @Before
+    public void setUp() {
+        startup = new BufferingApplicationStartup(16);
+    }
+
+    /**
+     * @verifies exclude the time spent creating dependencies
+     * @see StartupReport#slowestBeans(org.springframework.boot.context.metrics.buffering.StartupTimeline, int)
+     */
+    @Test
+    public void slowestBeans_shouldExcludeTheTimeSpentCreatingDependencies() throws Exception {
+        StartupStep controller = instantiate("appController");
+        StartupStep service = instantiate("spiService");
+        Thread.sleep(50);
+        service.end();
+        controller.end();
+
+        List<StartupReport.BeanInit> slowest = StartupReport.slowestBeans(startup.getBufferedTimeline(), 10);
+
+        assertThat(slowest.get(0).getBeanName(), equalTo("spiService"));
+        assertThat(slowest.get(0).getDuration(), greaterThanOrEqualTo(Duration.ofMillis(50)));
+        assertThat(slowest.get(1).getBeanName(), equalTo("appController"));
+        assertThat(slowest.get(1).getDuration(), lessThan(Duration.ofMillis(50)));
+    }
+
+    /**
+     * @verifies return at most the requested number of beans, slowest first
+     * @see StartupReport#slowestBeans(org.springframework.boot.context.metrics.buffering.StartupTimeline, int)
+     */
+    @Test
+    public void slowestBeans_shouldReturnAtMostTheRequestedNumberOfBeansSlowestFirst() throws Exception {
+        instantiate("fast").end();
+        StartupStep slow = instantiate("slow");
+        Thread.sleep(20);
+        slow.end();
+        startup.start("spring.context.refresh").end();
+
+        List<StartupReport.BeanInit> slowest = StartupReport.slowestBeans(startup.getBufferedTimeline(), 1);
+
+        assertThat(slowest.size(), equalTo(1));
+        assertThat(slowest.get(0).getBeanName(), equalTo("slow"));
+    }
+
+    private StartupStep instantiate(String beanName) {
+        return startup.start(StartupReport.INSTANTIATE_STEP).tag("beanName", beanName);
+    }
+}
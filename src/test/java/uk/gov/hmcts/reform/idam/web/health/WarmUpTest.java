@@ -0,0 +1,172 @@
+package uk.gov.hmcts.reform.idam.web.health;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.strategic.SPIService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class WarmUpTest {
+
+    private static final String BASE_URL = "http://localhost:8080";
+    private static final String CLIENT_ID = "warm-up-client";
+    private static final String REDIRECT_URI = "https://localhost/warm-up";
+    private static final String LOGIN_PATH = "/login?client_id={clientId}&redirect_uri={redirectUri}";
+    private static final String VERIFICATION_PATH = "/verification?client_id={clientId}";
+    private static final Map<String, String> VARIABLES = Map.of("clientId", CLIENT_ID, "redirectUri", REDIRECT_URI);
+
+    @Mock
+    private SPIService spiService;
+
+    @Mock
+    private ObjectProvider<RedisConnectionFactory> redisConnectionFactoryProvider;
+
+    @Mock
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Mock
+    private RedisConnection redisConnection;
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private WarmUp warmUp;
+
+    @Before
+    public void setUp() {
+        StrategicConfigurationProperties.WarmUp properties = new StrategicConfigurationProperties.WarmUp();
+        properties.setEnabled(true);
+        properties.setClientId(CLIENT_ID);
+        properties.setRedirectUri(REDIRECT_URI);
+        properties.setIterations(3);
+        properties.setConnections(4);
+        properties.setTimeout(Duration.ofSeconds(10));
+        properties.setPaths(List.of(LOGIN_PATH, VERIFICATION_PATH));
+        meterRegistry = new SimpleMeterRegistry();
+        warmUp = new WarmUp(properties, spiService, redisConnectionFactoryProvider, restTemplate, meterRegistry);
+    }
+
+    /**
+     * @verifies fail without a client id when enabled
+     * @see WarmUp#WarmUp(StrategicConfigurationProperties.WarmUp, SPIService, ObjectProvider, RestTemplate, io.micrometer.core.instrument.MeterRegistry)
+     */
+    @Test(expected = IllegalStateException.class)
+    public void warmUp_shouldFailWithoutAClientIdWhenEnabled() {
+        StrategicConfigurationProperties.WarmUp properties = new StrategicConfigurationProperties.WarmUp();
+        properties.setEnabled(true);
+
+        new WarmUp(properties, spiService, redisConnectionFactoryProvider, restTemplate, meterRegistry);
+    }
+
+    /**
+     * @verifies be out of service until the warm up has finished
+     * @see WarmUp#health()
+     */
+    @Test
+    public void health_shouldBeOutOfServiceUntilTheWarmUpHasFinished() {
+        assertThat(warmUp.health().getStatus(), equalTo(Status.OUT_OF_SERVICE));
+
+        warmUp.run(BASE_URL);
+
+        assertThat(warmUp.health().getStatus(), equalTo(Status.UP));
+    }
+
+    /**
+     * @verifies be up once the timeout has passed even if the warm up has not finished
+     * @see WarmUp#health()
+     */
+    @Test
+    public void health_shouldBeUpOnceTheTimeoutHasPassedEvenIfTheWarmUpHasNotFinished() throws Exception {
+        StrategicConfigurationProperties.WarmUp properties = new StrategicConfigurationProperties.WarmUp();
+        properties.setEnabled(true);
+        properties.setClientId(CLIENT_ID);
+        properties.setConnections(1);
+        properties.setTimeout(Duration.ZERO);
+        CountDownLatch stuck = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(redisConnectionFactoryProvider.getIfAvailable()).willAnswer(invocation -> {
+            stuck.countDown();
+            release.await();
+            return null;
+        });
+        WarmUp hangingWarmUp = new WarmUp(properties, spiService, redisConnectionFactoryProvider, restTemplate, meterRegistry);
+        Thread thread = new Thread(() -> hangingWarmUp.run(BASE_URL));
+        thread.start();
+        try {
+            assertThat(stuck.await(5, TimeUnit.SECONDS), is(true));
+
+            assertThat(hangingWarmUp.health().getStatus(), equalTo(Status.UP));
+        } finally {
+            release.countDown();
+            thread.join();
+        }
+    }
+
+    /**
+     * @verifies request each path for each iteration
+     * @see WarmUp#run(String)
+     */
+    @Test
+    public void run_shouldRequestEachPathForEachIteration() {
+        warmUp.run(BASE_URL);
+
+        verify(restTemplate, times(3)).getForEntity(BASE_URL + LOGIN_PATH, String.class, VARIABLES);
+        verify(restTemplate, times(3)).getForEntity(BASE_URL + VERIFICATION_PATH, String.class, VARIABLES);
+    }
+
+    /**
+     * @verifies open the configured number of connections to idam-api
+     * @see WarmUp#run(String)
+     */
+    @Test
+    public void run_shouldOpenTheConfiguredNumberOfConnectionsToIdamApi() {
+        given(redisConnectionFactoryProvider.getIfAvailable()).willReturn(redisConnectionFactory);
+        given(redisConnectionFactory.getConnection()).willReturn(redisConnection);
+
+        warmUp.run(BASE_URL);
+
+        verify(spiService, times(4)).healthCheck();
+        verify(redisConnection).ping();
+    }
+
+    /**
+     * @verifies finish and time each step even if a step fails
+     * @see WarmUp#run(String)
+     */
+    @Test
+    public void run_shouldFinishAndTimeEachStepEvenIfAStepFails() {
+        given(restTemplate.getForEntity(BASE_URL + LOGIN_PATH, String.class, VARIABLES)).willThrow(new ResourceAccessException("refused"));
+
+        warmUp.run(BASE_URL);
+
+        assertThat(warmUp.health().getStatus(), equalTo(Status.UP));
+        assertThat(meterRegistry.get(WarmUp.METRIC).tag("step", "views").tag("outcome", "failure").timer().count(), is(1L));
+        assertThat(meterRegistry.get(WarmUp.METRIC).tag("step", "idam-api").tag("outcome", "success").timer().count(), is(1L));
+        assertThat(meterRegistry.get(WarmUp.METRIC).tag("step", "redis").tag("outcome", "success").timer().count(), is(1L));
+    }
+}
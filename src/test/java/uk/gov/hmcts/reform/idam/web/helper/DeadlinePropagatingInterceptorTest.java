@@ -0,0 +1,43 @@
+package uk.gov.hmcts.reform.idam.web.helper;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpRequest;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import uk.gov.hmcts.reform.idam.web.strategic.ApiDeadline;
+
+public class DeadlinePropagatingInterceptorTest {
+
+    @After
+    public void tearDown() {
+        ApiDeadline.setCallTimeout(null);
+    }
+
+    /**
+     * @verifies add the call timeout header
+     * @see DeadlinePropagatingInterceptor#addTimeoutHeader(HttpRequest)
+     */
+    @Test
+    public void addTimeoutHeader_shouldAddTheCallTimeoutHeader() {
+        final HttpRequest request = new MockClientHttpRequest();
+        ApiDeadline.setCallTimeout(1500L);
+
+        new DeadlinePropagatingInterceptor().addTimeoutHeader(request);
+
+        Assert.assertEquals("1500", request.getHeaders().getFirst(ApiDeadline.TIMEOUT_HEADER));
+    }
+
+    /**
+     * @verifies not add the header without a call timeout
+     * @see DeadlinePropagatingInterceptor#addTimeoutHeader(HttpRequest)
+     */
+    @Test
+    public void addTimeoutHeader_shouldNotAddTheHeaderWithoutACallTimeout() {
+        final HttpRequest request = new MockClientHttpRequest();
+
+        new DeadlinePropagatingInterceptor().addTimeoutHeader(request);
+
+        Assert.assertFalse(request.getHeaders().containsKey(ApiDeadline.TIMEOUT_HEADER));
+    }
+}
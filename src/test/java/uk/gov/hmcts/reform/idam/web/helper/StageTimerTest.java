@@ -0,0 +1,102 @@
+package uk.gov.hmcts.reform.idam.web.helper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class StageTimerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StageTimer stageTimer;
+
+    private MockHttpServletRequest request;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stageTimer = new StageTimer(meterRegistry);
+        request = new MockHttpServletRequest("POST", "/login");
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    /**
+     * @verifies record the time since the previous stage
+     * @see StageTimer#lap(String)
+     */
+    @Test
+    public void lap_shouldRecordTheTimeSinceThePreviousStage() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        stageTimer.begin(request, "login");
+
+        stageTimer.lap("validation");
+
+        assertThat(meterRegistry.get(StageTimer.METRIC).tag("flow", "login").tag("stage", "validation").timer().count(), is(1L));
+    }
+
+    /**
+     * @verifies record the stage in the current flow
+     * @see StageTimer#time(String, java.util.function.Supplier)
+     */
+    @Test
+    public void time_shouldRecordTheStageInTheCurrentFlow() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        stageTimer.begin(request, "verification");
+
+        String result = stageTimer.time("otp", () -> "cookie");
+
+        assertThat(result, equalTo("cookie"));
+        assertThat(meterRegistry.get(StageTimer.METRIC).tag("flow", "verification").tag("stage", "otp").timer().count(), is(1L));
+    }
+
+    /**
+     * @verifies record the stage without a flow outside a request
+     * @see StageTimer#time(String, java.util.function.Supplier)
+     */
+    @Test
+    public void time_shouldRecordTheStageWithoutAFlowOutsideARequest() {
+        stageTimer.time("authenticate", () -> "result");
+
+        assertThat(meterRegistry.get(StageTimer.METRIC).tag("flow", "none").tag("stage", "authenticate").timer().count(), is(1L));
+    }
+
+    /**
+     * @verifies list the stages recorded so far in milliseconds
+     * @see StageTimer#serverTiming(javax.servlet.http.HttpServletRequest)
+     */
+    @Test
+    public void serverTiming_shouldListTheStagesRecordedSoFarInMilliseconds() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        stageTimer.begin(request, "login");
+        stageTimer.lap("validation");
+        stageTimer.time("authenticate", () -> "result");
+
+        String header = stageTimer.serverTiming(request).orElseThrow();
+
+        assertTrue(header, header.matches("validation;dur=\\d+\\.\\d, authenticate;dur=\\d+\\.\\d"));
+    }
+
+    /**
+     * @verifies be empty if no flow was started
+     * @see StageTimer#serverTiming(javax.servlet.http.HttpServletRequest)
+     */
+    @Test
+    public void serverTiming_shouldBeEmptyIfNoFlowWasStarted() {
+        assertThat(stageTimer.serverTiming(request), is(Optional.empty()));
+    }
+}
@@ -0,0 +1,128 @@
+package uk.gov.hmcts.reform.idam.web.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Local stand-in for the idam-api endpoints behind the login journeys, each answering after a delay drawn from its
+ * {@link LatencyDistribution}. Usernames starting with {@value #OTP_USER_PREFIX} are asked for an OTP; any 8 digit
+ * code is accepted.
+ */
+class IdamApiStub {
+
+    static final String OTP_USER_PREFIX = "otp.";
+
+    static final String CLIENT_ID = "load-test";
+
+    static final String REDIRECT_URI = "https://service.local/callback";
+
+    static final String[] ENDPOINTS = {"authenticate", "authorize", "services", "details", "federation"};
+
+    private static final String USER_JSON = "{\"id\":\"%s\",\"email\":\"citizen@example.com\",\"forename\":\"Load\","
+        + "\"surname\":\"Test\",\"active\":true,\"roles\":[\"citizen\"]}";
+
+    private final HttpServer server;
+
+    private final Map<String, LatencyDistribution> latencies;
+
+    IdamApiStub(Map<String, LatencyDistribution> latencies) throws IOException {
+        this.latencies = latencies;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.createContext("/authenticate", delayed("authenticate", this::authenticate));
+        server.createContext("/o/authorize", delayed("authorize", this::authorize));
+        server.createContext("/services", delayed("services", exchange -> json(exchange, HttpStatus.OK,
+            "[{\"label\":\"Load test\",\"oauth2ClientId\":\"" + CLIENT_ID + "\",\"selfRegistrationAllowed\":true}]")));
+        server.createContext("/details", delayed("details", exchange -> json(exchange, HttpStatus.OK,
+            String.format(USER_JSON, UUID.randomUUID()))));
+        server.createContext("/api/v1/federatedusers", delayed("federation", exchange -> json(exchange, HttpStatus.OK,
+            String.format(USER_JSON, UUID.randomUUID()))));
+        server.createContext("/health", exchange -> json(exchange, HttpStatus.OK, "{\"status\":\"UP\"}"));
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    String url() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void authenticate(HttpExchange exchange) throws IOException {
+        Map<String, String> form = form(exchange);
+        if (form.containsKey("authId")) {
+            setCookie(exchange, "Idam.Session=" + UUID.randomUUID());
+        } else if (StringUtils.startsWith(form.get("username"), OTP_USER_PREFIX)) {
+            setCookie(exchange, "Idam.AuthId=" + UUID.randomUUID());
+        } else {
+            setCookie(exchange, "Idam.Session=" + UUID.randomUUID());
+        }
+        json(exchange, HttpStatus.OK, "{}");
+    }
+
+    private void authorize(HttpExchange exchange) throws IOException {
+        String redirectUri = form(exchange).getOrDefault("redirect_uri", REDIRECT_URI);
+        exchange.getResponseHeaders().add(HttpHeaders.LOCATION, UriComponentsBuilder.fromUriString(redirectUri)
+            .queryParam("code", UUID.randomUUID()).build().toUriString());
+        exchange.sendResponseHeaders(HttpStatus.FOUND.value(), -1);
+        exchange.close();
+    }
+
+    private HttpHandler delayed(String endpoint, HttpHandler handler) {
+        LatencyDistribution latency = latencies.get(endpoint);
+        return exchange -> {
+            try {
+                Thread.sleep(latency.sampleMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handler.handle(exchange);
+        };
+    }
+
+    private static void setCookie(HttpExchange exchange, String cookie) {
+        exchange.getResponseHeaders().add(HttpHeaders.SET_COOKIE, cookie + "; Path=/; HttpOnly");
+    }
+
+    private static void json(HttpExchange exchange, HttpStatus status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+        exchange.sendResponseHeaders(status.value(), bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static Map<String, String> form(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            String encoded = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            return Arrays.stream(encoded.split("&"))
+                .filter(pair -> pair.contains("="))
+                .collect(Collectors.toMap(
+                    pair -> URLDecoder.decode(pair.substring(0, pair.indexOf('=')), StandardCharsets.UTF_8),
+                    pair -> URLDecoder.decode(pair.substring(pair.indexOf('=') + 1), StandardCharsets.UTF_8),
+                    (first, second) -> first));
+        }
+    }
+}
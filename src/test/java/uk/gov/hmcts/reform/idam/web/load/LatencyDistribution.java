@@ -0,0 +1,46 @@
+package uk.gov.hmcts.reform.idam.web.load;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Response time of a stub idam-api endpoint, parsed from {@code fixed:<d>}, {@code uniform:<min>-<max>} or
+ * {@code lognormal:<median>,<p99>}, where each duration uses the Spring format, e.g. {@code 40ms} or {@code 1s}.
+ */
+interface LatencyDistribution {
+
+    long sampleMillis();
+
+    static LatencyDistribution parse(String spec) {
+        String[] kindAndArgs = spec.split(":", 2);
+        if (kindAndArgs.length != 2) {
+            throw new IllegalArgumentException("Latency must be <kind>:<args>, got " + spec);
+        }
+        String args = kindAndArgs[1];
+        switch (kindAndArgs[0]) {
+            case "fixed":
+                long fixed = millis(args);
+                return () -> fixed;
+            case "uniform":
+                long min = millis(args.substring(0, args.indexOf('-')));
+                long max = millis(args.substring(args.indexOf('-') + 1));
+                return () -> ThreadLocalRandom.current().nextLong(min, max + 1);
+            case "lognormal":
+                double median = millis(args.substring(0, args.indexOf(',')));
+                double p99 = millis(args.substring(args.indexOf(',') + 1));
+                double mu = Math.log(median);
+                // 2.326 is the z score of the 99th percentile
+                double sigma = (Math.log(p99) - mu) / 2.326;
+                return () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution " + kindAndArgs[0]);
+        }
+    }
+
+    private static long millis(String duration) {
+        Duration parsed = DurationStyle.detectAndParse(duration.trim());
+        return parsed.toMillis();
+    }
+}
@@ -0,0 +1,283 @@
+package uk.gov.hmcts.reform.idam.web.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import uk.gov.hmcts.reform.idam.web.Application;
+
+import java.net.CookieManager;
+import java.net.CookiePolicy;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static uk.gov.hmcts.reform.idam.web.load.IdamApiStub.CLIENT_ID;
+import static uk.gov.hmcts.reform.idam.web.load.IdamApiStub.OTP_USER_PREFIX;
+import static uk.gov.hmcts.reform.idam.web.load.IdamApiStub.REDIRECT_URI;
+
+/**
+ * Boots the application against {@link IdamApiStub} and drives the login journeys from closed-loop virtual users,
+ * each with its own cookie jar, then prints throughput and p50/p99 per journey. Run with {@code ./gradlew loadTest}.
+ *
+ * <p>Settings, as {@code -P} properties of the task:
+ * <ul>
+ *     <li>{@code load.users} virtual users, default 20</li>
+ *     <li>{@code load.warmup} and {@code load.duration}, default 15s and 60s</li>
+ *     <li>{@code load.mix} journey weights, default {@code login:6,otp:2,loginPage:1,register:1}</li>
+ *     <li>{@code load.latency.<endpoint>} stub latency for authenticate, authorize, services, details and federation,
+ *     see {@link LatencyDistribution}</li>
+ *     <li>{@code load.redis} {@code host:port} of a Redis for the sessions; without it sessions are kept in memory</li>
+ *     <li>{@code load.virtualThreads} {@code true} to serve requests on virtual threads, as
+ *     {@code spring.threads.virtual.enabled}, default {@code false}; {@code compare} boots the application once on
+ *     platform and once on virtual threads against the same stub and prints both reports</li>
+ * </ul>
+ * The federation endpoints are stubbed for the SSO handlers, but no journey drives them as that needs an external
+ * OIDC provider.
+ */
+public final class LoadHarness {
+
+    private static final Map<String, String> DEFAULT_LATENCIES = Map.of(
+        "authenticate", "lognormal:40ms,250ms",
+        "authorize", "lognormal:30ms,200ms",
+        "services", "lognormal:10ms,60ms",
+        "details", "lognormal:15ms,80ms",
+        "federation", "lognormal:40ms,250ms");
+
+    private static final String PASSWORD = "Pa55word11";
+
+    private static final String OTP_CODE = "12345678";
+
+    private final Map<String, Histogram> latencies = new LinkedHashMap<>();
+
+    private final Map<String, AtomicLong> errors = new HashMap<>();
+
+    private final List<String> mix = new ArrayList<>();
+
+    private final String baseUrl;
+
+    private volatile boolean recording;
+
+    private volatile boolean running = true;
+
+    private LoadHarness(String baseUrl, String mixSpec) {
+        this.baseUrl = baseUrl;
+        for (String entry : mixSpec.split(",")) {
+            String journey = entry.substring(0, entry.indexOf(':')).trim();
+            int weight = Integer.parseInt(entry.substring(entry.indexOf(':') + 1).trim());
+            latencies.put(journey, new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3));
+            errors.put(journey, new AtomicLong());
+            for (int i = 0; i < weight; i++) {
+                mix.add(journey);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, LatencyDistribution> stubLatencies = new HashMap<>();
+        for (String endpoint : IdamApiStub.ENDPOINTS) {
+            stubLatencies.put(endpoint, LatencyDistribution.parse(
+                System.getProperty("load.latency." + endpoint, DEFAULT_LATENCIES.get(endpoint))));
+        }
+        IdamApiStub idamApi = new IdamApiStub(stubLatencies);
+        idamApi.start();
+
+        String virtualThreads = System.getProperty("load.virtualThreads", "false");
+        List<Boolean> modes = "compare".equalsIgnoreCase(virtualThreads)
+            ? List.of(false, true) : List.of(Boolean.parseBoolean(virtualThreads));
+        try {
+            for (boolean virtual : modes) {
+                System.out.printf("%n%s threads%n", virtual ? "Virtual" : "Platform");
+                runAgainst(idamApi.url(), virtual);
+            }
+        } finally {
+            idamApi.stop();
+        }
+    }
+
+    private static void runAgainst(String idamApiUrl, boolean virtualThreads) throws InterruptedException {
+        Map<String, Object> properties = applicationProperties(idamApiUrl, System.getProperty("load.redis"));
+        properties.put("spring.threads.virtual.enabled", virtualThreads);
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(Application.class)
+            .properties(properties)
+            .run();
+        try {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            LoadHarness harness = new LoadHarness("http://localhost:" + port,
+                System.getProperty("load.mix", "login:6,otp:2,loginPage:1,register:1"));
+            harness.run(Integer.getInteger("load.users", 20),
+                DurationStyle.detectAndParse(System.getProperty("load.warmup", "15s")),
+                DurationStyle.detectAndParse(System.getProperty("load.duration", "60s")));
+        } finally {
+            app.close();
+        }
+    }
+
+    static Map<String, Object> applicationProperties(String idamApiUrl, String redis) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("strategic.service.url", idamApiUrl);
+        properties.put("authentication.secureCookie", false);
+        properties.put("ssl.verification.enabled", false);
+        properties.put("features.federated-s-s-o", false);
+        if (redis == null) {
+            properties.put("testing", true);
+            properties.put("spring.session.store-type", "none");
+            properties.put("strategic.forgotPasswordOutbox.enabled", false);
+        } else {
+            properties.put("spring.redis.host", redis.substring(0, redis.indexOf(':')));
+            properties.put("spring.redis.port", redis.substring(redis.indexOf(':') + 1));
+            properties.put("spring.redis.ssl", false);
+            properties.put("spring.redis.password", "");
+        }
+        return properties;
+    }
+
+    private void run(int users, Duration warmup, Duration duration) throws InterruptedException {
+        ExecutorService virtualUsers = Executors.newFixedThreadPool(users);
+        for (int i = 0; i < users; i++) {
+            int user = i;
+            virtualUsers.execute(() -> virtualUser(user));
+        }
+        Thread.sleep(warmup.toMillis());
+        latencies.values().forEach(Histogram::reset);
+        recording = true;
+        long start = System.nanoTime();
+        Thread.sleep(duration.toMillis());
+        recording = false;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        running = false;
+        virtualUsers.shutdown();
+        virtualUsers.awaitTermination(30, TimeUnit.SECONDS);
+        report(users, seconds);
+    }
+
+    private void virtualUser(int user) {
+        CookieManager cookies = new CookieManager(null, CookiePolicy.ACCEPT_ALL);
+        HttpClient client = HttpClient.newBuilder()
+            .cookieHandler(cookies)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+        long iteration = 0;
+        while (running) {
+            String journey = mix.get(ThreadLocalRandom.current().nextInt(mix.size()));
+            cookies.getCookieStore().removeAll();
+            long start = System.nanoTime();
+            boolean success;
+            try {
+                success = runJourney(journey, client, "load.user" + user + "." + iteration++ + "@example.com");
+            } catch (Exception e) {
+                success = false;
+            }
+            if (recording) {
+                if (success) {
+                    latencies.get(journey).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                } else {
+                    errors.get(journey).incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private boolean runJourney(String journey, HttpClient client, String username) throws Exception {
+        switch (journey) {
+            case "loginPage":
+                return get(client, "/login?" + oauth2Query()).statusCode() == 200;
+            case "login":
+                return login(client, username).statusCode() == 302;
+            case "otp":
+                HttpResponse<String> otpRedirect = login(client, OTP_USER_PREFIX + username);
+                if (otpRedirect.statusCode() != 302) {
+                    return false;
+                }
+                HttpResponse<String> verified = post(client, "/verification", oauth2Form(client, Map.of("code", OTP_CODE)));
+                return verified.statusCode() == 302 && location(verified).startsWith(REDIRECT_URI);
+            case "register":
+                return get(client, "/register?jwt=token&" + oauth2Query()).statusCode() == 200;
+            default:
+                throw new IllegalArgumentException("Unknown journey " + journey);
+        }
+    }
+
+    private HttpResponse<String> login(HttpClient client, String username) throws Exception {
+        if (get(client, "/login?" + oauth2Query()).statusCode() != 200) {
+            throw new IllegalStateException("Login page failed");
+        }
+        return post(client, "/login", oauth2Form(client, Map.of("username", username, "password", PASSWORD)));
+    }
+
+    private static String oauth2Query() {
+        return encode(Map.of("client_id", CLIENT_ID, "redirect_uri", REDIRECT_URI, "response_type", "code"));
+    }
+
+    private static String oauth2Form(HttpClient client, Map<String, String> fields) {
+        Map<String, String> form = new HashMap<>(fields);
+        form.put("client_id", CLIENT_ID);
+        form.put("redirect_uri", REDIRECT_URI);
+        form.put("response_type", "code");
+        form.put("scope", "openid profile roles");
+        form.put("_csrf", csrfToken(client));
+        return encode(form);
+    }
+
+    private static String csrfToken(HttpClient client) {
+        return ((CookieManager) client.cookieHandler().orElseThrow()).getCookieStore().getCookies().stream()
+            .filter(cookie -> "XSRF-TOKEN".equals(cookie.getName()))
+            .map(HttpCookie::getValue)
+            .findFirst()
+            .orElse("");
+    }
+
+    private static String location(HttpResponse<?> response) {
+        return response.headers().firstValue("Location").orElse("");
+    }
+
+    private static String encode(Map<String, String> params) {
+        return params.entrySet().stream()
+            .map(entry -> entry.getKey() + "=" + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8))
+            .collect(Collectors.joining("&"));
+    }
+
+    private HttpResponse<String> get(HttpClient client, String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(HttpClient client, String path, String form) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void report(int users, double seconds) {
+        System.out.printf("%n%d virtual users for %.0fs%n", users, seconds);
+        System.out.printf("%-10s %10s %8s %10s %10s %10s%n", "journey", "completed", "errors", "per sec", "p50 ms", "p99 ms");
+        latencies.forEach((journey, histogram) -> System.out.printf("%-10s %10d %8d %10.1f %10.1f %10.1f%n",
+            journey,
+            histogram.getTotalCount(),
+            errors.get(journey).get(),
+            histogram.getTotalCount() / seconds,
+            histogram.getValueAtPercentile(50) / 1000.0,
+            histogram.getValueAtPercentile(99) / 1000.0));
+    }
+}
@@ -0,0 +1,131 @@
+package uk.gov.hmcts.reform.idam.web.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from process start to the first successful {@code /health} of the {@code build/cds} layout, which includes the
+ * warm-up, with and without a class data sharing archive. The archive is created first by a training run, the same way
+ * the Dockerfile does. idam-api is replaced by {@link IdamApiStub} answering immediately and sessions are kept in
+ * memory. Run with {@code ./gradlew startupBenchmark}, {@code -Pstartup.runs} sets the runs per mode (default 5).
+ */
+public final class StartupBenchmark {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(3);
+
+    private final File jar;
+
+    private final File archive;
+
+    private final String idamApiUrl;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private StartupBenchmark(File jar, String idamApiUrl) {
+        this.jar = jar;
+        this.archive = new File(jar.getParentFile(), "idam-web-public.jsa");
+        this.idamApiUrl = idamApiUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, LatencyDistribution> noLatency = new HashMap<>();
+        Arrays.stream(IdamApiStub.ENDPOINTS).forEach(endpoint -> noLatency.put(endpoint, LatencyDistribution.parse("fixed:0ms")));
+        IdamApiStub idamApi = new IdamApiStub(noLatency);
+        idamApi.start();
+        try {
+            StartupBenchmark benchmark = new StartupBenchmark(new File(System.getProperty("startup.jar")), idamApi.url());
+            benchmark.train();
+            int runs = Integer.getInteger("startup.runs", 5);
+            List<Long> withoutArchive = benchmark.measure(runs, List.of());
+            List<Long> withArchive = benchmark.measure(runs, List.of("-XX:SharedArchiveFile=" + benchmark.archive));
+            System.out.printf("%n%-16s %10s %10s %10s%n", "mode", "min ms", "median ms", "max ms");
+            print("without archive", withoutArchive);
+            print("with archive", withArchive);
+        } finally {
+            idamApi.stop();
+        }
+    }
+
+    private void train() throws Exception {
+        Process process = start(freePort(), List.of("-XX:ArchiveClassesAtExit=" + archive, "-Dcds.training-run=true"));
+        if (!process.waitFor(STARTUP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS) || !archive.isFile()) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Training run did not create " + archive);
+        }
+    }
+
+    private List<Long> measure(int runs, List<String> jvmArgs) throws Exception {
+        List<Long> timings = new ArrayList<>();
+        for (int run = 0; run < runs; run++) {
+            int port = freePort();
+            long start = System.nanoTime();
+            Process process = start(port, jvmArgs);
+            try {
+                awaitHealthy(port, process);
+                timings.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } finally {
+                process.destroy();
+                process.waitFor(30, TimeUnit.SECONDS);
+            }
+        }
+        return timings;
+    }
+
+    private Process start(int port, List<String> jvmArgs) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        command.add(jar.getPath());
+        Map<String, Object> properties = LoadHarness.applicationProperties(idamApiUrl, null);
+        properties.put("server.port", port);
+        properties.forEach((key, value) -> command.add("--" + key + "=" + value));
+        return new ProcessBuilder(command)
+            .directory(jar.getParentFile())
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+    }
+
+    private void awaitHealthy(int port, Process process) throws Exception {
+        HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/health"))
+            .timeout(Duration.ofSeconds(1))
+            .build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline && process.isAlive()) {
+            try {
+                if (httpClient.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(20);
+        }
+        throw new IllegalStateException("No successful /health on port " + port);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void print(String mode, List<Long> timings) {
+        List<Long> sorted = new ArrayList<>(timings);
+        sorted.sort(Long::compare);
+        System.out.printf("%-16s %10d %10d %10d%n", mode, sorted.get(0), sorted.get(sorted.size() / 2), sorted.get(sorted.size() - 1));
+    }
+}
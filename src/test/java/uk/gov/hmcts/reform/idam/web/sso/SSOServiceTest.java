@@ -17,6 +17,7 @@ import java.util.Map;
 
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -63,8 +64,6 @@ public class SSOServiceTest {
         final HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
         final HttpSession sess = Mockito.mock(HttpSession.class);
 
-        given(req.getSession(false))
-            .willReturn(null);
         given(req.getSession())
             .willReturn(sess);
 
@@ -75,6 +74,7 @@ public class SSOServiceTest {
         ssoService.redirectToExternalProvider(req, res, "test@test.com");
 
         verify(res).sendRedirect("/oauth2/authorization/oidc");
+        verify(req, never()).getSession(false);
 
     }
 
@@ -84,21 +84,16 @@ public class SSOServiceTest {
         final HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
         final HttpSession sess = Mockito.mock(HttpSession.class);
 
-        given(req.getSession(false))
-            .willReturn(null);
         given(req.getSession())
             .willReturn(sess);
 
-        final var ssoEmailDomains = Map.of("test.com", "ejudiciary-aad");
-        given(configurationProperties.getSsoEmailDomains())
-            .willReturn(ssoEmailDomains);
-
         given(req.getParameter("login_hint"))
             .willReturn("ejudiciary-aad");
 
         ssoService.redirectToExternalProvider(req, res);
 
         verify(res).sendRedirect("/oauth2/authorization/oidc");
+        verify(req, never()).getSession(false);
 
     }
 }
\ No newline at end of file
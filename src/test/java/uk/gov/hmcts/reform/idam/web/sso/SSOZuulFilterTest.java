@@ -26,7 +26,9 @@ import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -84,6 +86,7 @@ public class SSOZuulFilterTest {
         given(request.getParameter("login_hint")).willReturn("ejudiciary-aad");
         doReturn(true).when(underTest).isSSOEnabled();
         assertTrue(underTest.shouldFilter());
+        verify(request, never()).getSession(false);
     }
 
     @Test
@@ -129,10 +132,11 @@ public class SSOZuulFilterTest {
 
     @Test
     public void run_shouldRedirectWhenThereIsExistingSession() throws ZuulException, IOException {
-        when(request.getSession(eq(false))).thenReturn(session);
+        lenient().when(request.getSession(eq(false))).thenReturn(session);
         given(request.getParameter(eq("login_hint"))).willReturn("ejudiciary-aad");
         underTest.run();
         verify(response, atLeastOnce()).sendRedirect(anyString());
+        verify(request, never()).getSession(false);
     }
 
     @Test
@@ -0,0 +1,97 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofSeconds(2).toNanos();
+
+    private AdaptiveConcurrencyLimit concurrencyLimit;
+
+    @Before
+    public void setUp() {
+        concurrencyLimit = new AdaptiveConcurrencyLimit(4, 2, 5, 0.5, Duration.ofSeconds(1));
+    }
+
+    /**
+     * @verifies refuse calls once the limit is reached
+     * @see AdaptiveConcurrencyLimit#tryAcquire()
+     */
+    @Test
+    public void tryAcquire_shouldRefuseCallsOnceTheLimitIsReached() {
+        for (int i = 0; i < 4; i++) {
+            assertThat(concurrencyLimit.tryAcquire(), is(true));
+        }
+
+        assertThat(concurrencyLimit.tryAcquire(), is(false));
+        concurrencyLimit.release();
+        assertThat(concurrencyLimit.tryAcquire(), is(true));
+        assertThat(concurrencyLimit.getInFlight(), is(4));
+    }
+
+    /**
+     * @verifies raise the limit after calls made close to the limit
+     * @see AdaptiveConcurrencyLimit#onSuccess(long)
+     */
+    @Test
+    public void onSuccess_shouldRaiseTheLimitAfterCallsMadeCloseToTheLimit() {
+        for (int round = 0; round < 10; round++) {
+            concurrencyLimit.tryAcquire();
+            concurrencyLimit.tryAcquire();
+            concurrencyLimit.onSuccess(FAST);
+            concurrencyLimit.onSuccess(FAST);
+        }
+
+        assertThat(concurrencyLimit.getLimit(), is(5));
+        assertThat(concurrencyLimit.getInFlight(), is(0));
+    }
+
+    /**
+     * @verifies not raise the limit while it is far from being reached
+     * @see AdaptiveConcurrencyLimit#onSuccess(long)
+     */
+    @Test
+    public void onSuccess_shouldNotRaiseTheLimitWhileItIsFarFromBeingReached() {
+        for (int i = 0; i < 20; i++) {
+            concurrencyLimit.tryAcquire();
+            concurrencyLimit.onSuccess(FAST);
+        }
+
+        assertThat(concurrencyLimit.getLimit(), is(4));
+    }
+
+    /**
+     * @verifies lower the limit after slow calls
+     * @see AdaptiveConcurrencyLimit#onSuccess(long)
+     */
+    @Test
+    public void onSuccess_shouldLowerTheLimitAfterSlowCalls() {
+        concurrencyLimit.tryAcquire();
+
+        concurrencyLimit.onSuccess(SLOW);
+
+        assertThat(concurrencyLimit.getLimit(), is(2));
+    }
+
+    /**
+     * @verifies lower the limit but not below the minimum
+     * @see AdaptiveConcurrencyLimit#onDropped()
+     */
+    @Test
+    public void onDropped_shouldLowerTheLimitButNotBelowTheMinimum() {
+        concurrencyLimit.tryAcquire();
+        concurrencyLimit.onDropped();
+        concurrencyLimit.tryAcquire();
+        concurrencyLimit.onDropped();
+
+        assertThat(concurrencyLimit.getLimit(), is(2));
+        assertThat(concurrencyLimit.getInFlight(), is(0));
+    }
+}
@@ -0,0 +1,241 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ApiCallGuardTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private StrategicConfigurationProperties.ApiResilience properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ApiCallGuard apiCallGuard;
+
+    @Before
+    public void setUp() {
+        StrategicConfigurationProperties.ApiResilience.CircuitBreaker circuitBreaker = new StrategicConfigurationProperties.ApiResilience.CircuitBreaker();
+        circuitBreaker.setSlidingWindowSize(10);
+        circuitBreaker.setMinimumCalls(2);
+        circuitBreaker.setFailureRateThreshold(50);
+        circuitBreaker.setOpenDuration(Duration.ofSeconds(30));
+        StrategicConfigurationProperties.ApiResilience.ConcurrencyLimit concurrencyLimit = new StrategicConfigurationProperties.ApiResilience.ConcurrencyLimit();
+        concurrencyLimit.setInitialLimit(2);
+        concurrencyLimit.setMinLimit(1);
+        concurrencyLimit.setMaxLimit(10);
+        concurrencyLimit.setBackoffRatio(0.9);
+        concurrencyLimit.setLatencyThreshold(Duration.ofSeconds(5));
+        properties = new StrategicConfigurationProperties.ApiResilience();
+        properties.setEnabled(true);
+        properties.setCircuitBreaker(circuitBreaker);
+        properties.setConcurrencyLimit(concurrencyLimit);
+        meterRegistry = new SimpleMeterRegistry();
+        apiCallGuard = new ApiCallGuard(properties, meterRegistry, now::get);
+    }
+
+    /**
+     * @verifies run the call when the circuit is closed and the limit allows it
+     * @see ApiCallGuard#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldRunTheCallWhenTheCircuitIsClosedAndTheLimitAllowsIt() {
+        assertThat(apiCallGuard.call(ApiEndpoint.AUTHORIZE, () -> "result"), equalTo("result"));
+        assertThat(gauge("idam.api.concurrency.inflight"), is(0.0));
+        assertThat(gauge("idam.api.concurrency.limit"), is(2.0));
+    }
+
+    /**
+     * @verifies fail fast with service unavailable when the circuit is open
+     * @see ApiCallGuard#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldFailFastWithServiceUnavailableWhenTheCircuitIsOpen() {
+        failCall(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+        failCall(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+
+        try {
+            apiCallGuard.call(ApiEndpoint.AUTHORIZE, () -> {
+                throw new AssertionError("call should not be made");
+            });
+            fail("expected the call to be refused");
+        } catch (HttpServerErrorException e) {
+            assertThat(e.getStatusCode(), is(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+        assertThat(gauge("idam.api.circuit.state"), is(1.0));
+        assertThat(rejected("circuit_open"), is(1.0));
+        assertThat(apiCallGuard.call(ApiEndpoint.AUTHORIZE_OAUTH2, () -> "other endpoint"), equalTo("other endpoint"));
+    }
+
+    /**
+     * @verifies fail fast with service unavailable when the concurrency limit is reached
+     * @see ApiCallGuard#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldFailFastWithServiceUnavailableWhenTheConcurrencyLimitIsReached() {
+        String result = apiCallGuard.call(ApiEndpoint.AUTHORIZE, () ->
+            apiCallGuard.call(ApiEndpoint.AUTHORIZE, () -> {
+                try {
+                    apiCallGuard.call(ApiEndpoint.AUTHORIZE, () -> "third call");
+                    return "not refused";
+                } catch (HttpServerErrorException e) {
+                    return e.getStatusCode().toString();
+                }
+            }));
+
+        assertThat(result, equalTo(HttpStatus.SERVICE_UNAVAILABLE.toString()));
+        assertThat(rejected("concurrency_limit"), is(1.0));
+        assertThat(gauge("idam.api.concurrency.inflight"), is(0.0));
+    }
+
+    /**
+     * @verifies count server errors and io errors as failures
+     * @see ApiCallGuard#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldCountServerErrorsAndIoErrorsAsFailures() {
+        failCall(new ResourceAccessException("Read timed out"));
+        failCall(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        assertThat(apiCallGuard.getState(ApiEndpoint.AUTHORIZE), is(CircuitBreaker.State.OPEN));
+    }
+
+    /**
+     * @verifies not count client errors as failures
+     * @see ApiCallGuard#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldNotCountClientErrorsAsFailures() {
+        failCall(new HttpClientErrorException(HttpStatus.UNAUTHORIZED));
+        failCall(new HttpClientErrorException(HttpStatus.FORBIDDEN));
+
+        assertThat(apiCallGuard.getState(ApiEndpoint.AUTHORIZE), is(CircuitBreaker.State.CLOSED));
+        assertThat(gauge("idam.api.concurrency.inflight"), is(0.0));
+    }
+
+    /**
+     * @verifies neither count other exceptions as successes nor as failures
+     * @see ApiCallGuard#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldNeitherCountOtherExceptionsAsSuccessesNorAsFailures() {
+        failCall(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+        failCall(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+        assertThat(apiCallGuard.getState(ApiEndpoint.AUTHORIZE), is(CircuitBreaker.State.OPEN));
+        now.addAndGet(Duration.ofSeconds(31).toNanos());
+
+        failCall(new IllegalStateException("Could not read response"));
+
+        assertThat(apiCallGuard.getState(ApiEndpoint.AUTHORIZE), is(CircuitBreaker.State.HALF_OPEN));
+        assertThat(gauge("idam.api.concurrency.inflight"), is(0.0));
+        assertThat(apiCallGuard.call(ApiEndpoint.AUTHORIZE, () -> "trial"), equalTo("trial"));
+        assertThat(apiCallGuard.getState(ApiEndpoint.AUTHORIZE), is(CircuitBreaker.State.CLOSED));
+    }
+
+    /**
+     * @verifies run the call unguarded when disabled
+     * @see ApiCallGuard#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldRunTheCallUnguardedWhenDisabled() {
+        properties.setEnabled(false);
+        SimpleMeterRegistry disabledRegistry = new SimpleMeterRegistry();
+        ApiCallGuard disabledGuard = new ApiCallGuard(properties, disabledRegistry, now::get);
+
+        assertThat(disabledGuard.call(ApiEndpoint.AUTHORIZE, () -> "result"), equalTo("result"));
+        assertThat(disabledRegistry.getMeters().isEmpty(), is(true));
+    }
+
+    /**
+     * @verifies fail with service unavailable when the circuit is open
+     * @see ApiCallGuard#call(ApiEndpoint, Mono)
+     */
+    @Test
+    public void call_shouldFailWithServiceUnavailableWhenTheCircuitIsOpen() {
+        failCall(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+        failCall(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+
+        try {
+            apiCallGuard.call(ApiEndpoint.AUTHORIZE, Mono.fromSupplier(() -> {
+                throw new AssertionError("call should not be made");
+            })).block();
+            fail("expected the call to be refused");
+        } catch (HttpServerErrorException e) {
+            assertThat(e.getStatusCode(), is(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+        assertThat(rejected("circuit_open"), is(1.0));
+    }
+
+    /**
+     * @verifies count server errors and io errors of non-blocking calls as failures
+     * @see ApiCallGuard#call(ApiEndpoint, Mono)
+     */
+    @Test
+    public void call_shouldCountServerErrorsAndIoErrorsOfNonblockingCallsAsFailures() {
+        failNonBlockingCall(new ResourceAccessException("Read timed out"));
+        failNonBlockingCall(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        assertThat(apiCallGuard.getState(ApiEndpoint.AUTHORIZE), is(CircuitBreaker.State.OPEN));
+        assertThat(gauge("idam.api.concurrency.inflight"), is(0.0));
+    }
+
+    /**
+     * @verifies give the permits back when a non-blocking call is cancelled
+     * @see ApiCallGuard#call(ApiEndpoint, Mono)
+     */
+    @Test
+    public void call_shouldGiveThePermitsBackWhenANonblockingCallIsCancelled() {
+        Disposable call = apiCallGuard.call(ApiEndpoint.AUTHORIZE, Mono.never()).subscribe();
+        assertThat(gauge("idam.api.concurrency.inflight"), is(1.0));
+
+        call.dispose();
+
+        assertThat(gauge("idam.api.concurrency.inflight"), is(0.0));
+        assertThat(apiCallGuard.getState(ApiEndpoint.AUTHORIZE), is(CircuitBreaker.State.CLOSED));
+        assertThat(apiCallGuard.call(ApiEndpoint.AUTHORIZE, Mono.just("next")).block(), equalTo("next"));
+    }
+
+    private void failCall(RuntimeException failure) {
+        try {
+            apiCallGuard.call(ApiEndpoint.AUTHORIZE, () -> {
+                throw failure;
+            });
+            fail("expected " + failure);
+        } catch (RuntimeException e) {
+            assertThat(e, is(failure));
+        }
+    }
+
+    private void failNonBlockingCall(RuntimeException failure) {
+        try {
+            apiCallGuard.call(ApiEndpoint.AUTHORIZE, Mono.error(failure)).block();
+            fail("expected " + failure);
+        } catch (RuntimeException e) {
+            assertThat(e, is(failure));
+        }
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("endpoint", "authorize").gauge().value();
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("idam.api.rejected").tag("endpoint", "authorize").tag("reason", reason).counter().count();
+    }
+}
@@ -0,0 +1,148 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ApiCallMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ApiCallMetrics apiCallMetrics;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        apiCallMetrics = new ApiCallMetrics(meterRegistry, new ObjectMapper());
+    }
+
+    /**
+     * @verifies tag successful calls with the response status
+     * @see ApiCallMetrics#record(String, java.util.function.Supplier)
+     */
+    @Test
+    public void record_shouldTagSuccessfulCallsWithTheResponseStatus() {
+        apiCallMetrics.record("authorize", () -> new ResponseEntity<>(HttpStatus.FOUND));
+
+        assertThat(timer("authorize", "REDIRECTION", "302", ApiCallMetrics.NONE).count(), is(1L));
+    }
+
+    /**
+     * @verifies tag failed calls with the status and error code
+     * @see ApiCallMetrics#record(String, java.util.function.Supplier)
+     */
+    @Test
+    public void record_shouldTagFailedCallsWithTheStatusAndErrorCode() {
+        HttpClientErrorException failure = HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized", null,
+            "{\"code\":\"ACCOUNT_LOCKED\"}".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+
+        try {
+            apiCallMetrics.record("authenticate", () -> {
+                throw failure;
+            });
+            fail("expected the failure to be rethrown");
+        } catch (HttpClientErrorException e) {
+            assertThat(e, is(failure));
+        }
+
+        assertThat(timer("authenticate", "CLIENT_ERROR", "401", "ACCOUNT_LOCKED").count(), is(1L));
+    }
+
+    /**
+     * @verifies tag calls without a response as io errors
+     * @see ApiCallMetrics#record(String, java.util.function.Supplier)
+     */
+    @Test
+    public void record_shouldTagCallsWithoutAResponseAsIoErrors() {
+        try {
+            apiCallMetrics.record("getDetails", () -> {
+                throw new ResourceAccessException("Read timed out");
+            });
+            fail("expected the failure to be rethrown");
+        } catch (ResourceAccessException e) {
+            assertThat(timer("getDetails", "UNKNOWN", "IO_ERROR", ApiCallMetrics.NONE).count(), is(1L));
+        }
+    }
+
+    /**
+     * @verifies tag calls that failed before being sent as client errors
+     * @see ApiCallMetrics#record(String, java.util.function.Supplier)
+     */
+    @Test
+    public void record_shouldTagCallsThatFailedBeforeBeingSentAsClientErrors() {
+        try {
+            apiCallMetrics.record("registerUser", () -> {
+                throw new IllegalArgumentException("SELF_REGISTER_USER has variables, use expand");
+            });
+            fail("expected the failure to be rethrown");
+        } catch (IllegalArgumentException e) {
+            assertThat(timer("registerUser", "UNKNOWN", "CLIENT_ERROR", ApiCallMetrics.NONE).count(), is(1L));
+        }
+    }
+
+    /**
+     * @verifies tag calls refused locally as rejected
+     * @see ApiCallMetrics#record(String, java.util.function.Supplier)
+     */
+    @Test
+    public void record_shouldTagCallsRefusedLocallyAsRejected() {
+        try {
+            apiCallMetrics.record("getServiceByClientId", () -> {
+                throw new ApiCallRejectedException(HttpStatus.SERVICE_UNAVAILABLE, "idam-api services circuit open");
+            });
+            fail("expected the failure to be rethrown");
+        } catch (ApiCallRejectedException e) {
+            assertThat(timer("getServiceByClientId", "UNKNOWN", "REJECTED", ApiCallMetrics.NONE).count(), is(1L));
+        }
+    }
+
+    /**
+     * @verifies tag non-blocking calls like blocking ones
+     * @see ApiCallMetrics#record(String, Mono)
+     */
+    @Test
+    public void record_shouldTagNonblockingCallsLikeBlockingOnes() {
+        apiCallMetrics.record("authorize", Mono.just(new ResponseEntity<>(HttpStatus.FOUND))).block();
+        try {
+            apiCallMetrics.record("getDetails", Mono.error(new ResourceAccessException("Read timed out"))).block();
+            fail("expected the failure to be rethrown");
+        } catch (ResourceAccessException e) {
+            assertThat(timer("getDetails", "UNKNOWN", "IO_ERROR", ApiCallMetrics.NONE).count(), is(1L));
+        }
+
+        assertThat(timer("authorize", "REDIRECTION", "302", ApiCallMetrics.NONE).count(), is(1L));
+    }
+
+    /**
+     * @verifies tag cancelled calls as cancelled
+     * @see ApiCallMetrics#record(String, Mono)
+     */
+    @Test
+    public void record_shouldTagCancelledCallsAsCancelled() {
+        apiCallMetrics.record("authenticate", Mono.never()).subscribe().dispose();
+
+        assertThat(timer("authenticate", "UNKNOWN", "CANCELLED", ApiCallMetrics.NONE).count(), is(1L));
+    }
+
+    private Timer timer(String method, String outcome, String status, String error) {
+        return meterRegistry.get("idam.api.requests")
+            .tag("method", method)
+            .tag("outcome", outcome)
+            .tag("status", status)
+            .tag("error", error)
+            .timer();
+    }
+}
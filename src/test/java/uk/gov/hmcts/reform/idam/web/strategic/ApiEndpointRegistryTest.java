@@ -0,0 +1,75 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.net.URI;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.API_URL;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.AUTHENTICATE_ENDPOINT;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.SERVICES_ENDPOINT;
+
+public class ApiEndpointRegistryTest {
+
+    private ApiEndpointRegistry registry;
+
+    @Before
+    public void setUp() {
+        StrategicConfigurationProperties strategic = new StrategicConfigurationProperties();
+        strategic.setService(new StrategicConfigurationProperties.ServiceConfigurationProperties());
+        strategic.getService().setUrl(API_URL);
+        strategic.setEndpoint(new StrategicConfigurationProperties.EndpointConfigurationProperties());
+        strategic.getEndpoint().setAuthorize(AUTHENTICATE_ENDPOINT);
+        strategic.getEndpoint().setServices(SERVICES_ENDPOINT);
+        registry = new ApiEndpointRegistry(strategic);
+    }
+
+    /**
+     * @verifies resolve endpoints without variables to uris
+     * @see ApiEndpointRegistry#ApiEndpointRegistry(StrategicConfigurationProperties)
+     */
+    @Test
+    public void ApiEndpointRegistry_shouldResolveEndpointsWithoutVariablesToUris() {
+        assertThat(registry.uri(ApiEndpoint.AUTHORIZE), equalTo(URI.create(API_URL + "/" + AUTHENTICATE_ENDPOINT)));
+    }
+
+    /**
+     * @verifies skip endpoints that are not configured
+     * @see ApiEndpointRegistry#ApiEndpointRegistry(StrategicConfigurationProperties)
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ApiEndpointRegistry_shouldSkipEndpointsThatAreNotConfigured() {
+        registry.uri(ApiEndpoint.HEALTH);
+    }
+
+    /**
+     * @verifies throw if the endpoint has variables
+     * @see ApiEndpointRegistry#uri(ApiEndpoint)
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void uri_shouldThrowIfTheEndpointHasVariables() {
+        registry.uri(ApiEndpoint.SERVICES);
+    }
+
+    /**
+     * @verifies throw if the endpoint is not configured
+     * @see ApiEndpointRegistry#uri(ApiEndpoint)
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void uri_shouldThrowIfTheEndpointIsNotConfigured() {
+        registry.uri(ApiEndpoint.DETAILS);
+    }
+
+    /**
+     * @verifies expand and encode the query parameters
+     * @see ApiEndpointRegistry#expand(ApiEndpoint, Object...)
+     */
+    @Test
+    public void expand_shouldExpandAndEncodeTheQueryParameters() {
+        assertThat(registry.expand(ApiEndpoint.SERVICES, "my client"),
+            equalTo(URI.create(API_URL + "/" + SERVICES_ENDPOINT + "?clientId=my%20client")));
+    }
+}
@@ -0,0 +1,199 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import reactor.core.publisher.Mono;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ApiTimeoutsTest {
+
+    private StrategicConfigurationProperties.Timeouts properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ApiTimeouts apiTimeouts;
+
+    @Before
+    public void setUp() {
+        properties = new StrategicConfigurationProperties.Timeouts();
+        properties.setEnabled(true);
+        properties.setDefaultTimeout(Duration.ofSeconds(10));
+        properties.setEndpoint(Map.of("health", Duration.ofSeconds(2)));
+        meterRegistry = new SimpleMeterRegistry();
+        apiTimeouts = new ApiTimeouts(properties, meterRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        ApiDeadline.endRequest();
+        ApiDeadline.setCallTimeout(null);
+    }
+
+    /**
+     * @verifies reject timeouts for unknown endpoints
+     * @see ApiTimeouts#ApiTimeouts(StrategicConfigurationProperties.Timeouts, io.micrometer.core.instrument.MeterRegistry)
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void apiTimeouts_shouldRejectTimeoutsForUnknownEndpoints() {
+        properties.setEndpoint(Map.of("helth", Duration.ofSeconds(2)));
+
+        new ApiTimeouts(properties, meterRegistry);
+    }
+
+    /**
+     * @verifies run the call with the endpoint timeout
+     * @see ApiTimeouts#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldRunTheCallWithTheEndpointTimeout() {
+        assertThat(apiTimeouts.call(ApiEndpoint.HEALTH, ApiDeadline::callTimeoutMillis), equalTo(OptionalLong.of(2000)));
+        assertThat(apiTimeouts.call(ApiEndpoint.AUTHORIZE, ApiDeadline::callTimeoutMillis), equalTo(OptionalLong.of(10000)));
+    }
+
+    /**
+     * @verifies cap the timeout at the remaining request budget
+     * @see ApiTimeouts#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldCapTheTimeoutAtTheRemainingRequestBudget() {
+        ApiDeadline.startRequest(1000);
+
+        long timeout = apiTimeouts.call(ApiEndpoint.HEALTH, ApiDeadline::callTimeoutMillis).getAsLong();
+
+        assertThat(timeout, lessThanOrEqualTo(1000L));
+        assertThat(timeout, greaterThan(0L));
+    }
+
+    /**
+     * @verifies fail fast with gateway timeout once the request budget is spent
+     * @see ApiTimeouts#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldFailFastWithGatewayTimeoutOnceTheRequestBudgetIsSpent() {
+        ApiDeadline.startRequest(0);
+
+        try {
+            apiTimeouts.call(ApiEndpoint.HEALTH, () -> {
+                throw new AssertionError("call should not be made");
+            });
+            fail("expected the call to be refused");
+        } catch (HttpServerErrorException e) {
+            assertThat(e.getStatusCode(), is(HttpStatus.GATEWAY_TIMEOUT));
+        }
+        assertThat(timeouts("budget"), is(1.0));
+    }
+
+    /**
+     * @verifies count read timeouts
+     * @see ApiTimeouts#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldCountReadTimeouts() {
+        try {
+            apiTimeouts.call(ApiEndpoint.HEALTH, () -> {
+                throw new ResourceAccessException("I/O error", new SocketTimeoutException("Read timed out"));
+            });
+            fail("expected the timeout to be rethrown");
+        } catch (ResourceAccessException e) {
+            assertThat(timeouts("read"), is(1.0));
+        }
+    }
+
+    /**
+     * @verifies restore the previous timeout after the call
+     * @see ApiTimeouts#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldRestoreThePreviousTimeoutAfterTheCall() {
+        ApiDeadline.setCallTimeout(500L);
+
+        apiTimeouts.call(ApiEndpoint.HEALTH, ApiDeadline::callTimeoutMillis);
+
+        assertThat(ApiDeadline.callTimeoutMillis(), equalTo(OptionalLong.of(500)));
+    }
+
+    /**
+     * @verifies run the call without a timeout when disabled
+     * @see ApiTimeouts#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldRunTheCallWithoutATimeoutWhenDisabled() {
+        properties.setEnabled(false);
+
+        ApiTimeouts disabled = new ApiTimeouts(properties, new SimpleMeterRegistry());
+
+        assertThat(disabled.call(ApiEndpoint.HEALTH, ApiDeadline::callTimeoutMillis), equalTo(OptionalLong.empty()));
+    }
+
+    /**
+     * @verifies pass the endpoint timeout capped at the remaining request budget to the call
+     * @see ApiTimeouts#call(ApiEndpoint, Long, java.util.function.Function)
+     */
+    @Test
+    public void call_shouldPassTheEndpointTimeoutCappedAtTheRemainingRequestBudgetToTheCall() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+
+        assertThat(apiTimeouts.call(ApiEndpoint.HEALTH, null, Mono::just).block(), equalTo(OptionalLong.of(2000)));
+        long timeout = apiTimeouts.call(ApiEndpoint.HEALTH, deadline, Mono::just).block().getAsLong();
+        assertThat(timeout, lessThanOrEqualTo(1000L));
+        assertThat(timeout, greaterThan(0L));
+    }
+
+    /**
+     * @verifies fail with gateway timeout once the request budget is spent
+     * @see ApiTimeouts#call(ApiEndpoint, Long, java.util.function.Function)
+     */
+    @Test
+    public void call_shouldFailWithGatewayTimeoutOnceTheRequestBudgetIsSpent() {
+        Mono<Object> call = apiTimeouts.call(ApiEndpoint.HEALTH, System.nanoTime(), timeout -> {
+            throw new AssertionError("call should not be made");
+        });
+
+        try {
+            call.block();
+            fail("expected the call to be refused");
+        } catch (HttpServerErrorException e) {
+            assertThat(e.getStatusCode(), is(HttpStatus.GATEWAY_TIMEOUT));
+        }
+        assertThat(timeouts("budget"), is(1.0));
+    }
+
+    /**
+     * @verifies count read timeouts of non-blocking calls
+     * @see ApiTimeouts#call(ApiEndpoint, Long, java.util.function.Function)
+     */
+    @Test
+    public void call_shouldCountReadTimeoutsOfNonblockingCalls() {
+        Mono<Object> call = apiTimeouts.call(ApiEndpoint.HEALTH, null, timeout ->
+            Mono.error(new ResourceAccessException("I/O error", new SocketTimeoutException("Read timed out"))));
+
+        try {
+            call.block();
+            fail("expected the timeout to be rethrown");
+        } catch (ResourceAccessException e) {
+            assertThat(timeouts("read"), is(1.0));
+        }
+    }
+
+    private double timeouts(String cause) {
+        return meterRegistry.get("idam.api.timeouts").tag("endpoint", "health").tag("cause", cause).counter().count();
+    }
+}
@@ -0,0 +1,138 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final AtomicLong now = new AtomicLong();
+
+    private CircuitBreaker circuitBreaker;
+
+    @Before
+    public void setUp() {
+        circuitBreaker = new CircuitBreaker(10, 4, 50, OPEN_DURATION, now::get);
+    }
+
+    /**
+     * @verifies permit calls while closed
+     * @see CircuitBreaker#tryAcquire()
+     */
+    @Test
+    public void tryAcquire_shouldPermitCallsWhileClosed() {
+        assertThat(circuitBreaker.tryAcquire(), is(true));
+        assertThat(circuitBreaker.tryAcquire(), is(true));
+    }
+
+    /**
+     * @verifies refuse calls while open
+     * @see CircuitBreaker#tryAcquire()
+     */
+    @Test
+    public void tryAcquire_shouldRefuseCallsWhileOpen() {
+        open();
+
+        now.addAndGet(OPEN_DURATION.toNanos() - 1);
+
+        assertThat(circuitBreaker.tryAcquire(), is(false));
+    }
+
+    /**
+     * @verifies permit a single trial call once the open duration has passed
+     * @see CircuitBreaker#tryAcquire()
+     */
+    @Test
+    public void tryAcquire_shouldPermitASingleTrialCallOnceTheOpenDurationHasPassed() {
+        open();
+
+        now.addAndGet(OPEN_DURATION.toNanos());
+
+        assertThat(circuitBreaker.tryAcquire(), is(true));
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+        assertThat(circuitBreaker.tryAcquire(), is(false));
+        circuitBreaker.release();
+        assertThat(circuitBreaker.tryAcquire(), is(true));
+    }
+
+    /**
+     * @verifies close the circuit when the trial call succeeds
+     * @see CircuitBreaker#onSuccess()
+     */
+    @Test
+    public void onSuccess_shouldCloseTheCircuitWhenTheTrialCallSucceeds() {
+        open();
+        now.addAndGet(OPEN_DURATION.toNanos());
+        circuitBreaker.tryAcquire();
+
+        circuitBreaker.onSuccess();
+
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    /**
+     * @verifies open the circuit once the failure rate reaches the threshold
+     * @see CircuitBreaker#onFailure()
+     */
+    @Test
+    public void onFailure_shouldOpenTheCircuitOnceTheFailureRateReachesTheThreshold() {
+        circuitBreaker.onSuccess();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+
+        circuitBreaker.onFailure();
+
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+    }
+
+    /**
+     * @verifies stay closed until the minimum number of calls has been recorded
+     * @see CircuitBreaker#onFailure()
+     */
+    @Test
+    public void onFailure_shouldStayClosedUntilTheMinimumNumberOfCallsHasBeenRecorded() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+
+        circuitBreaker.onFailure();
+
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+    }
+
+    /**
+     * @verifies open the circuit again when the trial call fails
+     * @see CircuitBreaker#onFailure()
+     */
+    @Test
+    public void onFailure_shouldOpenTheCircuitAgainWhenTheTrialCallFails() {
+        open();
+        now.addAndGet(OPEN_DURATION.toNanos());
+        circuitBreaker.tryAcquire();
+
+        circuitBreaker.onFailure();
+
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(circuitBreaker.tryAcquire(), is(false));
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onFailure();
+        }
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+    }
+}
@@ -0,0 +1,413 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import uk.gov.hmcts.reform.idam.api.internal.model.ForgotPasswordDetails;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.CLIENT_ID;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.REDIRECT_URI;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.USER_EMAIL;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ForgotPasswordOutboxTest {
+
+    private static final String STREAM = "forgot-password";
+    private static final String GROUP = "idam-web-public";
+    private static final String DEAD_LETTER_STREAM = "forgot-password:dead-letter";
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(30);
+    private static final RecordId RECORD_ID = RecordId.of("1-0");
+    private static final long DEAD_LETTER_MAX_LENGTH = 10;
+    private static final String LANGUAGE = "cy";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private StreamOperations<String, Object, Object> streamOperations;
+
+    @Mock
+    private ObjectProvider<SPIService> spiServiceProvider;
+
+    @Mock
+    private SPIService spiService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ForgotPasswordDetails details = new ForgotPasswordDetails()
+        .email(USER_EMAIL)
+        .redirectUri(REDIRECT_URI)
+        .clientId(CLIENT_ID);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StrategicConfigurationProperties.ForgotPasswordOutbox properties;
+
+    private ForgotPasswordOutbox forgotPasswordOutbox;
+
+    @Before
+    public void setUp() {
+        properties = new StrategicConfigurationProperties.ForgotPasswordOutbox();
+        properties.setEnabled(true);
+        properties.setStream(STREAM);
+        properties.setConsumerGroup(GROUP);
+        properties.setDeadLetterStream(DEAD_LETTER_STREAM);
+        properties.setBatchSize(10);
+        properties.setPollInterval(Duration.ofSeconds(1));
+        properties.setRetryAfter(RETRY_AFTER);
+        properties.setMaxAttempts(3);
+        properties.setDeadLetterMaxLength(DEAD_LETTER_MAX_LENGTH);
+        properties.setDeadLetterRetention(Duration.ofDays(7));
+        properties.setEnqueueTimeout(Duration.ofMillis(100));
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(redisTemplate.opsForStream()).thenReturn(streamOperations);
+        forgotPasswordOutbox = new ForgotPasswordOutbox(properties, redisTemplate, spiServiceProvider, objectMapper,
+            Runnable::run, Runnable::run, meterRegistry);
+    }
+
+    /**
+     * @verifies add the request and language to the stream
+     * @see ForgotPasswordOutbox#enqueue(ForgotPasswordDetails, String)
+     */
+    @Test
+    public void enqueue_shouldAddTheRequestAndLanguageToTheStream() throws Exception {
+        forgotPasswordOutbox.enqueue(details, LANGUAGE);
+
+        ArgumentCaptor<MapRecord> captor = ArgumentCaptor.forClass(MapRecord.class);
+        verify(streamOperations).add(captor.capture());
+        assertThat(captor.getValue().getStream(), equalTo(STREAM));
+        assertThat(objectMapper.readValue((String) captor.getValue().getValue().get(ForgotPasswordOutbox.PAYLOAD),
+            ForgotPasswordDetails.class), equalTo(details));
+        assertThat(captor.getValue().getValue().get(ForgotPasswordOutbox.LANGUAGE), equalTo(LANGUAGE));
+        assertThat(counter("enqueued"), is(1.0));
+    }
+
+    /**
+     * @verifies fail if the request could not be added within the enqueue timeout
+     * @see ForgotPasswordOutbox#enqueue(ForgotPasswordDetails, String)
+     */
+    @Test(expected = IllegalStateException.class)
+    public void enqueue_shouldFailIfTheRequestCouldNotBeAddedWithinTheEnqueueTimeout() {
+        forgotPasswordOutbox = new ForgotPasswordOutbox(properties, redisTemplate, spiServiceProvider, objectMapper,
+            Runnable::run, task -> { }, meterRegistry);
+
+        forgotPasswordOutbox.enqueue(details, LANGUAGE);
+    }
+
+    /**
+     * @verifies not add the request once the enqueue timed out
+     * @see ForgotPasswordOutbox#enqueue(ForgotPasswordDetails, String)
+     */
+    @Test
+    public void enqueue_shouldNotAddTheRequestOnceTheEnqueueTimedOut() {
+        List<Runnable> adds = new ArrayList<>();
+        forgotPasswordOutbox = new ForgotPasswordOutbox(properties, redisTemplate, spiServiceProvider, objectMapper,
+            Runnable::run, adds::add, meterRegistry);
+
+        try {
+            forgotPasswordOutbox.enqueue(details, LANGUAGE);
+            fail("expected the enqueue to time out");
+        } catch (IllegalStateException e) {
+            adds.forEach(Runnable::run);
+        }
+
+        verify(streamOperations, never()).add(any(MapRecord.class));
+        assertThat(counter("enqueued"), is(0.0));
+    }
+
+    /**
+     * @verifies send the request directly if an add that outlasted the timeout fails
+     * @see ForgotPasswordOutbox#enqueue(ForgotPasswordDetails, String)
+     */
+    @Test
+    public void enqueue_shouldSendTheRequestDirectlyIfAnAddThatOutlastedTheTimeoutFails() throws Exception {
+        CountDownLatch adding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(streamOperations.add(any(MapRecord.class))).willAnswer(invocation -> {
+            adding.countDown();
+            release.await();
+            throw new RedisSystemException("Command timed out", null);
+        });
+        given(spiServiceProvider.getObject()).willReturn(spiService);
+        ExecutorService enqueueExecutor = Executors.newSingleThreadExecutor();
+        try {
+            forgotPasswordOutbox = new ForgotPasswordOutbox(properties, redisTemplate, spiServiceProvider, objectMapper,
+                Runnable::run, enqueueExecutor, meterRegistry);
+
+            forgotPasswordOutbox.enqueue(details, LANGUAGE);
+
+            assertThat(adding.await(1, TimeUnit.SECONDS), is(true));
+            verify(spiService, never()).sendForgotPassword(any(), any());
+            release.countDown();
+            verify(spiService, timeout(1000)).sendForgotPassword(details, LANGUAGE);
+        } finally {
+            release.countDown();
+            enqueueExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @verifies fail if too many requests are waiting to be added
+     * @see ForgotPasswordOutbox#enqueue(ForgotPasswordDetails, String)
+     */
+    @Test(expected = IllegalStateException.class)
+    public void enqueue_shouldFailIfTooManyRequestsAreWaitingToBeAdded() {
+        forgotPasswordOutbox = new ForgotPasswordOutbox(properties, redisTemplate, spiServiceProvider, objectMapper,
+            Runnable::run, task -> {
+                throw new RejectedExecutionException("queue full");
+            }, meterRegistry);
+
+        forgotPasswordOutbox.enqueue(details, LANGUAGE);
+    }
+
+    /**
+     * @verifies send new requests and remove them from the stream
+     * @see ForgotPasswordOutbox#drain()
+     */
+    @Test
+    public void drain_shouldSendNewRequestsAndRemoveThemFromTheStream() throws Exception {
+        givenPending();
+        givenNewRecords(aRecord());
+        given(spiServiceProvider.getObject()).willReturn(spiService);
+
+        forgotPasswordOutbox.drain();
+
+        verify(spiService).sendForgotPassword(details, LANGUAGE);
+        verify(streamOperations).acknowledge(STREAM, GROUP, RECORD_ID);
+        verify(streamOperations).delete(STREAM, RECORD_ID);
+        assertThat(counter("dispatched"), is(1.0));
+    }
+
+    /**
+     * @verifies leave failed requests pending
+     * @see ForgotPasswordOutbox#drain()
+     */
+    @Test
+    public void drain_shouldLeaveFailedRequestsPending() throws Exception {
+        givenPending();
+        givenNewRecords(aRecord());
+        given(spiServiceProvider.getObject()).willReturn(spiService);
+        given(spiService.sendForgotPassword(details, LANGUAGE)).willThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+
+        forgotPasswordOutbox.drain();
+
+        verify(streamOperations, never()).acknowledge(anyString(), anyString(), any(RecordId.class));
+        assertThat(counter("failed"), is(1.0));
+    }
+
+    /**
+     * @verifies dead letter requests rejected by the api
+     * @see ForgotPasswordOutbox#drain()
+     */
+    @Test
+    public void drain_shouldDeadLetterRequestsRejectedByTheApi() throws Exception {
+        MapRecord<String, Object, Object> record = aRecord();
+        givenPending();
+        givenNewRecords(record);
+        given(streamOperations.range(eq(STREAM), any(Range.class))).willReturn(List.of(record));
+        given(spiServiceProvider.getObject()).willReturn(spiService);
+        given(spiService.sendForgotPassword(details, LANGUAGE)).willThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+
+        forgotPasswordOutbox.drain();
+
+        verifyDeadLettered();
+    }
+
+    /**
+     * @verifies retry stale pending requests
+     * @see ForgotPasswordOutbox#drain()
+     */
+    @Test
+    public void drain_shouldRetryStalePendingRequests() throws Exception {
+        givenPending(new PendingMessage(RECORD_ID, Consumer.from(GROUP, "other"), Duration.ofMinutes(1), 1));
+        given(streamOperations.claim(eq(STREAM), eq(GROUP), anyString(), eq(RETRY_AFTER), eq(RECORD_ID)))
+            .willReturn(List.of(aRecord()));
+        givenNewRecords();
+        given(spiServiceProvider.getObject()).willReturn(spiService);
+
+        forgotPasswordOutbox.drain();
+
+        verify(spiService).sendForgotPassword(details, LANGUAGE);
+        verify(streamOperations).acknowledge(STREAM, GROUP, RECORD_ID);
+    }
+
+    /**
+     * @verifies dead letter pending requests that reached the maximum attempts
+     * @see ForgotPasswordOutbox#drain()
+     */
+    @Test
+    public void drain_shouldDeadLetterPendingRequestsThatReachedTheMaximumAttempts() throws Exception {
+        givenPending(new PendingMessage(RECORD_ID, Consumer.from(GROUP, "other"), Duration.ofMinutes(1), 3));
+        given(streamOperations.range(eq(STREAM), any(Range.class))).willReturn(List.of(aRecord()));
+        givenNewRecords();
+
+        forgotPasswordOutbox.drain();
+
+        verifyDeadLettered();
+        verify(spiService, never()).sendForgotPassword(any(), any());
+    }
+
+    /**
+     * @verifies trim the stream below the oldest pending request
+     * @see ForgotPasswordOutbox#drain()
+     */
+    @Test
+    public void drain_shouldTrimTheStreamBelowTheOldestPendingRequest() {
+        givenPending();
+        givenNewRecords();
+        given(streamOperations.pending(STREAM, GROUP)).willReturn(new PendingMessagesSummary(GROUP, 2,
+            Range.closed("5-0", "9-0"), Map.of("consumer", 2L)));
+
+        forgotPasswordOutbox.drain();
+
+        verifyTrimmedBelow("5-0");
+        verify(streamOperations, never()).trim(eq(STREAM), anyLong(), anyBoolean());
+    }
+
+    /**
+     * @verifies trim the stream below the last delivered request when nothing is pending
+     * @see ForgotPasswordOutbox#drain()
+     */
+    @Test
+    public void drain_shouldTrimTheStreamBelowTheLastDeliveredRequestWhenNothingIsPending() {
+        givenPending();
+        givenNewRecords();
+        given(streamOperations.pending(STREAM, GROUP)).willReturn(new PendingMessagesSummary(GROUP, 0,
+            Range.unbounded(), Map.of()));
+        given(streamOperations.groups(STREAM)).willReturn(StreamInfo.XInfoGroups.fromList(List.<Object>of(
+            List.of("name", "other", "consumers", 0L, "pending", 0L, "last-delivered-id", "1-0"),
+            List.of("name", GROUP, "consumers", 1L, "pending", 0L, "last-delivered-id", "7-0"))));
+
+        forgotPasswordOutbox.drain();
+
+        verifyTrimmedBelow("7-0");
+    }
+
+    /**
+     * @verifies cap the dead letter stream
+     * @see ForgotPasswordOutbox#drain()
+     */
+    @Test
+    public void drain_shouldCapTheDeadLetterStream() {
+        givenPending();
+        givenNewRecords();
+
+        forgotPasswordOutbox.drain();
+
+        verify(streamOperations).trim(DEAD_LETTER_STREAM, DEAD_LETTER_MAX_LENGTH, true);
+    }
+
+    /**
+     * @verifies remove dead letters older than the retention
+     * @see ForgotPasswordOutbox#drain()
+     */
+    @Test
+    public void drain_shouldRemoveDeadLettersOlderThanTheRetention() throws Exception {
+        givenPending();
+        givenNewRecords();
+        given(streamOperations.range(eq(DEAD_LETTER_STREAM), any(Range.class), any(RedisZSetCommands.Limit.class)))
+            .willReturn(List.of(aRecord()));
+
+        forgotPasswordOutbox.drain();
+
+        ArgumentCaptor<Range<String>> captor = ArgumentCaptor.forClass(Range.class);
+        verify(streamOperations).range(eq(DEAD_LETTER_STREAM), captor.capture(), any(RedisZSetCommands.Limit.class));
+        long cutoff = Long.parseLong(captor.getValue().getUpperBound().getValue().orElseThrow().split("-")[0]);
+        assertThat(System.currentTimeMillis() - cutoff >= Duration.ofDays(7).toMillis(), is(true));
+        verify(streamOperations).delete(DEAD_LETTER_STREAM, RECORD_ID);
+    }
+
+    private void verifyDeadLettered() {
+        ArgumentCaptor<MapRecord> captor = ArgumentCaptor.forClass(MapRecord.class);
+        verify(streamOperations).add(captor.capture());
+        assertThat(captor.getValue().getStream(), equalTo(DEAD_LETTER_STREAM));
+        verify(streamOperations).acknowledge(STREAM, GROUP, RECORD_ID);
+        verify(streamOperations).delete(STREAM, RECORD_ID);
+        assertThat(counter("dead.lettered"), is(1.0));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void verifyTrimmedBelow(String minId) {
+        ArgumentCaptor<RedisCallback<Object>> captor = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(redisTemplate).execute(captor.capture());
+        RedisConnection connection = mock(RedisConnection.class);
+        captor.getValue().doInRedis(connection);
+        verify(connection).execute("XTRIM", STREAM.getBytes(StandardCharsets.UTF_8),
+            "MINID".getBytes(StandardCharsets.UTF_8), minId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void givenPending(PendingMessage... messages) {
+        given(streamOperations.pending(eq(STREAM), eq(GROUP), any(Range.class), anyLong()))
+            .willReturn(new PendingMessages(GROUP, List.of(messages)));
+    }
+
+    @SafeVarargs
+    private void givenNewRecords(MapRecord<String, Object, Object>... records) {
+        given(streamOperations.read(any(Consumer.class), any(StreamReadOptions.class), any(StreamOffset.class)))
+            .willReturn(List.of(records));
+    }
+
+    private MapRecord<String, Object, Object> aRecord() throws Exception {
+        Map<Object, Object> fields = Map.of(
+            ForgotPasswordOutbox.PAYLOAD, objectMapper.writeValueAsString(details),
+            ForgotPasswordOutbox.LANGUAGE, LANGUAGE);
+        return StreamRecords.newRecord().in(STREAM).withId(RECORD_ID).ofMap(fields);
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get("idam.web.forgot.password.outbox." + name).counter().count();
+    }
+}
@@ -0,0 +1,250 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class HedgedRequestsTest {
+
+    private static final Duration MIN_DELAY = Duration.ofMillis(20);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private StrategicConfigurationProperties.Hedging properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ExecutorService executor;
+
+    private HedgedRequests hedgedRequests;
+
+    @Before
+    public void setUp() {
+        properties = new StrategicConfigurationProperties.Hedging();
+        properties.setEnabled(true);
+        properties.setPercentile(0.95);
+        properties.setMinDelay(MIN_DELAY);
+        properties.setBudgetPercent(10);
+        meterRegistry = new SimpleMeterRegistry();
+        executor = Executors.newCachedThreadPool();
+        hedgedRequests = new HedgedRequests(properties, meterRegistry, executor);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+        ApiDeadline.setCallTimeout(null);
+        LocaleContextHolder.resetLocaleContext();
+    }
+
+    /**
+     * @verifies return the first call result without hedging when it is fast enough
+     * @see HedgedRequests#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldReturnTheFirstCallResultWithoutHedgingWhenItIsFastEnough() {
+        warmUp();
+
+        assertThat(hedgedRequests.call(ApiEndpoint.SERVICES, () -> "fast"), equalTo("fast"));
+        assertThat(counter("fired"), is(0.0));
+    }
+
+    /**
+     * @verifies not hedge before enough latencies have been recorded
+     * @see HedgedRequests#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldNotHedgeBeforeEnoughLatenciesHaveBeenRecorded() {
+        String result = hedgedRequests.call(ApiEndpoint.SERVICES, () -> {
+            calls.incrementAndGet();
+            sleep(MIN_DELAY.toMillis() * 3);
+            return "slow";
+        });
+
+        assertThat(result, equalTo("slow"));
+        assertThat(calls.get(), is(1));
+        assertThat(counter("fired"), is(0.0));
+    }
+
+    /**
+     * @verifies hedge a slow call and return the hedge result if it answers first
+     * @see HedgedRequests#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldHedgeASlowCallAndReturnTheHedgeResultIfItAnswersFirst() {
+        warmUp();
+
+        String result = hedgedRequests.call(ApiEndpoint.SERVICES, () -> {
+            if (calls.incrementAndGet() == 1) {
+                await(release);
+                return "first";
+            }
+            return "hedge";
+        });
+
+        assertThat(result, equalTo("hedge"));
+        assertThat(counter("fired"), is(1.0));
+        assertThat(counter("won"), is(1.0));
+    }
+
+    /**
+     * @verifies return the first call result if it answers before the hedge
+     * @see HedgedRequests#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldReturnTheFirstCallResultIfItAnswersBeforeTheHedge() {
+        warmUp();
+
+        String result = hedgedRequests.call(ApiEndpoint.SERVICES, () -> {
+            if (calls.incrementAndGet() == 1) {
+                sleep(MIN_DELAY.toMillis() * 3);
+                return "first";
+            }
+            await(release);
+            return "hedge";
+        });
+
+        assertThat(result, equalTo("first"));
+        assertThat(counter("fired"), is(1.0));
+        assertThat(counter("won"), is(0.0));
+    }
+
+    /**
+     * @verifies not hedge once the budget is spent
+     * @see HedgedRequests#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldNotHedgeOnceTheBudgetIsSpent() {
+        properties.setBudgetPercent(0);
+        hedgedRequests = new HedgedRequests(properties, new SimpleMeterRegistry(), executor);
+        warmUp();
+
+        String result = hedgedRequests.call(ApiEndpoint.SERVICES, () -> {
+            calls.incrementAndGet();
+            sleep(MIN_DELAY.toMillis() * 3);
+            return "slow";
+        });
+
+        assertThat(result, equalTo("slow"));
+        assertThat(calls.get(), is(1));
+    }
+
+    /**
+     * @verifies allow one hedge per budget share of calls
+     * @see HedgedRequests.HedgeBudget#tryAcquire()
+     */
+    @Test
+    public void tryAcquire_shouldAllowOneHedgePerBudgetShareOfCalls() {
+        HedgedRequests.HedgeBudget budget = new HedgedRequests.HedgeBudget(10);
+        for (int i = 0; i < 9; i++) {
+            budget.onCall();
+        }
+        assertThat(budget.tryAcquire(), is(false));
+
+        budget.onCall();
+
+        assertThat(budget.tryAcquire(), is(true));
+        assertThat(budget.tryAcquire(), is(false));
+    }
+
+    /**
+     * @verifies not save up more than the maximum tokens
+     * @see HedgedRequests.HedgeBudget#tryAcquire()
+     */
+    @Test
+    public void tryAcquire_shouldNotSaveUpMoreThanTheMaximumTokens() {
+        HedgedRequests.HedgeBudget budget = new HedgedRequests.HedgeBudget(10);
+        for (int i = 0; i < 10_000; i++) {
+            budget.onCall();
+        }
+
+        int hedges = 0;
+        while (budget.tryAcquire()) {
+            hedges++;
+        }
+
+        assertThat(hedges, is(HedgedRequests.MAX_HEDGE_TOKENS));
+    }
+
+    /**
+     * @verifies rethrow the failure when every call fails
+     * @see HedgedRequests#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldRethrowTheFailureWhenEveryCallFails() {
+        HttpServerErrorException failure = new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+        warmUp();
+
+        try {
+            hedgedRequests.call(ApiEndpoint.SERVICES, () -> {
+                sleep(MIN_DELAY.toMillis() * 2);
+                throw failure;
+            });
+            fail("expected the failure to be rethrown");
+        } catch (HttpServerErrorException e) {
+            assertThat(e, is(failure));
+        }
+    }
+
+    /**
+     * @verifies pass the call timeout and locale to the calls
+     * @see HedgedRequests#call(ApiEndpoint, java.util.function.Supplier)
+     */
+    @Test
+    public void call_shouldPassTheCallTimeoutAndLocaleToTheCalls() {
+        ApiDeadline.setCallTimeout(700L);
+        LocaleContextHolder.setLocale(new Locale("cy"));
+
+        String result = hedgedRequests.call(ApiEndpoint.SERVICES,
+            () -> ApiDeadline.callTimeoutMillis().getAsLong() + " " + LocaleContextHolder.getLocale());
+
+        assertThat(result, equalTo("700 cy"));
+    }
+
+    private void warmUp() {
+        for (int i = 0; i < HedgedRequests.WINDOW_SIZE; i++) {
+            hedgedRequests.call(ApiEndpoint.SERVICES, () -> "warm up");
+        }
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get("idam.api.hedge." + name).tag("endpoint", "services").counter().count();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
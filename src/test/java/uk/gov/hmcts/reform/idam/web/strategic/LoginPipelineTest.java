@@ -0,0 +1,204 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import uk.gov.hmcts.reform.idam.api.internal.model.ErrorResponse;
+import uk.gov.hmcts.reform.idam.web.helper.StageTimer;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.GOOGLE_WEB_ADDRESS;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.PASSWORD_ONE;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.REDIRECT_URI;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.USER_IP_ADDRESS;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.USER_NAME;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LoginPipelineTest {
+
+    private static final List<String> COOKIES = List.of("Idam.Session=session");
+    private static final Map<String, String> AUTHORIZE_PARAMS = Map.of("client_id", "client");
+
+    @Mock
+    private SPIService spiService;
+
+    @Mock
+    private ReactiveSPIService reactiveSPIService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StageTimer stageTimer;
+
+    private LoginPipeline loginPipeline;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stageTimer = new StageTimer(meterRegistry);
+        loginPipeline = new LoginPipeline(spiService, stageTimer);
+    }
+
+    /**
+     * @verifies authorize with the authentication cookies if authentication succeeds
+     * @see LoginPipeline#login(String, String, String, String, Map)
+     */
+    @Test
+    public void login_shouldAuthorizeWithTheAuthenticationCookiesIfAuthenticationSucceeds() {
+        ApiAuthResult authentication = anAuthResult(EvaluatePoliciesAction.ALLOW);
+        given(spiService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS)).willReturn(authentication);
+        given(spiService.authorize(AUTHORIZE_PARAMS, COOKIES)).willReturn(GOOGLE_WEB_ADDRESS);
+
+        LoginPipeline.LoginResult result = loginPipeline.login(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS, AUTHORIZE_PARAMS);
+
+        assertThat(result.getAuthentication(), sameInstance(authentication));
+        assertThat(result.getResponseUrl(), equalTo(GOOGLE_WEB_ADDRESS));
+    }
+
+    /**
+     * @verifies not authorize if mfa is required
+     * @see LoginPipeline#login(String, String, String, String, Map)
+     */
+    @Test
+    public void login_shouldNotAuthorizeIfMfaIsRequired() {
+        given(spiService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS))
+            .willReturn(anAuthResult(EvaluatePoliciesAction.MFA_REQUIRED));
+
+        LoginPipeline.LoginResult result = loginPipeline.login(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS, AUTHORIZE_PARAMS);
+
+        assertThat(result.getResponseUrl(), is(nullValue()));
+        verify(spiService, never()).authorize(any(), any());
+    }
+
+    /**
+     * @verifies not authorize if authentication fails
+     * @see LoginPipeline#login(String, String, String, String, Map)
+     */
+    @Test
+    public void login_shouldNotAuthorizeIfAuthenticationFails() {
+        given(spiService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS)).willReturn(ApiAuthResult.builder()
+            .httpStatus(HttpStatus.UNAUTHORIZED)
+            .errorCode(ErrorResponse.CodeEnum.ACCOUNT_LOCKED)
+            .build());
+
+        LoginPipeline.LoginResult result = loginPipeline.login(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS, AUTHORIZE_PARAMS);
+
+        assertThat(result.getAuthentication().getErrorCode(), is(ErrorResponse.CodeEnum.ACCOUNT_LOCKED));
+        verify(spiService, never()).authorize(any(), any());
+    }
+
+    /**
+     * @verifies record the time spent in each stage
+     * @see LoginPipeline#login(String, String, String, String, Map)
+     */
+    @Test
+    public void login_shouldRecordTheTimeSpentInEachStage() {
+        given(spiService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS))
+            .willReturn(anAuthResult(EvaluatePoliciesAction.ALLOW));
+
+        loginPipeline.login(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS, AUTHORIZE_PARAMS);
+
+        assertThat(stageCount("authenticate"), is(1L));
+        assertThat(stageCount("authorize"), is(1L));
+    }
+
+    /**
+     * @verifies authorize with the authentication cookies if authentication succeeds
+     * @see LoginPipeline#loginReactive(String, String, String, String, Map, javax.servlet.http.HttpServletRequest)
+     */
+    @Test
+    public void loginReactive_shouldAuthorizeWithTheAuthenticationCookiesIfAuthenticationSucceeds() {
+        ApiAuthResult authentication = anAuthResult(EvaluatePoliciesAction.ALLOW);
+        given(reactiveSPIService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS)).willReturn(Mono.just(authentication));
+        given(reactiveSPIService.authorize(AUTHORIZE_PARAMS, COOKIES)).willReturn(Mono.just(GOOGLE_WEB_ADDRESS));
+
+        LoginPipeline.LoginResult result = aReactiveLogin(new MockHttpServletRequest()).block();
+
+        assertThat(result.getAuthentication(), sameInstance(authentication));
+        assertThat(result.getResponseUrl(), equalTo(GOOGLE_WEB_ADDRESS));
+    }
+
+    /**
+     * @verifies not authorize if mfa is required
+     * @see LoginPipeline#loginReactive(String, String, String, String, Map, javax.servlet.http.HttpServletRequest)
+     */
+    @Test
+    public void loginReactive_shouldNotAuthorizeIfMfaIsRequired() {
+        given(reactiveSPIService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS))
+            .willReturn(Mono.just(anAuthResult(EvaluatePoliciesAction.MFA_REQUIRED)));
+
+        LoginPipeline.LoginResult result = aReactiveLogin(new MockHttpServletRequest()).block();
+
+        assertThat(result.getResponseUrl(), is(nullValue()));
+        verify(reactiveSPIService, never()).authorize(any(), any());
+    }
+
+    /**
+     * @verifies complete without a response url if authorize does not redirect
+     * @see LoginPipeline#loginReactive(String, String, String, String, Map, javax.servlet.http.HttpServletRequest)
+     */
+    @Test
+    public void loginReactive_shouldCompleteWithoutAResponseUrlIfAuthorizeDoesNotRedirect() {
+        ApiAuthResult authentication = anAuthResult(EvaluatePoliciesAction.ALLOW);
+        given(reactiveSPIService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS)).willReturn(Mono.just(authentication));
+        given(reactiveSPIService.authorize(AUTHORIZE_PARAMS, COOKIES)).willReturn(Mono.empty());
+
+        LoginPipeline.LoginResult result = aReactiveLogin(new MockHttpServletRequest()).block();
+
+        assertThat(result.getAuthentication(), sameInstance(authentication));
+        assertThat(result.getResponseUrl(), is(nullValue()));
+    }
+
+    /**
+     * @verifies record the time spent in each stage
+     * @see LoginPipeline#loginReactive(String, String, String, String, Map, javax.servlet.http.HttpServletRequest)
+     */
+    @Test
+    public void loginReactive_shouldRecordTheTimeSpentInEachStage() {
+        given(reactiveSPIService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS))
+            .willReturn(Mono.just(anAuthResult(EvaluatePoliciesAction.ALLOW)));
+        given(reactiveSPIService.authorize(AUTHORIZE_PARAMS, COOKIES)).willReturn(Mono.just(GOOGLE_WEB_ADDRESS));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        stageTimer.begin(request, "password");
+
+        aReactiveLogin(request).block();
+
+        assertThat(stageCount("authenticate"), is(1L));
+        assertThat(stageCount("authorize"), is(1L));
+    }
+
+    private Mono<LoginPipeline.LoginResult> aReactiveLogin(MockHttpServletRequest request) {
+        given(reactiveSPIService.requestContext()).willReturn(Context.empty());
+        return new LoginPipeline(spiService, stageTimer, reactiveSPIService)
+            .loginReactive(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS, AUTHORIZE_PARAMS, request);
+    }
+
+    private ApiAuthResult anAuthResult(EvaluatePoliciesAction policiesAction) {
+        return ApiAuthResult.builder()
+            .httpStatus(HttpStatus.OK)
+            .cookies(COOKIES)
+            .policiesAction(policiesAction)
+            .build();
+    }
+
+    private long stageCount(String stage) {
+        return meterRegistry.get("idam.web.login.stage").tag("stage", stage).timer().count();
+    }
+}
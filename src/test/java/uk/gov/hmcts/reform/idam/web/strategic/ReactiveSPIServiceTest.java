@@ -0,0 +1,305 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+import uk.gov.hmcts.reform.idam.api.internal.model.ArrayOfServices;
+import uk.gov.hmcts.reform.idam.api.internal.model.ErrorResponse;
+import uk.gov.hmcts.reform.idam.api.internal.model.Service;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.API_URL;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.AUTHENTICATE_ENDPOINT;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.AUTHORIZATION_TOKEN;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.DETAILS_ENDPOINT;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.FORGOT_PASSWORD_SPI_ENDPOINT;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.FORGOT_PASSWORD_URI;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.GOOGLE_WEB_ADDRESS;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.OAUTH2_AUTHORIZE_ENDPOINT;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.PASSWORD_ONE;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.REDIRECT_URI;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.SERVICES_ENDPOINT;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.SERVICE_CLIENT_ID;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.SERVICE_LABEL;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.SLASH;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.USER_EMAIL;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.USER_IP_ADDRESS;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.USER_NAME;
+import static uk.gov.hmcts.reform.idam.web.util.TestHelper.getService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReactiveSPIServiceTest {
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private ConfigurationProperties configurationProperties;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private SPIService spiService;
+
+    private ClientRequest lastRequest;
+
+    @Before
+    public void setUp() {
+        StrategicConfigurationProperties.EndpointConfigurationProperties endpoints = new StrategicConfigurationProperties.EndpointConfigurationProperties();
+        endpoints.setAuthorize(AUTHENTICATE_ENDPOINT);
+        endpoints.setAuthorizeOauth2(OAUTH2_AUTHORIZE_ENDPOINT);
+        endpoints.setForgotPassword(FORGOT_PASSWORD_SPI_ENDPOINT);
+        endpoints.setDetails(DETAILS_ENDPOINT);
+        endpoints.setServices(SERVICES_ENDPOINT);
+        endpoints.setLoginWithPin("pin");
+        StrategicConfigurationProperties.Timeouts timeouts = new StrategicConfigurationProperties.Timeouts();
+        timeouts.setEnabled(true);
+        timeouts.setDefaultTimeout(Duration.ofSeconds(10));
+        given(configurationProperties.getStrategic().getService().getUrl()).willReturn(API_URL);
+        given(configurationProperties.getStrategic().getEndpoint()).willReturn(endpoints);
+        given(configurationProperties.getStrategic().getTimeouts()).willReturn(timeouts);
+        spiService = new SPIService(mock(RestTemplate.class), configurationProperties, objectMapper, new SimpleMeterRegistry(),
+            Runnable::run, Runnable::run, Runnable::run, null, mock(RestTemplate.class));
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    /**
+     * @verifies return the cookies and require mfa if an Idam.AuthId cookie is returned
+     * @see ReactiveSPIService#authenticate(String, String, String, String, String)
+     */
+    @Test
+    public void authenticate_shouldReturnTheCookiesAndRequireMfaIfAnIdamAuthIdCookieIsReturned() {
+        String cookie = "Idam.AuthId=1234567890";
+        ReactiveSPIService reactiveSPIService = aReactiveSPIService(ClientResponse.create(HttpStatus.OK)
+            .header(HttpHeaders.SET_COOKIE, cookie)
+            .build());
+
+        ApiAuthResult result = reactiveSPIService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS).block();
+
+        assertThat(result.getCookies().contains(cookie), is(true));
+        assertThat(result.requiresMfa(), is(true));
+        assertThat(lastRequest.url().toString(), equalTo(API_URL + SLASH + AUTHENTICATE_ENDPOINT));
+        assertThat(lastRequest.headers().getFirst("X-Forwarded-For"), equalTo(USER_IP_ADDRESS));
+        assertThat(lastRequest.headers().getFirst(ApiDeadline.TIMEOUT_HEADER), equalTo("10000"));
+    }
+
+    /**
+     * @verifies return the error code if api responds with 401
+     * @see ReactiveSPIService#authenticate(String, String, String, String, String)
+     */
+    @Test
+    public void authenticate_shouldReturnTheErrorCodeIfApiRespondsWith401() throws Exception {
+        ErrorResponse errorResponse = new ErrorResponse().code(ErrorResponse.CodeEnum.ACCOUNT_LOCKED);
+        ReactiveSPIService reactiveSPIService = aReactiveSPIService(ClientResponse.create(HttpStatus.UNAUTHORIZED)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .body(objectMapper.writeValueAsString(errorResponse))
+            .build());
+
+        ApiAuthResult result = reactiveSPIService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS).block();
+
+        assertThat(result.getHttpStatus(), is(HttpStatus.UNAUTHORIZED));
+        assertThat(result.getErrorCode(), is(ErrorResponse.CodeEnum.ACCOUNT_LOCKED));
+        assertThat(result.getCookies(), is(nullValue()));
+    }
+
+    /**
+     * @verifies raise other error responses as exceptions
+     * @see ReactiveSPIService#authenticate(String, String, String, String, String)
+     */
+    @Test
+    public void authenticate_shouldRaiseOtherErrorResponsesAsExceptions() {
+        ReactiveSPIService reactiveSPIService = aReactiveSPIService(ClientResponse.create(HttpStatus.BAD_GATEWAY).build());
+
+        try {
+            reactiveSPIService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS).block();
+            fail("expected the error response to be raised");
+        } catch (HttpServerErrorException e) {
+            assertThat(e.getStatusCode(), is(HttpStatus.BAD_GATEWAY));
+        }
+    }
+
+    /**
+     * @verifies return location in header in api response if response code is 302
+     * @see ReactiveSPIService#authorize(Map, java.util.List)
+     */
+    @Test
+    public void authorize_shouldReturnLocationInHeaderInApiResponseIfResponseCodeIs302() {
+        ReactiveSPIService reactiveSPIService = aReactiveSPIService(ClientResponse.create(HttpStatus.FOUND)
+            .header(HttpHeaders.LOCATION, GOOGLE_WEB_ADDRESS)
+            .build());
+
+        String location = reactiveSPIService.authorize(Map.of("client_id", SERVICE_CLIENT_ID), null).block();
+
+        assertThat(location, equalTo(GOOGLE_WEB_ADDRESS));
+        assertThat(lastRequest.url().toString(), equalTo(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT));
+    }
+
+    /**
+     * @verifies complete empty if api response code is not 302
+     * @see ReactiveSPIService#authorize(Map, java.util.List)
+     */
+    @Test
+    public void authorize_shouldCompleteEmptyIfApiResponseCodeIsNot302() {
+        ReactiveSPIService reactiveSPIService = aReactiveSPIService(ClientResponse.create(HttpStatus.OK).build());
+
+        assertThat(reactiveSPIService.authorize(Map.of("client_id", SERVICE_CLIENT_ID), null).block(), is(nullValue()));
+    }
+
+    /**
+     * @verifies send the forwarded headers of the request it was called on
+     * @see ReactiveSPIService#authorize(Map, java.util.List)
+     */
+    @Test
+    public void authorize_shouldSendTheForwardedHeadersOfTheRequestItWasCalledOn() {
+        given(configurationProperties.getStrategic().getService().getOidcprefix()).willReturn("/o");
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        request.setScheme("https");
+        request.setServerName("idam.reform.hmcts.net");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        ReactiveSPIService reactiveSPIService = aReactiveSPIService(ClientResponse.create(HttpStatus.FOUND)
+            .header(HttpHeaders.LOCATION, GOOGLE_WEB_ADDRESS)
+            .build());
+
+        Mono<String> authorize = reactiveSPIService.authorize(Map.of("client_id", SERVICE_CLIENT_ID), null);
+        RequestContextHolder.resetRequestAttributes();
+        authorize.block();
+
+        assertThat(lastRequest.headers().getFirst("x-forwarded-proto"), equalTo("https"));
+        assertThat(lastRequest.headers().getFirst("x-forwarded-host"), equalTo("idam.reform.hmcts.net"));
+        assertThat(lastRequest.headers().getFirst("x-forwarded-prefix"), equalTo("/o"));
+    }
+
+    /**
+     * @verifies fail with bad credentials if api does not respond with 302
+     * @see ReactiveSPIService#loginWithPin(String, String, String, String)
+     */
+    @Test(expected = BadCredentialsException.class)
+    public void loginWithPin_shouldFailWithBadCredentialsIfApiDoesNotRespondWith302() {
+        ReactiveSPIService reactiveSPIService = aReactiveSPIService(ClientResponse.create(HttpStatus.OK).build());
+
+        reactiveSPIService.loginWithPin("1234", REDIRECT_URI, null, SERVICE_CLIENT_ID).block();
+    }
+
+    /**
+     * @verifies send the request in the background and complete with accepted
+     * @see ReactiveSPIService#forgetPassword(String, String, String)
+     */
+    @Test
+    public void forgetPassword_shouldSendTheRequestInTheBackgroundAndCompleteWithAccepted() {
+        ReactiveSPIService reactiveSPIService = aReactiveSPIService(ClientResponse.create(HttpStatus.OK).build());
+
+        ResponseEntity<String> response = reactiveSPIService.forgetPassword(USER_EMAIL, REDIRECT_URI, SERVICE_CLIENT_ID).block();
+
+        assertThat(response.getStatusCode(), is(HttpStatus.ACCEPTED));
+        assertThat(lastRequest.method(), is(HttpMethod.POST));
+        assertThat(lastRequest.url().toString(), equalTo(FORGOT_PASSWORD_URI));
+    }
+
+    /**
+     * @verifies complete empty if any exception occurs
+     * @see ReactiveSPIService#getDetails(String)
+     */
+    @Test
+    public void getDetails_shouldCompleteEmptyIfAnyExceptionOccurs() {
+        ReactiveSPIService reactiveSPIService = aReactiveSPIService(ClientResponse.create(HttpStatus.FORBIDDEN).build());
+
+        assertThat(reactiveSPIService.getDetails(AUTHORIZATION_TOKEN).block(), is(nullValue()));
+        assertThat(lastRequest.headers().getFirst("authorization"), equalTo(AUTHORIZATION_TOKEN));
+    }
+
+    /**
+     * @verifies return the first service returned by the api
+     * @see ReactiveSPIService#getServiceByClientId(String)
+     */
+    @Test
+    public void getServiceByClientId_shouldReturnTheFirstServiceReturnedByTheApi() throws Exception {
+        Service service = getService(SERVICE_LABEL, SERVICE_CLIENT_ID, true);
+        ArrayOfServices services = new ArrayOfServices();
+        services.add(service);
+        ReactiveSPIService reactiveSPIService = aReactiveSPIService(ClientResponse.create(HttpStatus.OK)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .body(objectMapper.writeValueAsString(services))
+            .build());
+
+        Service result = reactiveSPIService.getServiceByClientId(SERVICE_CLIENT_ID).block();
+
+        assertThat(result.getOauth2ClientId(), equalTo(SERVICE_CLIENT_ID));
+        assertThat(lastRequest.url().toString(), equalTo(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID));
+    }
+
+    /**
+     * @verifies complete empty if api returns no services
+     * @see ReactiveSPIService#getServiceByClientId(String)
+     */
+    @Test
+    public void getServiceByClientId_shouldCompleteEmptyIfApiReturnsNoServices() {
+        ReactiveSPIService reactiveSPIService = aReactiveSPIService(ClientResponse.create(HttpStatus.OK)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .body("[]")
+            .build());
+
+        assertThat(reactiveSPIService.getServiceByClientId(SERVICE_CLIENT_ID).block(), is(nullValue()));
+    }
+
+    /**
+     * @verifies raise a read timeout as a socket timeout
+     * @see ReactiveSPIService#toResourceAccessException(WebClientRequestException)
+     */
+    @Test
+    public void toResourceAccessException_shouldRaiseAReadTimeoutAsASocketTimeout() {
+        WebClientRequestException e = new WebClientRequestException(ReadTimeoutException.INSTANCE, HttpMethod.GET,
+            URI.create(API_URL + SLASH + DETAILS_ENDPOINT), new HttpHeaders());
+
+        ResourceAccessException result = ReactiveSPIService.toResourceAccessException(e);
+
+        assertThat(result.getCause(), instanceOf(SocketTimeoutException.class));
+    }
+
+    private ReactiveSPIService aReactiveSPIService(ClientResponse response) {
+        WebClient webClient = WebClient.builder()
+            .exchangeFunction(request -> {
+                lastRequest = request;
+                return Mono.just(response);
+            })
+            .build();
+        return new ReactiveSPIService(webClient, spiService, configurationProperties, objectMapper);
+    }
+}
@@ -0,0 +1,133 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import javax.servlet.FilterChain;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RequestDeadlineFilterTest {
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private ConfigurationProperties configurationProperties;
+
+    private StrategicConfigurationProperties.Timeouts timeouts;
+
+    private MockHttpServletRequest request;
+
+    private final AtomicReference<OptionalLong> remainingInChain = new AtomicReference<>();
+
+    private final FilterChain filterChain = (req, res) -> remainingInChain.set(ApiDeadline.remainingMillis());
+
+    @Before
+    public void setUp() {
+        timeouts = new StrategicConfigurationProperties.Timeouts();
+        timeouts.setEnabled(true);
+        timeouts.setRequestBudget(Duration.ofSeconds(30));
+        given(configurationProperties.getStrategic().getTimeouts()).willReturn(timeouts);
+        StrategicConfigurationProperties.Policies policies = new StrategicConfigurationProperties.Policies();
+        policies.setPrivateIpsFilterPattern(Pattern.compile("10\\.\\d+\\.\\d+\\.\\d+"));
+        given(configurationProperties.getStrategic().getPolicies()).willReturn(policies);
+        request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.5");
+    }
+
+    /**
+     * @verifies start the request budget for the duration of the request
+     * @see RequestDeadlineFilter#doFilterInternal(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, FilterChain)
+     */
+    @Test
+    public void doFilterInternal_shouldStartTheRequestBudgetForTheDurationOfTheRequest() throws Exception {
+        new RequestDeadlineFilter(configurationProperties).doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertThat(remainingInChain.get().getAsLong(), allOf(greaterThan(29_000L), lessThanOrEqualTo(30_000L)));
+        assertThat(ApiDeadline.remainingMillis(), equalTo(OptionalLong.empty()));
+    }
+
+    /**
+     * @verifies use the caller timeout if it is shorter
+     * @see RequestDeadlineFilter#doFilterInternal(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, FilterChain)
+     */
+    @Test
+    public void doFilterInternal_shouldUseTheCallerTimeoutIfItIsShorter() throws Exception {
+        request.addHeader(ApiDeadline.TIMEOUT_HEADER, "5000");
+
+        new RequestDeadlineFilter(configurationProperties).doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertThat(remainingInChain.get().getAsLong(), allOf(greaterThan(4_000L), lessThanOrEqualTo(5_000L)));
+    }
+
+    /**
+     * @verifies ignore the caller timeout from a public address
+     * @see RequestDeadlineFilter#doFilterInternal(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, FilterChain)
+     */
+    @Test
+    public void doFilterInternal_shouldIgnoreTheCallerTimeoutFromAPublicAddress() throws Exception {
+        request.setRemoteAddr("203.0.113.7");
+        request.addHeader(ApiDeadline.TIMEOUT_HEADER, "5000");
+
+        new RequestDeadlineFilter(configurationProperties).doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertThat(remainingInChain.get().getAsLong(), greaterThan(29_000L));
+    }
+
+    /**
+     * @verifies ignore the caller timeout on a forwarded request
+     * @see RequestDeadlineFilter#doFilterInternal(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, FilterChain)
+     */
+    @Test
+    public void doFilterInternal_shouldIgnoreTheCallerTimeoutOnAForwardedRequest() throws Exception {
+        request.addHeader(RequestDeadlineFilter.X_FORWARDED_FOR, "203.0.113.7");
+        request.addHeader(ApiDeadline.TIMEOUT_HEADER, "5000");
+
+        new RequestDeadlineFilter(configurationProperties).doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertThat(remainingInChain.get().getAsLong(), greaterThan(29_000L));
+    }
+
+    /**
+     * @verifies ignore an invalid caller timeout
+     * @see RequestDeadlineFilter#doFilterInternal(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, FilterChain)
+     */
+    @Test
+    public void doFilterInternal_shouldIgnoreAnInvalidCallerTimeout() throws Exception {
+        request.addHeader(ApiDeadline.TIMEOUT_HEADER, "soon");
+
+        new RequestDeadlineFilter(configurationProperties).doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertThat(remainingInChain.get().getAsLong(), greaterThan(29_000L));
+    }
+
+    /**
+     * @verifies not start a budget when disabled
+     * @see RequestDeadlineFilter#doFilterInternal(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, FilterChain)
+     */
+    @Test
+    public void doFilterInternal_shouldNotStartABudgetWhenDisabled() throws Exception {
+        timeouts.setEnabled(false);
+
+        new RequestDeadlineFilter(configurationProperties).doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertThat(remainingInChain.get().isPresent(), is(false));
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
 import com.netflix.zuul.constants.ZuulHeaders;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
 import org.junit.Before;
@@ -12,18 +13,20 @@ import org.junit.runner.RunWith;
 import org.mockito.Answers;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.redis.RedisConnectionFailureException;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 import uk.gov.hmcts.reform.idam.api.internal.model.ActivationResult;
 import uk.gov.hmcts.reform.idam.api.internal.model.ArrayOfServices;
@@ -35,13 +38,21 @@ import uk.gov.hmcts.reform.idam.api.internal.model.ValidateRequest;
 import uk.gov.hmcts.reform.idam.api.shared.model.SelfRegisterRequest;
 import uk.gov.hmcts.reform.idam.api.shared.model.User;
 import uk.gov.hmcts.reform.idam.web.config.properties.ConfigurationProperties;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
 import uk.gov.hmcts.reform.idam.web.health.HealthCheckStatus;
 import uk.gov.hmcts.reform.idam.web.model.RegisterUserRequest;
 
+import java.net.URI;
 import java.nio.charset.Charset;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -53,6 +64,9 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static uk.gov.hmcts.reform.idam.web.util.TestConstants.*;
 import static uk.gov.hmcts.reform.idam.web.util.TestHelper.anAuthorizedUser;
@@ -66,13 +80,18 @@ public class SPIServiceTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Mock
+    private RestTemplate noRedirectRestTemplate;
+
     @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     private ConfigurationProperties configurationProperties;
 
     @Spy
     private ObjectMapper objectMapper = new ObjectMapper();
 
-    @InjectMocks
+    @Mock
+    private ForgotPasswordOutbox forgotPasswordOutbox;
+
     private SPIService spiService;
 
     @Captor
@@ -80,13 +99,24 @@ public class SPIServiceTest {
 
     @Before
     public void setUp() {
+        StrategicConfigurationProperties.EndpointConfigurationProperties endpoints = new StrategicConfigurationProperties.EndpointConfigurationProperties();
+        endpoints.setAuthorize(AUTHENTICATE_ENDPOINT);
+        endpoints.setSelfRegisterUser(USERS_SELF_ENDPOINT);
+        endpoints.setResetPassword(RESET_PASSWORD_ENDPOINT);
+        endpoints.setForgotPassword(FORGOT_PASSWORD_SPI_ENDPOINT);
+        endpoints.setUplift(API_LOGIN_UPLIFT_ENDPOINT);
+        endpoints.setAuthorizeOauth2(OAUTH2_AUTHORIZE_ENDPOINT);
+        endpoints.setValidateActivationToken(VALIDATE_TOKEN_API_ENDPOINT);
+        endpoints.setActivation(ACTIVATE_ENDPOINT);
+        endpoints.setValidateResetPasswordToken(VALIDATE_RESET_PASSWORD_ENDPOINT);
+        endpoints.setSelfRegistration(SELF_REGISTRATION_ENDPOINT);
+        endpoints.setDetails(DETAILS_ENDPOINT);
+        endpoints.setServices(SERVICES_ENDPOINT);
+        endpoints.setHealth(HEALTH_ENDPOINT);
+        endpoints.setLoginWithPin("pin");
         given(configurationProperties.getStrategic().getService().getUrl()).willReturn(API_URL);
-        given(configurationProperties.getStrategic().getEndpoint().getAuthorize()).willReturn(AUTHENTICATE_ENDPOINT);
-        given(configurationProperties.getStrategic().getEndpoint().getSelfRegisterUser()).willReturn(USERS_SELF_ENDPOINT);
-        given(configurationProperties.getStrategic().getEndpoint().getResetPassword()).willReturn(RESET_PASSWORD_ENDPOINT);
-        given(configurationProperties.getStrategic().getEndpoint().getForgotPassword()).willReturn(FORGOT_PASSWORD_SPI_ENDPOINT);
-        given(configurationProperties.getStrategic().getEndpoint().getUplift()).willReturn(API_LOGIN_UPLIFT_ENDPOINT);
-        given(configurationProperties.getStrategic().getEndpoint().getAuthorizeOauth2()).willReturn(OAUTH2_AUTHORIZE_ENDPOINT);
+        given(configurationProperties.getStrategic().getEndpoint()).willReturn(endpoints);
+        spiService = new SPIService(restTemplate, configurationProperties, objectMapper, new SimpleMeterRegistry(), Runnable::run, Runnable::run, Runnable::run, forgotPasswordOutbox, noRedirectRestTemplate);
     }
 
     /**
@@ -133,7 +163,7 @@ public class SPIServiceTest {
         // given
         ResponseEntity<String> expectedResponse = ResponseEntity.ok().build();
 
-        given(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+        given(restTemplate.exchange(any(URI.class), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
             .willReturn(expectedResponse);
 
         // when
@@ -150,12 +180,11 @@ public class SPIServiceTest {
     @Test
     public void validateActivationToken_shouldCallIDMWithTheRightBody() throws Exception {
 
-        given(configurationProperties.getStrategic().getEndpoint().getValidateActivationToken()).willReturn(VALIDATE_TOKEN_API_ENDPOINT);
 
         spiService.validateActivationToken(new ValidateRequest().token(USER_ACTIVATION_TOKEN).code(USER_ACTIVATION_CODE));
 
         verify(restTemplate)
-            .exchange(eq(API_URL + "/" + VALIDATE_TOKEN_API_ENDPOINT), eq(HttpMethod.POST), captor.capture(), eq(ActivationResult.class));
+            .exchange(eq(URI.create(API_URL + "/" + VALIDATE_TOKEN_API_ENDPOINT)), eq(HttpMethod.POST), captor.capture(), eq(ActivationResult.class));
 
         HttpEntity<ValidateRequest> entity = (HttpEntity<ValidateRequest>) captor.getAllValues().get(0);
 
@@ -178,7 +207,7 @@ public class SPIServiceTest {
             RESET_PASSWORD_CODE);
 
         // then
-        verify(restTemplate).exchange(eq(RESET_PASSWORD_URI), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+        verify(restTemplate).exchange(eq(URI.create(RESET_PASSWORD_URI)), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
     }
 
     /**
@@ -201,7 +230,7 @@ public class SPIServiceTest {
 
         // then
         ArgumentCaptor<HttpEntity<ResetPasswordRequest>> captor = ArgumentCaptor.forClass(HttpEntity.class);
-        verify(restTemplate).exchange(eq(RESET_PASSWORD_URI), eq(HttpMethod.POST), captor.capture(), eq(String.class));
+        verify(restTemplate).exchange(eq(URI.create(RESET_PASSWORD_URI)), eq(HttpMethod.POST), captor.capture(), eq(String.class));
 
         HttpEntity<ResetPasswordRequest> actualRequest = captor.getValue();
 
@@ -219,7 +248,7 @@ public class SPIServiceTest {
         // given
         ResponseEntity<String> expectedResponse = ResponseEntity.ok().build();
 
-        given(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+        given(restTemplate.exchange(any(URI.class), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
             .willReturn(expectedResponse);
 
         // when
@@ -239,11 +268,9 @@ public class SPIServiceTest {
     @Test
     public void forgetPassword_shouldCallApiWithTheCorrectParameters() throws Exception {
         spiService.forgetPassword(USER_EMAIL, SERVICE_OAUTH2_REDIRECT_URI, CLIENT_ID);
-        // hack to get around CompletableFuture.supplyAsync()
-        Thread.sleep(1000);//NOSONAR
 
         ArgumentCaptor<HttpEntity<ForgotPasswordDetails>> captor = ArgumentCaptor.forClass(HttpEntity.class);
-        verify(restTemplate).exchange(eq(FORGOT_PASSWORD_URI), eq(HttpMethod.POST), captor.capture(), eq(String.class));
+        verify(restTemplate).exchange(eq(URI.create(FORGOT_PASSWORD_URI)), eq(HttpMethod.POST), captor.capture(), eq(String.class));
 
         HttpEntity<ForgotPasswordDetails> actualRequest = captor.getValue();
 
@@ -263,6 +290,91 @@ public class SPIServiceTest {
         assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
     }
 
+    /**
+     * @verifies return 202 status code if the api call fails
+     * @see SPIService#forgetPassword(String, String, String)
+     */
+    @Test
+    public void forgetPassword_shouldReturn202StatusCodeIfTheApiCallFails() {
+        given(restTemplate.exchange(eq(URI.create(FORGOT_PASSWORD_URI)), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
+            .willThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+
+        ResponseEntity<String> response = spiService.forgetPassword(USER_EMAIL, SERVICE_OAUTH2_REDIRECT_URI, CLIENT_ID);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+    }
+
+    /**
+     * @verifies throw if the executor rejects the request
+     * @see SPIService#forgetPassword(String, String, String)
+     */
+    @Test(expected = RejectedExecutionException.class)
+    public void forgetPassword_shouldThrowIfTheExecutorRejectsTheRequest() {
+        SPIService rejectingSpiService = new SPIService(restTemplate, configurationProperties, objectMapper, new SimpleMeterRegistry(), task -> {
+            throw new RejectedExecutionException("queue full");
+        }, Runnable::run, Runnable::run, null, noRedirectRestTemplate);
+
+        rejectingSpiService.forgetPassword(USER_EMAIL, SERVICE_OAUTH2_REDIRECT_URI, CLIENT_ID);
+    }
+
+    /**
+     * @verifies add the request to the outbox if it is enabled
+     * @see SPIService#forgetPassword(String, String, String)
+     */
+    @Test
+    public void forgetPassword_shouldAddTheRequestToTheOutboxIfItIsEnabled() {
+        given(forgotPasswordOutbox.isEnabled()).willReturn(true);
+
+        ResponseEntity<String> response = spiService.forgetPassword(USER_EMAIL, SERVICE_OAUTH2_REDIRECT_URI, CLIENT_ID);
+
+        ArgumentCaptor<ForgotPasswordDetails> details = ArgumentCaptor.forClass(ForgotPasswordDetails.class);
+        verify(forgotPasswordOutbox).enqueue(details.capture(), anyString());
+        assertEquals(USER_EMAIL, details.getValue().getEmail());
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        verify(restTemplate, never()).exchange(any(URI.class), any(HttpMethod.class), any(HttpEntity.class), eq(String.class));
+    }
+
+    /**
+     * @verifies send the request directly if the outbox is unavailable
+     * @see SPIService#forgetPassword(String, String, String)
+     */
+    @Test
+    public void forgetPassword_shouldSendTheRequestDirectlyIfTheOutboxIsUnavailable() {
+        given(forgotPasswordOutbox.isEnabled()).willReturn(true);
+        willThrow(new RedisConnectionFailureException("down")).given(forgotPasswordOutbox).enqueue(any(), anyString());
+
+        spiService.forgetPassword(USER_EMAIL, SERVICE_OAUTH2_REDIRECT_URI, CLIENT_ID);
+
+        verify(restTemplate).exchange(eq(URI.create(FORGOT_PASSWORD_URI)), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class));
+    }
+
+    /**
+     * @verifies return the location if api responds with 302
+     * @see SPIService#loginWithPin(String, String, String, String)
+     */
+    @Test
+    public void loginWithPin_shouldReturnTheLocationIfApiRespondsWith302() throws Exception {
+        given(noRedirectRestTemplate.exchange(eq(URI.create(API_URL + SLASH + "pin?redirect_uri=" + REDIRECT_URI + "&client_id=" + CLIENT_ID + "&state=state%20test")),
+            eq(HttpMethod.GET), captor.capture(), eq(String.class))).willReturn(getFoundResponseEntity(GOOGLE_WEB_ADDRESS));
+
+        String location = spiService.loginWithPin(LOGIN_PIN_CODE, REDIRECT_URI, STATE, CLIENT_ID);
+
+        assertThat(location, equalTo(GOOGLE_WEB_ADDRESS));
+        assertThat(captor.getValue().getHeaders().getFirst(PIN_PARAMETER), equalTo(LOGIN_PIN_CODE));
+    }
+
+    /**
+     * @verifies throw bad credentials if api does not respond with 302
+     * @see SPIService#loginWithPin(String, String, String, String)
+     */
+    @Test(expected = BadCredentialsException.class)
+    public void loginWithPin_shouldThrowBadCredentialsIfApiDoesNotRespondWith302() {
+        given(noRedirectRestTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class)))
+            .willReturn(ResponseEntity.ok().build());
+
+        spiService.loginWithPin(LOGIN_PIN_CODE, REDIRECT_URI, null, CLIENT_ID);
+    }
+
     /**
      * @verifies call api with the correct data
      * @see SPIService#activateUser(String)
@@ -270,11 +382,10 @@ public class SPIServiceTest {
     @Test
     public void activateUser_shouldCallApiWithTheCorrectData() throws Exception {
 
-        given(configurationProperties.getStrategic().getEndpoint().getActivation()).willReturn(ACTIVATE_ENDPOINT);
 
         spiService.activateUser(ACTIVATE_USER_REQUEST);
 
-        verify(restTemplate).exchange(eq(API_URL + SLASH + ACTIVATE_ENDPOINT), eq(HttpMethod.PATCH), captor.capture(), eq(ActivationResult.class));
+        verify(restTemplate).exchange(eq(URI.create(API_URL + SLASH + ACTIVATE_ENDPOINT)), eq(HttpMethod.PATCH), captor.capture(), eq(ActivationResult.class));
 
         HttpEntity<?> entity = captor.getValue();
 
@@ -290,7 +401,7 @@ public class SPIServiceTest {
     @Test
     public void uplift_shouldReturnApiLocationInHeaderInApiResponseIfResponseCodeIs302() throws Exception {
 
-        given(restTemplate.exchange(eq(API_URL + SLASH + API_LOGIN_UPLIFT_ENDPOINT), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(getFoundResponseEntity(GOOGLE_WEB_ADDRESS));
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + API_LOGIN_UPLIFT_ENDPOINT)), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(getFoundResponseEntity(GOOGLE_WEB_ADDRESS));
 
         String result = spiService.uplift(USER_EMAIL, PASSWORD_ONE, JWT, REDIRECT_URI, CLIENT_ID, STATE, MISSING);
 
@@ -304,13 +415,13 @@ public class SPIServiceTest {
      */
     @Test
     public void uplift_shouldCallApiWithTheCorrectDataAndReturnApiResponseBodyIfResponseCodeIs200() throws Exception {
-        given(restTemplate.exchange(eq(API_URL + SLASH + API_LOGIN_UPLIFT_ENDPOINT), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(ResponseEntity.ok(GOOGLE_WEB_ADDRESS));
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + API_LOGIN_UPLIFT_ENDPOINT)), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(ResponseEntity.ok(GOOGLE_WEB_ADDRESS));
 
         String result = spiService.uplift(USER_EMAIL, PASSWORD_ONE, JWT, REDIRECT_URI, CLIENT_ID, STATE, MISSING);
 
         assertThat(result, equalTo(GOOGLE_WEB_ADDRESS));
 
-        verify(restTemplate).exchange(eq(API_URL + SLASH + API_LOGIN_UPLIFT_ENDPOINT), eq(HttpMethod.POST), captor.capture(), eq(String.class));
+        verify(restTemplate).exchange(eq(URI.create(API_URL + SLASH + API_LOGIN_UPLIFT_ENDPOINT)), eq(HttpMethod.POST), captor.capture(), eq(String.class));
 
         HttpEntity<MultiValueMap<String, String>> entity = (HttpEntity<MultiValueMap<String, String>>) captor.getValue();
 
@@ -331,13 +442,13 @@ public class SPIServiceTest {
      */
     @Test
     public void uplift_shouldReturnNullIfApiResponseCodeIsNot200Nor302() throws Exception {
-        given(restTemplate.exchange(eq(API_URL + SLASH + API_LOGIN_UPLIFT_ENDPOINT), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + API_LOGIN_UPLIFT_ENDPOINT)), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
 
         String result = spiService.uplift(USER_EMAIL, PASSWORD_ONE, JWT, REDIRECT_URI, CLIENT_ID, STATE, MISSING);
 
         assertThat(result, is(nullValue()));
 
-        verify(restTemplate).exchange(eq(API_URL + SLASH + API_LOGIN_UPLIFT_ENDPOINT), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class));
+        verify(restTemplate).exchange(eq(URI.create(API_URL + SLASH + API_LOGIN_UPLIFT_ENDPOINT)), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class));
     }
 
     /**
@@ -346,7 +457,7 @@ public class SPIServiceTest {
      */
     @Test
     public void authorize_shouldCallApiWithTheCorrectDataAndReturnLocationInHeaderInApiResponseIfResponseCodeIs302() throws Exception {
-        given(restTemplate.exchange(eq(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(getFoundResponseEntity(GOOGLE_WEB_ADDRESS));
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT)), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(getFoundResponseEntity(GOOGLE_WEB_ADDRESS));
 
         String result = spiService.authorize(ImmutableMap.<String, String>builder()
             .put(USERNAME_PARAMETER, USER_EMAIL)
@@ -358,7 +469,7 @@ public class SPIServiceTest {
 
         assertThat(result, equalTo(GOOGLE_WEB_ADDRESS));
 
-        verify(restTemplate).exchange(eq(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT), eq(HttpMethod.POST), captor.capture(), eq(String.class));
+        verify(restTemplate).exchange(eq(URI.create(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT)), eq(HttpMethod.POST), captor.capture(), eq(String.class));
 
         HttpEntity<MultiValueMap<String, String>> entity = (HttpEntity<MultiValueMap<String, String>>) captor.getValue();
 
@@ -380,7 +491,7 @@ public class SPIServiceTest {
      */
     @Test
     public void authorize_shouldReturnNullIfApiResponseCodeIsNot302() throws Exception {
-        given(restTemplate.exchange(eq(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(ResponseEntity.ok().build());
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT)), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(ResponseEntity.ok().build());
 
         String result = spiService.authorize(ImmutableMap.<String, String>builder()
             .put(USERNAME_PARAMETER, USER_EMAIL)
@@ -391,7 +502,7 @@ public class SPIServiceTest {
 
         assertThat(result, is(nullValue()));
 
-        verify(restTemplate).exchange(eq(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class));
+        verify(restTemplate).exchange(eq(URI.create(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT)), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class));
     }
 
     /**
@@ -401,7 +512,7 @@ public class SPIServiceTest {
     @Test
     public void authorize_shouldNotSendStateAndScopeParametersInFormIfTheyAreNotSendAsParameterInTheService() throws Exception {
 
-        given(restTemplate.exchange(eq(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(getFoundResponseEntity(GOOGLE_WEB_ADDRESS));
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT)), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(getFoundResponseEntity(GOOGLE_WEB_ADDRESS));
 
         spiService.authorize(ImmutableMap.<String, String>builder()
             .put(USERNAME_PARAMETER, USER_EMAIL)
@@ -409,7 +520,7 @@ public class SPIServiceTest {
             .put(REDIRECT_URI, REDIRECTURI)
             .put(CLIENT_ID_PARAMETER, CLIENT_ID).build(), null);
 
-        verify(restTemplate).exchange(eq(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT), eq(HttpMethod.POST), captor.capture(), eq(String.class));
+        verify(restTemplate).exchange(eq(URI.create(API_URL + SLASH + OAUTH2_AUTHORIZE_ENDPOINT)), eq(HttpMethod.POST), captor.capture(), eq(String.class));
 
         HttpEntity<MultiValueMap<String, String>> entity = (HttpEntity<MultiValueMap<String, String>>) captor.getValue();
 
@@ -432,12 +543,11 @@ public class SPIServiceTest {
      */
     @Test
     public void validateResetPasswordToken_shouldCallApiWithTheCorrectData() throws Exception {
-        given(configurationProperties.getStrategic().getEndpoint().getValidateResetPasswordToken()).willReturn(VALIDATE_RESET_PASSWORD_ENDPOINT);
-        given(restTemplate.exchange(eq(API_URL + SLASH + VALIDATE_RESET_PASSWORD_ENDPOINT), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(ResponseEntity.ok().build());
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + VALIDATE_RESET_PASSWORD_ENDPOINT)), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(ResponseEntity.ok().build());
 
         spiService.validateResetPasswordToken(RESET_PASSWORD_TOKEN, RESET_PASSWORD_CODE);
 
-        verify(restTemplate).exchange(eq(API_URL + SLASH + VALIDATE_RESET_PASSWORD_ENDPOINT), eq(HttpMethod.POST), captor.capture(), eq(String.class));
+        verify(restTemplate).exchange(eq(URI.create(API_URL + SLASH + VALIDATE_RESET_PASSWORD_ENDPOINT)), eq(HttpMethod.POST), captor.capture(), eq(String.class));
 
         HttpEntity<Void> entity = (HttpEntity<Void>) captor.getValue();
 
@@ -454,12 +564,11 @@ public class SPIServiceTest {
     @Test
     public void selfRegisterUser_shouldCallApiWithTheCorrectData() throws Exception {
 
-        given(configurationProperties.getStrategic().getEndpoint().getSelfRegistration()).willReturn(SELF_REGISTRATION_ENDPOINT);
-        given(restTemplate.exchange(eq(API_URL + SLASH + SELF_REGISTRATION_ENDPOINT), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(ResponseEntity.ok().build());
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + SELF_REGISTRATION_ENDPOINT)), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class))).willReturn(ResponseEntity.ok().build());
 
         spiService.selfRegisterUser(getSelfRegisterRequest());
 
-        verify(restTemplate).exchange(eq(API_URL + SLASH + SELF_REGISTRATION_ENDPOINT), eq(HttpMethod.POST), captor.capture(), eq(String.class));
+        verify(restTemplate).exchange(eq(URI.create(API_URL + SLASH + SELF_REGISTRATION_ENDPOINT)), eq(HttpMethod.POST), captor.capture(), eq(String.class));
 
         HttpEntity<String> entity = (HttpEntity<String>) captor.getValue();
 
@@ -476,14 +585,13 @@ public class SPIServiceTest {
     public void getDetails_shouldCallApiWithTheCorrectDataAndReturnApiResponseIfStatusCodeIs200() throws Exception {
 
         User user = anAuthorizedUser();
-        given(configurationProperties.getStrategic().getEndpoint().getDetails()).willReturn(DETAILS_ENDPOINT);
-        given(restTemplate.exchange(eq(API_URL + SLASH + DETAILS_ENDPOINT), eq(HttpMethod.GET), any(HttpEntity.class), eq(User.class))).willReturn(ResponseEntity.ok(user));
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + DETAILS_ENDPOINT)), eq(HttpMethod.GET), any(HttpEntity.class), eq(User.class))).willReturn(ResponseEntity.ok(user));
 
         Optional<User> response = spiService.getDetails(AUTHORIZATION_TOKEN);
 
         assertThat(response.get(), equalTo(user));
 
-        verify(restTemplate).exchange(eq(API_URL + SLASH + DETAILS_ENDPOINT), eq(HttpMethod.GET), captor.capture(), eq(User.class));
+        verify(restTemplate).exchange(eq(URI.create(API_URL + SLASH + DETAILS_ENDPOINT)), eq(HttpMethod.GET), captor.capture(), eq(User.class));
 
         HttpEntity<String> entity = (HttpEntity<String>) captor.getValue();
 
@@ -499,8 +607,7 @@ public class SPIServiceTest {
     @Test
     public void getDetails_shouldReturnOptionalEmptyIfStatusCodeIsNot200() throws Exception {
 
-        given(configurationProperties.getStrategic().getEndpoint().getDetails()).willReturn(DETAILS_ENDPOINT);
-        given(restTemplate.exchange(eq(API_URL + SLASH + DETAILS_ENDPOINT), eq(HttpMethod.GET), any(HttpEntity.class), eq(User.class))).willReturn(ResponseEntity.accepted().build());
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + DETAILS_ENDPOINT)), eq(HttpMethod.GET), any(HttpEntity.class), eq(User.class))).willReturn(ResponseEntity.accepted().build());
 
         Optional<User> response = spiService.getDetails(AUTHORIZATION_TOKEN);
 
@@ -514,8 +621,7 @@ public class SPIServiceTest {
      */
     @Test
     public void getDetails_shouldReturnOptionalEmptyIfAnyExceptionOccurs() throws Exception {
-        given(configurationProperties.getStrategic().getEndpoint().getDetails()).willReturn(DETAILS_ENDPOINT);
-        given(restTemplate.exchange(eq(API_URL + SLASH + DETAILS_ENDPOINT), eq(HttpMethod.GET), any(HttpEntity.class), eq(User.class))).willThrow(new HttpClientErrorException(HttpStatus.FORBIDDEN));
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + DETAILS_ENDPOINT)), eq(HttpMethod.GET), any(HttpEntity.class), eq(User.class))).willThrow(new HttpClientErrorException(HttpStatus.FORBIDDEN));
 
         Optional<User> response = spiService.getDetails(AUTHORIZATION_TOKEN);
 
@@ -534,14 +640,13 @@ public class SPIServiceTest {
         ArrayOfServices services = new ArrayOfServices();
         services.add(service);
 
-        given(configurationProperties.getStrategic().getEndpoint().getServices()).willReturn(SERVICES_ENDPOINT);
-        given(restTemplate.exchange(eq(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID), eq(HttpMethod.GET), any(HttpEntity.class), eq(ArrayOfServices.class))).willReturn(ResponseEntity.ok(services));
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID)), eq(HttpMethod.GET), any(HttpEntity.class), eq(ArrayOfServices.class))).willReturn(ResponseEntity.ok(services));
 
         Optional<Service> response = spiService.getServiceByClientId(SERVICE_CLIENT_ID);
 
         assertThat(response.get(), equalTo(service));
 
-        verify(restTemplate).exchange(eq(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID), eq(HttpMethod.GET), captor.capture(), eq(ArrayOfServices.class));
+        verify(restTemplate).exchange(eq(URI.create(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID)), eq(HttpMethod.GET), captor.capture(), eq(ArrayOfServices.class));
 
     }
 
@@ -552,8 +657,7 @@ public class SPIServiceTest {
     @Test
     public void getServiceByClientId_shouldReturnOptionalEmptyIfApiReturnsAnHttpStatusDifferentFrom200() {
 
-        given(configurationProperties.getStrategic().getEndpoint().getServices()).willReturn(SERVICES_ENDPOINT);
-        given(restTemplate.exchange(eq(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID), eq(HttpMethod.GET), any(HttpEntity.class), eq(ArrayOfServices.class))).willReturn(ResponseEntity.badRequest().build());
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID)), eq(HttpMethod.GET), any(HttpEntity.class), eq(ArrayOfServices.class))).willReturn(ResponseEntity.badRequest().build());
 
         Optional<Service> response = spiService.getServiceByClientId(SERVICE_CLIENT_ID);
 
@@ -567,28 +671,126 @@ public class SPIServiceTest {
      */
     @Test
     public void getServiceByClientId_shouldReturnOptionalEmptyIfApiReturnsEmptyResponseBody() throws Exception {
-        given(configurationProperties.getStrategic().getEndpoint().getServices()).willReturn(SERVICES_ENDPOINT);
-        given(restTemplate.exchange(eq(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID), eq(HttpMethod.GET), any(HttpEntity.class), eq(ArrayOfServices.class))).willReturn(ResponseEntity.ok().build());
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID)), eq(HttpMethod.GET), any(HttpEntity.class), eq(ArrayOfServices.class))).willReturn(ResponseEntity.ok().build());
 
         Optional<Service> response = spiService.getServiceByClientId(SERVICE_CLIENT_ID);
 
         assertThat(response.isPresent(), is(false));
     }
 
+    /**
+     * @verifies serve repeated lookups from the service cache when it is enabled
+     * @see SPIService#getServiceByClientId(String)
+     */
+    @Test
+    public void getServiceByClientId_shouldServeRepeatedLookupsFromTheServiceCacheWhenItIsEnabled() {
+        StrategicConfigurationProperties.ServiceCache serviceCache = new StrategicConfigurationProperties.ServiceCache();
+        serviceCache.setEnabled(true);
+        serviceCache.setMaximumSize(10);
+        serviceCache.setExpireAfterWrite(Duration.ofMinutes(10));
+        serviceCache.setRefreshAfterWrite(Duration.ofMinutes(5));
+        serviceCache.setUnknownClientExpireAfterWrite(Duration.ofMinutes(1));
+        given(configurationProperties.getStrategic().getServiceCache()).willReturn(serviceCache);
+        SPIService cachingSpiService = new SPIService(restTemplate, configurationProperties, objectMapper, new SimpleMeterRegistry(), Runnable::run, Runnable::run, Runnable::run, null, noRedirectRestTemplate);
+
+        Service service = getService(SERVICE_LABEL, SERVICE_CLIENT_ID, true);
+        ArrayOfServices services = new ArrayOfServices();
+        services.add(service);
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID)), eq(HttpMethod.GET), any(HttpEntity.class), eq(ArrayOfServices.class))).willReturn(ResponseEntity.ok(services));
+
+        assertThat(cachingSpiService.getServiceByClientId(SERVICE_CLIENT_ID).get(), equalTo(service));
+        assertThat(cachingSpiService.getServiceByClientId(SERVICE_CLIENT_ID).get(), equalTo(service));
+
+        verify(restTemplate, times(1)).exchange(eq(URI.create(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID)), eq(HttpMethod.GET), any(HttpEntity.class), eq(ArrayOfServices.class));
+    }
+
+    /**
+     * @verifies share one api call between concurrent callers with the same client id
+     * @see SPIService#getServiceByClientId(String)
+     */
+    @Test
+    public void getServiceByClientId_shouldShareOneApiCallBetweenConcurrentCallersWithTheSameClientId() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SPIService meteredSpiService = new SPIService(restTemplate, configurationProperties, objectMapper, meterRegistry, Runnable::run, Runnable::run, Runnable::run, null, noRedirectRestTemplate);
+        Service service = getService(SERVICE_LABEL, SERVICE_CLIENT_ID, true);
+        ArrayOfServices services = new ArrayOfServices();
+        services.add(service);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID)), eq(HttpMethod.GET), any(HttpEntity.class), eq(ArrayOfServices.class))).willAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return ResponseEntity.ok(services);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<Service>> first = executor.submit(() -> meteredSpiService.getServiceByClientId(SERVICE_CLIENT_ID));
+            started.await();
+            Future<Optional<Service>> second = executor.submit(() -> meteredSpiService.getServiceByClientId(SERVICE_CLIENT_ID));
+            awaitCollapsedCalls(meterRegistry, "services");
+            release.countDown();
+
+            assertThat(first.get().get(), equalTo(service));
+            assertThat(second.get().get(), equalTo(service));
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(restTemplate, times(1)).exchange(eq(URI.create(API_URL + SLASH + SERVICES_ENDPOINT + "?clientId=" + SERVICE_CLIENT_ID)), eq(HttpMethod.GET), any(HttpEntity.class), eq(ArrayOfServices.class));
+    }
+
+    /**
+     * @verifies share one api call between concurrent callers with the same token
+     * @see SPIService#getDetails(String)
+     */
+    @Test
+    public void getDetails_shouldShareOneApiCallBetweenConcurrentCallersWithTheSameToken() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SPIService meteredSpiService = new SPIService(restTemplate, configurationProperties, objectMapper, meterRegistry, Runnable::run, Runnable::run, Runnable::run, null, noRedirectRestTemplate);
+        User user = anAuthorizedUser();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + DETAILS_ENDPOINT)), eq(HttpMethod.GET), any(HttpEntity.class), eq(User.class))).willAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return ResponseEntity.ok(user);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<User>> first = executor.submit(() -> meteredSpiService.getDetails(AUTHORIZATION_TOKEN));
+            started.await();
+            Future<Optional<User>> second = executor.submit(() -> meteredSpiService.getDetails(AUTHORIZATION_TOKEN));
+            awaitCollapsedCalls(meterRegistry, "details");
+            release.countDown();
+
+            assertThat(first.get().get(), equalTo(user));
+            assertThat(second.get().get(), equalTo(user));
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(restTemplate, times(1)).exchange(eq(URI.create(API_URL + SLASH + DETAILS_ENDPOINT)), eq(HttpMethod.GET), any(HttpEntity.class), eq(User.class));
+    }
+
     /**
      * @verifies call api health check
      * @see SPIService#healthCheck()
      */
     @Test
     public void healthCheck_shouldCallApiHealthCheck() {
-        given(configurationProperties.getStrategic().getEndpoint().getHealth()).willReturn(HEALTH_ENDPOINT);
-        given(restTemplate.getForEntity(API_URL + SLASH + HEALTH_ENDPOINT, HealthCheckStatus.class)).willReturn(ResponseEntity.ok(new HealthCheckStatus("UP")));
+        given(restTemplate.getForEntity(URI.create(API_URL + SLASH + HEALTH_ENDPOINT), HealthCheckStatus.class)).willReturn(ResponseEntity.ok(new HealthCheckStatus("UP")));
 
         ResponseEntity<HealthCheckStatus> response = spiService.healthCheck();
 
         assertThat(response.getBody().getStatus(), equalTo("UP"));
     }
 
+    private void awaitCollapsedCalls(SimpleMeterRegistry meterRegistry, String endpoint) throws InterruptedException {
+        while (meterRegistry.get("idam.api.singleflight.collapsed").tag("endpoint", endpoint).counter().count() < 1) {
+            Thread.sleep(5);
+        }
+    }
+
     private RegisterUserRequest aRegisterUserRequest() {
         RegisterUserRequest registerUserRequest = new RegisterUserRequest();
         registerUserRequest.setClient_id(SERVICE_OAUTH2_CLIENT_ID);
@@ -607,7 +809,7 @@ public class SPIServiceTest {
     @Test
     public void authenticate_shouldReturnSessionCookieOnSuccess() throws JsonProcessingException {
         String cookie = "Idam.Session=1234567890";
-        given(restTemplate.exchange(eq(API_URL + SLASH + AUTHENTICATE_ENDPOINT),
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + AUTHENTICATE_ENDPOINT)),
             eq(HttpMethod.POST), any(HttpEntity.class), eq(Object.class)))
             .willReturn(ResponseEntity.ok().header(HttpHeaders.SET_COOKIE, cookie).build());
         ApiAuthResult result = spiService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS);
@@ -619,7 +821,7 @@ public class SPIServiceTest {
      */
     @Test
     public void authenticate_shouldNotReturnSessionCookie() throws JsonProcessingException {
-        given(restTemplate.exchange(eq(API_URL + SLASH + AUTHENTICATE_ENDPOINT),
+        given(restTemplate.exchange(eq(URI.create(API_URL + SLASH + AUTHENTICATE_ENDPOINT)),
             eq(HttpMethod.POST), any(HttpEntity.class), eq(Object.class)))
             .willReturn(ResponseEntity.ok().build());
         ApiAuthResult result = spiService.authenticate(USER_NAME, PASSWORD_ONE, REDIRECT_URI, USER_IP_ADDRESS);
@@ -637,7 +839,7 @@ public class SPIServiceTest {
 
         given(
             restTemplate.exchange(
-                eq(API_URL + SLASH + AUTHENTICATE_ENDPOINT),
+                eq(URI.create(API_URL + SLASH + AUTHENTICATE_ENDPOINT)),
                 eq(HttpMethod.POST),
                 any(HttpEntity.class),
                 eq(Object.class)))
@@ -658,7 +860,7 @@ public class SPIServiceTest {
 
         given(
             restTemplate.exchange(
-                eq(API_URL + SLASH + AUTHENTICATE_ENDPOINT),
+                eq(URI.create(API_URL + SLASH + AUTHENTICATE_ENDPOINT)),
                 eq(HttpMethod.POST),
                 any(HttpEntity.class),
                 eq(Object.class)))
@@ -681,7 +883,7 @@ public class SPIServiceTest {
 
         given(
             restTemplate.exchange(
-                eq(API_URL + SLASH + AUTHENTICATE_ENDPOINT),
+                eq(URI.create(API_URL + SLASH + AUTHENTICATE_ENDPOINT)),
                 eq(HttpMethod.POST),
                 any(HttpEntity.class),
                 eq(Object.class)))
@@ -697,14 +899,14 @@ public class SPIServiceTest {
     public void submitOtpeAuthentication_shouldMakeTheRightRequest() throws Exception {
 
         given(restTemplate.exchange(
-            eq(API_URL + SLASH + AUTHENTICATE_ENDPOINT),
+            eq(URI.create(API_URL + SLASH + AUTHENTICATE_ENDPOINT)),
             eq(HttpMethod.POST),
             any(HttpEntity.class), eq(Void.class)))
             .willReturn(ResponseEntity.ok().build());
 
         spiService.submitOtpeAuthentication(IDAM_AUTH_ID, USER_IP_ADDRESS, MFA_OTP);
 
-        verify(restTemplate).exchange(eq(API_URL + SLASH + AUTHENTICATE_ENDPOINT), eq(HttpMethod.POST), captor.capture(), eq(Void.class));
+        verify(restTemplate).exchange(eq(URI.create(API_URL + SLASH + AUTHENTICATE_ENDPOINT)), eq(HttpMethod.POST), captor.capture(), eq(Void.class));
 
         HttpEntity<?> entity = captor.getValue();
         assertTrue(entity.getBody() instanceof MultiValueMap);
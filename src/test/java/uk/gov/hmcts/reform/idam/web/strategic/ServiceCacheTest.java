@@ -0,0 +1,109 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+import uk.gov.hmcts.reform.idam.api.internal.model.Service;
+import uk.gov.hmcts.reform.idam.web.config.properties.StrategicConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.SERVICE_CLIENT_ID;
+import static uk.gov.hmcts.reform.idam.web.util.TestConstants.SERVICE_LABEL;
+import static uk.gov.hmcts.reform.idam.web.util.TestHelper.getService;
+
+public class ServiceCacheTest {
+
+    private static final String UNKNOWN_CLIENT_ID = "unknown";
+
+    private StrategicConfigurationProperties.ServiceCache properties;
+
+    private AtomicInteger loads;
+
+    @Before
+    public void setUp() {
+        properties = new StrategicConfigurationProperties.ServiceCache();
+        properties.setEnabled(true);
+        properties.setMaximumSize(10);
+        properties.setExpireAfterWrite(Duration.ofMinutes(10));
+        properties.setRefreshAfterWrite(Duration.ofMinutes(5));
+        properties.setUnknownClientExpireAfterWrite(Duration.ofMinutes(1));
+        loads = new AtomicInteger();
+    }
+
+    /**
+     * @verifies return the loaded service and not call the loader again while the entry is fresh
+     * @see ServiceCache#get(String)
+     */
+    @Test
+    public void get_shouldReturnTheLoadedServiceAndNotCallTheLoaderAgainWhileTheEntryIsFresh() {
+        Service service = getService(SERVICE_LABEL, SERVICE_CLIENT_ID, true);
+        ServiceCache cache = aServiceCache(clientId -> Optional.of(service));
+
+        assertThat(cache.get(SERVICE_CLIENT_ID), equalTo(Optional.of(service)));
+        assertThat(cache.get(SERVICE_CLIENT_ID), equalTo(Optional.of(service)));
+        assertThat(loads.get(), is(1));
+    }
+
+    /**
+     * @verifies return Optional empty and not call the loader again for an unknown client
+     * @see ServiceCache#get(String)
+     */
+    @Test
+    public void get_shouldReturnOptionalEmptyAndNotCallTheLoaderAgainForAnUnknownClient() {
+        ServiceCache cache = aServiceCache(clientId -> Optional.empty());
+
+        assertThat(cache.get(UNKNOWN_CLIENT_ID).isPresent(), is(false));
+        assertThat(cache.get(UNKNOWN_CLIENT_ID).isPresent(), is(false));
+        assertThat(loads.get(), is(1));
+        assertThat(cache.getUnknownClients().contains(UNKNOWN_CLIENT_ID), is(true));
+    }
+
+    /**
+     * @verifies rethrow the exception thrown by the loader
+     * @see ServiceCache#get(String)
+     */
+    @Test(expected = HttpServerErrorException.class)
+    public void get_shouldRethrowTheExceptionThrownByTheLoader() {
+        ServiceCache cache = aServiceCache(clientId -> {
+            throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+        });
+
+        cache.get(SERVICE_CLIENT_ID);
+    }
+
+    /**
+     * @verifies remove the client from both the service and the unknown client caches
+     * @see ServiceCache#evict(String)
+     */
+    @Test
+    public void evict_shouldRemoveTheClientFromBothTheServiceAndTheUnknownClientCaches() {
+        Service service = getService(SERVICE_LABEL, SERVICE_CLIENT_ID, true);
+        ServiceCache cache = aServiceCache(clientId -> SERVICE_CLIENT_ID.equals(clientId) ? Optional.of(service) : Optional.empty());
+        cache.get(SERVICE_CLIENT_ID);
+        cache.get(UNKNOWN_CLIENT_ID);
+
+        cache.evict(SERVICE_CLIENT_ID);
+        cache.evict(UNKNOWN_CLIENT_ID);
+
+        assertThat(cache.getServices().isEmpty(), is(true));
+        assertThat(cache.getUnknownClients().isEmpty(), is(true));
+        cache.get(SERVICE_CLIENT_ID);
+        assertThat(loads.get(), is(3));
+    }
+
+    private ServiceCache aServiceCache(Function<String, Optional<Service>> loader) {
+        return new ServiceCache(properties, clientId -> {
+            loads.incrementAndGet();
+            return loader.apply(clientId);
+        }, MoreExecutors.directExecutor());
+    }
+}
@@ -0,0 +1,102 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class SessionAvoidanceFilterTest {
+
+    private static final List<String> SSO_ROUTES = List.of("/o/**", "/login", "/login/oauth2/**");
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MockHttpSession existingSession;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        existingSession = new MockHttpSession();
+        existingSession.setNew(false);
+    }
+
+    /**
+     * @verifies not look up the session outside the sso routes
+     * @see SessionAvoidanceFilter#doFilterInternal(HttpServletRequest, javax.servlet.http.HttpServletResponse, javax.servlet.FilterChain)
+     */
+    @Test
+    public void doFilterInternal_shouldNotLookUpTheSessionOutsideTheSsoRoutes() throws Exception {
+        HttpServletRequest request = filter(true, aRequest("/register"));
+
+        assertThat(request.getSession(false), is(nullValue()));
+        assertThat(request.getSession(), sameInstance(existingSession));
+    }
+
+    /**
+     * @verifies look up the session on sso routes
+     * @see SessionAvoidanceFilter#doFilterInternal(HttpServletRequest, javax.servlet.http.HttpServletResponse, javax.servlet.FilterChain)
+     */
+    @Test
+    public void doFilterInternal_shouldLookUpTheSessionOnSsoRoutes() throws Exception {
+        HttpServletRequest request = filter(true, aRequest("/login/oauth2/code/oidc"));
+
+        assertThat(request.getSession(false), sameInstance(existingSession));
+    }
+
+    /**
+     * @verifies look up the session when avoidance is disabled
+     * @see SessionAvoidanceFilter#doFilterInternal(HttpServletRequest, javax.servlet.http.HttpServletResponse, javax.servlet.FilterChain)
+     */
+    @Test
+    public void doFilterInternal_shouldLookUpTheSessionWhenAvoidanceIsDisabled() throws Exception {
+        HttpServletRequest request = filter(false, aRequest("/register"));
+
+        assertThat(request.getSession(false), sameInstance(existingSession));
+    }
+
+    /**
+     * @verifies count sessions created per route
+     * @see SessionAvoidanceFilter#doFilterInternal(HttpServletRequest, javax.servlet.http.HttpServletResponse, javax.servlet.FilterChain)
+     */
+    @Test
+    public void doFilterInternal_shouldCountSessionsCreatedPerRoute() throws Exception {
+        MockHttpServletRequest login = new MockHttpServletRequest("POST", "/login");
+        HttpServletRequest request = filter(true, login);
+        assertThat(request.getSession(), is(notNullValue()));
+        request.getSession(true);
+        filter(true, aRequest("/register")).getSession();
+
+        assertThat(created("/login"), is(1.0));
+        assertThat(meterRegistry.find(SessionAvoidanceFilter.METRIC).tag("route", SessionAvoidanceFilter.OTHER_ROUTE)
+            .counter(), is(nullValue()));
+    }
+
+    private MockHttpServletRequest aRequest(String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setSession(existingSession);
+        return request;
+    }
+
+    private HttpServletRequest filter(boolean avoidSessions, MockHttpServletRequest request) throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        new SessionAvoidanceFilter(SSO_ROUTES, avoidSessions, meterRegistry)
+            .doFilter(request, new MockHttpServletResponse(), chain);
+        return (HttpServletRequest) chain.getRequest();
+    }
+
+    private double created(String route) {
+        return meterRegistry.get(SessionAvoidanceFilter.METRIC).tag("route", route).counter().count();
+    }
+}
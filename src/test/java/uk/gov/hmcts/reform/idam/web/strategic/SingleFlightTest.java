@@ -0,0 +1,132 @@
+package uk.gov.hmcts.reform.idam.web.strategic;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    private static final String KEY = "key";
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SingleFlight<String, String> singleFlight;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight<>("services", meterRegistry);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @verifies run the work once for concurrent callers with the same key
+     * @see SingleFlight#execute(Object, java.util.function.Supplier)
+     */
+    @Test
+    public void execute_shouldRunTheWorkOnceForConcurrentCallersWithTheSameKey() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute(KEY, () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "result";
+        }));
+        started.await();
+        Future<String> follower = executor.submit(() -> singleFlight.execute(KEY, () -> {
+            calls.incrementAndGet();
+            return "other";
+        }));
+        awaitCollapsed(1);
+        release.countDown();
+
+        assertThat(leader.get(), equalTo("result"));
+        assertThat(follower.get(), equalTo("result"));
+        assertThat(calls.get(), is(1));
+    }
+
+    /**
+     * @verifies run the work again once the previous call has completed
+     * @see SingleFlight#execute(Object, java.util.function.Supplier)
+     */
+    @Test
+    public void execute_shouldRunTheWorkAgainOnceThePreviousCallHasCompleted() {
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute(KEY, () -> "call " + calls.incrementAndGet());
+        String result = singleFlight.execute(KEY, () -> "call " + calls.incrementAndGet());
+
+        assertThat(result, equalTo("call 2"));
+        assertThat(meterRegistry.get("idam.api.singleflight.collapsed").counter().count(), is(0.0));
+    }
+
+    /**
+     * @verifies rethrow the exception thrown by the work to every waiting caller
+     * @see SingleFlight#execute(Object, java.util.function.Supplier)
+     */
+    @Test
+    public void execute_shouldRethrowTheExceptionThrownByTheWorkToEveryWaitingCaller() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute(KEY, () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalArgumentException("failed");
+        }));
+        started.await();
+        Future<String> follower = executor.submit(() -> singleFlight.execute(KEY, () -> "other"));
+        awaitCollapsed(1);
+        release.countDown();
+
+        assertFailedWithIllegalArgument(leader);
+        assertFailedWithIllegalArgument(follower);
+    }
+
+    private void assertFailedWithIllegalArgument(Future<String> future) throws InterruptedException {
+        try {
+            future.get();
+            fail("Expected the call to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+        }
+    }
+
+    private void awaitCollapsed(int count) throws InterruptedException {
+        while (meterRegistry.get("idam.api.singleflight.collapsed").counter().count() < count) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}